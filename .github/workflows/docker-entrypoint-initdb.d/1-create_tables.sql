@@ -98,7 +98,7 @@ create table Language(
 
 create table Resource (
 	id serial primary key,
-  path varchar(1041) unique not null,
+  path varchar(1041) not null,
   name varchar(200) not null,
   createdAt timestamp not null default now(),
   duration integer
@@ -244,4 +244,38 @@ create table ActivityMessage(
   postedAt timestamp not null default now(),
   foreign key (idActivity) references Activity(id) on delete cascade on update cascade,
   foreign key (idUser) references StreamusUser(idPerson) on delete cascade on update cascade
-);
\ No newline at end of file
+);
+
+-- Playback state of the activities in use, as of their last checkpoint, readable from every node
+create table LiveActivityState(
+  idActivity bigint primary key,
+  positionMillis bigint not null,
+  positionAt bigint not null,
+  rate double precision not null default 1,
+  playing boolean not null default false,
+  track integer,
+  foreign key(idActivity) references Activity(id) on delete cascade on update cascade
+);
+
+-- State of the ingest jobs, readable from every node
+create table IngestJob(
+  id varchar(36) primary key,
+  type varchar(20) not null,
+  contentHash varchar(64),
+  status varchar(20) not null,
+  idResource integer,
+  failureReason varchar(255),
+  stageMillis jsonb not null default '{}',
+  updatedAt timestamp not null default now()
+);
+
+-- Keyset pagination
+create index ResourceCreatedAtId on Resource(createdAt, id);
+create index CollectionCreatedAtId on Collection(createdAt, id);
+create index ActivityMessageActivityId on ActivityMessage(idActivity, id);
+
+-- Reference counting of content-addressed files
+create index ResourcePath on Resource(path);
+
+-- Purge of the ingest jobs
+create index IngestJobUpdatedAt on IngestJob(updatedAt);
@@ -108,8 +108,8 @@ create or replace function createSong(_path varchar(1041), _name varchar(200), _
   declare
     _idSong integer;
   begin
-    insert into Resource(path, name, duration) values (_path, _name, _duration);
-    insert into Song(idResource) values ((select resource.id from resource where resource.path = _path));
+    insert into Resource(path, name, duration) values (_path, _name, _duration) returning Resource.id into _idSong;
+    insert into Song(idResource) values (_idSong);
     return query
       select
         vsong.id,
@@ -117,7 +117,7 @@ create or replace function createSong(_path varchar(1041), _name varchar(200), _
         vsong.name,
         vsong.createdAt,
         vsong.duration
-      from vsong where vsong.path = _path;
+      from vsong where vsong.id = _idSong;
   end
   $$
   language 'plpgsql';
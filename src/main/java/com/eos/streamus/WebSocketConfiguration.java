@@ -0,0 +1,33 @@
+package com.eos.streamus;
+
+import com.eos.streamus.controllers.ActivitySyncHandler;
+import com.eos.streamus.filters.ActivitySyncHandshakeInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import javax.annotation.Nonnull;
+
+@Configuration
+@EnableWebSocket
+public class WebSocketConfiguration implements WebSocketConfigurer {
+  /** {@link ActivitySyncHandler} to use. */
+  @Autowired
+  private ActivitySyncHandler activitySyncHandler;
+
+  /** {@link ActivitySyncHandshakeInterceptor} to use. */
+  @Autowired
+  private ActivitySyncHandshakeInterceptor activitySyncHandshakeInterceptor;
+
+  /** {@inheritDoc} */
+  @Override
+  public void registerWebSocketHandlers(@Nonnull final WebSocketHandlerRegistry registry) {
+    registry
+        .addHandler(activitySyncHandler, "/activity/*/sync")
+        .addInterceptors(activitySyncHandshakeInterceptor)
+        .setAllowedOrigins("http://localhost:4200");
+  }
+
+}
@@ -1,28 +1,46 @@
 package com.eos.streamus.controllers;
 
+import com.eos.streamus.dto.ActivityMessageDTO;
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.filters.JwtFilter;
 import com.eos.streamus.models.Activity;
 import com.eos.streamus.models.Collection;
 import com.eos.streamus.models.CollectionActivity;
 import com.eos.streamus.models.CollectionDAO;
+import com.eos.streamus.models.Page;
+import com.eos.streamus.models.PageCursor;
 import com.eos.streamus.models.Resource;
 import com.eos.streamus.models.ResourceActivity;
 import com.eos.streamus.models.ResourceDAO;
 import com.eos.streamus.models.User;
+import com.eos.streamus.utils.ActivitySyncEvent;
+import com.eos.streamus.utils.ActivitySyncService;
 import com.eos.streamus.utils.IDatabaseConnector;
 import com.eos.streamus.utils.JwtService;
+import com.eos.streamus.utils.LiveActivity;
+import com.eos.streamus.utils.LiveActivityService;
+import com.eos.streamus.utils.TrackPrefetcher;
+import com.eos.streamus.writers.JsonActivityMessageListWriter;
+import com.eos.streamus.writers.JsonActivityMessageWriter;
 import com.eos.streamus.writers.JsonCollectionActivityWriter;
+import com.eos.streamus.writers.JsonErrorListWriter;
 import com.eos.streamus.writers.JsonResourceActivityWriter;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.validation.Valid;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Objects;
@@ -43,6 +61,18 @@ public final class ActivityController implements CommonResponses {
   @Autowired
   private JwtService jwtService;
 
+  /** {@link com.eos.streamus.utils.TrackPrefetcher} to use. */
+  @Autowired
+  private TrackPrefetcher trackPrefetcher;
+
+  /** {@link com.eos.streamus.utils.ActivitySyncService} to use. */
+  @Autowired
+  private ActivitySyncService activitySyncService;
+
+  /** {@link com.eos.streamus.utils.LiveActivityService} to use. */
+  @Autowired
+  private LiveActivityService liveActivityService;
+
   @GetMapping("/activity/{resourceId}")
   public ResponseEntity<JsonNode> getOrCreateActivity(@RequestHeader final HttpHeaders headers,
                                                       @PathVariable("resourceId") final int resourceId) {
@@ -55,6 +85,10 @@ public final class ActivityController implements CommonResponses {
           resource.getId(),
           connection
       );
+      LiveActivity liveActivity = resourceActivity == null ? null : liveActivityService.find(resourceActivity.getId());
+      if (liveActivity != null) {
+        resourceActivity.setPausedAt(liveActivity.getPosition());
+      }
       if (resourceActivity == null || resourceActivity.getPausedAt() >= resource.getDuration()) {
         resourceActivity = new ResourceActivity(resource, user);
         resourceActivity.save(connection);
@@ -85,6 +119,7 @@ public final class ActivityController implements CommonResponses {
         collectionActivity.save(connection);
         collectionActivity.continueOrNext(connection);
       }
+      trackPrefetcher.prefetchNext(collectionActivity);
       return ResponseEntity.ok(new JsonCollectionActivityWriter(collectionActivity).getJson());
     } catch (NoResultException noResultException) {
       return notFound();
@@ -95,30 +130,101 @@ public final class ActivityController implements CommonResponses {
   }
 
   @PostMapping("/activity/{id}/pause/{time}")
-  public ResponseEntity<JsonNode> pauseActivity(@RequestHeader final HttpHeaders headers,
+  public ResponseEntity<JsonNode> pauseActivity(@RequestAttribute(JwtFilter.USER_ID_ATTRIBUTE) final Integer userId,
                                                 @PathVariable final int id,
                                                 @PathVariable final int time) {
-    try (Connection connection = databaseConnector.getConnection()) {
-      final String token = Objects.requireNonNull(headers.getFirst(AUTHORIZATION)).substring(TOKEN_OFFSET);
-      final User user = User.findById(this.jwtService.decode(token).getBody().get(USER_ID, Integer.class), connection);
-      final ResourceActivity resourceActivity = ResourceActivity.findById(id, connection);
-      if (resourceActivity == null) {
+    try {
+      final LiveActivity liveActivity = liveActivityService.get(id);
+      if (!liveActivity.hasSavedPosition()) {
         return notFound();
       }
-      boolean containedAndIsOwner = false;
-      for (Activity.UserActivity userActivity : resourceActivity.getUsers()) {
-        if (user.equals(userActivity.getUser()) && userActivity.isManager() != null && userActivity.isManager()) {
-          containedAndIsOwner = true;
-          break;
-        }
-      }
-      if (!containedAndIsOwner) {
+      if (!liveActivityService.isManagedBy(id, userId)) {
         return badRequest("Unauthorized");
       }
-      resourceActivity.setPausedAt(time);
-      resourceActivity.save(connection);
-      return ResponseEntity.ok(new JsonResourceActivityWriter(resourceActivity).getJson());
-    } catch (SQLException | NoResultException sqlException) {
+      long positionMillis = time * LiveActivity.MILLIS_PER_SECOND;
+      LiveActivity.Snapshot applied = liveActivity.apply(ActivitySyncEvent.Type.PAUSE, positionMillis, null, null);
+      activitySyncService.publish(new ActivitySyncEvent(ActivitySyncEvent.Type.PAUSE, id, userId, applied));
+      return ResponseEntity.ok(new JsonResourceActivityWriter(
+          id, (int) (applied.getPositionMillis() / LiveActivity.MILLIS_PER_SECOND)
+      ).getJson());
+    } catch (NoResultException noResultException) {
+      return notFound();
+    } catch (SQLException sqlException) {
+      logException(sqlException);
+      return internalServerError();
+    }
+  }
+
+  /**
+   * Get a page of the messages of an Activity, in posting order. Members catch up on the messages posted since the last
+   * one they received by passing its cursor, as sent with every batch of the sync channel.
+   *
+   * @param userId Id of the requesting User, who must be a member of the Activity.
+   * @param id     Id of the Activity.
+   * @param cursor Cursor of the page, or none for the first page.
+   * @param limit  Maximum number of messages in the page.
+   * @return Page of messages in Json format.
+   */
+  @GetMapping("/activity/{id}/messages")
+  public ResponseEntity<JsonNode> getActivityMessages(
+      @RequestAttribute(JwtFilter.USER_ID_ATTRIBUTE) final Integer userId,
+      @PathVariable final int id,
+      @RequestParam(required = false) final String cursor,
+      @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) final int limit) {
+    PageCursor after;
+    try {
+      after = pageCursor(cursor, limit);
+    } catch (IllegalArgumentException illegalArgumentException) {
+      return badRequest(illegalArgumentException.getMessage());
+    }
+    try (Connection connection = databaseConnector.getConnection()) {
+      if (Activity.findManagement(id, userId, connection) == null) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+      }
+      Page<Activity.ActivityMessage> messages = Activity.findMessages(id, after, limit, connection);
+      return ResponseEntity.ok(new JsonActivityMessageListWriter(messages).getJson());
+    } catch (NoResultException noResultException) {
+      return notFound();
+    } catch (SQLException sqlException) {
+      logException(sqlException);
+      return internalServerError();
+    }
+  }
+
+  /**
+   * Post a message in an Activity. It is pushed to the members connected to the sync channel of the Activity with the
+   * next batch of messages.
+   *
+   * @param userId             Id of the posting User, who must be a member of the Activity.
+   * @param id                 Id of the Activity.
+   * @param activityMessageDTO Message to post.
+   * @param result             BindingResult to validate the message with.
+   * @return Saved message in Json format.
+   */
+  @PostMapping("/activity/{id}/messages")
+  public ResponseEntity<JsonNode> postActivityMessage(
+      @RequestAttribute(JwtFilter.USER_ID_ATTRIBUTE) final Integer userId,
+      @PathVariable final int id,
+      @RequestBody @Valid final ActivityMessageDTO activityMessageDTO,
+      final BindingResult result) {
+    if (result.hasErrors()) {
+      return ResponseEntity.badRequest().body(new JsonErrorListWriter(result).getJson());
+    }
+    try (Connection connection = databaseConnector.getConnection()) {
+      if (Activity.findManagement(id, userId, connection) == null) {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+      }
+      Activity.ActivityMessage message = Activity.postMessage(
+          id,
+          User.findById(userId, connection),
+          activityMessageDTO.getContent(),
+          connection
+      );
+      activitySyncService.publish(message);
+      return ResponseEntity.ok(new JsonActivityMessageWriter(message).getJson());
+    } catch (NoResultException noResultException) {
+      return notFound();
+    } catch (SQLException sqlException) {
       logException(sqlException);
       return internalServerError();
     }
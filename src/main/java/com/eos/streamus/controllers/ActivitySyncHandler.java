@@ -0,0 +1,243 @@
+package com.eos.streamus.controllers;
+
+import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.filters.ActivitySyncHandshakeInterceptor;
+import com.eos.streamus.utils.ActivitySyncEvent;
+import com.eos.streamus.utils.ActivitySyncService;
+import com.eos.streamus.utils.LiveActivity;
+import com.eos.streamus.utils.LiveActivityService;
+import com.eos.streamus.utils.ServerClock;
+import com.eos.streamus.writers.JsonLiveActivityWriter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sync channel of an {@link com.eos.streamus.models.Activity}, at /activity/{id}/sync.
+ * On connection, a member receives the state of the Activity: {"type": "state", "position": ms, "rate": r,
+ * "playing": p, "at": server time}, with the number of the track being played, if any, in "track".
+ * Managers of the Activity send play, pause and seek events, e.g. {"type": "pause", "position": 42000}, with an
+ * optional playback rate, and the number of the track for a {@link com.eos.streamus.models.CollectionActivity}.
+ * Positions may be given in whole seconds with "time" instead. Each event is applied to the {@link LiveActivity} state
+ * of the Activity, as with /activity/{id}/pause/{time}, and the resulting state, with the position clamped to the
+ * duration of the Resource, is pushed to every member connected to the channel.
+ * Any member may send {"type": "ping", "clientSentAt": t0}, answered with the times the server received and sent it,
+ * so that clients estimate the offset of their clock to the server clock as with NTP, and correct their drift by
+ * adjusting their playback rate rather than seeking.
+ */
+@Component
+public final class ActivitySyncHandler extends TextWebSocketHandler {
+  /** Session attribute holding the session to send to. */
+  private static final String SYNC_SESSION = "syncSession";
+  /** Type of time sync requests. */
+  private static final String PING = "ping";
+  /** Highest playback rate a manager may set. */
+  private static final double MAX_RATE = 4;
+  /** Reads incoming messages. */
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  /** {@link com.eos.streamus.utils.LiveActivityService} to use. */
+  @Autowired
+  private LiveActivityService liveActivityService;
+
+  /** {@link com.eos.streamus.utils.ActivitySyncService} to use. */
+  @Autowired
+  private ActivitySyncService activitySyncService;
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterConnectionEstablished(final WebSocketSession session) {
+    int activityId = getActivityId(session);
+    WebSocketSession syncSession = activitySyncService.join(activityId, session);
+    session.getAttributes().put(SYNC_SESSION, syncSession);
+    LiveActivity liveActivity = getLiveActivity(session);
+    if (liveActivity != null) {
+      ObjectNode state = (ObjectNode) new JsonLiveActivityWriter(liveActivity).getJson();
+      activitySyncService.send(activityId, syncSession, new TextMessage(state.put("type", "state").toString()));
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected void handleTextMessage(final WebSocketSession session, final TextMessage message) {
+    long receivedAt = ServerClock.currentTimeMillis();
+    JsonNode json;
+    try {
+      json = OBJECT_MAPPER.readTree(message.getPayload());
+    } catch (JsonProcessingException jsonProcessingException) {
+      reply(session, error("Invalid event"));
+      return;
+    }
+    JsonNode type = json.get("type");
+    if (type == null || !type.isTextual()) {
+      reply(session, error("Invalid event"));
+      return;
+    }
+    if (PING.equals(type.textValue())) {
+      pong(session, json, receivedAt);
+      return;
+    }
+
+    int userId = (int) session.getAttributes().get(ActivitySyncHandshakeInterceptor.USER_ID);
+    LiveActivity liveActivity = getLiveActivity(session);
+    if (liveActivity == null) {
+      reply(session, error("Not found"));
+      return;
+    }
+    if (!isManagedBy(liveActivity, userId)) {
+      reply(session, error("Unauthorized"));
+      return;
+    }
+    ActivitySyncEvent.Type eventType;
+    long positionMillis;
+    Double rate;
+    Integer track;
+    try {
+      eventType = ActivitySyncEvent.Type.valueOf(type.textValue().toUpperCase(Locale.ROOT));
+      positionMillis = readPositionMillis(json);
+      rate = readRate(json);
+      track = readTrack(json);
+    } catch (IllegalArgumentException invalidEventException) {
+      reply(session, error("Invalid event"));
+      return;
+    }
+    LiveActivity.Snapshot applied = liveActivity.apply(eventType, positionMillis, rate, track);
+    activitySyncService.publish(new ActivitySyncEvent(eventType, liveActivity.getId(), userId, applied));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterConnectionClosed(final WebSocketSession session, final CloseStatus status) {
+    int activityId = getActivityId(session);
+    if (activitySyncService.leave(activityId, session)) {
+      liveActivityService.end(activityId);
+    }
+  }
+
+  /**
+   * Answers a time sync request with the times the server received and answered it.
+   *
+   * @param session    Session of the member.
+   * @param json       Request sent.
+   * @param receivedAt Server time at which the request was received, in milliseconds since the epoch.
+   */
+  private void pong(final WebSocketSession session, final JsonNode json, final long receivedAt) {
+    JsonNode clientSentAt = json.get("clientSentAt");
+    if (clientSentAt == null || !clientSentAt.isNumber()) {
+      reply(session, error("Invalid event"));
+      return;
+    }
+    ObjectNode pong = JsonNodeFactory.instance.objectNode()
+        .put("type", "pong")
+        .put("clientSentAt", clientSentAt.asLong())
+        .put("serverReceivedAt", receivedAt);
+    reply(session, pong.put("serverSentAt", ServerClock.currentTimeMillis()));
+  }
+
+  /**
+   * @param json Event sent.
+   * @return Position of the event, in milliseconds, from "position", or from "time" in seconds.
+   * @throws IllegalArgumentException If the event has no valid position.
+   */
+  private static long readPositionMillis(final JsonNode json) {
+    JsonNode position = json.get("position");
+    if (position != null && position.canConvertToLong() && position.asLong() >= 0) {
+      return position.asLong();
+    }
+    JsonNode time = json.get("time");
+    if (time != null && time.isInt() && time.intValue() >= 0) {
+      return time.intValue() * LiveActivity.MILLIS_PER_SECOND;
+    }
+    throw new IllegalArgumentException("Invalid position");
+  }
+
+  /**
+   * @param json Event sent.
+   * @return Playback rate of the event, or null to keep the current one.
+   * @throws IllegalArgumentException If the rate is not a positive number up to {@link #MAX_RATE}.
+   */
+  private static Double readRate(final JsonNode json) {
+    JsonNode rate = json.get("rate");
+    if (rate == null) {
+      return null;
+    }
+    if (!rate.isNumber() || rate.doubleValue() <= 0 || rate.doubleValue() > MAX_RATE) {
+      throw new IllegalArgumentException("Invalid rate");
+    }
+    return rate.doubleValue();
+  }
+
+  /**
+   * @param json Event sent.
+   * @return Number of the track of the event, or null.
+   * @throws IllegalArgumentException If the track is not a number.
+   */
+  private static Integer readTrack(final JsonNode json) {
+    JsonNode track = json.get("track");
+    if (track == null) {
+      return null;
+    }
+    if (!track.isInt()) {
+      throw new IllegalArgumentException("Invalid track");
+    }
+    return track.intValue();
+  }
+
+  private LiveActivity getLiveActivity(final WebSocketSession session) {
+    try {
+      return liveActivityService.get(getActivityId(session));
+    } catch (SQLException sqlException) {
+      getLogger().log(Level.SEVERE, sqlException.getMessage(), sqlException);
+      return null;
+    } catch (NoResultException noResultException) {
+      return null;
+    }
+  }
+
+  private boolean isManagedBy(final LiveActivity liveActivity, final int userId) {
+    try {
+      return liveActivityService.isManagedBy(liveActivity.getId(), userId);
+    } catch (SQLException sqlException) {
+      getLogger().log(Level.SEVERE, sqlException.getMessage(), sqlException);
+      return false;
+    } catch (NoResultException noResultException) {
+      return false;
+    }
+  }
+
+  private static ObjectNode error(final String reason) {
+    return JsonNodeFactory.instance.objectNode()
+        .put("type", "error")
+        .put("reason", reason);
+  }
+
+  private void reply(final WebSocketSession session, final ObjectNode message) {
+    activitySyncService.send(
+        getActivityId(session),
+        (WebSocketSession) session.getAttributes().get(SYNC_SESSION),
+        new TextMessage(message.toString())
+    );
+  }
+
+  private static int getActivityId(final WebSocketSession session) {
+    return (int) session.getAttributes().get(ActivitySyncHandshakeInterceptor.ACTIVITY_ID);
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
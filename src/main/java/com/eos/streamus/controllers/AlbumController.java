@@ -39,7 +39,7 @@ public final class AlbumController extends SongCollectionController {
    * @return Album in Json format.
    */
   @GetMapping("/album/{id}")
-  public ResponseEntity<JsonNode> getAlbumById(@PathVariable final int id) {
+  public ResponseEntity<byte[]> getAlbumById(@PathVariable final int id) {
     return getSongCollectionById(id);
   }
 
@@ -10,9 +10,9 @@ import com.eos.streamus.writers.JsonAlbumListWriter;
 import com.eos.streamus.writers.JsonArtistListWriter;
 import com.eos.streamus.writers.JsonBandWriter;
 import com.eos.streamus.writers.JsonMusicianWriter;
-import com.eos.streamus.writers.JsonWriter;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -20,13 +20,15 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.SQLException;
-import java.util.List;
 
 @RestController
 public class ArtistController implements CommonResponses {
@@ -40,20 +42,36 @@ public class ArtistController implements CommonResponses {
   @Autowired
   private BandMemberDTOValidator bandMemberDTOValidator;
 
-  /** @return All artists in Json format. */
+  /**
+   * Write a page of artists in Json format, sorted by id, followed by the cursor of the next page. Artists are
+   * streamed to the response instead of being built as one tree.
+   *
+   * @param cursor   Cursor of the page, as returned with the previous page. The first page if absent.
+   * @param limit    Maximum number of artists in the page.
+   * @param response Servlet response to write the artists to.
+   * @throws IOException If the response could not be written.
+   */
   @GetMapping("/artists")
-  public ResponseEntity<JsonNode> allArtists() {
-    List<Artist> allArtists;
+  public void allArtists(@RequestParam(required = false) final String cursor,
+                         @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) final int limit,
+                         final HttpServletResponse response) throws IOException {
+    PageCursor after;
+    try {
+      after = pageCursor(cursor, limit);
+    } catch (IllegalArgumentException illegalArgumentException) {
+      writeBadRequest(response, illegalArgumentException.getMessage());
+      return;
+    }
+    Page<Artist> artists;
     try (Connection connection = databaseConnector.getConnection()) {
-      allArtists = ArtistDAO.all(connection);
-      for (Artist artist : allArtists) {
-        artist.fetchAlbums(connection);
-      }
+      artists = ArtistDAO.pageWithAlbums(connection, after, limit);
     } catch (SQLException sqlException) {
       logException(sqlException);
-      return internalServerError();
+      writeInternalServerError(response);
+      return;
     }
-    return ResponseEntity.ok(new JsonArtistListWriter(allArtists).getJson());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    new JsonArtistListWriter(artists).writeTo(response.getOutputStream());
   }
 
   /**
@@ -63,19 +81,19 @@ public class ArtistController implements CommonResponses {
    * @return Artist in Json format.
    */
   @GetMapping("/artist/{id}")
-  public ResponseEntity<JsonNode> getArtist(@PathVariable final int id) {
-    try (Connection connection = databaseConnector.getConnection()) {
-      Artist artist = ArtistDAO.findById(id, connection);
-      artist.fetchAlbums(connection);
-      JsonWriter writer = artist instanceof Band ?
-          new JsonBandWriter((Band) artist) :
-          new JsonMusicianWriter((Musician) artist);
-      return ResponseEntity.ok().body(writer.getJson());
+  public ResponseEntity<byte[]> getArtist(@PathVariable final int id) {
+    try {
+      return serializedOk(CatalogCache.getJson(
+          Artist.class,
+          id,
+          () -> loadArtistWithAlbums(id),
+          artist -> JsonArtistListWriter.writerFor(artist).getJsonBytes()
+      ));
     } catch (NoResultException e) {
       return notFound();
     } catch (SQLException sqlException) {
       logException(sqlException);
-      return internalServerError();
+      return serializedInternalServerError();
     }
   }
 
@@ -87,9 +105,8 @@ public class ArtistController implements CommonResponses {
    */
   @GetMapping("/artist/{id}/discography")
   public ResponseEntity<JsonNode> getArtistDiscography(@PathVariable final int id) {
-    try (Connection connection = databaseConnector.getConnection()) {
-      Artist artist = ArtistDAO.findById(id, connection);
-      artist.fetchAlbums(connection);
+    try {
+      Artist artist = findArtistWithAlbums(id);
       return ResponseEntity.ok(new JsonAlbumListWriter(artist.getAlbums()).getJson());
     } catch (NoResultException noResultException) {
       return notFound();
@@ -152,7 +169,7 @@ public class ArtistController implements CommonResponses {
         musician = new Musician(data.getName());
       }
       musician.save(connection);
-      connection.commit();
+      CatalogCache.commit(connection);
       return ResponseEntity.ok(new JsonMusicianWriter(musician).getJson());
     } catch (NoResultException noResultException) {
       return badRequest("Invalid person id");
@@ -184,7 +201,7 @@ public class ArtistController implements CommonResponses {
       Musician musician = getMusicianFromBandMemberData(member, connection);
       band.addMember(musician, member.getFrom(), member.getTo());
       band.save(connection);
-      connection.commit();
+      CatalogCache.commit(connection);
       return ResponseEntity.ok(new JsonBandWriter(band).getJson());
     } catch (NoResultException noResultException) {
       return badRequest("Invalid data");
@@ -256,4 +273,33 @@ public class ArtistController implements CommonResponses {
 
   }
 
+  /**
+   * Finds an Artist and its albums through the {@link CatalogCache}. The returned Artist is shared and must only be
+   * read.
+   *
+   * @param id Id of the Artist.
+   * @return Artist with its albums fetched.
+   * @throws SQLException      If an error occurred while performing the database operation.
+   * @throws NoResultException If no Artist by this id was found.
+   */
+  private Artist findArtistWithAlbums(final int id) throws SQLException, NoResultException {
+    return CatalogCache.get(Artist.class, id, () -> loadArtistWithAlbums(id));
+  }
+
+  /**
+   * Loads an Artist and its albums from the database.
+   *
+   * @param id Id of the Artist.
+   * @return Artist with its albums fetched.
+   * @throws SQLException      If an error occurred while performing the database operation.
+   * @throws NoResultException If no Artist by this id was found.
+   */
+  private Artist loadArtistWithAlbums(final int id) throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Artist artist = ArtistDAO.findById(id, connection);
+      artist.fetchAlbums(connection);
+      return artist;
+    }
+  }
+
 }
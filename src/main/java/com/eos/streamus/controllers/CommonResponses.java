@@ -1,25 +1,58 @@
 package com.eos.streamus.controllers;
 
+import com.eos.streamus.models.PageCursor;
 import com.eos.streamus.models.Resource;
+import com.eos.streamus.models.Song;
+import com.eos.streamus.utils.ContentStore;
+import com.eos.streamus.utils.IngestJob;
+import com.eos.streamus.utils.StreamSegmentCache;
+import com.eos.streamus.writers.JsonIngestJobWriter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.springframework.core.io.UrlResource;
-import org.springframework.core.io.support.ResourceRegion;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.nio.file.FileSystems;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.logging.Logger;
 
 interface CommonResponses {
+  /** Request attribute set by the container when sendfile can be used for the response. */
+  String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+  /** Request attribute holding the path of the file to send. */
+  String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+  /** Request attribute holding the first byte of the file to send. */
+  String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+  /** Request attribute holding the byte after the last one of the file to send. */
+  String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+  /** Serialized body of {@link #internalServerError()}. */
+  byte[] INTERNAL_SERVER_ERROR_JSON = "{\"reason\":\"Something went wrong\"}".getBytes(StandardCharsets.UTF_8);
+  /** Number of entities in a page when the request does not specify it. */
+  String DEFAULT_PAGE_SIZE = "50";
+  /** Maximum number of entities in a page. */
+  int MAX_PAGE_SIZE = 500;
+  /** Path of ingest jobs, followed by their id. */
+  String INGEST_JOB_PATH = "/ingest/";
 
   default ResponseEntity<JsonNode> simpleOk(final String message) {
     ObjectNode response = new ObjectNode(new ControllerObjectNodeFactory());
@@ -39,50 +72,283 @@ interface CommonResponses {
     return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
   }
 
-  default ResponseEntity<ResourceRegion> streamResource(final Resource resource,
-                                                        final List<HttpRange> range,
-                                                        final long maxChunkSize) throws IOException {
-    UrlResource urlResource = new UrlResource(String.format("file:%s", resource.getPath()));
-    long contentLength = urlResource.contentLength();
-    ResourceRegion region;
+  /**
+   * Responds that an upload was accepted and will be ingested in the background.
+   *
+   * @param job Ingest job of the upload.
+   * @return Accepted response with the job, pointing at where it can be polled.
+   */
+  default ResponseEntity<JsonNode> accepted(final IngestJob job) {
+    return ResponseEntity
+        .accepted()
+        .location(URI.create(INGEST_JOB_PATH + job.getId()))
+        .body(new JsonIngestJobWriter(job).getJson());
+  }
+
+  default ResponseEntity<JsonNode> conflict(final String reason) {
+    ObjectNode errorResponse = new ObjectNode(new ControllerObjectNodeFactory());
+    errorResponse.put("reason", reason);
+    return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+  }
+
+  default ResponseEntity<JsonNode> serviceUnavailable(final String reason) {
+    ObjectNode errorResponse = new ObjectNode(new ControllerObjectNodeFactory());
+    errorResponse.put("reason", reason);
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(errorResponse);
+  }
+
+  /**
+   * Responds with already serialized JSON, written to the response as is.
+   *
+   * @param json UTF-8 encoded JSON.
+   * @return Ok response with the given body.
+   */
+  default ResponseEntity<byte[]> serializedOk(final byte[] json) {
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).contentLength(json.length).body(json);
+  }
+
+  /** @return Same response as {@link #internalServerError()}, for handlers responding with serialized JSON. */
+  default ResponseEntity<byte[]> serializedInternalServerError() {
+    return ResponseEntity
+        .status(HttpStatus.INTERNAL_SERVER_ERROR)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(INTERNAL_SERVER_ERROR_JSON.clone());
+  }
+
+  /**
+   * Writes the same response as {@link #internalServerError()} to a response handled by the controller itself.
+   * If part of the body was already sent, the response cannot be replaced anymore: an IOException is thrown instead,
+   * so that the container aborts the connection and the client sees a broken body rather than a truncated but
+   * well-formed one.
+   *
+   * @param response Response to write to.
+   * @throws IOException If the response could not be written, or was already committed.
+   */
+  default void writeInternalServerError(final HttpServletResponse response) throws IOException {
+    if (response.isCommitted()) {
+      throw new IOException("Could not complete a response whose body was already partly sent");
+    }
+    response.reset();
+    response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setContentLength(INTERNAL_SERVER_ERROR_JSON.length);
+    response.getOutputStream().write(INTERNAL_SERVER_ERROR_JSON);
+  }
+
+  /**
+   * Writes the same response as {@link #badRequest(String)} to a response handled by the controller itself.
+   *
+   * @param response Response to write to.
+   * @param reason   Reason of the rejection.
+   * @throws IOException If the response could not be written.
+   */
+  default void writeBadRequest(final HttpServletResponse response, final String reason) throws IOException {
+    ObjectNode errorResponse = new ObjectNode(new ControllerObjectNodeFactory());
+    errorResponse.put("reason", reason);
+    byte[] json = errorResponse.toString().getBytes(StandardCharsets.UTF_8);
+    response.setStatus(HttpStatus.BAD_REQUEST.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setContentLength(json.length);
+    response.getOutputStream().write(json);
+  }
+
+  /**
+   * Checks the paging parameters of a request.
+   *
+   * @param cursor Encoded cursor of the requested page, or null for the first page.
+   * @param limit  Requested number of entities in the page.
+   * @return Decoded cursor, or null for the first page.
+   * @throws IllegalArgumentException If the cursor is invalid or the limit is not between 1 and
+   *                                  {@link #MAX_PAGE_SIZE}.
+   */
+  default PageCursor pageCursor(final String cursor, final int limit) {
+    if (limit < 1 || limit > MAX_PAGE_SIZE) {
+      throw new IllegalArgumentException(String.format("Limit must be between 1 and %d", MAX_PAGE_SIZE));
+    }
+    return cursor == null ? null : PageCursor.decode(cursor);
+  }
+
+  /**
+   * Writes the requested region of a {@link Resource}'s file to the response. The files of {@link Song}s, which the
+   * members of an activity listen to together, are served from the segments of the {@link StreamSegmentCache} shared
+   * by every listener, when it is enabled. Other files, such as multi-gigabyte films, would only churn the cache: they
+   * are written without copying them through the heap. When the container supports it, the region is handed over to
+   * sendfile, else it is transferred from a {@link FileChannel} to the response channel.
+   *
+   * @param resource     {@link Resource} to stream.
+   * @param range        Requested ranges, only the first one is served.
+   * @param maxChunkSize Maximum number of bytes to send at a time.
+   * @param request      Request, used to detect sendfile support.
+   * @param response     Response to write to.
+   * @throws IOException If the file could not be read or written to the response.
+   */
+  default void streamResource(final Resource resource,
+                              final List<HttpRange> range,
+                              final long maxChunkSize,
+                              final HttpServletRequest request,
+                              final HttpServletResponse response) throws IOException {
+    streamFile(Paths.get(resource.getPath()), resource instanceof Song, range, maxChunkSize, request, response);
+  }
+
+  /**
+   * Writes the requested region of a file to the response, as {@link #streamResource} does. The response carries an
+   * entity tag of the file, so that a client resuming a stream with If-Range never splices together bytes of two
+   * different files, e.g. of two variants of a Song: when If-Range does not match the file, e.g. when it is stale or
+   * a date, the range is ignored and the file is sent from its start, as without Range, still in chunks of at most
+   * maxChunkSize bytes.
+   *
+   * @param path         Path of the file to stream.
+   * @param shared       Whether the file is listened to by several clients at once, and served from the
+   *                     {@link StreamSegmentCache}.
+   * @param range        Requested ranges, only the first one is served.
+   * @param maxChunkSize Maximum number of bytes to send at a time.
+   * @param request      Request, used to detect sendfile support.
+   * @param response     Response to write to.
+   * @throws IOException If the file could not be read or written to the response.
+   */
+  default void streamFile(final Path path,
+                          final boolean shared,
+                          final List<HttpRange> range,
+                          final long maxChunkSize,
+                          final HttpServletRequest request,
+                          final HttpServletResponse response) throws IOException {
+    final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    final long contentLength = attributes.size();
+    final String entityTag = entityTag(path, attributes);
+    final String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    final boolean rangeIgnored = ifRange != null && !ifRange.equals(entityTag);
     long start;
     long rangeLength;
-    if (!range.isEmpty()) {
-      start = range.get(0).getRangeStart(contentLength);
-      long end = range.get(0).getRangeEnd(contentLength);
-      rangeLength = Math.min(maxChunkSize, end - start + 1);
-    } else {
-      start = 0;
-      rangeLength = Math.min(maxChunkSize, contentLength);
+    try {
+      if (!range.isEmpty() && !rangeIgnored) {
+        start = range.get(0).getRangeStart(contentLength);
+        long end = range.get(0).getRangeEnd(contentLength);
+        rangeLength = Math.min(maxChunkSize, end - start + 1);
+      } else {
+        start = 0;
+        rangeLength = Math.min(maxChunkSize, contentLength);
+      }
+    } catch (IllegalArgumentException rangeNotSatisfiable) {
+      response.setHeader(HttpHeaders.CONTENT_RANGE, String.format("bytes */%d", contentLength));
+      response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+      return;
     }
-    region = new ResourceRegion(urlResource, start, rangeLength);
-    return ResponseEntity
-        .status(HttpStatus.PARTIAL_CONTENT)
-        .contentType(
-            MediaTypeFactory
-                .getMediaType(urlResource)
-                .orElse(MediaType.APPLICATION_OCTET_STREAM)
-        )
-        .body(region);
+
+    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+    response.setHeader(HttpHeaders.ETAG, entityTag);
+    response.setContentType(
+        MediaTypeFactory
+            .getMediaType(path.getFileName().toString())
+            .orElse(MediaType.APPLICATION_OCTET_STREAM)
+            .toString()
+    );
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+    response.setHeader(
+        HttpHeaders.CONTENT_RANGE,
+        String.format("bytes %d-%d/%d", start, start + rangeLength - 1, contentLength)
+    );
+    response.setContentLengthLong(rangeLength);
+
+    if (shared && StreamSegmentCache.isEnabled()) {
+      StreamSegmentCache.write(path, attributes, start, rangeLength, response.getOutputStream());
+      response.flushBuffer();
+      return;
+    }
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE))) {
+      request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, path.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START_ATTRIBUTE, start);
+      request.setAttribute(SENDFILE_END_ATTRIBUTE, start + rangeLength);
+      return;
+    }
+
+    try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+      WritableByteChannel responseChannel = Channels.newChannel(response.getOutputStream());
+      long position = start;
+      long remaining = rangeLength;
+      while (remaining > 0) {
+        long transferred = fileChannel.transferTo(position, remaining, responseChannel);
+        if (transferred <= 0) {
+          break;
+        }
+        position += transferred;
+        remaining -= transferred;
+      }
+    }
+    response.flushBuffer();
+  }
+
+  /**
+   * @param path       Path of a file.
+   * @param attributes Attributes of the file.
+   * @return Strong entity tag of the file, which differs between files and between versions of a file.
+   */
+  private static String entityTag(final Path path, final BasicFileAttributes attributes) {
+    return String.format(
+        "\"%s-%s-%s\"",
+        Integer.toHexString(path.toAbsolutePath().normalize().hashCode()),
+        Long.toString(attributes.size(), 36),
+        Long.toString(attributes.lastModifiedTime().toMillis(), 36)
+    );
   }
 
   default void logException(final Exception exception) {
     Logger.getLogger(getClass().getName()).severe(exception.getMessage());
   }
 
+  /**
+   * @param request Request with a body.
+   * @return Mime type of the body, without its parameters, or null if the request does not specify it.
+   */
+  default String mimeType(final HttpServletRequest request) {
+    if (request.getContentType() == null) {
+      return null;
+    }
+    try {
+      MediaType mediaType = MediaType.parseMediaType(request.getContentType());
+      return mediaType.getType() + "/" + mediaType.getSubtype();
+    } catch (InvalidMediaTypeException invalidMediaTypeException) {
+      return null;
+    }
+  }
+
+  /**
+   * @param contentDisposition Content-Disposition header of an upload, may be null.
+   * @return Name of the uploaded file, or null if the header does not specify it.
+   */
+  default String uploadedFileName(final String contentDisposition) {
+    if (contentDisposition == null) {
+      return null;
+    }
+    try {
+      return ContentDisposition.parse(contentDisposition).getFilename();
+    } catch (IllegalArgumentException illegalArgumentException) {
+      return null;
+    }
+  }
+
   default <T> ResponseEntity<T> notFound() {
     return ResponseEntity.notFound().build();
   }
 
+  /**
+   * Deletes a {@link Resource}, and its file unless other Resources of the same content still reference it.
+   *
+   * @param resource     Resource to delete.
+   * @param contentStore {@link ContentStore} holding the file of the Resource.
+   * @param connection   {@link Connection} to use to perform the operation.
+   * @return Confirmation message, or internal server error if the file could not be deleted.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
   default ResponseEntity<JsonNode> deleteFileAndResource(final Resource resource,
+                                                         final ContentStore contentStore,
                                                          final Connection connection) throws SQLException {
     try {
-      Files.delete(FileSystems.getDefault().getPath(resource.getPath()));
+      contentStore.delete(resource, connection);
     } catch (IOException e) {
       logException(e);
       return internalServerError();
     }
-    resource.delete(connection);
     return simpleOk("Resource deleted");
   }
 
@@ -1,19 +1,28 @@
 package com.eos.streamus.controllers;
 
+import com.eos.streamus.exceptions.InvalidMediaException;
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.models.CatalogCache;
 import com.eos.streamus.models.Film;
+import com.eos.streamus.models.PageCursor;
+import com.eos.streamus.models.Video;
+import com.eos.streamus.utils.ContentStore;
 import com.eos.streamus.utils.FileInfo;
+import com.eos.streamus.utils.HlsSegmenter;
 import com.eos.streamus.utils.IDatabaseConnector;
 import com.eos.streamus.utils.IResourcePathResolver;
-import com.eos.streamus.utils.ShellUtils;
-import com.eos.streamus.writers.JsonFilmListWriter;
+import com.eos.streamus.utils.IngestJob;
+import com.eos.streamus.utils.IngestService;
+import com.eos.streamus.utils.ProbeService;
+import com.eos.streamus.utils.StreamedUpload;
+import com.eos.streamus.writers.JsonStreamingArrayWriter;
 import com.eos.streamus.writers.JsonFilmWriter;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,17 +33,22 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class FilmController implements CommonResponses {
   /** Max Video chunk size to return at a time during stream. */
   private static final long MAX_VIDEO_CHUNK_SIZE = (long) 1024 * 1024;
+  /** Type of the ingest jobs of Films. */
+  private static final String INGEST_JOB_TYPE = "film";
   /** Allowed Video Mime types. */
   private static final String[] VIDEO_MIME_TYPES = {
       "video/x-flv", "video/mp4", "video/MP2T", "video/3gpp", "video/quicktime", "video/x-msvideo", "video/x-ms-wmv"
@@ -46,24 +60,64 @@ public class FilmController implements CommonResponses {
   /** {@link IDatabaseConnector} to use. */
   @Autowired
   private IDatabaseConnector databaseConnector;
+  /** {@link HlsSegmenter} to use. */
+  @Autowired
+  private HlsSegmenter hlsSegmenter;
+  /** {@link IngestService} to use. */
+  @Autowired
+  private IngestService ingestService;
+  /** {@link ProbeService} to use. */
+  @Autowired
+  private ProbeService probeService;
+  /** {@link ContentStore} to use. */
+  @Autowired
+  private ContentStore contentStore;
 
-  /** @return All films in JSON data. */
+  /**
+   * Write a page of films in JSON data, sorted by creation date. Films are written to the response as they are read
+   * from the database, followed by the cursor of the next page.
+   *
+   * @param cursor   Cursor of the page, as returned with the previous page. The first page if absent.
+   * @param limit    Maximum number of films in the page.
+   * @param response Servlet response to write the films to.
+   * @throws IOException If the response could not be written.
+   */
   @GetMapping("/films")
-  public ResponseEntity<JsonNode> allFilms() {
-    try (Connection connection = databaseConnector.getConnection()) {
-      return ResponseEntity.ok(new JsonFilmListWriter(Film.all(connection)).getJson());
+  public void allFilms(@RequestParam(required = false) final String cursor,
+                       @RequestParam(defaultValue = DEFAULT_PAGE_SIZE) final int limit,
+                       final HttpServletResponse response) throws IOException {
+    PageCursor after;
+    try {
+      after = pageCursor(cursor, limit);
+    } catch (IllegalArgumentException illegalArgumentException) {
+      writeBadRequest(response, illegalArgumentException.getMessage());
+      return;
+    }
+    if (after != null && after.getCreatedAt() == null) {
+      writeBadRequest(response, "Invalid cursor");
+      return;
+    }
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    try (Connection connection = databaseConnector.getConnection();
+         JsonStreamingArrayWriter<Film> writer =
+             JsonStreamingArrayWriter.page(response.getOutputStream(), JsonFilmWriter::new)) {
+      writer.setNextCursor(Film.forEach(connection, after, limit, writer::write));
+      writer.end();
     } catch (SQLException sqlException) {
       logException(sqlException);
-      return internalServerError();
+      writeInternalServerError(response);
     }
   }
 
   /**
-   * Create a new Film.
+   * Create a new Film. The file is stored by content, unless the same content already is, then probed, and the Film
+   * saved and segmented in the background, by an ingest job to poll. The multipart body is still written twice, first
+   * to the temporary file of the container and then to its storage directory: only
+   * {@link #uploadFilm(String, String, HttpServletRequest)} writes it once.
    *
    * @param file Video file.
    * @param name Film name.
-   * @return Saved Film data in JSON format (excluding file).
+   * @return Ingest job of the Film in JSON format.
    */
   @PostMapping("/film")
   public ResponseEntity<JsonNode> postFilm(@RequestParam("file") final MultipartFile file,
@@ -79,33 +133,113 @@ public class FilmController implements CommonResponses {
       return badRequest(String.format("Invalid mime type : %s", file.getContentType()));
     }
 
-    String path = String.format(
-        "%s%s.%s",
-        resourcePathResolver.getVideoDir(),
-        UUID.randomUUID(),
-        FilenameUtils.getExtension(file.getOriginalFilename())
-    );
+    StreamedUpload upload;
+    try {
+      upload = contentStore.store(
+          StreamedUpload.receive(
+              file.getInputStream(),
+              Paths.get(String.format(
+                  "%s%s.%s",
+                  resourcePathResolver.getVideoDir(),
+                  UUID.randomUUID(),
+                  FilenameUtils.getExtension(file.getOriginalFilename())
+              ))
+          ),
+          resourcePathResolver.getVideoDir()
+      );
+    } catch (IOException ioException) {
+      logException(ioException);
+      return internalServerError();
+    }
 
-    File storedFile = new File(path);
+    String path = upload.getPath().toString();
+    try {
+      return accepted(ingestService.submit(
+          INGEST_JOB_TYPE, upload, ingestTask(path, name, () -> probeService.probe(path))
+      ));
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      contentStore.release(upload.getPath());
+      return serviceUnavailable("Too many uploads are being processed");
+    }
+  }
 
-    try (Connection connection = databaseConnector.getConnection()) {
-      file.transferTo(storedFile);
-      FileInfo fileInfo = ShellUtils.getResourceInfo(storedFile.getPath());
+  /**
+   * Create a new Film from a request whose body is the video file itself. The body is written once, straight to its
+   * storage directory, while it is hashed and its headers are kept for probing. It is then stored by content, unless
+   * the same content already is, and the Film saved and segmented in the background, by an ingest job to poll.
+   *
+   * @param name               Film name.
+   * @param contentDisposition Content-Disposition header, holding the name of the uploaded file.
+   * @param request            Request, whose body is the video file.
+   * @return Ingest job of the Film in JSON format, or service unavailable if too many uploads are being received.
+   */
+  @PostMapping(value = "/film", consumes = "video/*")
+  public ResponseEntity<JsonNode> uploadFilm(@RequestParam("name") final String name,
+                                             @RequestHeader(value = HttpHeaders.CONTENT_DISPOSITION, required = false)
+                                             final String contentDisposition,
+                                             final HttpServletRequest request) {
+    String mimeType = mimeType(request);
+    if (Arrays.stream(VIDEO_MIME_TYPES).noneMatch(type -> type.equals(mimeType))) {
+      return badRequest(String.format("Invalid mime type : %s", mimeType));
+    }
+    String fileName = uploadedFileName(contentDisposition);
+    if (fileName == null) {
+      return badRequest("No specified file name");
+    }
+
+    StreamedUpload upload;
+    try {
+      upload = contentStore.store(
+          contentStore.receive(
+              request.getInputStream(),
+              Paths.get(String.format(
+                  "%s%s.%s", resourcePathResolver.getVideoDir(), UUID.randomUUID(), FilenameUtils.getExtension(fileName)
+              ))
+          ),
+          resourcePathResolver.getVideoDir()
+      );
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      return serviceUnavailable("Too many uploads are being received");
+    } catch (IOException ioException) {
+      logException(ioException);
+      return internalServerError();
+    }
+
+    String path = upload.getPath().toString();
+    try {
+      return accepted(ingestService.submit(
+          INGEST_JOB_TYPE, upload, ingestTask(path, name, () -> probeService.probe(upload))
+      ));
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      contentStore.release(upload.getPath());
+      return serviceUnavailable("Too many uploads are being processed");
+    }
+  }
+
+  /**
+   * Ingestion of an uploaded video file.
+   *
+   * @param path  Path of the uploaded file.
+   * @param name  Film name.
+   * @param probe Reads the media information of the file.
+   * @return Task of the ingest job, saving and segmenting the Film if the file is video.
+   */
+  private IngestJob.Task ingestTask(final String path, final String name, final IngestJob.Stage<FileInfo> probe) {
+    return job -> {
+      FileInfo fileInfo = job.stage(IngestJob.PROBE_STAGE, probe);
       if (!fileInfo.isVideo()) {
-        return badRequest("File is not video");
+        throw new InvalidMediaException("File is not video");
       }
       Film film = new Film(path, name, fileInfo.getDuration());
-      film.save(connection);
-      return ResponseEntity.ok(new JsonFilmWriter(film).getJson());
-    } catch (IOException | SQLException e) {
-      logException(e);
-      try {
-        java.nio.file.Files.delete(storedFile.toPath());
-      } catch (IOException ioException) {
-        logException(e);
-      }
-      return internalServerError();
-    }
+      job.stage(IngestJob.PERSIST_STAGE, () -> {
+        try (Connection connection = databaseConnector.getConnection()) {
+          film.save(connection);
+        }
+        return film;
+      });
+      job.stage(IngestJob.SEGMENT_STAGE, () -> segment(film));
+      return film;
+    };
   }
 
   /**
@@ -115,35 +249,47 @@ public class FilmController implements CommonResponses {
    * @return Film data in JSON.
    */
   @GetMapping("/film/{id}")
-  public ResponseEntity<JsonNode> getFilm(@PathVariable("id") final int id) {
-    try (Connection connection = databaseConnector.getConnection()) {
-      return ResponseEntity.ok().body(new JsonFilmWriter(Film.findById(id, connection)).getJson());
+  public ResponseEntity<byte[]> getFilm(@PathVariable("id") final int id) {
+    try {
+      return serializedOk(CatalogCache.getJson(Film.class, id, () -> {
+        try (Connection connection = databaseConnector.getConnection()) {
+          return Film.findById(id, connection);
+        }
+      }, film -> new JsonFilmWriter(film).getJsonBytes()));
     } catch (SQLException sqlException) {
       logException(sqlException);
-      return internalServerError();
+      return serializedInternalServerError();
     } catch (NoResultException noResultException) {
       return notFound();
     }
   }
 
   /**
-   * Get a stream of a Film.
+   * Stream a Film file. The requested range is written straight from the file to the response.
    *
-   * @param headers HttpHeaders of request, containing range.
-   * @param id      Id of film
-   * @return a ResourceRegion to stream.
+   * @param headers  HttpHeaders of request, containing range.
+   * @param id       Id of film.
+   * @param request  Servlet request.
+   * @param response Servlet response to write the range to.
+   * @throws IOException If the file could not be streamed.
    */
   @GetMapping("/film/{id}/stream")
-  public ResponseEntity<ResourceRegion> streamFilm(@RequestHeader final HttpHeaders headers,
-                                                   @PathVariable("id") final int id) {
+  public void streamFilm(@RequestHeader final HttpHeaders headers,
+                         @PathVariable("id") final int id,
+                         final HttpServletRequest request,
+                         final HttpServletResponse response) throws IOException {
+    Film film;
     try (Connection connection = databaseConnector.getConnection()) {
-      return streamResource(Film.findById(id, connection), headers.getRange(), MAX_VIDEO_CHUNK_SIZE);
+      film = Film.findById(id, connection);
     } catch (NoResultException noResultException) {
-      return notFound();
-    } catch (SQLException | IOException exception) {
-      logException(exception);
-      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    } catch (SQLException sqlException) {
+      logException(sqlException);
+      response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+      return;
     }
+    streamResource(film, headers.getRange(), MAX_VIDEO_CHUNK_SIZE, request, response);
   }
 
   /**
@@ -155,13 +301,35 @@ public class FilmController implements CommonResponses {
   @DeleteMapping("/film/{id}")
   public ResponseEntity<JsonNode> deleteFilm(@PathVariable final int id) {
     try (Connection connection = databaseConnector.getConnection()) {
-      return deleteFileAndResource(Film.findById(id, connection), connection);
-    } catch (SQLException sqlException) {
-      logException(sqlException);
+      ResponseEntity<JsonNode> response =
+          deleteFileAndResource(Film.findById(id, connection), contentStore, connection);
+      if (response.getStatusCode().is2xxSuccessful()) {
+        hlsSegmenter.delete(id);
+      }
+      return response;
+    } catch (IOException | SQLException exception) {
+      logException(exception);
       return internalServerError();
     } catch (NoResultException noResultException) {
       return notFound();
     }
   }
 
+  /**
+   * Cuts a Film, or an Episode, into HLS segments. A Video that could not be segmented can still be streamed from its
+   * file.
+   *
+   * @param video Saved Video.
+   * @return Whether the Video was segmented.
+   */
+  boolean segment(final Video video) {
+    try {
+      hlsSegmenter.segment(video);
+      return true;
+    } catch (IOException ioException) {
+      logException(ioException);
+      return false;
+    }
+  }
+
 }
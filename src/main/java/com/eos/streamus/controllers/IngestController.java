@@ -0,0 +1,42 @@
+package com.eos.streamus.controllers;
+
+import com.eos.streamus.utils.IngestJob;
+import com.eos.streamus.utils.IngestService;
+import com.eos.streamus.writers.JsonIngestJobWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.sql.SQLException;
+
+@RestController
+public class IngestController implements CommonResponses {
+  /** {@link IngestService} to use. */
+  @Autowired
+  private IngestService ingestService;
+
+  /**
+   * Get the state of an ingest job, as returned by a media upload.
+   *
+   * @param id Id of the job.
+   * @return Job in JSON format, with the id of the saved Resource once succeeded.
+   */
+  @GetMapping(INGEST_JOB_PATH + "{id}")
+  public ResponseEntity<JsonNode> getJob(@PathVariable final String id) {
+    IngestJob job;
+    try {
+      job = ingestService.getJob(id);
+    } catch (SQLException sqlException) {
+      logException(sqlException);
+      return internalServerError();
+    }
+    if (job == null) {
+      return notFound();
+    }
+    return ResponseEntity.ok(new JsonIngestJobWriter(job).getJson());
+  }
+
+}
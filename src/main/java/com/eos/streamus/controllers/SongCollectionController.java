@@ -3,6 +3,7 @@ package com.eos.streamus.controllers;
 import com.eos.streamus.dto.SongCollectionDTO;
 import com.eos.streamus.dto.TrackDTO;
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.models.CatalogCache;
 import com.eos.streamus.models.Song;
 import com.eos.streamus.models.SongCollection;
 import com.eos.streamus.models.SongCollectionDAO;
@@ -42,12 +43,16 @@ public abstract class SongCollectionController implements CommonResponses {
    * @param id Id of song collection.
    * @return SongCollection data in JSON format.
    */
-  public ResponseEntity<JsonNode> getSongCollectionById(@PathVariable final int id) {
-    try (Connection connection = databaseConnector.getConnection()) {
-      return ok(jsonSongCollectionWriter(SongCollectionDAO.findById(id, connection)).getJson());
+  public ResponseEntity<byte[]> getSongCollectionById(@PathVariable final int id) {
+    try {
+      return serializedOk(CatalogCache.getJson(SongCollection.class, id, () -> {
+        try (Connection connection = databaseConnector.getConnection()) {
+          return SongCollectionDAO.findById(id, connection);
+        }
+      }, songCollection -> jsonSongCollectionWriter(songCollection).getJsonBytes()));
     } catch (SQLException sqlException) {
       logException(sqlException);
-      return internalServerError();
+      return serializedInternalServerError();
     } catch (NoResultException noResultException) {
       return notFound();
     }
@@ -189,7 +194,7 @@ public abstract class SongCollectionController implements CommonResponses {
         );
       }
       collection.save(connection);
-      connection.commit();
+      CatalogCache.commit(connection);
       return ok(jsonSongCollectionWriter(collection).getJson());
     } catch (NoResultException noResultException) {
       // Should not happen
@@ -1,16 +1,22 @@
 package com.eos.streamus.controllers;
 
+import com.eos.streamus.exceptions.InvalidMediaException;
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.models.CatalogCache;
 import com.eos.streamus.models.Song;
+import com.eos.streamus.utils.AudioTranscoder;
+import com.eos.streamus.utils.ContentStore;
 import com.eos.streamus.utils.FileInfo;
 import com.eos.streamus.utils.IDatabaseConnector;
 import com.eos.streamus.utils.IResourcePathResolver;
-import com.eos.streamus.utils.ShellUtils;
+import com.eos.streamus.utils.IngestJob;
+import com.eos.streamus.utils.IngestService;
+import com.eos.streamus.utils.ProbeService;
+import com.eos.streamus.utils.StreamedUpload;
 import com.eos.streamus.writers.JsonSongWriter;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.apache.commons.io.FilenameUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -23,13 +29,18 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 public class SongController implements CommonResponses {
@@ -42,6 +53,15 @@ public class SongController implements CommonResponses {
       "audio/webm", "audio/flac", "audio/og"
   };
 
+  /** Type of the ingest jobs of Songs. */
+  private static final String INGEST_JOB_TYPE = "song";
+
+  /** Client hint header holding the throughput measured by the client, in Mbit/s. */
+  private static final String DOWNLINK_HEADER = "Downlink";
+
+  /** Share of the throughput measured by a client that its stream may use, leaving room for other requests. */
+  private static final double DOWNLINK_SHARE = 0.5;
+
   /** {@link IResourcePathResolver} to use. */
   @Autowired
   private IResourcePathResolver resourcePathResolver;
@@ -50,12 +70,31 @@ public class SongController implements CommonResponses {
   @Autowired
   private IDatabaseConnector databaseConnector;
 
+  /** {@link IngestService} to use. */
+  @Autowired
+  private IngestService ingestService;
+
+  /** {@link ProbeService} to use. */
+  @Autowired
+  private ProbeService probeService;
+
+  /** {@link ContentStore} to use. */
+  @Autowired
+  private ContentStore contentStore;
+
+  /** {@link AudioTranscoder} to use. */
+  @Autowired
+  private AudioTranscoder audioTranscoder;
+
   /**
-   * Save a new {@link Song}.
+   * Save a new {@link Song}. The file is stored by content, unless the same content already is, then probed and the
+   * Song saved in the background, by an ingest job to poll. The multipart body is still written twice, first to the
+   * temporary file of the container and then to its storage directory: only
+   * {@link #uploadSong(String, String, HttpServletRequest)} writes it once.
    *
    * @param multipartFile Audio file of song to create.
    * @param name          Name of the song.
-   * @return response (bad request, ok, internal server error).
+   * @return response (bad request, accepted with the ingest job, service unavailable, internal server error).
    */
   @PostMapping("/song")
   public ResponseEntity<JsonNode> postSong(@RequestParam("file") final MultipartFile multipartFile,
@@ -69,34 +108,114 @@ public class SongController implements CommonResponses {
       return badRequest(String.format("Invalid mime type : %s", multipartFile.getContentType()));
     }
 
-    String path = String.format(
-        "%s%s.%s",
-        resourcePathResolver.getAudioDir(),
-        UUID.randomUUID(),
-        FilenameUtils.getExtension(multipartFile.getOriginalFilename())
-    );
+    StreamedUpload upload;
+    try {
+      upload = contentStore.store(
+          StreamedUpload.receive(
+              multipartFile.getInputStream(),
+              Paths.get(String.format(
+                  "%s%s.%s",
+                  resourcePathResolver.getAudioDir(),
+                  UUID.randomUUID(),
+                  FilenameUtils.getExtension(multipartFile.getOriginalFilename())
+              ))
+          ),
+          resourcePathResolver.getAudioDir()
+      );
+    } catch (IOException ioException) {
+      logException(ioException);
+      return internalServerError();
+    }
 
-    File storedFile = new File(path);
-    try (Connection connection = databaseConnector.getConnection()) {
-      multipartFile.transferTo(storedFile);
-      FileInfo fileInfo = ShellUtils.getResourceInfo(storedFile.getPath());
-      if (!fileInfo.isAudioOnly()) {
-        Files.delete(storedFile.toPath());
-        return badRequest("file is not audio");
-      }
-      Song song = new Song(path, name, fileInfo.getDuration());
-      song.save(connection);
-      return ResponseEntity.ok(new JsonSongWriter(song).getJson());
-    } catch (IOException | SQLException e) {
-      logException(e);
-      try {
-        java.nio.file.Files.delete(storedFile.toPath());
-      } catch (IOException ioException) {
-        logException(ioException);
-      }
+    String path = upload.getPath().toString();
+    try {
+      return accepted(ingestService.submit(
+          INGEST_JOB_TYPE, upload, ingestTask(path, name, () -> probeService.probe(path))
+      ));
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      contentStore.release(upload.getPath());
+      return serviceUnavailable("Too many uploads are being processed");
+    }
+
+  }
+
+  /**
+   * Save a new {@link Song} from a request whose body is the audio file itself. The body is written once, straight to
+   * its storage directory, while it is hashed and its headers are kept for probing. It is then stored by content,
+   * unless the same content already is, and the Song saved in the background, by an ingest job to poll.
+   *
+   * @param name               Name of the song.
+   * @param contentDisposition Content-Disposition header, holding the name of the uploaded file.
+   * @param request            Request, whose body is the audio file.
+   * @return response (bad request, accepted with the ingest job, service unavailable, internal server error).
+   */
+  @PostMapping(value = "/song", consumes = "audio/*")
+  public ResponseEntity<JsonNode> uploadSong(@RequestParam("name") final String name,
+                                             @RequestHeader(value = HttpHeaders.CONTENT_DISPOSITION, required = false)
+                                             final String contentDisposition,
+                                             final HttpServletRequest request) {
+    String mimeType = mimeType(request);
+    if (Arrays.stream(AUDIO_MIME_TYPES).noneMatch(type -> type.equals(mimeType))) {
+      return badRequest(String.format("Invalid mime type : %s", mimeType));
+    }
+    String fileName = uploadedFileName(contentDisposition);
+    if (fileName == null) {
+      return badRequest("No specified file name");
+    }
+
+    StreamedUpload upload;
+    try {
+      upload = contentStore.store(
+          contentStore.receive(
+              request.getInputStream(),
+              Paths.get(String.format(
+                  "%s%s.%s", resourcePathResolver.getAudioDir(), UUID.randomUUID(), FilenameUtils.getExtension(fileName)
+              ))
+          ),
+          resourcePathResolver.getAudioDir()
+      );
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      return serviceUnavailable("Too many uploads are being received");
+    } catch (IOException ioException) {
+      logException(ioException);
       return internalServerError();
     }
 
+    String path = upload.getPath().toString();
+    try {
+      return accepted(ingestService.submit(
+          INGEST_JOB_TYPE, upload, ingestTask(path, name, () -> probeService.probe(upload))
+      ));
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      contentStore.release(upload.getPath());
+      return serviceUnavailable("Too many uploads are being processed");
+    }
+  }
+
+  /**
+   * Ingestion of an uploaded audio file.
+   *
+   * @param path  Path of the uploaded file.
+   * @param name  Name of the song.
+   * @param probe Reads the media information of the file.
+   * @return Task of the ingest job, saving and transcoding the Song if the file is audio.
+   */
+  private IngestJob.Task ingestTask(final String path, final String name, final IngestJob.Stage<FileInfo> probe) {
+    return job -> {
+      FileInfo fileInfo = job.stage(IngestJob.PROBE_STAGE, probe);
+      if (!fileInfo.isAudioOnly()) {
+        throw new InvalidMediaException("file is not audio");
+      }
+      Song song = new Song(path, name, fileInfo.getDuration());
+      job.stage(IngestJob.PERSIST_STAGE, () -> {
+        try (Connection connection = databaseConnector.getConnection()) {
+          song.save(connection);
+        }
+        return song;
+      });
+      job.stage(IngestJob.TRANSCODE_STAGE, () -> transcode(song));
+      return song;
+    };
   }
 
   /**
@@ -106,34 +225,81 @@ public class SongController implements CommonResponses {
    * @return Song data in JSON.
    */
   @GetMapping("/song/{id}")
-  public ResponseEntity<JsonNode> getFilm(@PathVariable("id") final int id) {
-    try (Connection connection = databaseConnector.getConnection()) {
-      return ResponseEntity.ok().body(new JsonSongWriter(Song.findById(id, connection)).getJson());
+  public ResponseEntity<byte[]> getFilm(@PathVariable("id") final int id) {
+    try {
+      return serializedOk(CatalogCache.getJson(Song.class, id, () -> {
+        try (Connection connection = databaseConnector.getConnection()) {
+          return Song.findById(id, connection);
+        }
+      }, song -> new JsonSongWriter(song).getJsonBytes()));
     } catch (SQLException sqlException) {
       logException(sqlException);
-      return internalServerError();
+      return serializedInternalServerError();
     } catch (NoResultException noResultException) {
       return notFound();
     }
   }
 
   /**
-   * Get a Song file to stream.
+   * Stream a Song file. The requested range is written straight from the file to the response. A lower bitrate
+   * variant of the Song is streamed instead when the client asks for a bitrate, or sends the throughput it measured in
+   * the Downlink client hint. As the file streamed may change from one request to the next, the response varies on
+   * Downlink and carries the entity tag of the file: a range sent with an If-Range of another file gets the whole file.
    *
-   * @param headers HttpHeaders to get range from.
-   * @param id      Id of song.
-   * @return Stream ResourceRegion.
+   * @param headers  HttpHeaders of request, containing range.
+   * @param id       Id of song.
+   * @param bitrate  Highest bitrate to stream, in kbit/s.
+   * @param request  Servlet request.
+   * @param response Servlet response to write the range to.
+   * @throws IOException If the file could not be streamed.
    */
   @GetMapping("/song/{id}/stream")
-  public ResponseEntity<ResourceRegion> getAudio(@RequestHeader final HttpHeaders headers,
-                                                 @PathVariable("id") final int id) {
+  public void getAudio(@RequestHeader final HttpHeaders headers,
+                       @PathVariable("id") final int id,
+                       @RequestParam(value = "bitrate", required = false) final Integer bitrate,
+                       final HttpServletRequest request,
+                       final HttpServletResponse response) throws IOException {
+    if (bitrate != null && bitrate <= 0) {
+      writeBadRequest(response, "Bitrate must be positive");
+      return;
+    }
+    Song song;
     try (Connection connection = databaseConnector.getConnection()) {
-      return streamResource(Song.findById(id, connection), headers.getRange(), MAX_AUDIO_CHUNK_SIZE);
+      song = Song.findById(id, connection);
     } catch (NoResultException noResultException) {
-      return notFound();
-    } catch (SQLException | IOException exception) {
-      logException(exception);
-      return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    } catch (SQLException sqlException) {
+      logException(sqlException);
+      response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+      return;
+    }
+    response.setHeader("Accept-CH", DOWNLINK_HEADER);
+    response.setHeader(HttpHeaders.VARY, DOWNLINK_HEADER);
+    streamFile(
+        audioTranscoder.select(song, bitrate != null ? bitrate : downlinkBitrate(headers)),
+        true,
+        headers.getRange(),
+        MAX_AUDIO_CHUNK_SIZE,
+        request,
+        response
+    );
+  }
+
+  /**
+   * @param headers HttpHeaders of a request.
+   * @return Bitrate the stream may use given the Downlink client hint, in kbit/s, or null if it is absent or invalid.
+   */
+  private static Integer downlinkBitrate(final HttpHeaders headers) {
+    String downlink = headers.getFirst(DOWNLINK_HEADER);
+    if (downlink == null) {
+      return null;
+    }
+    try {
+      double megabits = Double.parseDouble(downlink);
+      return megabits > 0 ? (int) Math.max(1, megabits * 1000 * DOWNLINK_SHARE) : null;
+    } catch (NumberFormatException numberFormatException) {
+      return null;
     }
   }
 
@@ -146,13 +312,33 @@ public class SongController implements CommonResponses {
   @DeleteMapping("/song/{id}")
   public ResponseEntity<JsonNode> deleteSong(@PathVariable("id") final int id) {
     try (Connection connection = databaseConnector.getConnection()) {
-      return deleteFileAndResource(Song.findById(id, connection), connection);
-    } catch (SQLException sqlException) {
-      logException(sqlException);
+      Song song = Song.findById(id, connection);
+      ResponseEntity<JsonNode> response = deleteFileAndResource(song, contentStore, connection);
+      if (response.getStatusCode().is2xxSuccessful() && !Files.exists(Paths.get(song.getPath()))) {
+        audioTranscoder.delete(song.getPath());
+      }
+      return response;
+    } catch (IOException | SQLException exception) {
+      logException(exception);
       return internalServerError();
     } catch (NoResultException noResultException) {
       return notFound();
     }
   }
 
+  /**
+   * Transcodes a Song into lower bitrates. A Song that could not be transcoded can still be streamed from its file.
+   *
+   * @param song Saved Song.
+   * @return Bitrates of the variants of the Song, in kbit/s.
+   */
+  private List<Integer> transcode(final Song song) {
+    try {
+      return audioTranscoder.transcode(song);
+    } catch (IOException ioException) {
+      logException(ioException);
+      return Collections.emptyList();
+    }
+  }
+
 }
@@ -40,7 +40,7 @@ public final class SongPlaylistController extends SongCollectionController {
    * @return Song playlist in JSON format.
    */
   @GetMapping("/songplaylist/{id}")
-  public ResponseEntity<JsonNode> getSongPlaylist(@PathVariable final int id) {
+  public ResponseEntity<byte[]> getSongPlaylist(@PathVariable final int id) {
     return getSongCollectionById(id);
   }
 
@@ -0,0 +1,304 @@
+package com.eos.streamus.controllers;
+
+import com.eos.streamus.exceptions.InvalidMediaException;
+import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.models.Film;
+import com.eos.streamus.models.Series;
+import com.eos.streamus.models.Video;
+import com.eos.streamus.utils.ContentStore;
+import com.eos.streamus.utils.FileInfo;
+import com.eos.streamus.utils.IDatabaseConnector;
+import com.eos.streamus.utils.IResourcePathResolver;
+import com.eos.streamus.utils.IngestJob;
+import com.eos.streamus.utils.IngestService;
+import com.eos.streamus.utils.ProbeService;
+import com.eos.streamus.utils.UploadSession;
+import com.eos.streamus.utils.UploadSessionService;
+import com.eos.streamus.writers.JsonUploadSessionWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resumable uploads of video files. An upload session is opened with the size of the file, which is then sent in
+ * chunks, in order. After an interruption, the offset to resume from is read from the session. Once all bytes are
+ * received, the session is finalized into an ingest job creating a {@link Film} or a {@link Series.Episode}.
+ */
+@RestController
+public class UploadController implements CommonResponses {
+  /** Path of upload sessions, followed by their id. */
+  private static final String UPLOAD_SESSION_PATH = "/uploads/";
+  /** Type of the sessions and ingest jobs of Films. */
+  private static final String FILM_TYPE = "film";
+  /** Type of the sessions and ingest jobs of Episodes. */
+  private static final String EPISODE_TYPE = "episode";
+  /** Content-Range header of a chunk. */
+  private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+)$");
+
+  /** {@link IResourcePathResolver} to use. */
+  @Autowired
+  private IResourcePathResolver resourcePathResolver;
+  /** {@link IDatabaseConnector} to use. */
+  @Autowired
+  private IDatabaseConnector databaseConnector;
+  /** {@link FilmController} segmenting the ingested Videos. */
+  @Autowired
+  private FilmController filmController;
+  /** {@link IngestService} to use. */
+  @Autowired
+  private IngestService ingestService;
+  /** {@link ProbeService} to use. */
+  @Autowired
+  private ProbeService probeService;
+  /** {@link UploadSessionService} to use. */
+  @Autowired
+  private UploadSessionService uploadSessionService;
+  /** {@link ContentStore} to use. */
+  @Autowired
+  private ContentStore contentStore;
+
+  /** Creates the {@link Video} of an ingested file, given the path it is stored at. */
+  @FunctionalInterface
+  private interface VideoFactory {
+    Video create(String path, int duration, Connection connection) throws SQLException, InvalidMediaException;
+  }
+
+  /**
+   * Open a resumable upload of a Film or an Episode.
+   *
+   * @param type          Type of video: film or episode.
+   * @param name          Name of the video.
+   * @param length        Size of the file, in bytes.
+   * @param fileName      Name of the uploaded file.
+   * @param seriesId      Id of the Series of an Episode.
+   * @param seasonNumber  Season of an Episode.
+   * @param episodeNumber Number of an Episode in its season, numbered after the last one if absent.
+   * @return Created session in JSON format, pointing at where its chunks are sent.
+   */
+  @PostMapping("/uploads")
+  public ResponseEntity<JsonNode> openUpload(@RequestParam("type") final String type,
+                                             @RequestParam("name") final String name,
+                                             @RequestParam("length") final long length,
+                                             @RequestParam("fileName") final String fileName,
+                                             @RequestParam(value = "seriesId", required = false)
+                                             final Integer seriesId,
+                                             @RequestParam(value = "seasonNumber", required = false)
+                                             final Short seasonNumber,
+                                             @RequestParam(value = "episodeNumber", required = false)
+                                             final Short episodeNumber) {
+    if (length <= 0 || length > uploadSessionService.getMaxLength()) {
+      return badRequest(String.format("Length must be between 1 and %d", uploadSessionService.getMaxLength()));
+    }
+    String path = String.format(
+        "%s%s.%s", resourcePathResolver.getVideoDir(), UUID.randomUUID(), FilenameUtils.getExtension(fileName)
+    );
+
+    VideoFactory videoFactory;
+    if (FILM_TYPE.equals(type)) {
+      videoFactory = (videoPath, duration, connection) -> new Film(videoPath, name, duration);
+    } else if (EPISODE_TYPE.equals(type)) {
+      if (seriesId == null || seasonNumber == null) {
+        return badRequest("An episode needs a series and a season");
+      }
+      try (Connection connection = databaseConnector.getConnection()) {
+        Series.findById(seriesId, connection);
+      } catch (SQLException sqlException) {
+        logException(sqlException);
+        return internalServerError();
+      } catch (NoResultException noResultException) {
+        return notFound();
+      }
+      videoFactory = (videoPath, duration, connection) -> {
+        Series series;
+        try {
+          series = Series.findById(seriesId, connection);
+        } catch (NoResultException noResultException) {
+          throw new InvalidMediaException("Series was deleted");
+        }
+        Series.EpisodeBuilder builder = series.new EpisodeBuilder(videoPath, name, duration, seasonNumber);
+        if (episodeNumber != null) {
+          builder.withEpisodeNumber(episodeNumber);
+        }
+        return builder.build();
+      };
+    } else {
+      return badRequest(String.format("Invalid type : %s", type));
+    }
+
+    UploadSession session;
+    try {
+      session = uploadSessionService.open(
+          type, Paths.get(path), length, storedFile -> ingestTask(storedFile.toString(), videoFactory)
+      );
+    } catch (IllegalArgumentException illegalArgumentException) {
+      return badRequest(illegalArgumentException.getMessage());
+    } catch (IllegalStateException illegalStateException) {
+      return serviceUnavailable(illegalStateException.getMessage());
+    } catch (IOException ioException) {
+      logException(ioException);
+      return internalServerError();
+    }
+    return ResponseEntity
+        .created(URI.create(UPLOAD_SESSION_PATH + session.getId()))
+        .body(new JsonUploadSessionWriter(session).getJson());
+  }
+
+  /**
+   * Get the state of an upload, holding the offset to resume it from.
+   *
+   * @param id Id of the session.
+   * @return Session in JSON format.
+   */
+  @GetMapping(UPLOAD_SESSION_PATH + "{id}")
+  public ResponseEntity<JsonNode> getUpload(@PathVariable final String id) {
+    UploadSession session = uploadSessionService.get(id);
+    if (session == null) {
+      return notFound();
+    }
+    return ResponseEntity.ok(new JsonUploadSessionWriter(session).getJson());
+  }
+
+  /**
+   * Receive a chunk of an upload. The chunk is written straight into the file at its offset, which must be the offset
+   * of the session. If the request ends early, the bytes received are kept.
+   *
+   * @param id           Id of the session.
+   * @param contentRange Content-Range header of the chunk.
+   * @param request      Request, whose body is the chunk.
+   * @return Session in JSON format (ok, bad request, not found, conflict, internal server error).
+   */
+  @PutMapping(UPLOAD_SESSION_PATH + "{id}")
+  public ResponseEntity<JsonNode> putChunk(@PathVariable final String id,
+                                           @RequestHeader(HttpHeaders.CONTENT_RANGE) final String contentRange,
+                                           final HttpServletRequest request) {
+    UploadSession session = uploadSessionService.get(id);
+    if (session == null) {
+      return notFound();
+    }
+    Matcher matcher = CONTENT_RANGE_PATTERN.matcher(contentRange);
+    if (!matcher.matches()) {
+      return badRequest("Invalid Content-Range");
+    }
+    long start = Long.parseLong(matcher.group(1));
+    long end = Long.parseLong(matcher.group(2));
+    if (end < start || Long.parseLong(matcher.group(3)) != session.getLength()) {
+      return badRequest("Invalid Content-Range");
+    }
+    try {
+      session.write(request.getInputStream(), start, end - start + 1);
+    } catch (IllegalArgumentException | IllegalStateException exception) {
+      return conflict(exception.getMessage());
+    } catch (IOException ioException) {
+      logException(ioException);
+      return internalServerError();
+    }
+    return ResponseEntity.ok(new JsonUploadSessionWriter(session).getJson());
+  }
+
+  /**
+   * Finalize a complete upload, ingesting it into a Film or an Episode in the background. The file is stored by
+   * content, unless the same content already is. The session is closed once the file is stored, even if the ingestion
+   * could not be queued.
+   *
+   * @param id Id of the session.
+   * @return Ingest job in JSON format (accepted, not found, conflict, service unavailable, internal server error).
+   */
+  @PostMapping(UPLOAD_SESSION_PATH + "{id}/finalize")
+  public ResponseEntity<JsonNode> finalizeUpload(@PathVariable final String id) {
+    UploadSession session = uploadSessionService.get(id);
+    if (session == null) {
+      return notFound();
+    }
+    IngestJob job;
+    try {
+      job = session.complete(contentHash -> {
+        Path storedFile = contentStore.store(session.getPath(), contentHash, resourcePathResolver.getVideoDir());
+        try {
+          return ingestService.submit(session.getType(), storedFile, session.getTask(storedFile));
+        } catch (RejectedExecutionException rejectedExecutionException) {
+          contentStore.release(storedFile);
+          throw rejectedExecutionException;
+        }
+      });
+    } catch (IllegalStateException illegalStateException) {
+      return conflict(illegalStateException.getMessage());
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      uploadSessionService.close(session);
+      return serviceUnavailable("Too many uploads are being processed");
+    } catch (IOException ioException) {
+      logException(ioException);
+      uploadSessionService.close(session);
+      return internalServerError();
+    }
+    uploadSessionService.close(session);
+    return accepted(job);
+  }
+
+  /**
+   * Cancel an upload and delete what was received.
+   *
+   * @param id Id of the session.
+   * @return Confirmation message (ok, not found, conflict if a chunk is being received or the upload is completed).
+   */
+  @DeleteMapping(UPLOAD_SESSION_PATH + "{id}")
+  public ResponseEntity<JsonNode> cancelUpload(@PathVariable final String id) {
+    UploadSession session = uploadSessionService.get(id);
+    if (session == null) {
+      return notFound();
+    }
+    try {
+      uploadSessionService.cancel(session);
+    } catch (IllegalStateException illegalStateException) {
+      return conflict(illegalStateException.getMessage());
+    }
+    return simpleOk("Upload cancelled");
+  }
+
+  /**
+   * Ingestion of an uploaded video file.
+   *
+   * @param path         Path the uploaded file is stored at.
+   * @param videoFactory Creates the Video of the file.
+   * @return Task of the ingest job, saving and segmenting the Video if the file is video.
+   */
+  private IngestJob.Task ingestTask(final String path, final VideoFactory videoFactory) {
+    return job -> {
+      FileInfo fileInfo = job.stage(IngestJob.PROBE_STAGE, () -> probeService.probe(path));
+      if (!fileInfo.isVideo()) {
+        throw new InvalidMediaException("File is not video");
+      }
+      Video video = job.stage(IngestJob.PERSIST_STAGE, () -> {
+        try (Connection connection = databaseConnector.getConnection()) {
+          Video created = videoFactory.create(path, fileInfo.getDuration(), connection);
+          created.save(connection);
+          return created;
+        }
+      });
+      job.stage(IngestJob.SEGMENT_STAGE, () -> filmController.segment(video));
+      return video;
+    };
+  }
+
+}
@@ -7,6 +7,7 @@ import com.eos.streamus.dto.UserDTO;
 import com.eos.streamus.dto.validators.PasswordUpdateDTOValidator;
 import com.eos.streamus.dto.validators.UserDTOValidator;
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.models.CatalogCache;
 import com.eos.streamus.models.PersonBuilder;
 import com.eos.streamus.models.User;
 import com.eos.streamus.models.UserDAO;
@@ -95,7 +96,7 @@ public final class UserController implements CommonResponses {
       String encodedPassword = passwordEncoder.encode(userDTO.getPassword());
       user.save(connection);
       user.upsertPassword(encodedPassword, connection);
-      connection.commit();
+      CatalogCache.commit(connection);
       return ResponseEntity.ok(new JsonUserWriter(user).getJson());
     } catch (SQLException sqlException) {
       logException(sqlException);
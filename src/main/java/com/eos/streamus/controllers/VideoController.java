@@ -0,0 +1,97 @@
+package com.eos.streamus.controllers;
+
+import com.eos.streamus.utils.HlsSegmenter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Serves the HLS manifests and segments of {@link com.eos.streamus.models.Video}s, Films and Episodes alike.
+ * Files are served from disk without reading the database, with cache headers letting players and reverse proxies
+ * keep them: segment names are versioned by {@link HlsSegmenter}, so a segment URL always serves the same bytes,
+ * while a manifest changes whenever its Video is segmented again and is revalidated on every use.
+ */
+@RestController
+public class VideoController implements CommonResponses {
+  /** Media type of HLS manifests. */
+  private static final MediaType MANIFEST_MEDIA_TYPE = MediaType.parseMediaType("application/vnd.apple.mpegurl");
+  /** Media type of HLS segments. */
+  private static final MediaType SEGMENT_MEDIA_TYPE = MediaType.parseMediaType("video/mp2t");
+  /** Cache-Control of manifests, revalidated against their ETag on every use. */
+  private static final String MANIFEST_CACHE_CONTROL = "public, no-cache";
+  /** Cache-Control of segments, whose versioned names are never reused. */
+  private static final String SEGMENT_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+  /** {@link HlsSegmenter} to use. */
+  @Autowired
+  private HlsSegmenter hlsSegmenter;
+
+  /**
+   * Get the HLS manifest of a Video.
+   *
+   * @param id Id of Video.
+   * @return Manifest, or not found if the Video does not exist or was not segmented yet.
+   * @throws IOException If the manifest could not be read.
+   */
+  @GetMapping("/video/{id}/hls/" + HlsSegmenter.MANIFEST_NAME)
+  public ResponseEntity<FileSystemResource> getManifest(@PathVariable final int id) throws IOException {
+    return serveFile(hlsSegmenter.getManifestPath(id), MANIFEST_MEDIA_TYPE, MANIFEST_CACHE_CONTROL);
+  }
+
+  /**
+   * Get a HLS segment of a Video.
+   *
+   * @param id      Id of Video.
+   * @param segment File name of the segment, as listed in the manifest.
+   * @return Segment, or not found if the Video has no such segment.
+   * @throws IOException If the segment could not be read.
+   */
+  @GetMapping("/video/{id}/hls/{segment:.+\\.ts}")
+  public ResponseEntity<FileSystemResource> getSegment(@PathVariable final int id,
+                                                       @PathVariable final String segment) throws IOException {
+    Path path;
+    try {
+      path = hlsSegmenter.getSegmentPath(id, segment);
+    } catch (IllegalArgumentException illegalArgumentException) {
+      return notFound();
+    }
+    return serveFile(path, SEGMENT_MEDIA_TYPE, SEGMENT_CACHE_CONTROL);
+  }
+
+  /**
+   * Responds with a file. Its ETag and last modification date let clients revalidate their copy with a conditional
+   * request, answered with not modified.
+   *
+   * @param path         Path of the file.
+   * @param mediaType    Media type of the file.
+   * @param cacheControl Cache-Control of the response.
+   * @return The file, or not found if it does not exist.
+   * @throws IOException If the file could not be read.
+   */
+  private ResponseEntity<FileSystemResource> serveFile(final Path path, final MediaType mediaType,
+                                                       final String cacheControl) throws IOException {
+    if (!Files.isRegularFile(path)) {
+      return notFound();
+    }
+    long lastModified = Files.getLastModifiedTime(path).toMillis();
+    long size = Files.size(path);
+    return ResponseEntity
+        .ok()
+        .contentType(mediaType)
+        .contentLength(size)
+        .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+        .eTag(String.format("%x-%x", lastModified, size))
+        .lastModified(lastModified)
+        .body(new FileSystemResource(path));
+  }
+
+}
@@ -0,0 +1,22 @@
+package com.eos.streamus.dto;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+public final class ActivityMessageDTO {
+  /** Maximum length of a message, that of its column. */
+  private static final int MAX_CONTENT_LENGTH = 255;
+
+  /** Message content. */
+  @NotNull
+  @NotBlank
+  @Size(max = MAX_CONTENT_LENGTH)
+  private String content;
+
+  /** @return Message content. */
+  public String getContent() {
+    return content;
+  }
+
+}
@@ -0,0 +1,9 @@
+package com.eos.streamus.exceptions;
+
+public class InvalidMediaException extends Exception {
+  private static final long serialVersionUID = -3094839427551866742L;
+
+  public InvalidMediaException(final String message) {
+    super(message);
+  }
+}
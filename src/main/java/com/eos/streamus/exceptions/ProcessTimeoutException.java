@@ -0,0 +1,11 @@
+package com.eos.streamus.exceptions;
+
+import java.io.IOException;
+
+public class ProcessTimeoutException extends IOException {
+  private static final long serialVersionUID = 4772311857153925734L;
+
+  public ProcessTimeoutException(final String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,117 @@
+package com.eos.streamus.filters;
+
+import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.utils.JwtService;
+import com.eos.streamus.utils.LiveActivityService;
+import io.jsonwebtoken.JwtException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import javax.servlet.http.Cookie;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Accepts the WebSocket handshake of an Activity sync channel, at /activity/{id}/sync, only from a member of the
+ * Activity. Browsers cannot set headers on a WebSocket handshake, so the member is identified by the session token
+ * cookie, as for streams.
+ */
+@Component
+public final class ActivitySyncHandshakeInterceptor implements HandshakeInterceptor {
+  /** Session attribute holding the id of the Activity. */
+  public static final String ACTIVITY_ID = "activityId";
+  /** Session attribute holding the id of the User. */
+  public static final String USER_ID = "userId";
+  /** Name of the session token cookie. */
+  private static final String SESSION_COOKIE = "streamusSessionToken";
+  /** Index of the Activity id in the segments of the path. */
+  private static final int ACTIVITY_ID_SEGMENT = 2;
+
+  /** {@link com.eos.streamus.utils.LiveActivityService} to use. */
+  @Autowired
+  private LiveActivityService liveActivityService;
+
+  /** {@link com.eos.streamus.utils.JwtService} to use. */
+  @Autowired
+  private JwtService jwtService;
+
+  /** {@inheritDoc} */
+  @Override
+  public boolean beforeHandshake(final ServerHttpRequest request, final ServerHttpResponse response,
+                                 final WebSocketHandler wsHandler, final Map<String, Object> attributes) {
+    String token = getSessionToken(request);
+    if (token == null) {
+      response.setStatusCode(HttpStatus.UNAUTHORIZED);
+      return false;
+    }
+    Integer userId;
+    try {
+      userId = jwtService.decode(token).getBody().get(USER_ID, Integer.class);
+    } catch (JwtException jwtException) {
+      userId = null;
+    }
+    if (userId == null) {
+      response.setStatusCode(HttpStatus.UNAUTHORIZED);
+      return false;
+    }
+    int activityId;
+    try {
+      activityId = Integer.parseInt(request.getURI().getPath().split("/")[ACTIVITY_ID_SEGMENT]);
+    } catch (NumberFormatException | ArrayIndexOutOfBoundsException invalidPathException) {
+      response.setStatusCode(HttpStatus.BAD_REQUEST);
+      return false;
+    }
+    try {
+      if (liveActivityService.getManagement(activityId, userId) == null) {
+        response.setStatusCode(HttpStatus.FORBIDDEN);
+        return false;
+      }
+      attributes.put(ACTIVITY_ID, activityId);
+      attributes.put(USER_ID, userId);
+      return true;
+    } catch (NoResultException noResultException) {
+      response.setStatusCode(HttpStatus.NOT_FOUND);
+      return false;
+    } catch (SQLException sqlException) {
+      getLogger().log(Level.SEVERE, sqlException.getMessage(), sqlException);
+      response.setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+      return false;
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void afterHandshake(final ServerHttpRequest request, final ServerHttpResponse response,
+                             final WebSocketHandler wsHandler, final Exception exception) {
+    // Nothing to do once the connection is established
+  }
+
+  private static String getSessionToken(final ServerHttpRequest request) {
+    if (!(request instanceof ServletServerHttpRequest)) {
+      return null;
+    }
+    Cookie[] cookies = ((ServletServerHttpRequest) request).getServletRequest().getCookies();
+    if (cookies == null) {
+      return null;
+    }
+    for (Cookie cookie : cookies) {
+      if (cookie.getName().equals(SESSION_COOKIE)) {
+        return cookie.getValue();
+      }
+    }
+    return null;
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
@@ -0,0 +1,105 @@
+package com.eos.streamus.filters;
+
+import com.eos.streamus.models.IdentityMap;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opens an {@link IdentityMap} for the duration of each request, so that models loaded several times while serving
+ * it are only queried once. Set {@code identityMap.enabled=false} to disable it.
+ */
+@WebFilter("/*")
+@Component
+@ConditionalOnProperty(name = "identityMap.enabled", havingValue = "true", matchIfMissing = true)
+public final class IdentityMapFilter implements Filter, IdentityMapMXBean {
+  /** JMX name of the identity map counters. */
+  private static final String OBJECT_NAME = "com.eos.streamus:type=IdentityMap";
+
+  /** Registers the counters over JMX. */
+  @PostConstruct
+  public void registerMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not register identity map counters", jmException);
+    }
+  }
+
+  /** Unregisters the counters from JMX. */
+  @PreDestroy
+  public void unregisterMBean() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not unregister identity map counters", jmException);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse,
+                       final FilterChain filterChain) throws IOException, ServletException {
+    try (IdentityMap identityMap = IdentityMap.open()) {
+      filterChain.doFilter(servletRequest, servletResponse);
+      if (getLogger().isLoggable(Level.FINE) && servletRequest instanceof HttpServletRequest) {
+        getLogger().fine(String.format(
+            "%s %s: %d identity map hits, %d misses",
+            ((HttpServletRequest) servletRequest).getMethod(),
+            ((HttpServletRequest) servletRequest).getRequestURI(),
+            identityMap.getHits(),
+            identityMap.getMisses()
+        ));
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getHits() {
+    return IdentityMap.getTotalHits();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMisses() {
+    return IdentityMap.getTotalMisses();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getHitRatio() {
+    long hits = getHits();
+    long total = hits + getMisses();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
@@ -0,0 +1,13 @@
+package com.eos.streamus.filters;
+
+/** Counters exported over JMX by {@link IdentityMapFilter}. */
+public interface IdentityMapMXBean {
+  /** @return Number of model lookups answered without querying the database since startup. */
+  long getHits();
+
+  /** @return Number of model lookups that queried the database since startup. */
+  long getMisses();
+
+  /** @return Share of model lookups answered without querying the database, between 0 and 1. */
+  double getHitRatio();
+}
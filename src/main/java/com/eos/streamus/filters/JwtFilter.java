@@ -29,6 +29,9 @@ public final class JwtFilter implements Filter {
   /** Token offset in bearer String. */
   private static final int TOKEN_OFFSET = 7;
 
+  /** Request attribute holding the id of the authenticated User, decoded once from the token. */
+  public static final String USER_ID_ATTRIBUTE = "userId";
+
   /** {@inheritDoc} */
   @Override
   public void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse,
@@ -40,7 +43,9 @@ public final class JwtFilter implements Filter {
           httpServletRequest.getRequestURI().contains("/login") ||
           httpServletRequest.getRequestURI().contains("/refresh")) {
         filterChain.doFilter(servletRequest, servletResponse);
-      } else if (httpServletRequest.getRequestURI().contains("/stream")) {
+      } else if (httpServletRequest.getRequestURI().contains("/stream") ||
+          httpServletRequest.getRequestURI().contains("/hls/") ||
+          httpServletRequest.getRequestURI().endsWith("/sync")) {
         handleStream(httpServletRequest, servletResponse, filterChain);
       } else {
         handleStandardRequest(httpServletRequest, servletResponse, filterChain);
@@ -56,7 +61,10 @@ public final class JwtFilter implements Filter {
     } else {
       String jwtToken = jwtTokenHeader.substring(TOKEN_OFFSET);
       try {
-        jwtService.decode(jwtToken);
+        httpServletRequest.setAttribute(
+            USER_ID_ATTRIBUTE,
+            jwtService.decode(jwtToken).getBody().get(USER_ID_ATTRIBUTE, Integer.class)
+        );
         filterChain.doFilter(httpServletRequest, servletResponse);
       } catch (JwtException e) {
         ((HttpServletResponse) servletResponse).sendError(HttpServletResponse.SC_FORBIDDEN);
@@ -6,8 +6,13 @@ import com.eos.streamus.utils.Pair;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 public abstract class Activity implements SavableDeletableEntity {
   public class UserActivity extends Pair<User, Boolean> implements SavableDeletable {
@@ -309,11 +314,26 @@ public abstract class Activity implements SavableDeletableEntity {
     //#endregion Equals
   }
 
+  /** Activity known by its id only, to read and post {@link ActivityMessage}s without loading it. */
+  private static final class ActivityReference extends Activity {
+    private ActivityReference(final Integer id) {
+      super(id);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String creationFunctionName() {
+      return null;
+    }
+  }
+
   //#region Static Attributes
   /** Table name. */
   public static final String TABLE_NAME = "Activity";
   /** Primary key name. */
   protected static final String PRIMARY_KEY_NAME = "id";
+  /** Number of most recent {@link ActivityMessage}s fetched along with an Activity. */
+  public static final int RECENT_MESSAGES = 50;
   //#endregion Static Attributes
 
   //#region Instance Attributes
@@ -423,42 +443,250 @@ public abstract class Activity implements SavableDeletableEntity {
    * @throws NoResultException Should not happen but can be raised by {@link User}::findById.
    */
   protected void fetchUserActivities(final Connection connection) throws SQLException, NoResultException {
-    try (PreparedStatement preparedStatement = connection.prepareStatement(
-        String.format("select * from %s where %s = ?;", UserActivity.TABLE_NAME, UserActivity.ACTIVITY_ID_COLUMN))) {
-      preparedStatement.setInt(1, this.getId());
+    fetchUserActivities(Collections.singletonMap(id, this), connection);
+  }
+
+  /**
+   * Populate lists of {@link UserActivity} of several Activities from database.
+   * {@link User}s are fetched with a single additional query.
+   *
+   * @param activities Activities to populate, by id.
+   * @param connection {@link Connection} to use.
+   * @throws SQLException      If the database operation failed to perform.
+   * @throws NoResultException If a {@link User} could not be found. Should not happen.
+   */
+  static void fetchUserActivities(final Map<Integer, ? extends Activity> activities, final Connection connection)
+      throws SQLException, NoResultException {
+    List<Pair<Integer, Integer>> activityUsers = new ArrayList<>();
+    List<Boolean> manages = new ArrayList<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(String
+        .format("select * from %s where %s = any(?);",
+            UserActivity.TABLE_NAME,
+            UserActivity.ACTIVITY_ID_COLUMN))) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", activities.keySet().toArray()));
       try (ResultSet resultSet = preparedStatement.executeQuery()) {
         while (resultSet.next()) {
-          this.users.add(this.new UserActivity(User.findById(resultSet.getInt(UserActivity.USER_ID_COLUMN), connection),
-              resultSet.getBoolean(UserActivity.MANAGES_COLUMN)));
+          activityUsers.add(new Pair<>(
+              resultSet.getInt(UserActivity.ACTIVITY_ID_COLUMN),
+              resultSet.getInt(UserActivity.USER_ID_COLUMN)
+          ));
+          manages.add(resultSet.getBoolean(UserActivity.MANAGES_COLUMN));
         }
       }
     }
+    Map<Integer, User> users = findUsers(activityUsers, connection);
+    for (int i = 0; i < activityUsers.size(); i++) {
+      Activity activity = activities.get(activityUsers.get(i).getKey());
+      activity.users.add(activity.new UserActivity(users.get(activityUsers.get(i).getValue()), manages.get(i)));
+    }
   }
 
   /**
-   * Populate list of {@link ActivityMessage} from database.
+   * Finds whether a {@link User} takes part in an Activity, and whether they manage it, without loading it.
    *
+   * @param activityId Id of the Activity.
+   * @param userId     Id of the User.
    * @param connection {@link Connection} to use.
-   * @throws SQLException      If the database operation failed to perform.
-   * @throws NoResultException Should not happen but can be raised by {@link User}::findById.
+   * @return Whether the User manages the Activity, or null if they do not take part in it.
+   * @throws SQLException If the database operation failed to perform.
    */
-  public void fetchActivityMessages(final Connection connection) throws SQLException, NoResultException {
+  public static Boolean findManagement(final int activityId, final int userId, final Connection connection)
+      throws SQLException {
     try (PreparedStatement preparedStatement = connection.prepareStatement(String
-        .format("select * from %s where %s = ?;",
-            ActivityMessage.TABLE_NAME,
-            ActivityMessage.ACTIVITY_ID_COLUMN))) {
-      preparedStatement.setInt(1, id);
+        .format("select %s from %s where %s = ? and %s = ?;",
+            UserActivity.MANAGES_COLUMN,
+            UserActivity.TABLE_NAME,
+            UserActivity.ACTIVITY_ID_COLUMN,
+            UserActivity.USER_ID_COLUMN))) {
+      preparedStatement.setInt(1, activityId);
+      preparedStatement.setInt(2, userId);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        return resultSet.next() ? resultSet.getBoolean(UserActivity.MANAGES_COLUMN) : null;
+      }
+    }
+  }
+
+  /**
+   * Finds the {@link User}s taking part in an Activity, and whether they manage it, without loading it.
+   *
+   * @param activityId Id of the Activity.
+   * @param connection {@link Connection} to use.
+   * @return Whether each User manages the Activity, by User id. Empty if the Activity does not exist.
+   * @throws SQLException If the database operation failed to perform.
+   */
+  public static Map<Integer, Boolean> findMembers(final int activityId, final Connection connection)
+      throws SQLException {
+    Map<Integer, Boolean> members = new HashMap<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(String
+        .format("select %s, %s from %s where %s = ?;",
+            UserActivity.USER_ID_COLUMN,
+            UserActivity.MANAGES_COLUMN,
+            UserActivity.TABLE_NAME,
+            UserActivity.ACTIVITY_ID_COLUMN))) {
+      preparedStatement.setInt(1, activityId);
       try (ResultSet resultSet = preparedStatement.executeQuery()) {
         while (resultSet.next()) {
-          new ActivityMessage(
-              resultSet.getInt(ActivityMessage.PRIMARY_KEY_NAME),
-              User.findById(resultSet.getInt(ActivityMessage.USER_ID_COLUMN), connection),
-              resultSet.getString(ActivityMessage.CONTENT_COLUMN),
-              resultSet.getTimestamp(ActivityMessage.POSTED_AT_COLUMN)
+          members.put(
+              resultSet.getInt(UserActivity.USER_ID_COLUMN),
+              resultSet.getBoolean(UserActivity.MANAGES_COLUMN)
           );
         }
       }
     }
+    return members;
+  }
+
+  /**
+   * Populate list of {@link ActivityMessage} from database, with the {@value #RECENT_MESSAGES} most recent ones.
+   *
+   * @param connection {@link Connection} to use.
+   * @throws SQLException      If the database operation failed to perform.
+   * @throws NoResultException Should not happen but can be raised by {@link User}::findById.
+   */
+  public void fetchActivityMessages(final Connection connection) throws SQLException, NoResultException {
+    fetchActivityMessages(Collections.singletonMap(id, this), connection);
+  }
+
+  /**
+   * Populate lists of {@link ActivityMessage} of several Activities from database, in posting order.
+   * Only the {@value #RECENT_MESSAGES} most recent messages of each Activity are fetched, earlier ones are paged with
+   * {@link #findMessages(int, PageCursor, int, Connection)}. {@link User}s are fetched with a single additional query.
+   *
+   * @param activities Activities to populate, by id.
+   * @param connection {@link Connection} to use.
+   * @throws SQLException      If the database operation failed to perform.
+   * @throws NoResultException If a {@link User} could not be found. Should not happen.
+   */
+  static void fetchActivityMessages(final Map<Integer, ? extends Activity> activities, final Connection connection)
+      throws SQLException, NoResultException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(String
+        .format("select * from (select *, row_number() over (partition by %s order by %s desc) as recentRank "
+                + "from %s where %s = any(?)) as recentMessages where recentRank <= ? order by %s;",
+            ActivityMessage.ACTIVITY_ID_COLUMN,
+            ActivityMessage.PRIMARY_KEY_NAME,
+            ActivityMessage.TABLE_NAME,
+            ActivityMessage.ACTIVITY_ID_COLUMN,
+            ActivityMessage.PRIMARY_KEY_NAME))) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", activities.keySet().toArray()));
+      preparedStatement.setInt(2, RECENT_MESSAGES);
+      readActivityMessages(preparedStatement, activities, connection);
+    }
+  }
+
+  /**
+   * Fetches a page of the {@link ActivityMessage}s of an Activity, in posting order, without loading the Activity.
+   * Members catch up on the messages posted since the last one they received by passing its cursor.
+   *
+   * @param activityId Id of the Activity.
+   * @param after      Cursor of the page, i.e. of the last message already read, or null for the first page.
+   * @param limit      Maximum number of messages in the page.
+   * @param connection {@link Connection} to use.
+   * @return Page of messages, with the cursor of the next page if there are more.
+   * @throws SQLException      If the database operation failed to perform.
+   * @throws NoResultException If a {@link User} could not be found. Should not happen.
+   */
+  public static Page<ActivityMessage> findMessages(final int activityId, final PageCursor after, final int limit,
+                                                   final Connection connection)
+      throws SQLException, NoResultException {
+    Activity activity = new ActivityReference(activityId);
+    try (PreparedStatement preparedStatement = connection.prepareStatement(String
+        .format("select * from %s where %s = ? and %s > ? order by %s limit ?;",
+            ActivityMessage.TABLE_NAME,
+            ActivityMessage.ACTIVITY_ID_COLUMN,
+            ActivityMessage.PRIMARY_KEY_NAME,
+            ActivityMessage.PRIMARY_KEY_NAME))) {
+      int columnNumber = 1;
+      preparedStatement.setInt(columnNumber++, activityId);
+      preparedStatement.setInt(columnNumber++, after == null ? 0 : after.getId());
+      preparedStatement.setInt(columnNumber, limit + 1);
+      readActivityMessages(preparedStatement, Collections.singletonMap(activityId, activity), connection);
+    }
+    List<ActivityMessage> messages = activity.getMessages();
+    if (messages.size() <= limit) {
+      return new Page<>(new ArrayList<>(messages), null);
+    }
+    return new Page<>(
+        new ArrayList<>(messages.subList(0, limit)),
+        new PageCursor(messages.get(limit - 1).getId()).encode()
+    );
+  }
+
+  /**
+   * Posts a message in an Activity, without loading the Activity.
+   *
+   * @param activityId Id of the Activity.
+   * @param user       Posting {@link User}, a member of the Activity.
+   * @param content    Content of the message.
+   * @param connection {@link Connection} to use.
+   * @return Saved message.
+   * @throws SQLException If the database operation failed to perform, e.g. if the {@link User} is not a member.
+   */
+  public static ActivityMessage postMessage(final int activityId, final User user, final String content,
+                                            final Connection connection) throws SQLException {
+    ActivityMessage message = new ActivityReference(activityId).new ActivityMessage(user, content);
+    message.save(connection);
+    return message;
+  }
+
+  /**
+   * Reads the {@link ActivityMessage}s selected by a statement into their Activities.
+   * {@link User}s are fetched with a single additional query.
+   *
+   * @param preparedStatement Statement selecting ActivityMessage rows, in posting order.
+   * @param activities        Activities of the messages, by id.
+   * @param connection        {@link Connection} to use.
+   * @throws SQLException      If the database operation failed to perform.
+   * @throws NoResultException If a {@link User} could not be found. Should not happen.
+   */
+  private static void readActivityMessages(final PreparedStatement preparedStatement,
+                                           final Map<Integer, ? extends Activity> activities,
+                                           final Connection connection) throws SQLException, NoResultException {
+    List<Pair<Integer, Integer>> activityUsers = new ArrayList<>();
+    List<Integer> ids = new ArrayList<>();
+    List<String> contents = new ArrayList<>();
+    List<Timestamp> postedAts = new ArrayList<>();
+    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+      while (resultSet.next()) {
+        activityUsers.add(new Pair<>(
+            resultSet.getInt(ActivityMessage.ACTIVITY_ID_COLUMN),
+            resultSet.getInt(ActivityMessage.USER_ID_COLUMN)
+        ));
+        ids.add(resultSet.getInt(ActivityMessage.PRIMARY_KEY_NAME));
+        contents.add(resultSet.getString(ActivityMessage.CONTENT_COLUMN));
+        postedAts.add(resultSet.getTimestamp(ActivityMessage.POSTED_AT_COLUMN));
+      }
+    }
+    Map<Integer, User> users = findUsers(activityUsers, connection);
+    for (int i = 0; i < activityUsers.size(); i++) {
+      activities.get(activityUsers.get(i).getKey()).new ActivityMessage(
+          ids.get(i),
+          users.get(activityUsers.get(i).getValue()),
+          contents.get(i),
+          postedAts.get(i)
+      );
+    }
+  }
+
+  /**
+   * Finds the {@link User}s referenced by (activity id, user id) rows in a single query.
+   *
+   * @param activityUsers Activity and {@link User} ids.
+   * @param connection    {@link Connection} to use.
+   * @return Found {@link User}s by id.
+   * @throws SQLException      If the database operation failed to perform.
+   * @throws NoResultException If a {@link User} could not be found.
+   */
+  private static Map<Integer, User> findUsers(final List<Pair<Integer, Integer>> activityUsers,
+                                              final Connection connection) throws SQLException, NoResultException {
+    Set<Integer> userIds = new LinkedHashSet<>();
+    for (Pair<Integer, Integer> activityUser : activityUsers) {
+      userIds.add(activityUser.getValue());
+    }
+    Map<Integer, User> users = User.findUsersByIds(new ArrayList<>(userIds), connection);
+    if (users.size() != userIds.size()) {
+      throw new NoResultException();
+    }
+    return users;
   }
   //#endregion Database operations
 
@@ -85,6 +85,10 @@ public final class Admin extends User {
    * @throws NoResultException If no Admin by this id was found in database.
    */
   public static Admin findById(final Integer id, final Connection connection) throws SQLException, NoResultException {
+    Admin cached = IdentityMap.lookup(Admin.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where %s = ?;", VIEW_NAME, Person.ID_COLUMN
@@ -95,7 +99,7 @@ public final class Admin extends User {
         if (!resultSet.next()) {
           throw new NoResultException();
         }
-        return (Admin) new PersonBuilder(
+        return IdentityMap.register((Admin) new PersonBuilder(
             resultSet.getString(Person.FIRST_NAME_COLUMN),
             resultSet.getString(Person.LAST_NAME_COLUMN),
             resultSet.getDate(Person.DATE_OF_BIRTH_COLUMN)
@@ -107,7 +111,7 @@ public final class Admin extends User {
         ).withTimestamps(
             resultSet.getTimestamp(Person.CREATED_AT_COLUMN),
             resultSet.getTimestamp(Person.UPDATED_AT_COLUMN)
-        ).build();
+        ).build());
       }
     }
   }
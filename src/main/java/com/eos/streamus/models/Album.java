@@ -4,16 +4,18 @@ import com.eos.streamus.exceptions.NoResultException;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public final class Album extends SongCollection {
   //#region Static attributes
   /** Creation_function_name in the database. */
   private static final String CREATION_FUNCTION_NAME = "createAlbum";
   /** Table name in the database. */
-  private static final String TABLE_NAME = "Album";
+  static final String TABLE_NAME = "Album";
   /** Primary key name in the database. */
-  private static final String PRIMARY_KEY_NAME = "idSongCollection";
+  static final String PRIMARY_KEY_NAME = "idSongCollection";
   /** Release date column in the database. */
   private static final String RELEASE_DATE_COLUMN = "releaseDate";
   /** Album artist table name in the database. */
@@ -125,6 +127,7 @@ public final class Album extends SongCollection {
         preparedStatement.setInt(2, artist.getId());
         preparedStatement.execute();
       }
+      CatalogCache.invalidate(artist, connection);
     }
     super.save(connection);
   }
@@ -139,6 +142,10 @@ public final class Album extends SongCollection {
    * @throws NoResultException If no Album was found
    */
   public static Album findById(final Integer id, final Connection connection) throws SQLException, NoResultException {
+    Album cached = IdentityMap.lookup(Album.class, id);
+    if (cached != null) {
+      return cached;
+    }
     Album album;
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
@@ -157,19 +164,11 @@ public final class Album extends SongCollection {
         album.setCreatedAt(resultSet.getTimestamp(Collection.CREATED_AT_COLUMN));
         album.setUpdatedAt(resultSet.getTimestamp(Collection.UPDATED_AT_COLUMN));
         do {
-          if (resultSet.getInt(VIEW_SONG_ID) != 0) {
-            Song song = new Song(
-                resultSet.getString(Resource.PATH_COLUMN),
-                resultSet.getString(VIEW_SONG_NAME_COLUMN),
-                resultSet.getInt(Resource.DURATION_COLUMN)
-            );
-            song.setId(resultSet.getInt(VIEW_SONG_ID));
-            song.setCreatedAt(resultSet.getTimestamp(SONG_CREATED_AT_COLUMN));
-            album.addTrack(album.new Track(resultSet.getInt(TRACK_NUMBER_COLUMN), song));
-          }
+          album.addTrackFromResultSet(resultSet);
         } while (resultSet.next());
       }
     }
+    List<Integer> artistIds = new ArrayList<>();
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where %s = ?;", ALBUM_ARTIST_TABLE_NAME, ALBUM_ARTIST_ALBUM_ID_COLUMN
@@ -178,11 +177,79 @@ public final class Album extends SongCollection {
       preparedStatement.setInt(1, id);
       try (ResultSet resultSet = preparedStatement.executeQuery()) {
         while (resultSet.next()) {
-          album.addArtist(ArtistDAO.findById(resultSet.getInt(ALBUM_ARTIST_ARTIST_ID_COLUMN), connection));
+          artistIds.add(resultSet.getInt(ALBUM_ARTIST_ARTIST_ID_COLUMN));
+        }
+      }
+    }
+    Map<Integer, Artist> artists = ArtistDAO.findByIds(artistIds, connection);
+    for (Integer artistId : artistIds) {
+      Artist artist = artists.get(artistId);
+      if (artist == null) {
+        throw new NoResultException();
+      }
+      album.addArtist(artist);
+    }
+    return IdentityMap.register(album);
+  }
+
+  /**
+   * Finds several Albums and their tracks in a single query. Their {@link Artist}s are not fetched.
+   *
+   * @param ids        Ids of the Albums to find.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @return Found Albums by id, ordered by id. Ids that were not found are absent.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  static Map<Integer, Album> findByIds(final List<Integer> ids, final Connection connection) throws SQLException {
+    Map<Integer, Album> albums = new LinkedHashMap<>();
+    if (ids.isEmpty()) {
+      return albums;
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select * from %s where %s = any(?) order by %s, %s;",
+            VIEW_NAME,
+            VIEW_ID,
+            VIEW_ID,
+            TRACK_NUMBER_COLUMN
+        )
+    )) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          int id = resultSet.getInt(VIEW_ID);
+          Album album = albums.get(id);
+          if (album == null) {
+            album = new Album(resultSet.getString(Collection.NAME_COLUMN), resultSet.getDate(RELEASE_DATE_COLUMN));
+            album.setId(id);
+            album.setCreatedAt(resultSet.getTimestamp(Collection.CREATED_AT_COLUMN));
+            album.setUpdatedAt(resultSet.getTimestamp(Collection.UPDATED_AT_COLUMN));
+            albums.put(id, album);
+          }
+          album.addTrackFromResultSet(resultSet);
         }
       }
     }
-    return album;
+    return albums;
+  }
+
+  /**
+   * Adds the track on the current row of a {@link #VIEW_NAME} result set, if there is one.
+   *
+   * @param resultSet ResultSet positioned on a row of this Album.
+   * @throws SQLException If an error occurred while reading the row.
+   */
+  private void addTrackFromResultSet(final ResultSet resultSet) throws SQLException {
+    if (resultSet.getInt(VIEW_SONG_ID) != 0) {
+      Song song = new Song(
+          resultSet.getString(Resource.PATH_COLUMN),
+          resultSet.getString(VIEW_SONG_NAME_COLUMN),
+          resultSet.getInt(Resource.DURATION_COLUMN)
+      );
+      song.setId(resultSet.getInt(VIEW_SONG_ID));
+      song.setCreatedAt(resultSet.getTimestamp(SONG_CREATED_AT_COLUMN));
+      addTrack(new Track(resultSet.getInt(TRACK_NUMBER_COLUMN), song));
+    }
   }
   //#endregion Database operations
 
@@ -111,6 +111,8 @@ public abstract class Artist implements SavableDeletableEntity {
       preparedStatement.setInt(2, id);
       preparedStatement.execute();
     }
+    CatalogCache.invalidate(this, connection);
+    IdentityMap.forget(this);
   }
 
   /**
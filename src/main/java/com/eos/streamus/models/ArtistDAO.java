@@ -1,16 +1,26 @@
 package com.eos.streamus.models;
 
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.utils.Pair;
 
 import java.sql.Connection;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.logging.Logger;
+import java.util.Map;
+import java.util.Set;
 
 public final class ArtistDAO {
+  /** Discriminator column name, true when the {@link Artist} is a {@link Band}. */
+  private static final String IS_BAND_COLUMN = "isBand";
+
   private ArtistDAO() {
   }
 
@@ -24,40 +34,271 @@ public final class ArtistDAO {
    * @throws SQLException      If an error occurred while performing the database operation.
    */
   public static Artist findById(final Integer id, final Connection connection) throws SQLException, NoResultException {
-    try {
-      return Musician.findById(id, connection);
-    } catch (NoResultException e) {
-      // Do nothing, could be Band
+    Artist artist = findByIds(Collections.singletonList(id), connection).get(id);
+    if (artist == null) {
+      throw new NoResultException();
     }
-    return Band.findById(id, connection);
+    return artist;
   }
 
   /**
-   * Fetches all {@link Artist} in database.
+   * Finds several {@link Artist}s of any type. The concrete type of each Artist is resolved in a single query,
+   * followed by at most one query for {@link Band} members and one for {@link Person}s per level of nesting.
+   * A {@link Musician} found both as an Artist and as a Band member is the same instance.
+   * {@link Artist}s already in the current {@link IdentityMap} are not fetched again.
    *
+   * @param ids        Ids of the {@link Artist}s to find.
    * @param connection {@link Connection} to use to perform the operation.
-   * @return Found {@link SongCollection}
+   * @return Found {@link Artist}s by id. Ids that were not found are absent.
    * @throws SQLException If an error occurred while performing the database operation.
    */
-  public static List<Artist> all(final Connection connection) throws SQLException {
-    List<Artist> artists = new ArrayList<>();
+  public static Map<Integer, Artist> findByIds(final List<Integer> ids, final Connection connection)
+      throws SQLException {
+    Map<Integer, Artist> artists = new LinkedHashMap<>();
+    List<Integer> missingIds = new ArrayList<>();
+    for (Integer id : ids) {
+      Artist cached = IdentityMap.lookup(Artist.class, id);
+      if (cached == null) {
+        missingIds.add(id);
+      } else {
+        artists.put(id, cached);
+      }
+    }
+    if (missingIds.isEmpty()) {
+      return artists;
+    }
+    Map<Integer, String> names = new LinkedHashMap<>();
+    Map<Integer, Integer> personIds = new HashMap<>();
+    List<Integer> bandIds = new ArrayList<>();
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
-            "select distinct id from %s",
-            Artist.TABLE_NAME
+            "select %s.%s, %s.%s, %s.%s, %s.%s is not null as %s from %s " +
+                "left join %s on %s.%s = %s.%s left join %s on %s.%s = %s.%s " +
+                "where %s.%s = any(?) and (%s.%s is not null or %s.%s is not null) order by %s.%s;",
+            Artist.TABLE_NAME, Artist.PRIMARY_KEY_NAME,
+            Artist.TABLE_NAME, Artist.NAME_COLUMN,
+            Musician.TABLE_NAME, Musician.PERSON_ID_COLUMN,
+            Band.TABLE_NAME, Band.PRIMARY_KEY_NAME, IS_BAND_COLUMN,
+            Artist.TABLE_NAME,
+            Musician.TABLE_NAME, Musician.TABLE_NAME, Musician.PRIMARY_KEY_NAME,
+            Artist.TABLE_NAME, Artist.PRIMARY_KEY_NAME,
+            Band.TABLE_NAME, Band.TABLE_NAME, Band.PRIMARY_KEY_NAME, Artist.TABLE_NAME, Artist.PRIMARY_KEY_NAME,
+            Artist.TABLE_NAME, Artist.PRIMARY_KEY_NAME,
+            Musician.TABLE_NAME, Musician.PRIMARY_KEY_NAME,
+            Band.TABLE_NAME, Band.PRIMARY_KEY_NAME,
+            Artist.TABLE_NAME, Artist.PRIMARY_KEY_NAME
         )
     )) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", missingIds.toArray()));
       try (ResultSet resultSet = preparedStatement.executeQuery()) {
         while (resultSet.next()) {
-          try {
-            artists.add(findById(resultSet.getInt("id"), connection));
-          } catch (NoResultException e) {
-            Logger.getLogger(ArtistDAO.class.getName()).severe(e.getMessage());
+          int id = resultSet.getInt(Artist.PRIMARY_KEY_NAME);
+          names.put(id, resultSet.getString(Artist.NAME_COLUMN));
+          if (resultSet.getBoolean(IS_BAND_COLUMN)) {
+            bandIds.add(id);
+          } else {
+            int personId = resultSet.getInt(Musician.PERSON_ID_COLUMN);
+            if (!resultSet.wasNull()) {
+              personIds.put(id, personId);
+            }
           }
         }
       }
     }
+
+    Map<Integer, Person> persons = Person.findByIds(new ArrayList<>(personIds.values()), connection);
+    for (Map.Entry<Integer, String> entry : names.entrySet()) {
+      int id = entry.getKey();
+      if (bandIds.contains(id)) {
+        artists.put(id, IdentityMap.register(new Band(id, entry.getValue())));
+      } else {
+        Integer personId = personIds.get(id);
+        artists.put(
+            id,
+            IdentityMap.register(new Musician(id, entry.getValue(), personId == null ? null : persons.get(personId)))
+        );
+      }
+    }
+    if (!bandIds.isEmpty()) {
+      fetchMembers(bandIds, artists, connection);
+    }
     return artists;
   }
 
+  /**
+   * Populates the {@link Band.Member}s of several {@link Band}s in a single query.
+   * Member {@link Musician}s that are not already loaded are fetched with {@link #findByIds(List, Connection)}.
+   *
+   * @param bandIds    Ids of the {@link Band}s.
+   * @param artists    Already loaded {@link Artist}s by id, containing the {@link Band}s.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  private static void fetchMembers(final List<Integer> bandIds, final Map<Integer, Artist> artists,
+                                   final Connection connection) throws SQLException {
+    List<Pair<Integer, Integer>> memberships = new ArrayList<>();
+    List<Pair<Date, Date>> dates = new ArrayList<>();
+    Set<Integer> missingMusicianIds = new LinkedHashSet<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select * from %s where %s = any(?) order by %s, %s;",
+            Band.Member.TABLE_NAME,
+            Band.Member.BAND_ID_COLUMN,
+            Band.Member.BAND_ID_COLUMN,
+            Band.Member.FROM_COLUMN
+        )
+    )) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", bandIds.toArray()));
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          int musicianId = resultSet.getInt(Band.Member.MUSICIAN_ID_COLUMN);
+          memberships.add(new Pair<>(resultSet.getInt(Band.Member.BAND_ID_COLUMN), musicianId));
+          dates.add(new Pair<>(resultSet.getDate(Band.Member.FROM_COLUMN), resultSet.getDate(Band.Member.TO_COLUMN)));
+          if (!artists.containsKey(musicianId)) {
+            missingMusicianIds.add(musicianId);
+          }
+        }
+      }
+    }
+
+    Map<Integer, Artist> musicians = findByIds(new ArrayList<>(missingMusicianIds), connection);
+    for (int i = 0; i < memberships.size(); i++) {
+      Pair<Integer, Integer> membership = memberships.get(i);
+      Artist musician = artists.containsKey(membership.getValue())
+          ? artists.get(membership.getValue())
+          : musicians.get(membership.getValue());
+      if (!(musician instanceof Musician)) {
+        throw new SQLException(
+            String.format("Band %d references non existing musician %d", membership.getKey(), membership.getValue())
+        );
+      }
+      ((Band) artists.get(membership.getKey()))
+          .addMember((Musician) musician, dates.get(i).getKey(), dates.get(i).getValue());
+    }
+  }
+
+  /**
+   * Fetches a page of {@link Artist}s, sorted by id. Their {@link Album}s are not fetched.
+   *
+   * @param connection {@link Connection} to use to perform the operation.
+   * @param after      Cursor of the page, or null for the first page.
+   * @param limit      Maximum number of {@link Artist}s in the page.
+   * @return Page of {@link Artist}s.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  public static Page<Artist> page(final Connection connection, final PageCursor after, final int limit)
+      throws SQLException {
+    List<Integer> ids = idsAfter(after, limit + 1, connection);
+    String nextCursor = null;
+    if (ids.size() > limit) {
+      ids = ids.subList(0, limit);
+      nextCursor = new PageCursor(ids.get(limit - 1)).encode();
+    }
+    Map<Integer, Artist> artists = findByIds(ids, connection);
+    List<Artist> content = new ArrayList<>();
+    for (Integer id : ids) {
+      if (artists.containsKey(id)) {
+        content.add(artists.get(id));
+      }
+    }
+    return new Page<>(content, nextCursor);
+  }
+
+  /**
+   * Fetches a page of {@link Artist}s, sorted by id, with their {@link Album}s and the Albums of their {@link Band}
+   * members, each Album with its tracks. The page is loaded with a fixed number of queries, whatever its size.
+   * Albums only list the {@link Artist}s loaded for the page among their artists.
+   *
+   * @param connection {@link Connection} to use to perform the operation.
+   * @param after      Cursor of the page, or null for the first page.
+   * @param limit      Maximum number of {@link Artist}s in the page.
+   * @return Page of {@link Artist}s.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  public static Page<Artist> pageWithAlbums(final Connection connection, final PageCursor after, final int limit)
+      throws SQLException {
+    Page<Artist> page = page(connection, after, limit);
+    Map<Integer, Artist> artists = new HashMap<>();
+    for (Artist artist : page.getContent()) {
+      artists.put(artist.getId(), artist);
+      if (artist instanceof Band) {
+        for (Band.Member member : ((Band) artist).getMembers()) {
+          artists.put(member.getMusician().getId(), member.getMusician());
+        }
+      }
+    }
+    if (artists.isEmpty()) {
+      return page;
+    }
+
+    List<Pair<Integer, Integer>> albumArtists = new ArrayList<>();
+    Set<Integer> albumIds = new LinkedHashSet<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select %s, %s from %s where %s = any(?) order by %s, %s",
+            Artist.ALBUM_ARTIST_ALBUM_ID,
+            Artist.ALBUM_ARTIST_ARTIST_ID,
+            Artist.ALBUM_ARTIST_TABLE_NAME,
+            Artist.ALBUM_ARTIST_ARTIST_ID,
+            Artist.ALBUM_ARTIST_ARTIST_ID,
+            Artist.ALBUM_ARTIST_ALBUM_ID
+        )
+    )) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", artists.keySet().toArray()));
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          int albumId = resultSet.getInt(Artist.ALBUM_ARTIST_ALBUM_ID);
+          albumArtists.add(new Pair<>(albumId, resultSet.getInt(Artist.ALBUM_ARTIST_ARTIST_ID)));
+          albumIds.add(albumId);
+        }
+      }
+    }
+
+    Map<Integer, Album> albums = Album.findByIds(new ArrayList<>(albumIds), connection);
+    for (Pair<Integer, Integer> albumArtist : albumArtists) {
+      Album album = albums.get(albumArtist.getKey());
+      Artist artist = artists.get(albumArtist.getValue());
+      if (album != null) {
+        album.addArtist(artist);
+        artist.getAlbums().add(album);
+      }
+    }
+    return page;
+  }
+
+  /**
+   * Fetches the ids of the {@link Artist}s following a cursor.
+   *
+   * @param after      Cursor, or null to start from the first {@link Artist}.
+   * @param limit      Maximum number of ids.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @return Ids, in ascending order.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  private static List<Integer> idsAfter(final PageCursor after, final int limit, final Connection connection)
+      throws SQLException {
+    List<Integer> ids = new ArrayList<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select %s from %s%s order by %s limit ?",
+            Artist.PRIMARY_KEY_NAME,
+            Artist.TABLE_NAME,
+            after == null ? "" : String.format(" where %s > ?", Artist.PRIMARY_KEY_NAME),
+            Artist.PRIMARY_KEY_NAME
+        )
+    )) {
+      int columnNumber = 0;
+      if (after != null) {
+        preparedStatement.setInt(++columnNumber, after.getId());
+      }
+      preparedStatement.setInt(++columnNumber, limit);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          ids.add(resultSet.getInt(Artist.PRIMARY_KEY_NAME));
+        }
+      }
+    }
+    return ids;
+  }
+
 }
@@ -105,6 +105,7 @@ public class Band extends Artist {
         preparedStatement.setDate(++columnNumber, from);
         preparedStatement.execute();
       }
+      CatalogCache.invalidate(Band.this, connection);
     }
 
     /** {@inheritDoc} */
@@ -168,6 +169,7 @@ public class Band extends Artist {
           preparedStatement.execute();
         }
       }
+      CatalogCache.invalidate(Band.this, connection);
     }
     //#endregion Database operations
 
@@ -249,6 +251,8 @@ public class Band extends Artist {
   public static final String VIEW_ID_COLUMN = "id";
   /** View name column in the database. */
   public static final String VIEW_NAME_COLUMN = "name";
+  /** View member musician id column in the database. */
+  public static final String VIEW_MUSICIAN_ID_COLUMN = "idMusician";
   //#endregion Static attributes
 
   //#region Instance attributes
@@ -257,7 +261,7 @@ public class Band extends Artist {
   //#endregion Instance attributes
 
   //#region Constructors
-  private Band(final Integer id, final String name) {
+  Band(final Integer id, final String name) {
     super(id, name);
   }
 
@@ -375,6 +379,10 @@ public class Band extends Artist {
    * @throws NoResultException If no Band by this id was found.
    */
   public static Band findById(final Integer id, final Connection connection) throws SQLException, NoResultException {
+    Band cached = IdentityMap.lookup(Band.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where %s = ?",
@@ -389,7 +397,7 @@ public class Band extends Artist {
         }
         Band band = new Band(id, resultSet.getString(VIEW_NAME_COLUMN));
         band.fetchMembers(connection);
-        return band;
+        return IdentityMap.register(band);
       }
     }
   }
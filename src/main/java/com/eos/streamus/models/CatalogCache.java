@@ -0,0 +1,563 @@
+package com.eos.streamus.models;
+
+import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.utils.Pair;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Process-wide, bounded cache of catalog entities ({@link Song}, {@link Film}, {@link Album}, {@link Artist},
+ * {@link Series}...), keyed by entity family and id like the {@link IdentityMap}.
+ * Entries are evicted least recently used first once the cache holds more than its maximum number of entries or more
+ * than its maximum estimated footprint, and expire after a time to live.
+ * Cached entities are shared between requests, so they must only be read: requests that modify an entity must load it
+ * with its finder instead.
+ * Saving or deleting an entity invalidates every cached entity that references it, e.g. saving a {@link Song}
+ * invalidates the {@link Album}s it is a track of. Inside a transaction, an entity may be loaded again and cached
+ * before the change is committed, so the entities invalidated by a transaction are invalidated again when it is
+ * committed through {@link #commit(Connection)}. Invalidations are also notified on the {@value #INVALIDATION_CHANNEL}
+ * channel as part of the write, so that PostgreSQL delivers them to every node once the write is committed, and
+ * {@link #invalidateNotified(String)} applies them. Notifications missed by a node are bounded by the time to live.
+ * An entry may also hold the serialized JSON of its entity, along with the version of the entity it was serialized
+ * from, so that unchanged entities are written to responses without being serialized again.
+ * Lookups do not take any lock. Invalidations only exclude the insertion of entries while they start.
+ */
+public final class CatalogCache {
+  /** Notification channel of the invalidations. */
+  public static final String INVALIDATION_CHANNEL = "catalog_invalidations";
+
+  /**
+   * Loads an entity on a cache miss.
+   *
+   * @param <T> Type of the loaded entity.
+   */
+  @FunctionalInterface
+  public interface Loader<T> {
+    /**
+     * Loads the entity from the database.
+     *
+     * @return Loaded entity.
+     * @throws SQLException      If an error occurred while performing the database operation.
+     * @throws NoResultException If the entity does not exist.
+     */
+    T load() throws SQLException, NoResultException;
+  }
+
+  /** Serialized JSON of an entity, with the version of the entity it was serialized from. */
+  private static final class SerializedJson {
+    /** UTF-8 encoded JSON. */
+    private final byte[] json;
+    /** Version of the entity the JSON was serialized from. */
+    private final Timestamp version;
+
+    private SerializedJson(final byte[] json, final Timestamp version) {
+      this.json = json;
+      this.version = version;
+    }
+  }
+
+  /** Cached entity, with the keys of every entity it references and its estimated footprint. */
+  private static final class CacheEntry {
+    /** Cached entity. */
+    private final Object entity;
+    /** Keys of the entities reachable from the cached entity, itself included. */
+    private final Set<Pair<Class<?>, Integer>> references;
+    /** Estimated footprint in bytes, excluding the serialized JSON. */
+    private final long bytes;
+    /** Monotonic time at which the entity was loaded, in nanoseconds. */
+    private final long loadedAt;
+    /** Monotonic time at which the entry was last used, in nanoseconds. */
+    private volatile long lastUsedAt;
+    /** Serialized JSON of the entity, or null if it was not serialized yet. */
+    private volatile SerializedJson serializedJson;
+
+    private CacheEntry(final Object entity, final Set<Pair<Class<?>, Integer>> references, final long bytes) {
+      this.entity = entity;
+      this.references = references;
+      this.bytes = bytes;
+      this.loadedAt = System.nanoTime();
+      this.lastUsedAt = loadedAt;
+    }
+
+    /** @return Estimated footprint in bytes, including the serialized JSON. */
+    private long totalBytes() {
+      SerializedJson serialized = serializedJson;
+      return serialized == null ? bytes : bytes + serialized.json.length;
+    }
+  }
+
+  //#region Static attributes
+  /** Estimated footprint of an object header and its fields. */
+  private static final long OBJECT_BYTES = 64;
+  /** Estimated footprint of a String, excluding its characters. */
+  private static final long STRING_BYTES = 40;
+  /** Default maximum number of cached entities. */
+  static final int DEFAULT_MAX_ENTRIES = 10_000;
+  /** Default maximum estimated footprint of the cache. */
+  static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  /** Default time to live of the entries, in seconds. */
+  static final long DEFAULT_TTL_SECONDS = 300;
+  /** Share of the bounds the cache is brought back to when they are exceeded, so that evictions are batched. */
+  private static final double EVICTION_TARGET = 0.9;
+
+  /** Cached entities by family and id. */
+  private static final Map<Pair<Class<?>, Integer>, CacheEntry> ENTRIES = new ConcurrentHashMap<>();
+  /**
+   * Read by the insertions of entries, written by the start of invalidations, so that no entity loaded before an
+   * invalidation is cached after it.
+   */
+  private static final ReadWriteLock GENERATION_LOCK = new ReentrantReadWriteLock();
+  /** Taken by the thread evicting entries, so that the others do not evict at the same time. */
+  private static final ReentrantLock EVICTION_LOCK = new ReentrantLock();
+  /** Keys invalidated by each open transaction, invalidated again on commit. */
+  private static final Map<Connection, Set<Pair<Class<?>, Integer>>> TRANSACTIONS =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  /** Estimated footprint of the cached entities. */
+  private static final AtomicLong BYTES = new AtomicLong();
+  /** Lookups answered from the cache since startup. */
+  private static final AtomicLong HITS = new AtomicLong();
+  /** Lookups that had to go to the database since startup. */
+  private static final AtomicLong MISSES = new AtomicLong();
+  /** JSON lookups answered with already serialized bytes since startup. */
+  private static final AtomicLong SERIALIZED_HITS = new AtomicLong();
+  /** Entries evicted to respect the bounds, or expired, since startup. */
+  private static final AtomicLong EVICTIONS = new AtomicLong();
+  /** Entries invalidated by a write since startup. */
+  private static final AtomicLong INVALIDATIONS = new AtomicLong();
+
+  /** Whether the cache is used at all. */
+  private static volatile boolean enabled = true;
+  /** Maximum number of cached entities. */
+  private static volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+  /** Maximum estimated footprint of the cache. */
+  private static volatile long maxBytes = DEFAULT_MAX_BYTES;
+  /** Time to live of the entries, in nanoseconds. */
+  private static volatile long ttlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TTL_SECONDS);
+  /** Incremented on every invalidation, so that entities loaded before it are not cached after it. */
+  private static long generation;
+  //#endregion Static attributes
+
+  private CatalogCache() {
+  }
+
+  //#region Configuration and counters
+
+  /**
+   * Sets the bounds of the cache, evicting entries if they are now exceeded.
+   *
+   * @param enabled    Whether the cache is used. Disabling it clears it.
+   * @param maxEntries Maximum number of cached entities.
+   * @param maxBytes   Maximum estimated footprint of the cache, in bytes.
+   * @param ttlSeconds Time to live of the entries, in seconds.
+   */
+  public static synchronized void configure(final boolean enabled, final int maxEntries, final long maxBytes,
+                                            final long ttlSeconds) {
+    CatalogCache.enabled = enabled;
+    CatalogCache.maxEntries = maxEntries;
+    CatalogCache.maxBytes = maxBytes;
+    CatalogCache.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    if (enabled) {
+      evictExceedingEntries();
+    } else {
+      clear();
+    }
+  }
+
+  /** Removes every entry from the cache. */
+  public static void clear() {
+    nextGeneration();
+    for (Map.Entry<Pair<Class<?>, Integer>, CacheEntry> entry : ENTRIES.entrySet()) {
+      remove(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /** @return Lookups answered from the cache since startup. */
+  public static long getHits() {
+    return HITS.get();
+  }
+
+  /** @return Lookups that had to go to the database since startup. */
+  public static long getMisses() {
+    return MISSES.get();
+  }
+
+  /** @return JSON lookups answered with already serialized bytes since startup. */
+  public static long getSerializedHits() {
+    return SERIALIZED_HITS.get();
+  }
+
+  /** @return Entries evicted to respect the bounds, or expired, since startup. */
+  public static long getEvictions() {
+    return EVICTIONS.get();
+  }
+
+  /** @return Entries invalidated by a write since startup. */
+  public static long getInvalidations() {
+    return INVALIDATIONS.get();
+  }
+
+  /** @return Number of cached entities. */
+  public static int getSize() {
+    return ENTRIES.size();
+  }
+
+  /** @return Estimated footprint of the cached entities, in bytes. */
+  public static long getEstimatedBytes() {
+    return BYTES.get();
+  }
+  //#endregion Configuration and counters
+
+  //#region Lookups
+
+  /**
+   * Gets an entity from the cache, loading and caching it on a miss.
+   * If an entity is invalidated while it loads, the loaded entity is returned but not cached, as it may already be
+   * stale.
+   *
+   * @param type   Expected type of the entity.
+   * @param id     Id of the entity.
+   * @param loader Loads the entity on a miss.
+   * @param <T>    Expected type of the entity.
+   * @return Cached or loaded entity.
+   * @throws SQLException      If an error occurred while loading the entity.
+   * @throws NoResultException If the entity does not exist.
+   */
+  public static <T> T get(final Class<T> type, final int id, final Loader<T> loader)
+      throws SQLException, NoResultException {
+    if (!enabled) {
+      return loader.load();
+    }
+    Pair<Class<?>, Integer> key = new Pair<>(IdentityMap.familyOf(type), id);
+    CacheEntry entry = find(key);
+    if (entry != null && type.isInstance(entry.entity)) {
+      HITS.incrementAndGet();
+      return type.cast(entry.entity);
+    }
+    long loadGeneration = currentGeneration();
+    MISSES.incrementAndGet();
+    T entity = loader.load();
+    Set<Pair<Class<?>, Integer>> references = new HashSet<>();
+    CacheEntry loaded = new CacheEntry(entity, references, estimate(entity, references));
+    GENERATION_LOCK.readLock().lock();
+    try {
+      if (enabled && loadGeneration == generation) {
+        BYTES.addAndGet(loaded.bytes);
+        CacheEntry previous = ENTRIES.put(key, loaded);
+        if (previous != null) {
+          BYTES.addAndGet(-previous.totalBytes());
+        }
+      }
+    } finally {
+      GENERATION_LOCK.readLock().unlock();
+    }
+    evictExceedingEntries();
+    return entity;
+  }
+
+  /**
+   * Gets the serialized JSON of an entity from the cache, serializing and caching it on a miss.
+   * Serialized JSON is only reused while the version of the cached entity, i.e. its update or creation timestamp, is
+   * the one it was serialized from.
+   *
+   * @param type       Expected type of the entity.
+   * @param id         Id of the entity.
+   * @param loader     Loads the entity on a miss.
+   * @param serializer Serializes the entity to UTF-8 encoded JSON.
+   * @param <T>        Expected type of the entity.
+   * @return Serialized JSON of the cached or loaded entity.
+   * @throws SQLException      If an error occurred while loading the entity.
+   * @throws NoResultException If the entity does not exist.
+   */
+  public static <T> byte[] getJson(final Class<T> type, final int id, final Loader<T> loader,
+                                   final Function<? super T, byte[]> serializer)
+      throws SQLException, NoResultException {
+    if (!enabled) {
+      return serializer.apply(loader.load());
+    }
+    Pair<Class<?>, Integer> key = new Pair<>(IdentityMap.familyOf(type), id);
+    CacheEntry cached = find(key);
+    if (cached != null && type.isInstance(cached.entity)) {
+      SerializedJson serialized = cached.serializedJson;
+      if (serialized != null && Objects.equals(serialized.version, versionOf(cached.entity))) {
+        SERIALIZED_HITS.incrementAndGet();
+        return serialized.json;
+      }
+    }
+    T entity = get(type, id, loader);
+    byte[] json = serializer.apply(entity);
+    SerializedJson serialized = new SerializedJson(json, versionOf(entity));
+    // Updating the entry and its footprint atomically with respect to its removal
+    ENTRIES.computeIfPresent(key, (entryKey, entry) -> {
+      if (entry.entity == entity) {
+        long previousBytes = entry.totalBytes();
+        entry.serializedJson = serialized;
+        BYTES.addAndGet(entry.totalBytes() - previousBytes);
+      }
+      return entry;
+    });
+    evictExceedingEntries();
+    return json;
+  }
+
+  /**
+   * Finds a live entry, removing it if it expired.
+   *
+   * @param key Key of the entry.
+   * @return Live entry, or null if there is none.
+   */
+  private static CacheEntry find(final Pair<Class<?>, Integer> key) {
+    CacheEntry entry = ENTRIES.get(key);
+    if (entry == null) {
+      return null;
+    }
+    long now = System.nanoTime();
+    if (now - entry.loadedAt >= ttlNanos) {
+      if (remove(key, entry)) {
+        EVICTIONS.incrementAndGet();
+      }
+      return null;
+    }
+    entry.lastUsedAt = now;
+    return entry;
+  }
+
+  /**
+   * Invalidates every cached entity that references an entity, the entity itself included, and notifies the
+   * invalidation to every node once the write is committed. If the connection is in a transaction, the entity is
+   * invalidated again when it is committed through {@link #commit(Connection)}.
+   *
+   * @param entity     Entity that was saved or deleted.
+   * @param connection Connection the entity was written with.
+   * @throws SQLException If the invalidation could not be notified.
+   */
+  static void invalidate(final Entity entity, final Connection connection) throws SQLException {
+    if (entity.getId() == null) {
+      return;
+    }
+    Pair<Class<?>, Integer> key = new Pair<>(IdentityMap.familyOf(entity.getClass()), entity.getId());
+    invalidate(key);
+    if (!connection.getAutoCommit()) {
+      TRANSACTIONS.computeIfAbsent(connection, transaction -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement("select pg_notify(?, ?)")) {
+      preparedStatement.setString(1, INVALIDATION_CHANNEL);
+      preparedStatement.setString(2, String.format("%s:%d", key.getKey().getName(), key.getValue()));
+      preparedStatement.execute();
+    }
+  }
+
+  /**
+   * Commits the transaction of a connection, then invalidates again the entities it invalidated, which may have been
+   * loaded and cached again before the commit.
+   *
+   * @param connection Connection in a transaction.
+   * @throws SQLException If the transaction could not be committed.
+   */
+  public static void commit(final Connection connection) throws SQLException {
+    connection.commit();
+    Set<Pair<Class<?>, Integer>> keys = TRANSACTIONS.remove(connection);
+    if (keys != null) {
+      for (Pair<Class<?>, Integer> key : keys) {
+        invalidate(key);
+      }
+    }
+  }
+
+  /**
+   * Applies an invalidation notified on the {@value #INVALIDATION_CHANNEL} channel, by this node or another one.
+   *
+   * @param payload Payload of the notification: entity family and id, separated by a colon.
+   */
+  public static void invalidateNotified(final String payload) {
+    int separator = payload.lastIndexOf(':');
+    try {
+      Class<?> family = Class.forName(payload.substring(0, separator));
+      if (!Entity.class.isAssignableFrom(family)) {
+        throw new IllegalArgumentException(String.format("%s is not an entity", family.getName()));
+      }
+      invalidate(new Pair<>(family, Integer.parseInt(payload.substring(separator + 1))));
+    } catch (ClassNotFoundException | RuntimeException exception) {
+      Logger.getLogger(CatalogCache.class.getName())
+            .log(Level.WARNING, String.format("Ignored an invalid catalog invalidation %s", payload), exception);
+    }
+  }
+
+  /**
+   * Invalidates every cached entity that references an entity, the entity itself included.
+   *
+   * @param key Family and id of the entity.
+   */
+  private static void invalidate(final Pair<Class<?>, Integer> key) {
+    nextGeneration();
+    for (Map.Entry<Pair<Class<?>, Integer>, CacheEntry> entry : ENTRIES.entrySet()) {
+      if (entry.getValue().references.contains(key) && remove(entry.getKey(), entry.getValue())) {
+        INVALIDATIONS.incrementAndGet();
+      }
+    }
+  }
+
+  private static long currentGeneration() {
+    GENERATION_LOCK.readLock().lock();
+    try {
+      return generation;
+    } finally {
+      GENERATION_LOCK.readLock().unlock();
+    }
+  }
+
+  /** Starts a new generation, once every insertion of the current one is done. */
+  private static void nextGeneration() {
+    GENERATION_LOCK.writeLock().lock();
+    try {
+      generation++;
+    } finally {
+      GENERATION_LOCK.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Removes an entry if it is still cached.
+   *
+   * @param key   Key of the entry.
+   * @param entry Entry to remove.
+   * @return Whether the entry was removed.
+   */
+  private static boolean remove(final Pair<Class<?>, Integer> key, final CacheEntry entry) {
+    if (!ENTRIES.remove(key, entry)) {
+      return false;
+    }
+    BYTES.addAndGet(-entry.totalBytes());
+    return true;
+  }
+
+  /**
+   * Evicts least recently used entries, once the bounds are exceeded, until the cache is back to
+   * {@link #EVICTION_TARGET} of its bounds. Does nothing if another thread is already evicting.
+   */
+  private static void evictExceedingEntries() {
+    if ((ENTRIES.size() <= maxEntries && BYTES.get() <= maxBytes) || !EVICTION_LOCK.tryLock()) {
+      return;
+    }
+    try {
+      // Last uses are read once, as they keep changing while the entries are sorted
+      List<Pair<Long, Map.Entry<Pair<Class<?>, Integer>, CacheEntry>>> entries = new ArrayList<>(ENTRIES.size());
+      for (Map.Entry<Pair<Class<?>, Integer>, CacheEntry> entry : ENTRIES.entrySet()) {
+        entries.add(new Pair<>(entry.getValue().lastUsedAt, entry));
+      }
+      entries.sort(Comparator.comparingLong(Pair::getKey));
+      long targetEntries = (long) (maxEntries * EVICTION_TARGET);
+      long targetBytes = (long) (maxBytes * EVICTION_TARGET);
+      for (Pair<Long, Map.Entry<Pair<Class<?>, Integer>, CacheEntry>> candidate : entries) {
+        if (ENTRIES.size() <= targetEntries && BYTES.get() <= targetBytes) {
+          break;
+        }
+        if (remove(candidate.getValue().getKey(), candidate.getValue().getValue())) {
+          EVICTIONS.incrementAndGet();
+        }
+      }
+    } finally {
+      EVICTION_LOCK.unlock();
+    }
+  }
+  //#endregion Lookups
+
+  //#region Footprint
+
+  /**
+   * Returns the version of an entity, i.e. the timestamp of its last change as known by the database.
+   *
+   * @param entity Cached entity.
+   * @return Update timestamp of a {@link Collection}, creation timestamp of a {@link Resource}, null otherwise.
+   */
+  private static Timestamp versionOf(final Object entity) {
+    if (entity instanceof Collection) {
+      return ((Collection) entity).getUpdatedAt();
+    }
+    if (entity instanceof Resource) {
+      return ((Resource) entity).getCreatedAt();
+    }
+    return null;
+  }
+
+  /**
+   * Walks the graph of an entity, collecting the keys of the entities it references and estimating its footprint.
+   *
+   * @param object     Entity, or any object of its graph.
+   * @param references Keys collected so far. Entities already collected are not walked again.
+   * @return Estimated footprint of the part of the graph not walked yet, in bytes.
+   */
+  private static long estimate(final Object object, final Set<Pair<Class<?>, Integer>> references) {
+    if (object instanceof Entity && ((Entity) object).getId() != null
+        && !references.add(new Pair<>(IdentityMap.familyOf(object.getClass()), ((Entity) object).getId()))) {
+      return 0;
+    }
+    long estimate = OBJECT_BYTES;
+    if (object instanceof Resource) {
+      Resource resource = (Resource) object;
+      estimate += estimate(resource.getName()) + estimate(resource.getPath());
+    } else if (object instanceof Collection) {
+      Collection collection = (Collection) object;
+      estimate += estimate(collection.getName());
+      for (Pair<Integer, Resource> content : collection.getContent()) {
+        estimate += OBJECT_BYTES + estimate(content.getValue(), references);
+      }
+      if (collection instanceof Album) {
+        for (Artist artist : ((Album) collection).getArtists()) {
+          estimate += estimate(artist, references);
+        }
+      } else if (collection instanceof SongPlaylist) {
+        estimate += estimate(((SongPlaylist) collection).getUser(), references);
+      }
+    } else if (object instanceof Artist) {
+      Artist artist = (Artist) object;
+      estimate += estimate(artist.getName());
+      for (Album album : artist.getAlbums()) {
+        estimate += estimate(album, references);
+      }
+      if (artist instanceof Musician && ((Musician) artist).getPerson() != null) {
+        estimate += estimate(((Musician) artist).getPerson(), references);
+      } else if (artist instanceof Band) {
+        for (Band.Member member : ((Band) artist).getMembers()) {
+          estimate += OBJECT_BYTES + estimate(member.getMusician(), references);
+        }
+      }
+    } else if (object instanceof Person) {
+      Person person = (Person) object;
+      estimate += estimate(person.getFirstName()) + estimate(person.getLastName());
+    }
+    return estimate;
+  }
+
+  /**
+   * Estimates the footprint of a String.
+   *
+   * @param string String, possibly null.
+   * @return Estimated footprint in bytes.
+   */
+  private static long estimate(final String string) {
+    return string == null ? 0 : STRING_BYTES + 2L * string.length();
+  }
+  //#endregion Footprint
+
+}
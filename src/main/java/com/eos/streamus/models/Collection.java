@@ -149,6 +149,8 @@ public abstract class Collection implements SavableDeletableEntity {
         this.updatedAt = resultSet.getTimestamp(1);
       }
     }
+    CatalogCache.invalidate(this, connection);
+    IdentityMap.forget(this);
   }
   //#endregion Database operations
 
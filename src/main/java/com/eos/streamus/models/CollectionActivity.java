@@ -8,8 +8,12 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class CollectionActivity extends Activity {
   //#region Static attributes
@@ -105,6 +109,25 @@ public class CollectionActivity extends Activity {
   public List<Pair<Integer, Pair<Resource, ResourceActivity>>> getContent() {
     return resourceActivities;
   }
+
+  /**
+   * Returns the {@link Resource} that follows the current one, i.e. the one {@link #continueOrNext(Connection)} would
+   * return once the current one is over, without starting anything.
+   *
+   * @return Next Resource of CollectionActivity, or null if the current one is the last.
+   */
+  public Resource peekNext() {
+    boolean currentFound = false;
+    for (Pair<Integer, Pair<Resource, ResourceActivity>> entry : resourceActivities) {
+      if (currentFound) {
+        return entry.getValue().getKey();
+      }
+      ResourceActivity resourceActivity = entry.getValue().getValue();
+      currentFound = resourceActivity == null
+          || resourceActivity.getPausedAt() < resourceActivity.getResource().getDuration();
+    }
+    return null;
+  }
   //#endregion Getters and Setters
 
   //#region Database operations
@@ -159,7 +182,8 @@ public class CollectionActivity extends Activity {
   }
 
   /**
-   * Finds a CollectionActivity by id.
+   * Finds a CollectionActivity by id, with its {@link Collection}, {@link ResourceActivity}s, {@link UserActivity}s
+   * and {@link ActivityMessage}s. The number of queries does not depend on the size of the {@link Collection}.
    *
    * @param id         Id of CollectionActivity to find.
    * @param connection {@link Connection} to use to perform the operation.
@@ -169,6 +193,12 @@ public class CollectionActivity extends Activity {
    */
   public static CollectionActivity findById(final Integer id, final Connection connection)
       throws SQLException, NoResultException {
+    int collectionId;
+    List<Integer> numbers = new ArrayList<>();
+    List<Integer> resourceIds = new ArrayList<>();
+    List<Integer> resourceActivityIds = new ArrayList<>();
+    List<Timestamp> startedAts = new ArrayList<>();
+    List<Integer> pausedAts = new ArrayList<>();
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where %s = ?;",
@@ -181,26 +211,59 @@ public class CollectionActivity extends Activity {
         if (!resultSet.next()) {
           throw new NoResultException();
         }
-        CollectionActivity collectionActivity = new CollectionActivity(
-            id,
-            CollectionDAO.findById(resultSet.getInt(COLLECTION_ID), connection)
-        );
+        collectionId = resultSet.getInt(COLLECTION_ID);
         do {
-          collectionActivity.resourceActivities.add(
-              new Pair<>(
-                  resultSet.getInt(VIEW_NUMBER_ID),
-                  new Pair<>(
-                      ResourceDAO.findById(resultSet.getInt(VIEW_RESOURCE_ID), connection),
-                      ResourceActivity.findById(resultSet.getInt(VIEW_RESOURCE_ACTIVITY_ID), connection)
-                  )
-              )
-          );
+          numbers.add(resultSet.getInt(VIEW_NUMBER_ID));
+          resourceIds.add(resultSet.getInt(VIEW_RESOURCE_ID));
+          int resourceActivityId = resultSet.getInt(VIEW_RESOURCE_ACTIVITY_ID);
+          resourceActivityIds.add(resultSet.wasNull() ? null : resourceActivityId);
+          startedAts.add(resultSet.getTimestamp(ResourceActivity.STARTED_AT_COLUMN));
+          pausedAts.add(resultSet.getInt(ResourceActivity.PAUSED_AT_COLUMN));
         } while (resultSet.next());
-        collectionActivity.fetchUserActivities(connection);
-        collectionActivity.fetchActivityMessages(connection);
-        return collectionActivity;
       }
     }
+
+    CollectionActivity collectionActivity = new CollectionActivity(
+        id,
+        CollectionDAO.findById(collectionId, connection)
+    );
+
+    // Resources are the content of the Collection, only fetch the ones it does not hold
+    Map<Integer, Resource> resources = new HashMap<>();
+    for (Pair<Integer, Resource> entry : collectionActivity.collection.getContent()) {
+      resources.put(entry.getValue().getId(), entry.getValue());
+    }
+    List<Integer> missingResourceIds = new ArrayList<>();
+    for (Integer resourceId : resourceIds) {
+      if (!resources.containsKey(resourceId)) {
+        missingResourceIds.add(resourceId);
+      }
+    }
+    resources.putAll(ResourceDAO.findByIds(missingResourceIds, connection));
+
+    Map<Integer, Activity> activities = new LinkedHashMap<>();
+    activities.put(id, collectionActivity);
+    for (int i = 0; i < numbers.size(); i++) {
+      Resource resource = resources.get(resourceIds.get(i));
+      if (resource == null) {
+        throw new NoResultException();
+      }
+      ResourceActivity resourceActivity = null;
+      if (resourceActivityIds.get(i) != null) {
+        resourceActivity = new ResourceActivity(
+            resourceActivityIds.get(i),
+            resource,
+            startedAts.get(i),
+            collectionActivity
+        );
+        resourceActivity.setPausedAt(pausedAts.get(i));
+        activities.put(resourceActivity.getId(), resourceActivity);
+      }
+      collectionActivity.resourceActivities.add(new Pair<>(numbers.get(i), new Pair<>(resource, resourceActivity)));
+    }
+    fetchUserActivities(activities, connection);
+    fetchActivityMessages(activities, connection);
+    return collectionActivity;
   }
 
   public static CollectionActivity findByUserAndCollectionIds(final Integer userId, final Integer collectionId,
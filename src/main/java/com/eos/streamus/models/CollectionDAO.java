@@ -3,9 +3,14 @@ package com.eos.streamus.models;
 import com.eos.streamus.exceptions.NoResultException;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 
 public final class CollectionDAO {
+  /** Discriminator column name, holding the table name of the concrete {@link Collection} type. */
+  private static final String TYPE_COLUMN = "collectionType";
+
   private CollectionDAO() {
   }
 
@@ -20,23 +25,60 @@ public final class CollectionDAO {
    */
   public static Collection findById(final Integer id, final Connection connection)
       throws SQLException, NoResultException {
-    Collection collection = null;
-    try {
-      collection = VideoPlaylist.findById(id, connection);
-    } catch (NoResultException e) {
-      // Do nothing, could be other collection types
+    Collection cached = IdentityMap.lookup(Collection.class, id);
+    if (cached != null) {
+      return cached;
     }
-    if (collection == null) {
-      try {
-        collection = Series.findById(id, connection);
-      } catch (NoResultException e) {
-        // Do nothing, could be other collection types
-      }
+    String type = findType(id, connection);
+    if (VideoPlaylist.TABLE_NAME.equals(type)) {
+      return VideoPlaylist.findById(id, connection);
+    } else if (Series.TABLE_NAME.equals(type)) {
+      return Series.findById(id, connection);
+    } else if (SongPlaylist.TABLE_NAME.equals(type)) {
+      return SongPlaylist.findById(id, connection);
+    } else if (Album.TABLE_NAME.equals(type)) {
+      return Album.findById(id, connection);
     }
-    if (collection == null) {
-      collection = SongPlaylist.findById(id, connection);
+    throw new NoResultException();
+  }
+
+  /**
+   * Resolves the concrete type of a {@link Collection} in a single query.
+   *
+   * @param id         Id of the {@link Collection}.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @return Table name of the concrete type, or null if no {@link Collection} of a known type has this id.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  static String findType(final Integer id, final Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select case when %s.%s is not null then '%s' when %s.%s is not null then '%s' " +
+                "when %s.%s is not null then '%s' when %s.%s is not null then '%s' end as %s from %s " +
+                "left join %s on %s.%s = %s.%s left join %s on %s.%s = %s.%s " +
+                "left join %s on %s.%s = %s.%s left join %s on %s.%s = %s.%s " +
+                "where %s.%s = ?;",
+            VideoPlaylist.TABLE_NAME, VideoPlaylist.PRIMARY_KEY_NAME, VideoPlaylist.TABLE_NAME,
+            Series.TABLE_NAME, Series.PRIMARY_KEY_NAME, Series.TABLE_NAME,
+            SongPlaylist.TABLE_NAME, SongPlaylist.PRIMARY_KEY_NAME, SongPlaylist.TABLE_NAME,
+            Album.TABLE_NAME, Album.PRIMARY_KEY_NAME, Album.TABLE_NAME,
+            TYPE_COLUMN, Collection.TABLE_NAME,
+            VideoPlaylist.TABLE_NAME, VideoPlaylist.TABLE_NAME, VideoPlaylist.PRIMARY_KEY_NAME,
+            Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME,
+            Series.TABLE_NAME, Series.TABLE_NAME, Series.PRIMARY_KEY_NAME,
+            Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME,
+            SongPlaylist.TABLE_NAME, SongPlaylist.TABLE_NAME, SongPlaylist.PRIMARY_KEY_NAME,
+            Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME,
+            Album.TABLE_NAME, Album.TABLE_NAME, Album.PRIMARY_KEY_NAME,
+            Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME,
+            Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME
+        )
+    )) {
+      preparedStatement.setInt(1, id);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        return resultSet.next() ? resultSet.getString(TYPE_COLUMN) : null;
+      }
     }
-    return collection;
   }
 
 }
@@ -17,6 +17,8 @@ public interface DeletableEntity extends Deletable, Entity {
       preparedStatement.setInt(1, getId());
       preparedStatement.execute();
     }
+    CatalogCache.invalidate(this, connection);
+    IdentityMap.forget(this);
   }
 
 }
@@ -0,0 +1,18 @@
+package com.eos.streamus.models;
+
+/**
+ * Receives entities one at a time as they are read from the database.
+ *
+ * @param <T> Type of the entities.
+ * @param <E> Type of the exception the consumer may throw.
+ */
+@FunctionalInterface
+public interface EntityConsumer<T, E extends Exception> {
+  /**
+   * Receives an entity.
+   *
+   * @param entity Entity read from the database.
+   * @throws E If the entity could not be consumed. Reading stops.
+   */
+  void accept(T entity) throws E;
+}
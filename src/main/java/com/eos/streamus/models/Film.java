@@ -9,13 +9,15 @@ import java.util.List;
 public class Film extends Video {
   //#region Static attributes
   /** Table name in the database. */
-  private static final String TABLE_NAME = "Film";
+  static final String TABLE_NAME = "Film";
   /** View name in the database. */
   private static final String VIEW_NAME = "vFilm";
   /** Creation function name in the database. */
   private static final String CREATION_FUNCTION_NAME = "createFilm";
   /** Primary key name in the database. */
-  private static final String PRIMARY_KEY_NAME = "idVideo";
+  static final String PRIMARY_KEY_NAME = "idVideo";
+  /** Number of rows fetched at a time when streaming Films. */
+  private static final int FETCH_SIZE = 100;
   //#endregion Static attributes
 
   //#region Constructors
@@ -57,6 +59,10 @@ public class Film extends Video {
    * @throws NoResultException If no film by given id was found.
    */
   public static Film findById(final int id, final Connection connection) throws SQLException, NoResultException {
+    Film cached = IdentityMap.lookup(Film.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement statement = connection.prepareStatement(
         String.format(
             "select * from %s where %s = ?",
@@ -76,25 +82,81 @@ public class Film extends Video {
         );
         film.setId(rs.getInt(Resource.ID_COLUMN));
         film.setCreatedAt(rs.getTimestamp(Resource.CREATED_AT_COLUMN));
-        return film;
+        return IdentityMap.register(film);
       }
     }
   }
 
   /**
-   * Fetches all Films from database.
+   * Fetches a page of Films from database, sorted by creation timestamp then id.
    *
    * @param connection {@link Connection} to use to perform the operation.
-   * @return List of all Films.
-   * @throws SQLException If an error occurred while performing the database operation.
+   * @param after      Cursor of the page, or null for the first page.
+   * @param limit      Maximum number of Films in the page.
+   * @return Page of Films.
+   * @throws SQLException             If an error occurred while performing the database operation.
+   * @throws IllegalArgumentException If the cursor has no creation timestamp.
    */
-  public static List<Film> all(final Connection connection) throws SQLException {
-    List<Film> allFilms = new ArrayList<>();
+  public static Page<Film> page(final Connection connection, final PageCursor after, final int limit)
+      throws SQLException {
+    List<Film> films = new ArrayList<>();
+    String nextCursor = forEach(connection, after, limit, films::add);
+    return new Page<>(films, nextCursor);
+  }
+
+  /**
+   * Reads a page of Films from database, sorted by creation timestamp then id, and hands them to a consumer one at a
+   * time. Rows are fetched through a cursor, {@link #FETCH_SIZE} at a time, so the first Films reach the consumer
+   * before the last rows are read and the Films never all have to be held in memory.
+   *
+   * @param connection {@link Connection} to use to perform the operation. Its auto-commit mode is restored after.
+   * @param after      Cursor of the page, or null for the first page.
+   * @param limit      Maximum number of Films in the page, or 0 for all remaining Films.
+   * @param consumer   Consumer of the Films.
+   * @param <E>        Type of the exception the consumer may throw.
+   * @return Encoded cursor of the next page, or null if this page is the last one.
+   * @throws SQLException             If an error occurred while performing the database operation.
+   * @throws E                        If the consumer failed. Remaining rows are not read.
+   * @throws IllegalArgumentException If the cursor has no creation timestamp.
+   */
+  public static <E extends Exception> String forEach(final Connection connection, final PageCursor after,
+                                                     final int limit, final EntityConsumer<Film, E> consumer)
+      throws SQLException, E {
+    if (after != null && after.getCreatedAt() == null) {
+      throw new IllegalArgumentException("Films are paged by creation timestamp");
+    }
+    boolean autoCommit = connection.getAutoCommit();
+    // The driver only fetches rows through a cursor outside of auto-commit mode
+    connection.setAutoCommit(false);
     try (PreparedStatement preparedStatement = connection.prepareStatement(
-        String.format("select * from %s", VIEW_NAME)
+        String.format(
+            "select * from %s%s order by %s, %s%s",
+            VIEW_NAME,
+            after == null ? "" : String.format(
+                " where (%s, %s) > (?, ?)", Resource.CREATED_AT_COLUMN, Resource.ID_COLUMN
+            ),
+            Resource.CREATED_AT_COLUMN,
+            Resource.ID_COLUMN,
+            limit > 0 ? " limit ?" : ""
+        )
     )) {
+      int columnNumber = 0;
+      if (after != null) {
+        preparedStatement.setTimestamp(++columnNumber, after.getCreatedAt());
+        preparedStatement.setInt(++columnNumber, after.getId());
+      }
+      if (limit > 0) {
+        // One more row tells whether there is a next page
+        preparedStatement.setInt(++columnNumber, limit + 1);
+      }
+      preparedStatement.setFetchSize(FETCH_SIZE);
       try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        Film last = null;
+        int count = 0;
         while (resultSet.next()) {
+          if (limit > 0 && count == limit) {
+            return new PageCursor(last.getCreatedAt(), last.getId()).encode();
+          }
           Film film = new Film(
               resultSet.getString(Resource.PATH_COLUMN),
               resultSet.getString(Resource.NAME_COLUMN),
@@ -102,11 +164,19 @@ public class Film extends Video {
           );
           film.setId(resultSet.getInt(Resource.ID_COLUMN));
           film.setCreatedAt(resultSet.getTimestamp(Resource.CREATED_AT_COLUMN));
-          allFilms.add(film);
+          consumer.accept(film);
+          last = film;
+          count++;
         }
+        return null;
+      }
+    } finally {
+      if (autoCommit) {
+        // Nothing was written, rolling back also ends the transaction if a row could not be read
+        connection.rollback();
+        connection.setAutoCommit(true);
       }
     }
-    return allFilms;
   }
   //#endregion Database operations
 }
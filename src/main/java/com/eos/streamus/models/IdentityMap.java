@@ -0,0 +1,150 @@
+package com.eos.streamus.models;
+
+import com.eos.streamus.utils.Pair;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Entities already materialized while serving a request, keyed by entity family and id.
+ * A family is the topmost model class of an entity, e.g. {@link Resource} for a {@link Song}, so that the same row
+ * is found whichever finder is used. The map is bound to the current thread by {@link #open()} and unbound by
+ * {@link #close()}. Finders only use it while it is open.
+ * Saving or deleting an entity evicts it, so that the next lookup reads the database again.
+ */
+public final class IdentityMap implements AutoCloseable {
+  /** IdentityMap bound to the current thread. */
+  private static final ThreadLocal<IdentityMap> CURRENT = new ThreadLocal<>();
+  /** Lookups answered from an IdentityMap since startup. */
+  private static final AtomicLong TOTAL_HITS = new AtomicLong();
+  /** Lookups that had to go to the database since startup. */
+  private static final AtomicLong TOTAL_MISSES = new AtomicLong();
+
+  /** Entities by family and id. */
+  private final Map<Pair<Class<?>, Integer>, Object> entities = new HashMap<>();
+  /** IdentityMap that was bound to the thread before this one. */
+  private final IdentityMap previous;
+  /** Lookups answered from this IdentityMap. */
+  private int hits;
+  /** Lookups that had to go to the database. */
+  private int misses;
+
+  private IdentityMap(final IdentityMap previous) {
+    this.previous = previous;
+  }
+
+  /**
+   * Binds a new IdentityMap to the current thread.
+   *
+   * @return The new IdentityMap, to close once the request is served.
+   */
+  public static IdentityMap open() {
+    IdentityMap identityMap = new IdentityMap(CURRENT.get());
+    CURRENT.set(identityMap);
+    return identityMap;
+  }
+
+  /** Unbinds this IdentityMap from the current thread. */
+  @Override
+  public void close() {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+  /** @return Lookups answered from this IdentityMap. */
+  public int getHits() {
+    return hits;
+  }
+
+  /** @return Lookups that had to go to the database. */
+  public int getMisses() {
+    return misses;
+  }
+
+  /** @return Lookups answered from an IdentityMap since startup. */
+  public static long getTotalHits() {
+    return TOTAL_HITS.get();
+  }
+
+  /** @return Lookups that had to go to the database since startup. */
+  public static long getTotalMisses() {
+    return TOTAL_MISSES.get();
+  }
+
+  /**
+   * Looks up an already materialized entity in the IdentityMap of the current thread.
+   *
+   * @param type Expected type of the entity.
+   * @param id   Id of the entity.
+   * @param <T>  Expected type of the entity.
+   * @return The entity, or null if no IdentityMap is open or it holds no entity of this type by this id.
+   */
+  static <T> T lookup(final Class<T> type, final int id) {
+    IdentityMap identityMap = CURRENT.get();
+    if (identityMap == null) {
+      return null;
+    }
+    Object entity = identityMap.entities.get(new Pair<>(familyOf(type), id));
+    if (type.isInstance(entity)) {
+      identityMap.hits++;
+      TOTAL_HITS.incrementAndGet();
+      return type.cast(entity);
+    }
+    identityMap.misses++;
+    TOTAL_MISSES.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Adds a materialized entity to the IdentityMap of the current thread, if one is open.
+   *
+   * @param entity Entity to add.
+   * @param <T>    Type of the entity.
+   * @return The given entity.
+   */
+  static <T extends Entity> T register(final T entity) {
+    IdentityMap identityMap = CURRENT.get();
+    if (identityMap != null && entity.getId() != null) {
+      identityMap.entities.put(new Pair<>(familyOf(entity.getClass()), entity.getId()), entity);
+    }
+    return entity;
+  }
+
+  /**
+   * Evicts an entity from the IdentityMap of the current thread, if one is open.
+   * Evicting a {@link Series} also evicts its episodes, as deleting it deletes them.
+   *
+   * @param entity Entity to evict.
+   */
+  static void forget(final Entity entity) {
+    IdentityMap identityMap = CURRENT.get();
+    if (identityMap == null || entity.getId() == null) {
+      return;
+    }
+    identityMap.entities.remove(new Pair<>(familyOf(entity.getClass()), entity.getId()));
+    if (entity instanceof Series) {
+      for (Pair<Integer, Resource> content : ((Series) entity).getContent()) {
+        forget(content.getValue());
+      }
+    }
+  }
+
+  /**
+   * Returns the topmost model class of a type, below {@link Object}.
+   *
+   * @param type Type of an entity.
+   * @return Family of the type.
+   */
+  static Class<?> familyOf(final Class<?> type) {
+    Class<?> family = type;
+    while (family.getSuperclass() != null && family.getSuperclass() != Object.class) {
+      family = family.getSuperclass();
+    }
+    return family;
+  }
+
+}
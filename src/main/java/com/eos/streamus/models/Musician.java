@@ -10,11 +10,11 @@ import java.sql.SQLException;
 public class Musician extends Artist {
   //#region Static attributes
   /** Table name in the database. */
-  private static final String TABLE_NAME = "Musician";
+  static final String TABLE_NAME = "Musician";
   /** Primary key name in the database. */
-  private static final String PRIMARY_KEY_NAME = "idArtist";
+  static final String PRIMARY_KEY_NAME = "idArtist";
   /** Person id column name in the database. */
-  private static final String PERSON_ID_COLUMN = "idPerson";
+  static final String PERSON_ID_COLUMN = "idPerson";
   /** Creation function name in the database. */
   private static final String CREATION_FUNCTION_NAME = "createMusician";
   /** View name in the database. */
@@ -36,7 +36,7 @@ public class Musician extends Artist {
     person = null;
   }
 
-  private Musician(final Integer id, final String name, final Person person) {
+  Musician(final Integer id, final String name, final Person person) {
     super(id, name);
     this.person = person;
   }
@@ -138,6 +138,10 @@ public class Musician extends Artist {
    */
   public static Musician findById(final Integer id, final Connection connection)
       throws SQLException, NoResultException {
+    Musician cached = IdentityMap.lookup(Musician.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where %s = ?;",
@@ -154,15 +158,16 @@ public class Musician extends Artist {
         String name = resultSet.getString(VIEW_NAME_COLUMN);
         int personId = resultSet.getInt(PERSON_ID_COLUMN);
         if (resultSet.wasNull()) {
-          return new Musician(retrievedId, name);
+          return IdentityMap.register(new Musician(retrievedId, name));
         } else if (name == null) {
-          return new Musician(retrievedId, Person.findById(personId, connection));
+          return IdentityMap.register(new Musician(retrievedId, Person.findById(personId, connection)));
         } else {
-          return new Musician(retrievedId, name, Person.findById(personId, connection));
+          return IdentityMap.register(new Musician(retrievedId, name, Person.findById(personId, connection)));
         }
       }
     }
   }
+
   //#endregion Database operations
 
   //#region Equals
@@ -0,0 +1,31 @@
+package com.eos.streamus.models;
+
+import java.util.List;
+
+/**
+ * Page of a list of entities, with the cursor of the next page.
+ *
+ * @param <T> Type of the entities.
+ */
+public final class Page<T> {
+  /** Entities of this page. */
+  private final List<T> content;
+  /** Encoded cursor of the next page, or null if this page is the last one. */
+  private final String nextCursor;
+
+  public Page(final List<T> content, final String nextCursor) {
+    this.content = content;
+    this.nextCursor = nextCursor;
+  }
+
+  /** @return Entities of this page. */
+  public List<T> getContent() {
+    return content;
+  }
+
+  /** @return Encoded cursor of the next page, or null if this page is the last one. */
+  public String getNextCursor() {
+    return nextCursor;
+  }
+
+}
@@ -0,0 +1,72 @@
+package com.eos.streamus.models;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a list of entities sorted by creation timestamp then id, or by id only for entities without creation
+ * timestamp. A page starts right after its cursor, so that paging stays as fast on the last page as on the first one.
+ * Cursors are handed out to clients as opaque strings by {@link #encode()}.
+ */
+public final class PageCursor {
+  /** Separator between the creation timestamp and the id in an encoded cursor. */
+  private static final String SEPARATOR = "/";
+
+  /** Creation timestamp of the last entity of the previous page, or null if entities are sorted by id only. */
+  private final Timestamp createdAt;
+  /** Id of the last entity of the previous page. */
+  private final int id;
+
+  public PageCursor(final Timestamp createdAt, final int id) {
+    this.createdAt = createdAt;
+    this.id = id;
+  }
+
+  public PageCursor(final int id) {
+    this(null, id);
+  }
+
+  /** @return Creation timestamp of the last entity of the previous page, or null if sorted by id only. */
+  public Timestamp getCreatedAt() {
+    return createdAt;
+  }
+
+  /** @return Id of the last entity of the previous page. */
+  public int getId() {
+    return id;
+  }
+
+  /** @return Opaque, URL-safe representation of this cursor. */
+  public String encode() {
+    String raw = (createdAt == null ? "" : createdAt.toInstant().toString()) + SEPARATOR + id;
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a cursor previously returned by {@link #encode()}.
+   *
+   * @param encoded Encoded cursor.
+   * @return Decoded cursor.
+   * @throws IllegalArgumentException If the given String is not an encoded cursor.
+   */
+  public static PageCursor decode(final String encoded) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(encoded), StandardCharsets.UTF_8);
+      int separator = raw.lastIndexOf(SEPARATOR);
+      if (separator < 0) {
+        throw new IllegalArgumentException("Invalid cursor");
+      }
+      int id = Integer.parseInt(raw.substring(separator + 1));
+      if (separator == 0) {
+        return new PageCursor(id);
+      }
+      return new PageCursor(Timestamp.from(Instant.parse(raw.substring(0, separator))), id);
+    } catch (NumberFormatException | DateTimeParseException exception) {
+      throw new IllegalArgumentException("Invalid cursor", exception);
+    }
+  }
+
+}
@@ -3,6 +3,10 @@ package com.eos.streamus.models;
 import com.eos.streamus.exceptions.NoResultException;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public class Person implements SavableDeletableEntity {
@@ -208,6 +212,8 @@ public class Person implements SavableDeletableEntity {
           this.updatedAt = resultSet.getTimestamp(UPDATED_AT_COLUMN);
         }
       }
+      CatalogCache.invalidate(this, connection);
+      IdentityMap.forget(this);
     }
   }
 
@@ -221,6 +227,10 @@ public class Person implements SavableDeletableEntity {
    * @throws NoResultException If no Person by this id was found.
    */
   public static Person findById(final Integer id, final Connection connection) throws SQLException, NoResultException {
+    Person cached = IdentityMap.lookup(Person.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where id = ?;",
@@ -232,15 +242,62 @@ public class Person implements SavableDeletableEntity {
         if (!resultSet.next()) {
           throw new NoResultException();
         }
-        return new PersonBuilder(
+        return IdentityMap.register(new PersonBuilder(
             resultSet.getString(FIRST_NAME_COLUMN),
             resultSet.getString(LAST_NAME_COLUMN),
             resultSet.getDate(DATE_OF_BIRTH_COLUMN)
         ).withId(resultSet.getInt(ID_COLUMN))
             .withTimestamps(resultSet.getTimestamp(CREATED_AT_COLUMN), resultSet.getTimestamp(UPDATED_AT_COLUMN))
-            .build();
+            .build());
+      }
+    }
+  }
+
+  /**
+   * Find several Persons by id in a single query.
+   *
+   * @param ids        Ids of the Persons to find.
+   * @param connection Database connection to use to perform the operation.
+   * @return Found Persons by id. Ids that were not found are absent.
+   * @throws SQLException If an error occurred while performing the operation.
+   */
+  public static Map<Integer, Person> findByIds(final List<Integer> ids, final Connection connection)
+      throws SQLException {
+    Map<Integer, Person> persons = new HashMap<>();
+    List<Integer> missingIds = new ArrayList<>();
+    for (Integer id : ids) {
+      Person cached = IdentityMap.lookup(Person.class, id);
+      if (cached == null) {
+        missingIds.add(id);
+      } else {
+        persons.put(id, cached);
+      }
+    }
+    if (missingIds.isEmpty()) {
+      return persons;
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select * from %s where %s = any(?);",
+            TABLE_NAME,
+            ID_COLUMN
+        )
+    )) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", missingIds.toArray()));
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          Person person = new PersonBuilder(
+              resultSet.getString(FIRST_NAME_COLUMN),
+              resultSet.getString(LAST_NAME_COLUMN),
+              resultSet.getDate(DATE_OF_BIRTH_COLUMN)
+          ).withId(resultSet.getInt(ID_COLUMN))
+              .withTimestamps(resultSet.getTimestamp(CREATED_AT_COLUMN), resultSet.getTimestamp(UPDATED_AT_COLUMN))
+              .build();
+          persons.put(person.getId(), IdentityMap.register(person));
+        }
       }
     }
+    return persons;
   }
   //#endregion Database operations
 
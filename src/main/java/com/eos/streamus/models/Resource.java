@@ -173,6 +173,8 @@ public abstract class Resource implements SavableDeletableEntity {
         preparedStatement.setInt(++columnNumber, id);
         preparedStatement.execute();
       }
+      CatalogCache.invalidate(this, connection);
+      IdentityMap.forget(this);
     }
   }
   //#endregion Database operations
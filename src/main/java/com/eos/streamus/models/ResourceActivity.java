@@ -3,9 +3,11 @@ package com.eos.streamus.models;
 import com.eos.streamus.exceptions.IncompleteDataException;
 import com.eos.streamus.exceptions.NoResultException;
 import com.eos.streamus.exceptions.NotPersistedException;
+import com.eos.streamus.utils.Pair;
 
 import java.sql.*;
 import java.util.Date;
+import java.util.Map;
 
 public final class ResourceActivity extends Activity {
   //#region Static Attributes
@@ -48,6 +50,12 @@ public final class ResourceActivity extends Activity {
     this.startedAt = startedAt;
   }
 
+  ResourceActivity(final Integer id, final Resource resource, final Timestamp startedAt,
+                   final CollectionActivity collectionActivity) {
+    this(id, resource, startedAt);
+    this.collectionActivity = collectionActivity;
+  }
+
   ResourceActivity(final Resource resource, final CollectionActivity collectionActivity) {
     this.resource = resource;
     this.collectionActivity = collectionActivity;
@@ -188,6 +196,99 @@ public final class ResourceActivity extends Activity {
     }
   }
 
+  /**
+   * Updates the position of a ResourceActivity without loading it.
+   *
+   * @param id         Id of the ResourceActivity.
+   * @param pausedAt   Position to save, in seconds.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @return Whether a ResourceActivity of this id exists.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  public static boolean updatePausedAt(final int id, final int pausedAt, final Connection connection)
+      throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "update %s set %s = ? where %s = ?;",
+            TABLE_NAME,
+            PAUSED_AT_COLUMN,
+            PRIMARY_KEY_NAME
+        )
+    )) {
+      preparedStatement.setInt(1, pausedAt);
+      preparedStatement.setInt(2, id);
+      return preparedStatement.executeUpdate() > 0;
+    }
+  }
+
+  /**
+   * Updates the positions of several ResourceActivities at once, without loading them.
+   *
+   * @param pausedAts  Positions to save, in seconds, by ResourceActivity id.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  public static void updatePausedAts(final Map<Integer, Integer> pausedAts, final Connection connection)
+      throws SQLException {
+    if (pausedAts.isEmpty()) {
+      return;
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "update %s set %s = ? where %s = ?;",
+            TABLE_NAME,
+            PAUSED_AT_COLUMN,
+            PRIMARY_KEY_NAME
+        )
+    )) {
+      for (Map.Entry<Integer, Integer> pausedAt : pausedAts.entrySet()) {
+        preparedStatement.setInt(1, pausedAt.getValue());
+        preparedStatement.setInt(2, pausedAt.getKey());
+        preparedStatement.addBatch();
+      }
+      preparedStatement.executeBatch();
+    }
+  }
+
+  /**
+   * Finds the position of a ResourceActivity and the duration of its {@link Resource}, without loading them.
+   *
+   * @param id         Id of the ResourceActivity.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @return Position, in seconds, and duration of the Resource, or null if there is no ResourceActivity of this id.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  public static Pair<Integer, Integer> findPosition(final int id, final Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select %s.%s, %s.%s from %s inner join %s on %s.%s = %s.%s where %s.%s = ?;",
+            TABLE_NAME,
+            PAUSED_AT_COLUMN,
+            Resource.TABLE_NAME,
+            Resource.DURATION_COLUMN,
+            TABLE_NAME,
+            Resource.TABLE_NAME,
+            TABLE_NAME,
+            RESOURCE_ID_COLUMN,
+            Resource.TABLE_NAME,
+            Resource.ID_COLUMN,
+            TABLE_NAME,
+            PRIMARY_KEY_NAME
+        )
+    )) {
+      preparedStatement.setInt(1, id);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        if (!resultSet.next()) {
+          return null;
+        }
+        return new Pair<>(
+            resultSet.getInt(PAUSED_AT_COLUMN),
+            resultSet.getInt(Resource.DURATION_COLUMN)
+        );
+      }
+    }
+  }
+
   /**
    * Finds a ResourceActivity by given id.
    *
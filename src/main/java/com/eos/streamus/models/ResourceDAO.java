@@ -1,11 +1,23 @@
 package com.eos.streamus.models;
 
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.utils.Pair;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public final class ResourceDAO {
+  /** Discriminator column name, holding the table name of the concrete {@link Resource} type. */
+  private static final String TYPE_COLUMN = "resourceType";
+
   private ResourceDAO() {
   }
 
@@ -20,12 +32,159 @@ public final class ResourceDAO {
    */
   public static Resource findById(final Integer id, final Connection connection)
       throws SQLException, NoResultException {
-    try {
-      return VideoDAO.findById(id, connection);
-    } catch (NoResultException e) {
-      // Ignore, could be Song
+    Resource resource = findByIds(Collections.singletonList(id), connection).get(id);
+    if (resource == null) {
+      throw new NoResultException();
+    }
+    return resource;
+  }
+
+  /**
+   * Finds several {@link Resource}s of any type in a single query.
+   * {@link Series.Episode}s also need their {@link Series}, fetched once per distinct Series.
+   * {@link Resource}s already in the current {@link IdentityMap} are not fetched again.
+   *
+   * @param ids        Ids of the {@link Resource}s to find.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @return Found {@link Resource}s by id. Ids that were not found are absent.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  public static Map<Integer, Resource> findByIds(final List<Integer> ids, final Connection connection)
+      throws SQLException {
+    Map<Integer, Resource> resources = new LinkedHashMap<>();
+    List<Integer> missingIds = new ArrayList<>();
+    for (Integer id : ids) {
+      Resource cached = IdentityMap.lookup(Resource.class, id);
+      if (cached == null) {
+        missingIds.add(id);
+      } else {
+        resources.put(id, cached);
+      }
+    }
+    if (missingIds.isEmpty()) {
+      return resources;
+    }
+    List<Integer> episodeIds = new ArrayList<>();
+    Map<Integer, Integer> episodeSeriesIds = new HashMap<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select %s.*, %s.%s, case when %s.%s is not null then '%s' when %s.%s is not null then '%s' " +
+                "when %s.%s is not null then '%s' end as %s from %s " +
+                "left join %s on %s.%s = %s.%s left join %s on %s.%s = %s.%s left join %s on %s.%s = %s.%s " +
+                "where %s.%s = any(?);",
+            Resource.TABLE_NAME, Series.Episode.TABLE_NAME, Series.Episode.SERIES_ID_COLUMN,
+            Song.TABLE_NAME, Song.PRIMARY_KEY_NAME, Song.TABLE_NAME,
+            Film.TABLE_NAME, Film.PRIMARY_KEY_NAME, Film.TABLE_NAME,
+            Series.Episode.TABLE_NAME, Series.Episode.PRIMARY_KEY_NAME, Series.Episode.TABLE_NAME,
+            TYPE_COLUMN, Resource.TABLE_NAME,
+            Song.TABLE_NAME, Song.TABLE_NAME, Song.PRIMARY_KEY_NAME, Resource.TABLE_NAME, Resource.ID_COLUMN,
+            Film.TABLE_NAME, Film.TABLE_NAME, Film.PRIMARY_KEY_NAME, Resource.TABLE_NAME, Resource.ID_COLUMN,
+            Series.Episode.TABLE_NAME, Series.Episode.TABLE_NAME, Series.Episode.PRIMARY_KEY_NAME,
+            Resource.TABLE_NAME, Resource.ID_COLUMN,
+            Resource.TABLE_NAME, Resource.ID_COLUMN
+        )
+    )) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", missingIds.toArray()));
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          int id = resultSet.getInt(Resource.ID_COLUMN);
+          String type = resultSet.getString(TYPE_COLUMN);
+          Resource resource = null;
+          if (Song.TABLE_NAME.equals(type)) {
+            resource = new Song(
+                resultSet.getString(Resource.PATH_COLUMN),
+                resultSet.getString(Resource.NAME_COLUMN),
+                resultSet.getInt(Resource.DURATION_COLUMN)
+            );
+          } else if (Film.TABLE_NAME.equals(type)) {
+            resource = new Film(
+                resultSet.getString(Resource.PATH_COLUMN),
+                resultSet.getString(Resource.NAME_COLUMN),
+                resultSet.getInt(Resource.DURATION_COLUMN)
+            );
+          } else if (Series.Episode.TABLE_NAME.equals(type)) {
+            episodeIds.add(id);
+            episodeSeriesIds.put(id, resultSet.getInt(Series.Episode.SERIES_ID_COLUMN));
+          }
+          if (resource != null) {
+            resource.setId(id);
+            resource.setCreatedAt(resultSet.getTimestamp(Resource.CREATED_AT_COLUMN));
+            resources.put(id, IdentityMap.register(resource));
+          }
+        }
+      }
+    }
+
+    Map<Integer, Series> series = new HashMap<>();
+    for (Integer episodeId : episodeIds) {
+      Integer seriesId = episodeSeriesIds.get(episodeId);
+      if (!series.containsKey(seriesId)) {
+        try {
+          series.put(seriesId, Series.findById(seriesId, connection));
+        } catch (NoResultException e) {
+          series.put(seriesId, null);
+        }
+      }
+      Series.Episode episode = series.get(seriesId) == null ? null : findEpisode(series.get(seriesId), episodeId);
+      if (episode != null) {
+        resources.put(episodeId, IdentityMap.register(episode));
+      }
+    }
+    return resources;
+  }
+
+  /**
+   * Counts the {@link Resource}s stored in a file. Content-addressed files are shared by all the Resources of the
+   * same content.
+   *
+   * @param path       Path of the file.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @return Number of {@link Resource}s referencing the file.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  public static int countByPath(final String path, final Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format("select count(*) from %s where %s = ?;", Resource.TABLE_NAME, Resource.PATH_COLUMN)
+    )) {
+      preparedStatement.setString(1, path);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getInt(1);
+      }
+    }
+  }
+
+  /**
+   * Locks a file until the end of the current transaction, on every node, so that the {@link Resource}s referencing
+   * it are not counted while another transaction deletes one of them.
+   *
+   * @param path       Path of the file.
+   * @param connection {@link Connection} to use to perform the operation, in a transaction.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  public static void lockPath(final String path, final Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        "select pg_advisory_xact_lock(hashtext(?));"
+    )) {
+      preparedStatement.setString(1, path);
+      preparedStatement.execute();
+    }
+  }
+
+  /**
+   * Picks the {@link Series.Episode} with the given id among the episodes of a {@link Series}.
+   *
+   * @param series    {@link Series} to search.
+   * @param episodeId Id of the {@link Series.Episode}.
+   * @return The {@link Series.Episode}, or null if the Series does not contain it.
+   */
+  private static Series.Episode findEpisode(final Series series, final int episodeId) {
+    for (Pair<Integer, Resource> entry : series.getContent()) {
+      if (entry.getValue().getId() == episodeId) {
+        return (Series.Episode) entry.getValue();
+      }
     }
-    return Song.findById(id, connection);
+    return null;
   }
 
 }
@@ -370,6 +370,10 @@ public class Series extends VideoCollection {
    * @throws NoResultException if no Series by this id was found.
    */
   public static Series findById(final int id, final Connection connection) throws SQLException, NoResultException {
+    Series cached = IdentityMap.lookup(Series.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement preparedStatement = connection
         .prepareStatement(String.format("select * from %s where %s = ?;", VIEW_NAME, Collection.PRIMARY_KEY_NAME))) {
       preparedStatement.setInt(1, id);
@@ -404,7 +408,7 @@ public class Series extends VideoCollection {
                 .createdAt(resultSet.getTimestamp(EPISODE_CREATED_AT_COLUMN)).build();
           }
         }
-        return series;
+        return IdentityMap.register(series);
       }
     }
   }
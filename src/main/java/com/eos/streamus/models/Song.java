@@ -7,9 +7,9 @@ import java.sql.*;
 public final class Song extends Resource implements SavableDeletableEntity {
   //#region Static attributes
   /** Table name in database. */
-  private static final String TABLE_NAME = "Song";
+  static final String TABLE_NAME = "Song";
   /** Primary key name in database. */
-  private static final String PRIMARY_KEY_NAME = "idResource";
+  static final String PRIMARY_KEY_NAME = "idResource";
   /** Creation function name in database. */
   private static final String CREATION_FUNCTION_NAME = "createSong";
   /** View name in database. */
@@ -55,6 +55,10 @@ public final class Song extends Resource implements SavableDeletableEntity {
    * @throws NoResultException if no Song by this id was found.
    */
   public static Song findById(final int id, final Connection connection) throws SQLException, NoResultException {
+    Song cached = IdentityMap.lookup(Song.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement statement = connection.prepareStatement(
         String.format("select * from %s where id = ?", VIEW_NAME)
     )) {
@@ -70,7 +74,7 @@ public final class Song extends Resource implements SavableDeletableEntity {
         );
         song.setId(rs.getInt("id"));
         song.setCreatedAt(rs.getTimestamp("createdAt"));
-        return song;
+        return IdentityMap.register(song);
       }
     }
   }
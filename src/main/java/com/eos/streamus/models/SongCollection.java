@@ -86,6 +86,7 @@ public abstract class SongCollection extends Collection {
           preparedStatement.execute();
         }
       }
+      CatalogCache.invalidate(SongCollection.this, connection);
     }
 
     /**
@@ -110,6 +111,7 @@ public abstract class SongCollection extends Collection {
         preparedStatement.setInt(++columnNumber, getSong().getId());
         preparedStatement.execute();
       }
+      CatalogCache.invalidate(SongCollection.this, connection);
     }
 
     /** {@inheritDoc} */
@@ -127,6 +129,7 @@ public abstract class SongCollection extends Collection {
         preparedStatement.setInt(2, getValue().getId());
         preparedStatement.execute();
       }
+      CatalogCache.invalidate(SongCollection.this, connection);
     }
     //#endregion Database operations
 
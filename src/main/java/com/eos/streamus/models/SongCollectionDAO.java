@@ -20,12 +20,17 @@ public final class SongCollectionDAO {
    */
   public static SongCollection findById(final Integer id, final Connection connection)
       throws SQLException, NoResultException {
-    try {
+    SongCollection cached = IdentityMap.lookup(SongCollection.class, id);
+    if (cached != null) {
+      return cached;
+    }
+    String type = CollectionDAO.findType(id, connection);
+    if (SongPlaylist.TABLE_NAME.equals(type)) {
       return SongPlaylist.findById(id, connection);
-    } catch (NoResultException e) {
-      // Ignore, could be Song
+    } else if (Album.TABLE_NAME.equals(type)) {
+      return Album.findById(id, connection);
     }
-    return Album.findById(id, connection);
+    throw new NoResultException();
   }
 
 }
@@ -1,13 +1,22 @@
 package com.eos.streamus.models;
 
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.utils.Pair;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public final class SongPlaylist extends SongCollection {
   //#region Static attributes
+  /** Table name in the database. */
+  static final String TABLE_NAME = "SongPlaylist";
+  /** Primary key name in the database. */
+  static final String PRIMARY_KEY_NAME = "idSongCollection";
   /** Creation function name in the database. */
   private static final String CREATION_FUNCTION_NAME = "createSongPlaylist";
   /** View name in the database. */
@@ -82,6 +91,10 @@ public final class SongPlaylist extends SongCollection {
    */
   public static SongPlaylist findById(final Integer id, final Connection connection)
       throws SQLException, NoResultException {
+    SongPlaylist cached = IdentityMap.lookup(SongPlaylist.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where %s = ?;",
@@ -108,49 +121,184 @@ public final class SongPlaylist extends SongCollection {
         songPlaylist.setCreatedAt(createdAt);
         songPlaylist.setUpdatedAt(updatedAt);
 
-        // Songs
+        // Songs, fetched in a single query
+        List<Pair<Integer, Integer>> tracks = new ArrayList<>();
         int firstTrackNumber = resultSet.getInt(Track.TRACK_NUMBER_COLUMN);
         if (!resultSet.wasNull()) {
-          songPlaylist.addTrack(
-              songPlaylist.new Track(
-                  firstTrackNumber,
-                  Song.findById(resultSet.getInt(Track.ID_SONG_COLUMN), connection)
-              )
-          );
+          tracks.add(new Pair<>(firstTrackNumber, resultSet.getInt(Track.ID_SONG_COLUMN)));
           while (resultSet.next()) {
-            songPlaylist.addTrack(
-                songPlaylist.new Track(
-                    resultSet.getInt(Track.TRACK_NUMBER_COLUMN),
-                    Song.findById(resultSet.getInt(Track.ID_SONG_COLUMN), connection)
-                )
-            );
+            tracks.add(new Pair<>(resultSet.getInt(Track.TRACK_NUMBER_COLUMN), resultSet.getInt(Track.ID_SONG_COLUMN)));
           }
         }
-        return songPlaylist;
+        Map<Integer, Resource> songs = ResourceDAO.findByIds(
+            tracks.stream().map(Pair::getValue).collect(Collectors.toList()),
+            connection
+        );
+        for (Pair<Integer, Integer> track : tracks) {
+          if (!(songs.get(track.getValue()) instanceof Song)) {
+            throw new NoResultException();
+          }
+          songPlaylist.addTrack(songPlaylist.new Track(track.getKey(), (Song) songs.get(track.getValue())));
+        }
+        return IdentityMap.register(songPlaylist);
       }
     }
   }
 
-  public static List<SongPlaylist> all(final Connection connection) throws SQLException {
+  /**
+   * Finds several SongPlaylists and their tracks. Rows are fetched in a single query, then the owner {@link User}s and
+   * the {@link Song}s of all the SongPlaylists are each fetched in a single query.
+   * SongPlaylists already in the current {@link IdentityMap} are not fetched again.
+   *
+   * @param ids        Ids of the SongPlaylists to find.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @return Found SongPlaylists by id. Ids that were not found are absent.
+   * @throws SQLException If an error occurred while performing the database operation.
+   */
+  static Map<Integer, SongPlaylist> findByIds(final List<Integer> ids, final Connection connection)
+      throws SQLException {
+    Map<Integer, SongPlaylist> songPlaylists = new HashMap<>();
+    List<Integer> missingIds = new ArrayList<>();
+    for (Integer id : ids) {
+      SongPlaylist cached = IdentityMap.lookup(SongPlaylist.class, id);
+      if (cached == null) {
+        missingIds.add(id);
+      } else {
+        songPlaylists.put(id, cached);
+      }
+    }
+    if (missingIds.isEmpty()) {
+      return songPlaylists;
+    }
+
+    Map<Integer, Pair<String, Integer>> namesAndUserIds = new LinkedHashMap<>();
+    Map<Integer, Pair<Timestamp, Timestamp>> timestamps = new HashMap<>();
+    Map<Integer, List<Pair<Integer, Integer>>> tracks = new HashMap<>();
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
-            "select distinct %s from %s",
-            "idSongCollection",
-            "songplaylist"
+            "select * from %s where %s = any(?) order by %s, %s;",
+            VIEW_NAME,
+            Collection.PRIMARY_KEY_NAME,
+            Collection.PRIMARY_KEY_NAME,
+            Track.TRACK_NUMBER_COLUMN
         )
     )) {
-      List<SongPlaylist> playlists = new ArrayList<>();
+      preparedStatement.setArray(1, connection.createArrayOf("integer", missingIds.toArray()));
       try (ResultSet resultSet = preparedStatement.executeQuery()) {
         while (resultSet.next()) {
-          try {
-            playlists.add(findById(resultSet.getInt(1), connection));
-          } catch (NoResultException e) {
-            // Won't happen
+          int id = resultSet.getInt(Collection.PRIMARY_KEY_NAME);
+          if (!namesAndUserIds.containsKey(id)) {
+            namesAndUserIds.put(id, new Pair<>(
+                resultSet.getString(Collection.NAME_COLUMN),
+                resultSet.getInt(USER_ID_COLUMN)
+            ));
+            timestamps.put(id, new Pair<>(
+                resultSet.getTimestamp(Collection.CREATED_AT_COLUMN),
+                resultSet.getTimestamp(Collection.UPDATED_AT_COLUMN)
+            ));
+            tracks.put(id, new ArrayList<>());
           }
+          int trackNumber = resultSet.getInt(Track.TRACK_NUMBER_COLUMN);
+          if (!resultSet.wasNull()) {
+            tracks.get(id).add(new Pair<>(trackNumber, resultSet.getInt(Track.ID_SONG_COLUMN)));
+          }
+        }
+      }
+    }
+
+    Map<Integer, User> users = User.findUsersByIds(
+        namesAndUserIds.values().stream().map(Pair::getValue).distinct().collect(Collectors.toList()),
+        connection
+    );
+    Map<Integer, Resource> songs = ResourceDAO.findByIds(
+        tracks.values().stream().flatMap(List::stream).map(Pair::getValue).distinct().collect(Collectors.toList()),
+        connection
+    );
+    for (Map.Entry<Integer, Pair<String, Integer>> nameAndUserId : namesAndUserIds.entrySet()) {
+      int id = nameAndUserId.getKey();
+      User user = users.get(nameAndUserId.getValue().getValue());
+      if (user == null) {
+        throw new SQLException(String.format("Song playlist %d references non existing user", id));
+      }
+      SongPlaylist songPlaylist = new SongPlaylist(nameAndUserId.getValue().getKey(), user);
+      songPlaylist.setId(id);
+      songPlaylist.setCreatedAt(timestamps.get(id).getKey());
+      songPlaylist.setUpdatedAt(timestamps.get(id).getValue());
+      for (Pair<Integer, Integer> track : tracks.get(id)) {
+        if (!(songs.get(track.getValue()) instanceof Song)) {
+          throw new SQLException(
+              String.format("Song playlist %d references non existing song %d", id, track.getValue())
+          );
         }
+        songPlaylist.addTrack(songPlaylist.new Track(track.getKey(), (Song) songs.get(track.getValue())));
+      }
+      songPlaylists.put(id, IdentityMap.register(songPlaylist));
+    }
+    return songPlaylists;
+  }
+
+  /**
+   * Fetches a page of SongPlaylists from database, sorted by creation timestamp then id. The page is loaded with a
+   * fixed number of queries, whatever its size.
+   *
+   * @param connection {@link Connection} to use to perform the operation.
+   * @param after      Cursor of the page, or null for the first page.
+   * @param limit      Maximum number of SongPlaylists in the page.
+   * @return Page of SongPlaylists.
+   * @throws SQLException             If an error occurred while performing the database operation.
+   * @throws IllegalArgumentException If the cursor has no creation timestamp.
+   */
+  public static Page<SongPlaylist> page(final Connection connection, final PageCursor after, final int limit)
+      throws SQLException {
+    if (after != null && after.getCreatedAt() == null) {
+      throw new IllegalArgumentException("SongPlaylists are paged by creation timestamp");
+    }
+    List<PageCursor> positions = new ArrayList<>();
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select %s.%s, %s.%s from %s inner join %s on %s.%s = %s.%s%s order by %s.%s, %s.%s limit ?",
+            Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME, Collection.TABLE_NAME, Collection.CREATED_AT_COLUMN,
+            TABLE_NAME, Collection.TABLE_NAME,
+            Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME, TABLE_NAME, PRIMARY_KEY_NAME,
+            after == null ? "" : String.format(
+                " where (%s.%s, %s.%s) > (?, ?)",
+                Collection.TABLE_NAME, Collection.CREATED_AT_COLUMN, Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME
+            ),
+            Collection.TABLE_NAME, Collection.CREATED_AT_COLUMN, Collection.TABLE_NAME, Collection.PRIMARY_KEY_NAME
+        )
+    )) {
+      int columnNumber = 0;
+      if (after != null) {
+        preparedStatement.setTimestamp(++columnNumber, after.getCreatedAt());
+        preparedStatement.setInt(++columnNumber, after.getId());
+      }
+      // One more row tells whether there is a next page
+      preparedStatement.setInt(++columnNumber, limit + 1);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          positions.add(new PageCursor(
+              resultSet.getTimestamp(Collection.CREATED_AT_COLUMN),
+              resultSet.getInt(Collection.PRIMARY_KEY_NAME)
+          ));
+        }
+      }
+    }
+    String nextCursor = null;
+    if (positions.size() > limit) {
+      positions = positions.subList(0, limit);
+      nextCursor = positions.get(limit - 1).encode();
+    }
+    Map<Integer, SongPlaylist> songPlaylists = findByIds(
+        positions.stream().map(PageCursor::getId).collect(Collectors.toList()),
+        connection
+    );
+    List<SongPlaylist> content = new ArrayList<>();
+    for (PageCursor position : positions) {
+      if (songPlaylists.containsKey(position.getId())) {
+        content.add(songPlaylists.get(position.getId()));
       }
-      return playlists;
     }
+    return new Page<>(content, nextCursor);
   }
   //#endregion Database operations
 
@@ -3,6 +3,10 @@ package com.eos.streamus.models;
 import com.eos.streamus.exceptions.NoResultException;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 public class User extends Person {
@@ -143,6 +147,10 @@ public class User extends Person {
    * @throws NoResultException If no User by this id was found.
    */
   public static User findById(final Integer id, final Connection connection) throws SQLException, NoResultException {
+    User cached = IdentityMap.lookup(User.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where id = ?",
@@ -154,7 +162,7 @@ public class User extends Person {
         if (!resultSet.next()) {
           throw new NoResultException();
         }
-        return (User) new PersonBuilder(resultSet.getString(FIRST_NAME_COLUMN),
+        return IdentityMap.register((User) new PersonBuilder(resultSet.getString(FIRST_NAME_COLUMN),
             resultSet.getString(LAST_NAME_COLUMN),
             resultSet.getDate(DATE_OF_BIRTH_COLUMN))
             .withId(resultSet.getInt(ID_COLUMN))
@@ -164,9 +172,60 @@ public class User extends Person {
                 resultSet.getString(EMAIL_COLUMN),
                 resultSet.getString(USERNAME_COLUMN)
             )
-            .build();
+            .build());
+      }
+    }
+  }
+
+  /**
+   * Find several Users by id in a single query.
+   * Users already in the current {@link IdentityMap} are not fetched again.
+   *
+   * @param ids        Ids of the Users to find.
+   * @param connection Database connection to use to perform the operation.
+   * @return Found Users by id. Ids that were not found are absent.
+   * @throws SQLException If an error occurred while performing the operation.
+   */
+  public static Map<Integer, User> findUsersByIds(final List<Integer> ids, final Connection connection)
+      throws SQLException {
+    Map<Integer, User> users = new HashMap<>();
+    List<Integer> missingIds = new ArrayList<>();
+    for (Integer id : ids) {
+      User cached = IdentityMap.lookup(User.class, id);
+      if (cached == null) {
+        missingIds.add(id);
+      } else {
+        users.put(id, cached);
+      }
+    }
+    if (missingIds.isEmpty()) {
+      return users;
+    }
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select * from %s where id = any(?)",
+            VIEW_NAME
+        )
+    )) {
+      preparedStatement.setArray(1, connection.createArrayOf("integer", missingIds.toArray()));
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        while (resultSet.next()) {
+          User user = (User) new PersonBuilder(resultSet.getString(FIRST_NAME_COLUMN),
+              resultSet.getString(LAST_NAME_COLUMN),
+              resultSet.getDate(DATE_OF_BIRTH_COLUMN))
+              .withId(resultSet.getInt(ID_COLUMN))
+              .withTimestamps(resultSet.getTimestamp(CREATED_AT_COLUMN),
+                  resultSet.getTimestamp(UPDATED_AT_COLUMN))
+              .asUser(
+                  resultSet.getString(EMAIL_COLUMN),
+                  resultSet.getString(USERNAME_COLUMN)
+              )
+              .build();
+          users.put(user.getId(), IdentityMap.register(user));
+        }
       }
     }
+    return users;
   }
 
   /**
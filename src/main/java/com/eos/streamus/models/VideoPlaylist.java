@@ -7,7 +7,9 @@ import com.eos.streamus.utils.Pair;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 public final class VideoPlaylist extends VideoCollection {
   public final class VideoPlaylistVideo extends Pair<Integer, Video> implements SavableDeletable {
@@ -131,9 +133,9 @@ public final class VideoPlaylist extends VideoCollection {
 
   //#region Static attributes
   /** Table name in database. */
-  private static final String TABLE_NAME = "VideoPlaylist";
+  static final String TABLE_NAME = "VideoPlaylist";
   /** Primary key name in database. */
-  private static final String PRIMARY_KEY_NAME = "idVideoCollection";
+  static final String PRIMARY_KEY_NAME = "idVideoCollection";
   /** User id column in database. */
   private static final String USER_ID_COLUMN = "idUser";
   /** View name in database. */
@@ -324,6 +326,10 @@ public final class VideoPlaylist extends VideoCollection {
    */
   public static VideoPlaylist findById(final Integer id, final Connection connection)
       throws SQLException, NoResultException {
+    VideoPlaylist cached = IdentityMap.lookup(VideoPlaylist.class, id);
+    if (cached != null) {
+      return cached;
+    }
     try (PreparedStatement preparedStatement = connection.prepareStatement(
         String.format(
             "select * from %s where %s = ?;",
@@ -353,25 +359,31 @@ public final class VideoPlaylist extends VideoCollection {
         videoPlaylist.setCreatedAt(createdAt);
         videoPlaylist.setUpdatedAt(updatedAt);
 
-        // Videos
+        // Videos, fetched in a single query
+        List<Pair<Integer, Integer>> videos = new ArrayList<>();
         int firstVideoNumber = resultSet.getInt(VideoPlaylistVideo.NUMBER_COLUMN);
         if (!resultSet.wasNull()) {
-          videoPlaylist.addVideo(
-              videoPlaylist.new VideoPlaylistVideo(
-                  firstVideoNumber,
-                  VideoDAO.findById(resultSet.getInt(VideoPlaylistVideo.ID_VIDEO_COLUMN), connection)
-              )
-          );
+          videos.add(new Pair<>(firstVideoNumber, resultSet.getInt(VideoPlaylistVideo.ID_VIDEO_COLUMN)));
           while (resultSet.next()) {
-            videoPlaylist.addVideo(
-                videoPlaylist.new VideoPlaylistVideo(
-                    resultSet.getInt(VideoPlaylistVideo.NUMBER_COLUMN),
-                    VideoDAO.findById(resultSet.getInt(VideoPlaylistVideo.ID_VIDEO_COLUMN), connection)
-                )
-            );
+            videos.add(new Pair<>(
+                resultSet.getInt(VideoPlaylistVideo.NUMBER_COLUMN),
+                resultSet.getInt(VideoPlaylistVideo.ID_VIDEO_COLUMN)
+            ));
+          }
+        }
+        Map<Integer, Resource> resources = ResourceDAO.findByIds(
+            videos.stream().map(Pair::getValue).collect(Collectors.toList()),
+            connection
+        );
+        for (Pair<Integer, Integer> video : videos) {
+          if (!(resources.get(video.getValue()) instanceof Video)) {
+            throw new NoResultException();
           }
+          videoPlaylist.addVideo(
+              videoPlaylist.new VideoPlaylistVideo(video.getKey(), (Video) resources.get(video.getValue()))
+          );
         }
-        return videoPlaylist;
+        return IdentityMap.register(videoPlaylist);
       }
     }
   }
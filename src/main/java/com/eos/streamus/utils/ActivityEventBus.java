@@ -0,0 +1,310 @@
+package com.eos.streamus.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Relays the events of {@link com.eos.streamus.models.Activity}s between StreamUs nodes through PostgreSQL
+ * LISTEN/NOTIFY, so that members of an Activity connected to different nodes stay in sync without any other
+ * infrastructure.
+ * Events are JSON objects, published with the id of their node on the {@value #CHANNEL} channel. Notifications are sent
+ * in order from a single thread, so that publishers do not wait for the database. Every node listens to the channel on
+ * a dedicated connection, and hands the events published by the other nodes to its subscribers, which relay them to
+ * their local members. The listener connection is checked periodically, since a half-open connection only shows as
+ * an absence of notifications, and the node listens again on a new connection as soon as the check fails. Events
+ * published while a node is reconnecting its listener are not relayed to it.
+ * Other notification channels, such as the invalidations of the {@link com.eos.streamus.models.CatalogCache}, can be
+ * listened to on the same connection through {@link #listen(String, Runnable, Consumer)}.
+ */
+@Service
+@Scope(value = "singleton")
+public class ActivityEventBus {
+  /** Notification channel of the events. */
+  private static final String CHANNEL = "activity_events";
+  /** Field of the events holding the id of the node that published them. */
+  private static final String NODE_FIELD = "node";
+  /** Largest payload PostgreSQL accepts in a notification, in bytes. */
+  private static final int MAX_PAYLOAD_BYTES = 7999;
+  /** Reads received events. */
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  /** {@link IDatabaseConnector} to use. */
+  @Autowired
+  private IDatabaseConnector databaseConnector;
+
+  /** Whether events are relayed to the other nodes. */
+  @Value("${activityEventBus.enabled:true}")
+  private boolean enabled;
+
+  /** Time to wait for notifications at a time, bounding how long stopping the listener takes, in milliseconds. */
+  @Value("${activityEventBus.pollMillis:500}")
+  private int pollMillis;
+
+  /** Time to wait before listening again after the connection was lost, in milliseconds. */
+  @Value("${activityEventBus.reconnectDelayMillis:5000}")
+  private long reconnectDelayMillis;
+
+  /** Time between two checks of the listener connection, in milliseconds. */
+  @Value("${activityEventBus.checkPeriodMillis:10000}")
+  private long checkPeriodMillis;
+
+  /** Time to wait for the listener connection to answer a check, in seconds. */
+  @Value("${activityEventBus.checkTimeoutSeconds:5}")
+  private int checkTimeoutSeconds;
+
+  /** Time to wait for the pending notifications to be sent when stopping, in milliseconds. */
+  @Value("${activityEventBus.shutdownTimeoutMillis:5000}")
+  private long shutdownTimeoutMillis;
+
+  /** Id of this node, to ignore the events it published itself. */
+  private final String nodeId = UUID.randomUUID().toString();
+  /** Consumers of the events published by other nodes. */
+  private final List<Consumer<JsonNode>> subscribers = new CopyOnWriteArrayList<>();
+  /** Listeners of other channels, by channel. */
+  private final Map<String, ChannelListener> channelListeners = new ConcurrentHashMap<>();
+  /** Sends the notifications. */
+  private ExecutorService publisher;
+  /** Listens to the notifications. */
+  private Thread listener;
+  /** Whether the bus is running. */
+  private volatile boolean running;
+
+  /** Starts listening to the events of other nodes. */
+  @PostConstruct
+  public void start() {
+    if (!enabled) {
+      return;
+    }
+    running = true;
+    publisher = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "activity-event-publisher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    listener = new Thread(this::listen, "activity-event-listener");
+    listener.setDaemon(true);
+    listener.start();
+  }
+
+  /** Stops listening, after sending the pending notifications. */
+  @PreDestroy
+  public void shutdown() {
+    if (!enabled) {
+      return;
+    }
+    running = false;
+    publisher.shutdown();
+    try {
+      if (!publisher.awaitTermination(shutdownTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        getLogger().log(Level.WARNING, "Stopped before sending every activity event to other nodes");
+      }
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+    }
+    listener.interrupt();
+  }
+
+  /**
+   * Registers a consumer of the events published by other nodes. Consumers are called from the listener thread, one
+   * event at a time, in the order the events were published.
+   *
+   * @param subscriber Consumer of the events.
+   */
+  public void subscribe(final Consumer<JsonNode> subscriber) {
+    subscribers.add(subscriber);
+  }
+
+  /** Listener of a notification channel other than that of the events. */
+  private static final class ChannelListener {
+    /** Called whenever the channel starts being listened to, notifications sent before may have been missed. */
+    private final Runnable onListen;
+    /** Consumer of the payloads of the notifications. */
+    private final Consumer<String> subscriber;
+
+    private ChannelListener(final Runnable onListen, final Consumer<String> subscriber) {
+      this.onListen = onListen;
+      this.subscriber = subscriber;
+    }
+  }
+
+  /**
+   * Listens to another notification channel on the connection of the bus. Unlike events, the notifications of every
+   * node, this one included, are handed to the subscriber, from the listener thread.
+   *
+   * @param channel    Channel to listen to. It must be a valid identifier.
+   * @param onListen   Called whenever the channel starts being listened to, on start and after a reconnection, as
+   *                   notifications sent while the node was not listening are lost.
+   * @param subscriber Consumer of the payloads of the notifications.
+   */
+  public void listen(final String channel, final Runnable onListen, final Consumer<String> subscriber) {
+    if (!channel.matches("[a-z_]+") || CHANNEL.equals(channel)) {
+      throw new IllegalArgumentException(String.format("Invalid channel %s", channel));
+    }
+    channelListeners.put(channel, new ChannelListener(onListen, subscriber));
+  }
+
+  /**
+   * Publishes an event to the other nodes. It is dropped if it cannot be sent.
+   *
+   * @param event Event to publish. It is not modified.
+   */
+  public void publish(final ObjectNode event) {
+    if (!running) {
+      return;
+    }
+    String payload = event.deepCopy().put(NODE_FIELD, nodeId).toString();
+    if (payload.getBytes(StandardCharsets.UTF_8).length > MAX_PAYLOAD_BYTES) {
+      getLogger().log(Level.WARNING, "Activity event too large to be relayed to other nodes");
+      return;
+    }
+    publisher.execute(() -> notify(payload));
+  }
+
+  private void notify(final String payload) {
+    try (Connection connection = databaseConnector.getConnection();
+         PreparedStatement preparedStatement = connection.prepareStatement("select pg_notify(?, ?)")) {
+      preparedStatement.setString(1, CHANNEL);
+      preparedStatement.setString(2, payload);
+      preparedStatement.execute();
+    } catch (SQLException sqlException) {
+      getLogger().log(Level.WARNING, "Could not relay an activity event to other nodes", sqlException);
+    }
+  }
+
+  /**
+   * Listens to the channel until the bus stops, listening again on a new connection whenever it is lost or does not
+   * answer a check.
+   */
+  private void listen() {
+    while (running) {
+      try (Connection connection = databaseConnector.getDedicatedConnection()) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("listen " + CHANNEL);
+        }
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        Set<String> listenedChannels = new HashSet<>();
+        long checkedAt = System.nanoTime();
+        while (running) {
+          listenToNewChannels(connection, listenedChannels);
+          if (System.nanoTime() - checkedAt >= TimeUnit.MILLISECONDS.toNanos(checkPeriodMillis)) {
+            if (!connection.isValid(checkTimeoutSeconds)) {
+              throw new SQLException("Activity event listener connection did not answer its check");
+            }
+            checkedAt = System.nanoTime();
+          }
+          PGNotification[] notifications = pgConnection.getNotifications(pollMillis);
+          if (notifications != null) {
+            for (PGNotification notification : notifications) {
+              if (CHANNEL.equals(notification.getName())) {
+                deliver(notification.getParameter());
+              } else {
+                deliver(notification.getName(), notification.getParameter());
+              }
+            }
+          }
+        }
+      } catch (SQLException sqlException) {
+        if (!running) {
+          return;
+        }
+        getLogger().log(Level.WARNING, "Lost the activity event listener connection, listening again", sqlException);
+        try {
+          Thread.sleep(reconnectDelayMillis);
+        } catch (InterruptedException interruptedException) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Listens to the channels registered since the connection was opened or last checked.
+   *
+   * @param connection       Listener connection.
+   * @param listenedChannels Channels listened to on the connection, updated.
+   * @throws SQLException If a channel could not be listened to.
+   */
+  private void listenToNewChannels(final Connection connection, final Set<String> listenedChannels)
+      throws SQLException {
+    for (Map.Entry<String, ChannelListener> channelListener : channelListeners.entrySet()) {
+      if (listenedChannels.add(channelListener.getKey())) {
+        try (Statement statement = connection.createStatement()) {
+          statement.execute("listen " + channelListener.getKey());
+        }
+        try {
+          channelListener.getValue().onListen.run();
+        } catch (RuntimeException runtimeException) {
+          getLogger().log(Level.WARNING, String.format("Could not start listening to %s", channelListener.getKey()),
+                          runtimeException);
+        }
+      }
+    }
+  }
+
+  private void deliver(final String channel, final String payload) {
+    ChannelListener channelListener = channelListeners.get(channel);
+    if (channelListener == null) {
+      return;
+    }
+    try {
+      channelListener.subscriber.accept(payload);
+    } catch (RuntimeException runtimeException) {
+      getLogger().log(Level.WARNING, String.format("Could not handle a notification of %s", channel), runtimeException);
+    }
+  }
+
+  private void deliver(final String payload) {
+    JsonNode event;
+    try {
+      event = OBJECT_MAPPER.readTree(payload);
+    } catch (JsonProcessingException jsonProcessingException) {
+      getLogger().log(Level.WARNING, "Ignored an invalid activity event", jsonProcessingException);
+      return;
+    }
+    if (nodeId.equals(event.path(NODE_FIELD).asText())) {
+      return;
+    }
+    for (Consumer<JsonNode> subscriber : subscribers) {
+      try {
+        subscriber.accept(event);
+      } catch (RuntimeException runtimeException) {
+        getLogger().log(Level.WARNING, "Could not relay an activity event", runtimeException);
+      }
+    }
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
@@ -0,0 +1,87 @@
+package com.eos.streamus.utils;
+
+/**
+ * Playback event of an {@link com.eos.streamus.models.Activity}, pushed to every member of the Activity connected to
+ * its sync channel. Positions are in milliseconds and times are read from the {@link ServerClock}, so that members
+ * can keep in sync by adjusting their playback rate rather than seeking.
+ */
+public final class ActivitySyncEvent {
+  /** Type of playback event. */
+  public enum Type {
+    /** Playback resumed at a position. */
+    PLAY,
+    /** Playback paused at a position. */
+    PAUSE,
+    /** Playback moved to a position. */
+    SEEK
+  }
+
+  /** Type of the event. */
+  private final Type type;
+  /** Id of the Activity. */
+  private final int activityId;
+  /** Id of the {@link com.eos.streamus.models.User} who caused the event. */
+  private final int userId;
+  /** Position of the playback, in milliseconds. */
+  private final long positionMillis;
+  /** Playback rate. */
+  private final double rate;
+  /** Number of the track of a {@link com.eos.streamus.models.CollectionActivity}, or null. */
+  private final Integer track;
+  /** Time at which the server applied the event, in milliseconds since the epoch. */
+  private final long sentAt;
+
+  /**
+   * @param type       Type of the event.
+   * @param activityId Id of the Activity.
+   * @param userId     Id of the User who caused the event.
+   * @param applied    State of the {@link LiveActivity} once the event was applied, so that members are sent the
+   *                   clamped position and the current track the server holds rather than the event as sent.
+   */
+  public ActivitySyncEvent(final Type type, final int activityId, final int userId,
+                           final LiveActivity.Snapshot applied) {
+    this.type = type;
+    this.activityId = activityId;
+    this.userId = userId;
+    this.positionMillis = applied.getPositionMillis();
+    this.rate = applied.getRate();
+    this.track = applied.getTrack();
+    this.sentAt = applied.getAt();
+  }
+
+  /** @return Type of the event. */
+  public Type getType() {
+    return type;
+  }
+
+  /** @return Id of the Activity. */
+  public int getActivityId() {
+    return activityId;
+  }
+
+  /** @return Id of the User who caused the event. */
+  public int getUserId() {
+    return userId;
+  }
+
+  /** @return Position of the playback, in milliseconds. */
+  public long getPositionMillis() {
+    return positionMillis;
+  }
+
+  /** @return Playback rate. */
+  public double getRate() {
+    return rate;
+  }
+
+  /** @return Number of the track of a CollectionActivity, or null. */
+  public Integer getTrack() {
+    return track;
+  }
+
+  /** @return Time at which the server applied the event, in milliseconds since the epoch. */
+  public long getSentAt() {
+    return sentAt;
+  }
+
+}
@@ -0,0 +1,274 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.models.Activity;
+import com.eos.streamus.models.PageCursor;
+import com.eos.streamus.writers.JsonActivityMessageWriter;
+import com.eos.streamus.writers.JsonActivitySyncEventWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sync channels of {@link com.eos.streamus.models.Activity}s: the WebSocket sessions of the members of each Activity,
+ * to which its playback events are pushed as they happen.
+ * New {@link Activity.ActivityMessage}s are queued by Activity and fanned out in batches: every few milliseconds, the
+ * messages posted in each Activity since the last batch are serialized once and sent to its members in a single frame,
+ * {"type": "messages", "content": [...], "cursor": c}. The cursor is that of the last message of the batch, from which
+ * a member that lost its connection catches up on the messages it missed through /activity/{id}/messages.
+ * Events and messages are also published to the other nodes through the {@link ActivityEventBus}, wrapped in
+ * {"event": e} and {"message": m}, and those of the other nodes are pushed to the members connected to this node.
+ * On track transitions, i.e. events carrying another track than the last one of their Activity, the
+ * {@link TrackPrefetcher} reads the start of the following track ahead, on every node where members are connected.
+ * Sessions are decorated so that they can be sent to from several threads, and a member that does not keep up with
+ * its channel is disconnected rather than slowing down the others.
+ */
+@Service
+@Scope(value = "singleton")
+public class ActivitySyncService {
+  /** Field of the events of the {@link ActivityEventBus} holding a playback event. */
+  public static final String EVENT_FIELD = "event";
+  /** Field of the events of the {@link ActivityEventBus} holding a message. */
+  public static final String MESSAGE_FIELD = "message";
+  /** Field of events and messages holding the id of their Activity. */
+  private static final String ACTIVITY_ID_FIELD = "activityId";
+  /** Field of messages holding their id. */
+  private static final String ID_FIELD = "id";
+  /** Field of events holding the number of their track. */
+  private static final String TRACK_FIELD = "track";
+
+  /** Open sessions by Activity id, then by session id. */
+  private final Map<Integer, Map<String, WebSocketSession>> channels = new ConcurrentHashMap<>();
+  /** Messages waiting for the next batch, by Activity id. */
+  private final Map<Integer, List<JsonNode>> pendingMessages = new ConcurrentHashMap<>();
+  /** Number of the last track pushed to each channel, by Activity id. */
+  private final Map<Integer, Integer> currentTracks = new ConcurrentHashMap<>();
+
+  /** {@link ActivityEventBus} to use. */
+  @Autowired
+  private ActivityEventBus activityEventBus;
+
+  /** {@link TrackPrefetcher} to use. */
+  @Autowired
+  private TrackPrefetcher trackPrefetcher;
+
+  /** Time a message may take to be sent to a session before it is closed, in milliseconds. */
+  @Value("${activitySync.sendTimeLimitMillis:5000}")
+  private int sendTimeLimitMillis;
+
+  /** Number of bytes that may be buffered for a session before it is closed. */
+  @Value("${activitySync.bufferSizeLimit:65536}")
+  private int bufferSizeLimit;
+
+  /** Period of the message batches, in milliseconds. */
+  @Value("${activitySync.messageBatchMillis:50}")
+  private long messageBatchMillis;
+
+  /** Sends the message batches. */
+  private ScheduledExecutorService messageFanOut;
+
+  /** Starts the message batches and relays the events of other nodes. */
+  @PostConstruct
+  public void start() {
+    activityEventBus.subscribe(this::relay);
+    messageFanOut = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "activity-message-fan-out");
+      thread.setDaemon(true);
+      return thread;
+    });
+    messageFanOut.scheduleWithFixedDelay(
+        this::flushMessages, messageBatchMillis, messageBatchMillis, TimeUnit.MILLISECONDS
+    );
+  }
+
+  /** Stops the message batches, after sending the pending ones. */
+  @PreDestroy
+  public void shutdown() {
+    messageFanOut.shutdownNow();
+    flushMessages();
+  }
+
+  /**
+   * Adds a session to the channel of an Activity.
+   *
+   * @param activityId Id of the Activity.
+   * @param session    Session of a member of the Activity.
+   * @return Session to send to, safe to use from several threads.
+   */
+  public WebSocketSession join(final int activityId, final WebSocketSession session) {
+    WebSocketSession decorated = new ConcurrentWebSocketSessionDecorator(
+        session,
+        sendTimeLimitMillis,
+        bufferSizeLimit
+    );
+    channels.computeIfAbsent(activityId, id -> new ConcurrentHashMap<>()).put(session.getId(), decorated);
+    return decorated;
+  }
+
+  /**
+   * Removes a session from the channel of an Activity.
+   *
+   * @param activityId Id of the Activity.
+   * @param session    Session to remove.
+   * @return Whether the channel of the Activity has no session left.
+   */
+  public boolean leave(final int activityId, final WebSocketSession session) {
+    boolean empty = channels.computeIfPresent(activityId, (id, sessions) -> {
+      sessions.remove(session.getId());
+      return sessions.isEmpty() ? null : sessions;
+    }) == null;
+    if (empty) {
+      currentTracks.remove(activityId);
+    }
+    return empty;
+  }
+
+  /**
+   * Pushes an event to every session of the channel of its Activity, on this node and on the others.
+   *
+   * @param event Event to push.
+   */
+  public void publish(final ActivitySyncEvent event) {
+    ObjectNode json = (ObjectNode) new JsonActivitySyncEventWriter(event).getJson();
+    if (event.getTrack() != null) {
+      transition(event.getActivityId(), event.getTrack());
+    }
+    push(event.getActivityId(), json);
+    activityEventBus.publish(JsonNodeFactory.instance.objectNode().set(EVENT_FIELD, json));
+  }
+
+  /**
+   * Queues a new message for the next batch of its Activity, on this node and on the others. It is dropped where no
+   * member is connected to the channel, members catch up on it when they connect.
+   *
+   * @param message Saved message.
+   */
+  public void publish(final Activity.ActivityMessage message) {
+    ObjectNode json = (ObjectNode) new JsonActivityMessageWriter(message).getJson();
+    queue(message.getActivity().getId(), json);
+    activityEventBus.publish(JsonNodeFactory.instance.objectNode().set(MESSAGE_FIELD, json));
+  }
+
+  /**
+   * Pushes an event or a message published by another node to the members connected to this node.
+   *
+   * @param busEvent Event of the {@link ActivityEventBus}.
+   */
+  private void relay(final JsonNode busEvent) {
+    JsonNode event = busEvent.get(EVENT_FIELD);
+    if (event != null && event.path(ACTIVITY_ID_FIELD).canConvertToInt()) {
+      int activityId = event.get(ACTIVITY_ID_FIELD).intValue();
+      if (event.path(TRACK_FIELD).canConvertToInt() && channels.containsKey(activityId)) {
+        transition(activityId, event.get(TRACK_FIELD).intValue());
+      }
+      push(activityId, event);
+    }
+    JsonNode message = busEvent.get(MESSAGE_FIELD);
+    if (message != null && message.path(ACTIVITY_ID_FIELD).canConvertToInt()) {
+      queue(message.get(ACTIVITY_ID_FIELD).intValue(), message);
+    }
+  }
+
+  /**
+   * Prefetches the track following the one of an event, if the event moved its Activity to another track.
+   *
+   * @param activityId Id of the Activity.
+   * @param track      Number of the track of the event.
+   */
+  private void transition(final int activityId, final int track) {
+    Integer previous = currentTracks.put(activityId, track);
+    if (previous == null || previous != track) {
+      trackPrefetcher.prefetchAfter(activityId, track);
+    }
+  }
+
+  private void push(final int activityId, final JsonNode event) {
+    Map<String, WebSocketSession> sessions = channels.get(activityId);
+    if (sessions == null) {
+      return;
+    }
+    TextMessage textMessage = new TextMessage(event.toString());
+    for (WebSocketSession session : sessions.values()) {
+      send(activityId, session, textMessage);
+    }
+  }
+
+  private void queue(final int activityId, final JsonNode message) {
+    if (!channels.containsKey(activityId)) {
+      return;
+    }
+    pendingMessages.compute(activityId, (id, messages) -> {
+      List<JsonNode> pending = messages == null ? new ArrayList<>() : messages;
+      pending.add(message);
+      return pending;
+    });
+  }
+
+  /** Sends the pending messages of every Activity, one frame per Activity. */
+  void flushMessages() {
+    for (Integer activityId : pendingMessages.keySet()) {
+      List<JsonNode> messages = pendingMessages.remove(activityId);
+      Map<String, WebSocketSession> sessions = channels.get(activityId);
+      if (messages == null || sessions == null) {
+        continue;
+      }
+      // Messages relayed from other nodes may arrive out of posting order
+      messages.sort((first, second) -> Integer.compare(first.get(ID_FIELD).asInt(), second.get(ID_FIELD).asInt()));
+      ArrayNode content = JsonNodeFactory.instance.arrayNode().addAll(messages);
+      ObjectNode batch = JsonNodeFactory.instance.objectNode().put("type", "messages");
+      batch.set("content", content);
+      batch.put("cursor", new PageCursor(messages.get(messages.size() - 1).get(ID_FIELD).asInt()).encode());
+      TextMessage textMessage = new TextMessage(batch.toString());
+      for (WebSocketSession session : sessions.values()) {
+        send(activityId, session, textMessage);
+      }
+    }
+  }
+
+  /**
+   * Sends a message to a session, removing it from its channel and closing it if it cannot be sent.
+   *
+   * @param activityId Id of the Activity of the session.
+   * @param session    Session, as returned by {@link #join(int, WebSocketSession)}.
+   * @param message    Message to send.
+   */
+  public void send(final int activityId, final WebSocketSession session, final TextMessage message) {
+    try {
+      session.sendMessage(message);
+    } catch (IOException | RuntimeException exception) {
+      getLogger().log(Level.FINE, String.format("Could not send to session %s", session.getId()), exception);
+      leave(activityId, session);
+      try {
+        session.close(CloseStatus.SESSION_NOT_RELIABLE);
+      } catch (IOException ioException) {
+        getLogger().log(Level.FINE, String.format("Could not close session %s", session.getId()), ioException);
+      }
+    }
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
@@ -0,0 +1,128 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.models.Song;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Transcodes {@link Song}s into a ladder of lower bitrates, stored alongside their file at
+ * {@link IResourcePathResolver#getAudioVariantPath(String, int)}, and picks the variant to stream to a client.
+ * Only the bitrates lower than the bitrate of the original file are produced. Variants are first written to a
+ * temporary file, then moved in place at once, so that a variant is never streamed before it is complete.
+ */
+@Service
+public class AudioTranscoder {
+  /** Suffix of the temporary file a variant is written to. */
+  private static final String TEMPORARY_SUFFIX = ".tmp-";
+
+  /** {@link IResourcePathResolver} to use. */
+  @Autowired
+  private IResourcePathResolver resourcePathResolver;
+  /** Bitrates of the variants, in kbit/s. */
+  @Value("${transcoding.audioBitrates:64,128,192}")
+  private int[] bitrates;
+  /** Time after which the transcoding of a variant is killed, in milliseconds. */
+  @Value("${transcoding.timeoutMillis:600000}")
+  private long timeoutMillis;
+
+  /** Sorts the bitrates of the ladder. */
+  @PostConstruct
+  public void sortBitrates() {
+    Arrays.sort(bitrates);
+  }
+
+  /**
+   * Produces the variants of a Song that do not exist yet.
+   *
+   * @param song Saved Song to transcode.
+   * @return Bitrates of the variants of the Song, in kbit/s.
+   * @throws IOException If a variant could not be produced.
+   */
+  public List<Integer> transcode(final Song song) throws IOException {
+    int sourceBitrate = sourceBitrate(song);
+    List<Integer> variants = new ArrayList<>();
+    for (int bitrate : bitrates) {
+      if (bitrate >= sourceBitrate) {
+        break;
+      }
+      Path variant = variantPath(song.getPath(), bitrate);
+      if (!Files.exists(variant)) {
+        Path temporaryFile = variant.resolveSibling(variant.getFileName() + TEMPORARY_SUFFIX + UUID.randomUUID());
+        try {
+          ShellUtils.transcodeAudio(song.getPath(), temporaryFile, bitrate, timeoutMillis);
+          Files.move(temporaryFile, variant, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+          Files.deleteIfExists(temporaryFile);
+        }
+      }
+      variants.add(bitrate);
+    }
+    return variants;
+  }
+
+  /**
+   * Picks the file to stream of a Song: its variant of the highest bitrate that does not exceed the target, or of the
+   * lowest bitrate if they all do. The original file is picked when the bitrate is not lower than its own, or when the
+   * variant is not produced yet.
+   *
+   * @param song          Song to stream.
+   * @param targetBitrate Highest bitrate the client should receive, in kbit/s, or null to stream the original file.
+   * @return Path of the file to stream.
+   */
+  public Path select(final Song song, final Integer targetBitrate) {
+    Path original = Paths.get(song.getPath());
+    if (targetBitrate == null || bitrates.length == 0) {
+      return original;
+    }
+    int selected = bitrates[0];
+    for (int bitrate : bitrates) {
+      if (bitrate <= targetBitrate) {
+        selected = bitrate;
+      }
+    }
+    Path variant = variantPath(song.getPath(), selected);
+    return Files.exists(variant) ? variant : original;
+  }
+
+  /**
+   * Deletes the variants of an audio file, once the file itself is deleted.
+   *
+   * @param path Path of the audio file.
+   * @throws IOException If a variant could not be deleted.
+   */
+  public void delete(final String path) throws IOException {
+    for (int bitrate : bitrates) {
+      Files.deleteIfExists(variantPath(path, bitrate));
+    }
+  }
+
+  /**
+   * @param song Saved Song.
+   * @return Average bitrate of the file of the Song, in kbit/s.
+   * @throws IOException If the size of the file could not be read.
+   */
+  private static int sourceBitrate(final Song song) throws IOException {
+    Integer duration = song.getDuration();
+    if (duration == null || duration <= 0) {
+      return Integer.MAX_VALUE;
+    }
+    return (int) Math.min(Integer.MAX_VALUE, Files.size(Paths.get(song.getPath())) * Byte.SIZE / 1000 / duration);
+  }
+
+  private Path variantPath(final String path, final int bitrate) {
+    return Paths.get(resourcePathResolver.getAudioVariantPath(path, bitrate));
+  }
+
+}
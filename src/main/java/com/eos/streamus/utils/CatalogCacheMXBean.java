@@ -0,0 +1,28 @@
+package com.eos.streamus.utils;
+
+/** Gauges exported over JMX by {@link CatalogCacheMonitor}. */
+public interface CatalogCacheMXBean {
+  /** @return Lookups answered from the catalog cache since startup. */
+  long getHits();
+
+  /** @return Lookups that had to go to the database since startup. */
+  long getMisses();
+
+  /** @return Ratio of lookups answered from the catalog cache since startup. */
+  double getHitRatio();
+
+  /** @return JSON lookups answered with already serialized bytes since startup. */
+  long getSerializedHits();
+
+  /** @return Entries evicted to respect the bounds since startup. */
+  long getEvictions();
+
+  /** @return Entries invalidated by a write since startup. */
+  long getInvalidations();
+
+  /** @return Number of cached entities. */
+  int getSize();
+
+  /** @return Estimated footprint of the cached entities, in bytes. */
+  long getEstimatedBytes();
+}
@@ -0,0 +1,133 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.models.CatalogCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies the {@code catalogCache.*} properties to the {@link CatalogCache}, applies the invalidations notified by
+ * every node through the {@link ActivityEventBus} and exports its gauges over JMX.
+ * Set {@code catalogCache.enabled=false} to disable the cache.
+ */
+@Component
+public class CatalogCacheMonitor implements CatalogCacheMXBean {
+  /** JMX name of the catalog cache gauges. */
+  private static final String OBJECT_NAME = "com.eos.streamus:type=CatalogCache";
+
+  /** Whether the catalog cache is used. */
+  @Value("${catalogCache.enabled:true}")
+  private boolean enabled;
+
+  /** Maximum number of cached entities. */
+  @Value("${catalogCache.maxEntries:10000}")
+  private int maxEntries;
+
+  /** Maximum estimated footprint of the cache, in bytes. */
+  @Value("${catalogCache.maxBytes:67108864}")
+  private long maxBytes;
+
+  /** Time to live of the entries, in seconds, bounding how long a missed invalidation leaves an entry stale. */
+  @Value("${catalogCache.ttlSeconds:300}")
+  private long ttlSeconds;
+
+  /** {@link ActivityEventBus} to listen to the invalidations with. */
+  @Autowired
+  private ActivityEventBus activityEventBus;
+
+  /** Configures the cache and registers its gauges. */
+  @PostConstruct
+  public void start() {
+    CatalogCache.configure(enabled, maxEntries, maxBytes, ttlSeconds);
+    // Invalidations notified while the node was not listening are lost, so whatever is cached by then may be stale
+    activityEventBus.listen(CatalogCache.INVALIDATION_CHANNEL, CatalogCache::clear, CatalogCache::invalidateNotified);
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not register catalog cache gauges", jmException);
+    }
+  }
+
+  /** Clears the cache and unregisters its gauges. */
+  @PreDestroy
+  public void shutdown() {
+    CatalogCache.clear();
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not unregister catalog cache gauges", jmException);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getHits() {
+    return CatalogCache.getHits();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMisses() {
+    return CatalogCache.getMisses();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getHitRatio() {
+    long hits = getHits();
+    long total = hits + getMisses();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getSerializedHits() {
+    return CatalogCache.getSerializedHits();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getEvictions() {
+    return CatalogCache.getEvictions();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getInvalidations() {
+    return CatalogCache.getInvalidations();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getSize() {
+    return CatalogCache.getSize();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getEstimatedBytes() {
+    return CatalogCache.getEstimatedBytes();
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
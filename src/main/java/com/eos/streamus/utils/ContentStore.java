@@ -0,0 +1,268 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.models.CatalogCache;
+import com.eos.streamus.models.Resource;
+import com.eos.streamus.models.ResourceDAO;
+import org.apache.commons.io.FilenameUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores uploaded media files by content, at {@link IResourcePathResolver#getContentPath(String, String, String)}, so
+ * that all the {@link Resource}s of the same content share a single file. A file is deleted along with the last
+ * Resource referencing it. Files being ingested are pinned until their Resource is saved, so that they are not deleted
+ * in the meantime by this node. Pins are kept in memory, so they do not protect a file from a deletion on another
+ * node. Content addressing is turned off by {@code storage.contentAddressed}, in which case files are kept
+ * where they were received.
+ */
+@Service
+@Scope(value = "singleton")
+public class ContentStore {
+  /** Number of locks the stored files are spread over. */
+  private static final int PATH_LOCK_STRIPES = 64;
+
+  /** {@link IResourcePathResolver} to use. */
+  @Autowired
+  private IResourcePathResolver resourcePathResolver;
+
+  /** {@link IDatabaseConnector} to use. */
+  @Autowired
+  private IDatabaseConnector databaseConnector;
+
+  /** Whether files are stored by content. */
+  @Value("${storage.contentAddressed:true}")
+  private boolean contentAddressed;
+
+  /**
+   * Maximum number of request bodies received at a time through {@link #receive(InputStream, Path)}. Each of them
+   * holds the head and tail of its file in memory until it is probed.
+   */
+  @Value("${storage.maxConcurrentReceives:16}")
+  private int maxConcurrentReceives;
+
+  /**
+   * Number of ingestions of each stored file whose {@link Resource} is not saved yet. Pins only live on the node of
+   * the ingestion: a Resource of the same content deleted on another node in the meantime still deletes the file.
+   */
+  private final Map<Path, Integer> pins = new ConcurrentHashMap<>();
+  /** Locks of the stored files, by hash of their path. */
+  private final ReentrantLock[] pathLocks = new ReentrantLock[PATH_LOCK_STRIPES];
+  /** One permit per request body that may still be received. */
+  private Semaphore receivePermits;
+
+  /** Sets up the bound of the received request bodies and the locks of the stored files. */
+  @PostConstruct
+  public void start() {
+    receivePermits = new Semaphore(maxConcurrentReceives);
+    for (int i = 0; i < pathLocks.length; i++) {
+      pathLocks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Writes a request body to a new file through {@link StreamedUpload#receive(InputStream, Path)}, unless
+   * {@code storage.maxConcurrentReceives} bodies are being received already.
+   *
+   * @param input       Body of the request, read until its end.
+   * @param destination Location of the received file, which must not exist yet.
+   * @return Received upload.
+   * @throws IOException                If the body could not be read or the file written.
+   * @throws RejectedExecutionException If too many bodies are being received.
+   */
+  public StreamedUpload receive(final InputStream input, final Path destination) throws IOException {
+    if (!receivePermits.tryAcquire()) {
+      throw new RejectedExecutionException(
+          String.format("More than %d uploads are being received", maxConcurrentReceives)
+      );
+    }
+    try {
+      return StreamedUpload.receive(input, destination);
+    } finally {
+      receivePermits.release();
+    }
+  }
+
+  /**
+   * Moves a received upload to the path of its content. If the content is already stored, the received file is
+   * deleted instead, so that the content is stored once. A duplicate has still been written in full before it is
+   * discarded. The stored file is pinned until {@link #release(Path)}.
+   *
+   * @param upload    Received upload.
+   * @param directory Storage directory, e.g. {@link IResourcePathResolver#getAudioDir()}.
+   * @return The same upload, at the path of its content.
+   * @throws IOException If the upload could not be moved. The received file is deleted when this happens.
+   */
+  public StreamedUpload store(final StreamedUpload upload, final String directory) throws IOException {
+    return upload.movedTo(store(upload.getPath(), upload.getContentHash(), directory));
+  }
+
+  /**
+   * Moves a received file to the path of its content. If the content is already stored, the received file is deleted
+   * instead, so that the content is stored once. A duplicate has still been written in full before it is discarded.
+   * The stored file is pinned until {@link #release(Path)}.
+   *
+   * @param received    Received file.
+   * @param contentHash Hexadecimal {@link StreamedUpload#HASH_ALGORITHM} hash of the file.
+   * @param directory   Storage directory, e.g. {@link IResourcePathResolver#getAudioDir()}.
+   * @return Path of the stored file.
+   * @throws IOException If the file could not be moved. The received file is deleted when this happens.
+   */
+  public Path store(final Path received, final String contentHash, final String directory) throws IOException {
+    Path stored = contentAddressed
+        ? Paths.get(resourcePathResolver.getContentPath(
+            directory, contentHash, FilenameUtils.getExtension(received.getFileName().toString())
+        ))
+        : received;
+    try {
+      pins.compute(stored, (path, count) -> {
+        if (!path.equals(received)) {
+          try {
+            moveOrDiscard(received, path);
+          } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+          }
+        }
+        return count == null ? 1 : count + 1;
+      });
+    } catch (UncheckedIOException uncheckedIOException) {
+      Files.deleteIfExists(received);
+      throw uncheckedIOException.getCause();
+    }
+    return stored;
+  }
+
+  private static void moveOrDiscard(final Path received, final Path stored) throws IOException {
+    if (Files.exists(stored)) {
+      Files.delete(received);
+      return;
+    }
+    Files.createDirectories(stored.getParent());
+    try {
+      Files.move(received, stored, StandardCopyOption.ATOMIC_MOVE);
+    } catch (FileAlreadyExistsException fileAlreadyExistsException) {
+      Files.delete(received);
+    }
+  }
+
+  /**
+   * Unpins a file once its ingestion is over, and deletes it if no {@link Resource} references it, i.e. if the
+   * ingestion failed and the content was not stored before.
+   *
+   * @param stored Path of the stored file.
+   */
+  public void release(final Path stored) {
+    ReentrantLock pathLock = pathLock(stored);
+    pathLock.lock();
+    try {
+      if (pins.computeIfPresent(stored, (path, count) -> count <= 1 ? null : count - 1) != null) {
+        return;
+      }
+      int references;
+      try (Connection connection = databaseConnector.getConnection()) {
+        references = ResourceDAO.countByPath(stored.toString(), connection);
+      }
+      if (references == 0) {
+        deleteIfUnpinned(stored);
+      }
+    } catch (IOException | SQLException exception) {
+      getLogger().log(Level.WARNING, String.format("Could not release %s", stored), exception);
+    } finally {
+      pathLock.unlock();
+    }
+  }
+
+  /**
+   * Deletes a {@link Resource}, then its file if no other Resource references it and no ingestion on this node pins it.
+   * The Resource is deleted and its references counted in a single transaction, holding a lock on the file on every
+   * node, so that concurrent deletions of the Resources sharing a file always leave the last one to delete it.
+   *
+   * @param resource   Resource to delete.
+   * @param connection {@link Connection} to use to perform the operation.
+   * @throws IOException  If the file could not be deleted. The Resource is deleted anyway.
+   * @throws SQLException If an error occurred while performing the database operation. Nothing is deleted then.
+   */
+  public void delete(final Resource resource, final Connection connection) throws IOException, SQLException {
+    Path stored = Paths.get(resource.getPath());
+    ReentrantLock pathLock = pathLock(stored);
+    pathLock.lock();
+    try {
+      int references;
+      boolean autoCommit = connection.getAutoCommit();
+      connection.setAutoCommit(false);
+      try {
+        ResourceDAO.lockPath(resource.getPath(), connection);
+        resource.delete(connection);
+        references = ResourceDAO.countByPath(resource.getPath(), connection);
+        CatalogCache.commit(connection);
+      } catch (SQLException sqlException) {
+        connection.rollback();
+        throw sqlException;
+      } finally {
+        connection.setAutoCommit(autoCommit);
+      }
+      if (references == 0) {
+        deleteIfUnpinned(stored);
+      }
+    } finally {
+      pathLock.unlock();
+    }
+  }
+
+  /**
+   * Deletes a stored file unless an ingestion pinned it. The pin count is checked and the file deleted atomically, so
+   * that an upload of the same content stored in the meantime keeps it.
+   *
+   * @param stored Path of the stored file.
+   * @throws IOException If the file could not be deleted.
+   */
+  private void deleteIfUnpinned(final Path stored) throws IOException {
+    try {
+      pins.compute(stored, (path, count) -> {
+        if (count == null) {
+          try {
+            Files.deleteIfExists(path);
+          } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+          }
+        }
+        return count;
+      });
+    } catch (UncheckedIOException uncheckedIOException) {
+      throw uncheckedIOException.getCause();
+    }
+  }
+
+  /**
+   * @param stored Path of a stored file.
+   * @return Lock held while the references of the file are counted and it is deleted.
+   */
+  private ReentrantLock pathLock(final Path stored) {
+    return pathLocks[Math.floorMod(stored.hashCode(), pathLocks.length)];
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
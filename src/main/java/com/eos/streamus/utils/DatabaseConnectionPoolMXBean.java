@@ -0,0 +1,22 @@
+package com.eos.streamus.utils;
+
+/** Gauges exported over JMX by {@link PooledDatabaseConnector}. */
+public interface DatabaseConnectionPoolMXBean {
+  /** @return Number of connections currently borrowed. */
+  int getActiveConnections();
+
+  /** @return Number of open connections waiting in the pool. */
+  int getIdleConnections();
+
+  /** @return Number of threads waiting for a connection. */
+  int getPendingThreads();
+
+  /** @return Number of open connections, active or idle. */
+  int getTotalConnections();
+
+  /** @return Maximum number of open connections. */
+  int getMaxSize();
+
+  /** @return Number of connections reported as leaked since startup. */
+  long getLeakedConnections();
+}
@@ -1,6 +1,7 @@
 package com.eos.streamus.utils;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -9,8 +10,10 @@ import java.sql.SQLException;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 
+/** {@link IDatabaseConnector} opening a new connection on every call. Used when the pool is disabled. */
 @Service
 @Scope(value = "singleton")
+@ConditionalOnProperty(name = "database.pool.enabled", havingValue = "false")
 public class DatabaseConnector implements IDatabaseConnector {
   /** Jdbc url. */
   @Value("${jdbc.url}")
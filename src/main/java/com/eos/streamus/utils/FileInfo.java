@@ -3,7 +3,7 @@ package com.eos.streamus.utils;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-/** Class that contains FFProbe information about a file. For now, used only for duration. */
+/** Class that contains media information about a file, read by FFProbe or {@link MediaHeaderParser}. */
 public class FileInfo {
   /** Duration. */
   private final int duration;
@@ -12,6 +12,12 @@ public class FileInfo {
   /** Has audio track. */
   private boolean isAudio;
 
+  FileInfo(final int duration, final boolean isAudio, final boolean isVideo) {
+    this.duration = duration;
+    this.isAudio = isAudio;
+    this.isVideo = isVideo;
+  }
+
   FileInfo(final ObjectNode jsonData) {
     this.duration = jsonData.get("format").get("duration").asInt();
     for (final JsonNode stream : jsonData.get("streams")) {
@@ -0,0 +1,112 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.models.Video;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Cuts {@link Video}s into fixed-duration HLS segments, stored with their manifest in a directory per Video under
+ * {@link IResourcePathResolver#getSegmentDir()}. Segments are first written to a temporary directory, then moved in
+ * place at once, so that a manifest is never served before all its segments exist.
+ * Segment file names start with the version of their segmentation, so that segmenting a Video again never reuses the
+ * URL of a previous segment and segments can be cached forever.
+ */
+@Service
+public class HlsSegmenter {
+  /** File name of the manifest of a Video. */
+  public static final String MANIFEST_NAME = "index.m3u8";
+  /** printf-like pattern of segment file names, following the version of the segmentation. */
+  private static final String SEGMENT_NAME_FORMAT = "-%05d.ts";
+  /** Radix of the versions of segmentations. */
+  private static final int VERSION_RADIX = 36;
+  /** Valid segment file names, checked before any file is resolved from a request. */
+  private static final Pattern SEGMENT_NAME_PATTERN = Pattern.compile("[0-9a-z]+-\\d{5}\\.ts");
+  /** Suffix of the temporary directory a Video is segmented in. */
+  private static final String TEMPORARY_SUFFIX = ".tmp-";
+
+  /** {@link IResourcePathResolver} to use. */
+  @Autowired
+  private IResourcePathResolver resourcePathResolver;
+  /** Duration of a segment, in seconds. */
+  @Value("${hls.segmentDurationSeconds:6}")
+  private int segmentDurationSeconds;
+  /** Time after which segmenting a Video is given up and ffmpeg killed, in milliseconds. */
+  @Value("${hls.timeoutMillis:7200000}")
+  private long timeoutMillis;
+
+  /**
+   * Segments a Video, replacing its previous segments if any.
+   *
+   * @param video Saved Video to segment.
+   * @throws IOException If the Video could not be segmented, or not within {@code hls.timeoutMillis}.
+   */
+  public void segment(final Video video) throws IOException {
+    Path directory = directoryOf(video.getId());
+    Path temporaryDirectory = directory.resolveSibling(directory.getFileName() + TEMPORARY_SUFFIX + UUID.randomUUID());
+    Files.createDirectories(temporaryDirectory);
+    try {
+      ShellUtils.segmentToHls(
+          video.getPath(),
+          temporaryDirectory.resolve(MANIFEST_NAME),
+          // Time of the segmentation, so that segment names change whenever the Video is segmented again
+          Long.toString(System.currentTimeMillis(), VERSION_RADIX) + SEGMENT_NAME_FORMAT,
+          segmentDurationSeconds,
+          timeoutMillis
+      );
+      FileUtils.deleteDirectory(directory.toFile());
+      Files.move(temporaryDirectory, directory, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      FileUtils.deleteDirectory(temporaryDirectory.toFile());
+    }
+  }
+
+  /**
+   * Deletes the segments of a Video, if any.
+   *
+   * @param id Id of the Video.
+   * @throws IOException If the segments could not be deleted.
+   */
+  public void delete(final int id) throws IOException {
+    FileUtils.deleteDirectory(directoryOf(id).toFile());
+  }
+
+  /**
+   * @param id Id of a Video.
+   * @return Path of the manifest of the Video. The file does not exist if the Video was not segmented.
+   */
+  public Path getManifestPath(final int id) {
+    return directoryOf(id).resolve(MANIFEST_NAME);
+  }
+
+  /**
+   * @param id          Id of a Video.
+   * @param segmentName File name of the segment, as listed in the manifest.
+   * @return Path of the segment. The file does not exist if the Video has no such segment.
+   * @throws IllegalArgumentException If the name is not a segment file name.
+   */
+  public Path getSegmentPath(final int id, final String segmentName) {
+    if (!SEGMENT_NAME_PATTERN.matcher(segmentName).matches()) {
+      throw new IllegalArgumentException(String.format("Invalid segment name : %s", segmentName));
+    }
+    return directoryOf(id).resolve(segmentName);
+  }
+
+  /**
+   * @param id Id of a Video.
+   * @return Directory of the segments of the Video.
+   */
+  private Path directoryOf(final int id) {
+    return Paths.get(resourcePathResolver.getSegmentDir(), String.valueOf(id));
+  }
+
+}
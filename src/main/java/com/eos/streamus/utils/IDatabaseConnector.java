@@ -11,4 +11,15 @@ public interface IDatabaseConnector {
    * @throws SQLException if an error occurred.
    */
   Connection getConnection() throws SQLException;
+
+  /**
+   * Get a {@link Connection} to database held for a long time, e.g. to LISTEN to notifications, that does not count
+   * against a pool of connections.
+   *
+   * @return Connection, to be closed by the caller.
+   * @throws SQLException if an error occurred.
+   */
+  default Connection getDedicatedConnection() throws SQLException {
+    return getConnection();
+  }
 }
@@ -1,10 +1,54 @@
 package com.eos.streamus.utils;
 
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+
 public interface IResourcePathResolver {
+  /** Number of hexadecimal digits of a content hash naming each level of subdirectories. */
+  int CONTENT_SHARD_WIDTH = 2;
+  /** Number of levels of subdirectories of content-addressed files. */
+  int CONTENT_SHARD_DEPTH = 2;
+  /** Extension of the transcoded variants of audio files. */
+  String AUDIO_VARIANT_EXTENSION = "m4a";
 
   /** @return Video storage directory path. */
   String getVideoDir();
 
   /** @return Audio storage directory path. */
   String getAudioDir();
+
+  /** @return Storage directory path of the HLS segments of videos, one subdirectory per video. */
+  String getSegmentDir();
+
+  /**
+   * Returns the path of a content-addressed file. Files are named by their content hash, in subdirectories named
+   * after its first digits, so that no directory holds more than a few hundred entries of each level.
+   *
+   * @param directory   Storage directory, e.g. {@link #getAudioDir()}.
+   * @param contentHash Hexadecimal hash of the content of the file.
+   * @param extension   Extension of the file.
+   * @return Path of the file.
+   */
+  default String getContentPath(final String directory, final String contentHash, final String extension) {
+    StringBuilder path = new StringBuilder(directory);
+    for (int level = 0; level < CONTENT_SHARD_DEPTH; level++) {
+      path
+          .append(contentHash, level * CONTENT_SHARD_WIDTH, (level + 1) * CONTENT_SHARD_WIDTH)
+          .append(File.separator);
+    }
+    return path.append(contentHash).append('.').append(extension).toString();
+  }
+
+  /**
+   * Returns the path of a transcoded variant of an audio file, stored alongside it, so that the Songs sharing a
+   * content-addressed file share its variants as well.
+   *
+   * @param path    Path of the audio file.
+   * @param bitrate Bitrate of the variant, in kbit/s.
+   * @return Path of the variant.
+   */
+  default String getAudioVariantPath(final String path, final int bitrate) {
+    return String.format("%s.%dk.%s", FilenameUtils.removeExtension(path), bitrate, AUDIO_VARIANT_EXTENSION);
+  }
 }
@@ -0,0 +1,220 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.models.Resource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Ingestion of an uploaded media file by the {@link IngestService}, from its upload until its {@link Resource} is
+ * saved. Its state is read by other threads while a worker runs it, and saved by the {@link IngestService} so that
+ * it can be read from every node.
+ */
+public final class IngestJob {
+  /** State of a job. */
+  public enum Status {
+    /** Waiting for a worker. */
+    QUEUED,
+    /** Being run by a worker. */
+    RUNNING,
+    /** Done, the {@link Resource} is saved. */
+    SUCCEEDED,
+    /** Done, the file was rejected or could not be ingested. */
+    FAILED
+  }
+
+  /**
+   * Stage of a job, timed by {@link #stage(String, Stage)}.
+   *
+   * @param <T> Type of the result of the stage.
+   */
+  @FunctionalInterface
+  public interface Stage<T> {
+    T run() throws Exception;
+  }
+
+  /** Work of a job, run by a worker. */
+  @FunctionalInterface
+  public interface Task {
+    /**
+     * Ingests the uploaded file.
+     *
+     * @param job Job being run, to time its stages.
+     * @return Saved {@link Resource}.
+     * @throws Exception If the file could not be ingested. The Resource must not be saved when this happens.
+     */
+    Resource run(IngestJob job) throws Exception;
+  }
+
+  /** Time spent waiting for a worker. */
+  public static final String QUEUE_STAGE = "queue";
+  /** Reading the media information of the file. */
+  public static final String PROBE_STAGE = "probe";
+  /** Saving the {@link Resource}. */
+  public static final String PERSIST_STAGE = "persist";
+  /** Cutting a video into HLS segments. */
+  public static final String SEGMENT_STAGE = "segment";
+  /** Transcoding an audio file into lower bitrates. */
+  public static final String TRANSCODE_STAGE = "transcode";
+
+  /** Id of the job. */
+  private final String id;
+  /** Type of ingested {@link Resource}. */
+  private final String type;
+  /** Hexadecimal {@link StreamedUpload#HASH_ALGORITHM} hash of the uploaded file, if it was computed. */
+  private final String contentHash;
+  /** Time the job was submitted at, in nanoseconds. */
+  private final long submittedAt = System.nanoTime();
+  /** Receives the duration of each stage, in nanoseconds. */
+  private final ObjLongConsumer<String> stageListener;
+  /** Duration of each stage already run, in milliseconds. */
+  private final Map<String, Long> stageMillis = new LinkedHashMap<>();
+  /** State of the job. */
+  private volatile Status status = Status.QUEUED;
+  /** Id of the saved {@link Resource}, once succeeded. */
+  private volatile Integer resourceId;
+  /** Reason of the failure, once failed. */
+  private volatile String failureReason;
+  /** Time the job finished at, in nanoseconds. */
+  private volatile long finishedAt;
+
+  IngestJob(final String type, final String contentHash, final ObjLongConsumer<String> stageListener) {
+    this(UUID.randomUUID().toString(), type, contentHash, stageListener);
+  }
+
+  private IngestJob(final String id, final String type, final String contentHash,
+                    final ObjLongConsumer<String> stageListener) {
+    this.id = id;
+    this.type = type;
+    this.contentHash = contentHash;
+    this.stageListener = stageListener;
+  }
+
+  /**
+   * Rebuilds a job saved by a node, to read its state. It must not be run.
+   *
+   * @param id            Id of the job.
+   * @param type          Type of ingested {@link Resource}.
+   * @param contentHash   Hash of the uploaded file, or null if unknown.
+   * @param status        State of the job.
+   * @param resourceId    Id of the saved {@link Resource}, or null if the job did not succeed.
+   * @param failureReason Reason of the failure, or null if the job did not fail.
+   * @param stageMillis   Duration of each stage already run, in milliseconds.
+   * @return Rebuilt job.
+   */
+  static IngestJob restore(final String id, final String type, final String contentHash, final Status status,
+                           final Integer resourceId, final String failureReason, final Map<String, Long> stageMillis) {
+    IngestJob job = new IngestJob(id, type, contentHash, (name, nanos) -> { });
+    job.status = status;
+    job.resourceId = resourceId;
+    job.failureReason = failureReason;
+    job.stageMillis.putAll(stageMillis);
+    return job;
+  }
+
+  /** @return Id of the job. */
+  public String getId() {
+    return id;
+  }
+
+  /** @return Type of ingested {@link Resource}. */
+  public String getType() {
+    return type;
+  }
+
+  /** @return Hexadecimal {@link StreamedUpload#HASH_ALGORITHM} hash of the uploaded file, or null if unknown. */
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  /** @return State of the job. */
+  public Status getStatus() {
+    return status;
+  }
+
+  /** @return Id of the saved {@link Resource}, or null if the job did not succeed. */
+  public Integer getResourceId() {
+    return resourceId;
+  }
+
+  /** @return Reason of the failure, or null if the job did not fail. */
+  public String getFailureReason() {
+    return failureReason;
+  }
+
+  /** @return Duration of each stage already run, in milliseconds, in the order they were run. */
+  public Map<String, Long> getStageMillis() {
+    synchronized (stageMillis) {
+      return new LinkedHashMap<>(stageMillis);
+    }
+  }
+
+  /**
+   * Runs and times a stage of the job.
+   *
+   * @param name  Name of the stage.
+   * @param stage Stage to run.
+   * @param <T>   Type of the result of the stage.
+   * @return Result of the stage.
+   * @throws Exception If the stage failed. It is timed all the same.
+   */
+  public <T> T stage(final String name, final Stage<T> stage) throws Exception {
+    long start = System.nanoTime();
+    try {
+      return stage.run();
+    } finally {
+      recordStage(name, System.nanoTime() - start);
+    }
+  }
+
+  /** @return Whether the job is done, successfully or not. */
+  public boolean isFinished() {
+    return status == Status.SUCCEEDED || status == Status.FAILED;
+  }
+
+  /**
+   * @param now Current time, in nanoseconds.
+   * @return Time elapsed since the job finished, in nanoseconds, or 0 if it is not finished.
+   */
+  long finishedSince(final long now) {
+    return isFinished() ? now - finishedAt : 0;
+  }
+
+  /** Marks the job as picked by a worker. */
+  void start() {
+    recordStage(QUEUE_STAGE, System.nanoTime() - submittedAt);
+    status = Status.RUNNING;
+  }
+
+  /**
+   * Marks the job as succeeded.
+   *
+   * @param savedResourceId Id of the saved {@link Resource}.
+   */
+  void succeed(final int savedResourceId) {
+    resourceId = savedResourceId;
+    finishedAt = System.nanoTime();
+    status = Status.SUCCEEDED;
+  }
+
+  /**
+   * Marks the job as failed.
+   *
+   * @param reason Reason of the failure, as shown to the client.
+   */
+  void fail(final String reason) {
+    failureReason = reason;
+    finishedAt = System.nanoTime();
+    status = Status.FAILED;
+  }
+
+  private void recordStage(final String name, final long nanos) {
+    synchronized (stageMillis) {
+      stageMillis.put(name, nanos / 1_000_000);
+    }
+    stageListener.accept(name, nanos);
+  }
+
+}
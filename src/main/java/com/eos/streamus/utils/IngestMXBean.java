@@ -0,0 +1,33 @@
+package com.eos.streamus.utils;
+
+import java.util.Map;
+
+/** Gauges exported over JMX by {@link IngestService}. */
+public interface IngestMXBean {
+  /** @return Number of workers. */
+  int getWorkers();
+
+  /** @return Number of jobs being run. */
+  int getActiveJobs();
+
+  /** @return Number of jobs waiting for a worker. */
+  int getQueueDepth();
+
+  /** @return Maximum number of jobs waiting for a worker. */
+  int getQueueCapacity();
+
+  /** @return Number of jobs succeeded since startup. */
+  long getSucceededJobs();
+
+  /** @return Number of jobs failed since startup. */
+  long getFailedJobs();
+
+  /** @return Number of uploads rejected because the queue was full since startup. */
+  long getRejectedJobs();
+
+  /** @return Average duration of each stage since startup, in milliseconds. */
+  Map<String, Double> getAverageStageMillis();
+
+  /** @return Longest duration of each stage since startup, in milliseconds. */
+  Map<String, Long> getMaxStageMillis();
+}
@@ -0,0 +1,420 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.exceptions.InvalidMediaException;
+import com.eos.streamus.models.Resource;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Ingests uploaded media files on a bounded pool of workers, so that upload requests return as soon as the file is
+ * stored. Jobs that do not fit in the queue are rejected instead of piling up.
+ * The state of every job is saved to the database whenever it changes, so that clients can poll it from any node.
+ * Finished jobs are kept for {@code ingest.retentionMinutes}, and purged every minute. Jobs left unfinished by a node
+ * that stopped are purged after {@code ingest.abandonedMinutes}.
+ */
+@Service
+@Scope(value = "singleton")
+public class IngestService implements IngestMXBean {
+  /** JMX name of the ingest gauges. */
+  private static final String OBJECT_NAME = "com.eos.streamus:type=Ingest";
+  /** Failure reason shown to clients when a job failed unexpectedly. */
+  private static final String UNEXPECTED_FAILURE_REASON = "Something went wrong";
+  /** Time given to running jobs to finish on shutdown, in seconds. */
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+  /** Time between two purges of the finished jobs, in minutes. */
+  private static final long PURGE_PERIOD_MINUTES = 1;
+  /** Name of the table of the jobs. */
+  private static final String TABLE_NAME = "IngestJob";
+  /** Reads the saved stage durations. */
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  /** Number of workers. */
+  @Value("${ingest.workers:2}")
+  private int workers;
+
+  /** Maximum number of jobs waiting for a worker. */
+  @Value("${ingest.queueCapacity:50}")
+  private int queueCapacity;
+
+  /** Time finished jobs are kept for, in minutes. */
+  @Value("${ingest.retentionMinutes:60}")
+  private long retentionMinutes;
+
+  /** Time after which a saved job that did not finish is considered abandoned by its node, in minutes. */
+  @Value("${ingest.abandonedMinutes:1440}")
+  private long abandonedMinutes;
+
+  /** Jobs by id. */
+  private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+  /** Statistics of each stage. */
+  private final Map<String, StageStatistics> stageStatistics = new ConcurrentHashMap<>();
+  /** Jobs succeeded since startup. */
+  private final AtomicLong succeededJobs = new AtomicLong();
+  /** Jobs failed since startup. */
+  private final AtomicLong failedJobs = new AtomicLong();
+  /** Uploads rejected since startup. */
+  private final AtomicLong rejectedJobs = new AtomicLong();
+  /** Runs the jobs. */
+  private ThreadPoolExecutor executor;
+  /** Purges the finished jobs. */
+  private ScheduledExecutorService purger;
+
+  /** {@link ContentStore} to use. */
+  @Autowired
+  private ContentStore contentStore;
+
+  /** {@link IDatabaseConnector} to save the jobs with. */
+  @Autowired
+  private IDatabaseConnector databaseConnector;
+
+  /** Durations of a stage. */
+  private static final class StageStatistics {
+    /** Number of runs. */
+    private final LongAdder count = new LongAdder();
+    /** Total duration, in nanoseconds. */
+    private final LongAdder totalNanos = new LongAdder();
+    /** Longest duration, in nanoseconds. */
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+  }
+
+  /** Starts the workers and registers the ingest gauges. */
+  @PostConstruct
+  public void start() {
+    AtomicInteger threadNumber = new AtomicInteger();
+    executor = new ThreadPoolExecutor(
+        workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+        runnable -> {
+          Thread thread = new Thread(runnable, "ingest-worker-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+    );
+    purger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "ingest-purger");
+      thread.setDaemon(true);
+      return thread;
+    });
+    purger.scheduleWithFixedDelay(
+        this::purgeFinishedJobs, PURGE_PERIOD_MINUTES, PURGE_PERIOD_MINUTES, TimeUnit.MINUTES
+    );
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not register ingest gauges", jmException);
+    }
+  }
+
+  /** Lets running and queued jobs finish for a while, then stops the workers and unregisters the ingest gauges. */
+  @PreDestroy
+  public void shutdown() {
+    purger.shutdownNow();
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException interruptedException) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not unregister ingest gauges", jmException);
+    }
+  }
+
+  /**
+   * Queues the ingestion of an uploaded file.
+   *
+   * @param type Type of {@link Resource} to ingest.
+   * @param file Uploaded file, pinned by {@link ContentStore#store}. It is released once the job is over.
+   * @param task Work of the job. It fails with an {@link InvalidMediaException} if the file is rejected.
+   * @return Queued job.
+   * @throws RejectedExecutionException If the queue is full. The file is left pinned.
+   */
+  public IngestJob submit(final String type, final Path file, final IngestJob.Task task) {
+    return submit(type, file, null, task);
+  }
+
+  /**
+   * Queues the ingestion of an upload received in a single pass.
+   *
+   * @param type   Type of {@link Resource} to ingest.
+   * @param upload Received upload, pinned by {@link ContentStore#store}. Its file is released once the job is over.
+   * @param task   Work of the job. It fails with an {@link InvalidMediaException} if the file is rejected.
+   * @return Queued job, holding the content hash of the upload.
+   * @throws RejectedExecutionException If the queue is full. The file is left pinned.
+   */
+  public IngestJob submit(final String type, final StreamedUpload upload, final IngestJob.Task task) {
+    return submit(type, upload.getPath(), upload.getContentHash(), task);
+  }
+
+  private IngestJob submit(final String type, final Path file, final String contentHash, final IngestJob.Task task) {
+    IngestJob job = new IngestJob(type, contentHash, this::recordStage);
+    jobs.put(job.getId(), job);
+    save(job);
+    try {
+      executor.execute(() -> run(job, file, task));
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      jobs.remove(job.getId());
+      delete(job);
+      rejectedJobs.incrementAndGet();
+      throw rejectedExecutionException;
+    }
+    return job;
+  }
+
+  /**
+   * @param id Id of a job.
+   * @return The job, as last saved if it runs on another node, or null if there is no such job or it finished too
+   * long ago.
+   * @throws SQLException If the job could not be read from the database.
+   */
+  public IngestJob getJob(final String id) throws SQLException {
+    IngestJob job = jobs.get(id);
+    return job == null ? load(id) : job;
+  }
+
+  private void run(final IngestJob job, final Path file, final IngestJob.Task task) {
+    job.start();
+    save(job);
+    try {
+      Resource resource = task.run(job);
+      job.succeed(resource.getId());
+      succeededJobs.incrementAndGet();
+    } catch (InvalidMediaException invalidMediaException) {
+      job.fail(invalidMediaException.getMessage());
+      failedJobs.incrementAndGet();
+    } catch (Exception exception) {
+      getLogger().log(Level.SEVERE, String.format("Ingest job %s failed", job.getId()), exception);
+      job.fail(UNEXPECTED_FAILURE_REASON);
+      failedJobs.incrementAndGet();
+    } finally {
+      save(job);
+      contentStore.release(file);
+    }
+  }
+
+  private void recordStage(final String name, final long nanos) {
+    StageStatistics statistics = stageStatistics.computeIfAbsent(name, key -> new StageStatistics());
+    statistics.count.increment();
+    statistics.totalNanos.add(nanos);
+    statistics.maxNanos.accumulate(nanos);
+  }
+
+  /**
+   * Saves the state of a job. A job that could not be saved can still be polled on this node.
+   *
+   * @param job Job to save.
+   */
+  private void save(final IngestJob job) {
+    ObjectNode stageMillis = JsonNodeFactory.instance.objectNode();
+    job.getStageMillis().forEach(stageMillis::put);
+    try (Connection connection = databaseConnector.getConnection();
+         PreparedStatement preparedStatement = connection.prepareStatement(
+             String.format(
+                 "insert into %s(id, type, contentHash, status, idResource, failureReason, stageMillis, updatedAt) "
+                 + "values (?, ?, ?, ?, ?, ?, ?::jsonb, now()) on conflict (id) do update set "
+                 + "status = excluded.status, idResource = excluded.idResource, "
+                 + "failureReason = excluded.failureReason, stageMillis = excluded.stageMillis, updatedAt = now()",
+                 TABLE_NAME
+             )
+         )) {
+      int columnNumber = 0;
+      preparedStatement.setString(++columnNumber, job.getId());
+      preparedStatement.setString(++columnNumber, job.getType());
+      preparedStatement.setString(++columnNumber, job.getContentHash());
+      preparedStatement.setString(++columnNumber, job.getStatus().name());
+      preparedStatement.setObject(++columnNumber, job.getResourceId(), Types.INTEGER);
+      preparedStatement.setString(++columnNumber, job.getFailureReason());
+      preparedStatement.setString(++columnNumber, stageMillis.toString());
+      preparedStatement.execute();
+    } catch (SQLException sqlException) {
+      getLogger().log(Level.WARNING, String.format("Could not save ingest job %s", job.getId()), sqlException);
+    }
+  }
+
+  private void delete(final IngestJob job) {
+    try (Connection connection = databaseConnector.getConnection();
+         PreparedStatement preparedStatement = connection.prepareStatement(
+             String.format("delete from %s where id = ?", TABLE_NAME)
+         )) {
+      preparedStatement.setString(1, job.getId());
+      preparedStatement.execute();
+    } catch (SQLException sqlException) {
+      getLogger().log(Level.WARNING, String.format("Could not delete ingest job %s", job.getId()), sqlException);
+    }
+  }
+
+  /**
+   * Reads the state of a job as last saved, by any node.
+   *
+   * @param id Id of the job.
+   * @return The job, or null if there is no such job or it was purged.
+   * @throws SQLException If the job could not be read.
+   */
+  private IngestJob load(final String id) throws SQLException {
+    try (Connection connection = databaseConnector.getConnection();
+         PreparedStatement preparedStatement = connection.prepareStatement(
+             String.format("select * from %s where id = ?", TABLE_NAME)
+         )) {
+      preparedStatement.setString(1, id);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        if (!resultSet.next()) {
+          return null;
+        }
+        Map<String, Long> stageMillis = new LinkedHashMap<>();
+        try {
+          OBJECT_MAPPER.readTree(resultSet.getString("stageMillis")).fields()
+                       .forEachRemaining(stage -> stageMillis.put(stage.getKey(), stage.getValue().asLong()));
+        } catch (JsonProcessingException jsonProcessingException) {
+          getLogger().log(Level.WARNING, String.format("Invalid stages of ingest job %s", id), jsonProcessingException);
+        }
+        return IngestJob.restore(
+            id,
+            resultSet.getString("type"),
+            resultSet.getString("contentHash"),
+            IngestJob.Status.valueOf(resultSet.getString("status")),
+            (Integer) resultSet.getObject("idResource"),
+            resultSet.getString("failureReason"),
+            stageMillis
+        );
+      }
+    }
+  }
+
+  /** Forgets the jobs that finished too long ago, and deletes them from the database along with abandoned jobs. */
+  private void purgeFinishedJobs() {
+    long now = System.nanoTime();
+    long retentionNanos = TimeUnit.MINUTES.toNanos(retentionMinutes);
+    jobs.values().removeIf(job -> job.finishedSince(now) > retentionNanos);
+    try (Connection connection = databaseConnector.getConnection();
+         PreparedStatement preparedStatement = connection.prepareStatement(
+             String.format(
+                 "delete from %s where (status in (?, ?) and updatedAt < now() - ? * interval '1 minute') "
+                 + "or updatedAt < now() - ? * interval '1 minute'",
+                 TABLE_NAME
+             )
+         )) {
+      int columnNumber = 0;
+      preparedStatement.setString(++columnNumber, IngestJob.Status.SUCCEEDED.name());
+      preparedStatement.setString(++columnNumber, IngestJob.Status.FAILED.name());
+      preparedStatement.setLong(++columnNumber, retentionMinutes);
+      preparedStatement.setLong(++columnNumber, abandonedMinutes);
+      preparedStatement.execute();
+    } catch (SQLException | RuntimeException exception) {
+      // Caught all the same so that the purge stays scheduled
+      getLogger().log(Level.WARNING, "Could not purge the finished ingest jobs", exception);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getWorkers() {
+    return workers;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getActiveJobs() {
+    return executor.getActiveCount();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getSucceededJobs() {
+    return succeededJobs.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getFailedJobs() {
+    return failedJobs.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getRejectedJobs() {
+    return rejectedJobs.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Map<String, Double> getAverageStageMillis() {
+    Map<String, Double> averages = new TreeMap<>();
+    stageStatistics.forEach((name, statistics) -> {
+      long count = statistics.count.sum();
+      averages.put(name, count == 0 ? 0 : statistics.totalNanos.sum() / 1_000_000d / count);
+    });
+    return averages;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Map<String, Long> getMaxStageMillis() {
+    Map<String, Long> maxima = new TreeMap<>();
+    stageStatistics.forEach((name, statistics) -> maxima.put(name, statistics.maxNanos.get() / 1_000_000));
+    return maxima;
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
@@ -0,0 +1,274 @@
+package com.eos.streamus.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live state of an {@link com.eos.streamus.models.Activity}, held in memory by {@link LiveActivityService}: its
+ * members and managers, its position in milliseconds, its playback rate, whether it is playing and, for a
+ * {@link com.eos.streamus.models.CollectionActivity}, the number of the track being played.
+ * Playback events only update this state. The checkpoints of {@link LiveActivityService} save the position of a
+ * {@link com.eos.streamus.models.ResourceActivity} back to the database, in whole seconds, and the whole playback
+ * state of any Activity, from which a node that did not hold it, e.g. where a member joins later, restores it.
+ * Times are read from the {@link ServerClock}, so that the position of a playing Activity at any server time is
+ * {@code position + (time - positionUpdatedAt) * rate}, which members compute to correct their drift.
+ */
+public final class LiveActivity {
+  /** Milliseconds in a second. */
+  public static final long MILLIS_PER_SECOND = 1000;
+  /** Default playback rate. */
+  public static final double DEFAULT_RATE = 1;
+
+  /** Id of the Activity. */
+  private final int id;
+  /**
+   * Whether each known member manages the Activity, by User id. Members who joined after the state was loaded are
+   * added on their first use by {@link LiveActivityService#getManagement(int, int)}.
+   */
+  private final Map<Integer, Boolean> members;
+  /** Duration of the Resource of a ResourceActivity, in milliseconds, or null if the Activity has no saved position. */
+  private final Long durationMillis;
+  /** Position at {@link #positionUpdatedAt}, in milliseconds. */
+  private long positionMillis;
+  /** Server time at which the position was last set, in milliseconds since the epoch. */
+  private long positionUpdatedAt;
+  /** Playback rate. */
+  private double rate = DEFAULT_RATE;
+  /** Whether the Activity is playing. */
+  private boolean playing;
+  /** Number of the track being played, or null if none was set. */
+  private Integer track;
+  /** Whether the playback state changed since the last checkpoint. */
+  private boolean dirty;
+  /** Server time at which the Activity was last used, in milliseconds since the epoch. */
+  private volatile long lastUsedAt;
+
+  /**
+   * @param id       Id of the Activity.
+   * @param members  Whether each member manages the Activity, by User id.
+   * @param position Saved position, in seconds.
+   * @param duration Duration of the Resource of a ResourceActivity, in seconds, or null if the Activity has no
+   *                 saved position.
+   */
+  LiveActivity(final int id, final Map<Integer, Boolean> members, final int position, final Integer duration) {
+    this.id = id;
+    this.members = new ConcurrentHashMap<>(members);
+    this.positionMillis = position * MILLIS_PER_SECOND;
+    this.durationMillis = duration == null ? null : duration * MILLIS_PER_SECOND;
+    this.positionUpdatedAt = ServerClock.currentTimeMillis();
+    this.lastUsedAt = positionUpdatedAt;
+  }
+
+  /** @return Id of the Activity. */
+  public int getId() {
+    return id;
+  }
+
+  /**
+   * @param userId Id of a User.
+   * @return Whether the User manages the Activity, or null if they are not a known member of it.
+   */
+  Boolean getManagement(final int userId) {
+    lastUsedAt = ServerClock.currentTimeMillis();
+    return members.get(userId);
+  }
+
+  /**
+   * Adds a member who joined the Activity after the state was loaded.
+   *
+   * @param userId  Id of the User.
+   * @param manages Whether the User manages the Activity.
+   */
+  void putMember(final int userId, final boolean manages) {
+    members.put(userId, manages);
+  }
+
+  /** @return Whether the Activity is a ResourceActivity, whose position is saved. */
+  public boolean hasSavedPosition() {
+    return durationMillis != null;
+  }
+
+  /** @return Playback rate. */
+  public synchronized double getRate() {
+    return rate;
+  }
+
+  /** @return Current position, in seconds. */
+  public int getPosition() {
+    return (int) (getPositionMillis() / MILLIS_PER_SECOND);
+  }
+
+  /** @return Current position, in milliseconds, extrapolated from the last event while playing. */
+  public synchronized long getPositionMillis() {
+    return positionAt(ServerClock.currentTimeMillis());
+  }
+
+  /** @return Consistent snapshot of the playback state, as of now. */
+  public synchronized Snapshot snapshot() {
+    long now = ServerClock.currentTimeMillis();
+    return new Snapshot(now, positionAt(now), rate, playing, track);
+  }
+
+  /** Playback state of a LiveActivity at a server time. */
+  public static final class Snapshot {
+    /** Server time of the snapshot, in milliseconds since the epoch. */
+    private final long at;
+    /** Position at that time, in milliseconds. */
+    private final long positionMillis;
+    /** Playback rate. */
+    private final double rate;
+    /** Whether the Activity is playing. */
+    private final boolean playing;
+    /** Number of the track being played, or null. */
+    private final Integer track;
+
+    private Snapshot(final long at, final long positionMillis, final double rate, final boolean playing,
+                     final Integer track) {
+      this.at = at;
+      this.positionMillis = positionMillis;
+      this.rate = rate;
+      this.playing = playing;
+      this.track = track;
+    }
+
+    /** @return Server time of the snapshot, in milliseconds since the epoch. */
+    public long getAt() {
+      return at;
+    }
+
+    /** @return Position at that time, in milliseconds. */
+    public long getPositionMillis() {
+      return positionMillis;
+    }
+
+    /** @return Playback rate. */
+    public double getRate() {
+      return rate;
+    }
+
+    /** @return Whether the Activity is playing. */
+    public boolean isPlaying() {
+      return playing;
+    }
+
+    /** @return Number of the track being played, or null. */
+    public Integer getTrack() {
+      return track;
+    }
+  }
+
+  /**
+   * Applies a playback event.
+   *
+   * @param type           Type of the event.
+   * @param positionMillis Position of the event, in milliseconds.
+   * @param rate           Playback rate to set, or null to keep the current one.
+   * @param track          Number of the track to play, or null to keep the current one.
+   * @return Snapshot of the state once the event is applied, to publish instead of the event as sent.
+   */
+  public synchronized Snapshot apply(final ActivitySyncEvent.Type type, final long positionMillis, final Double rate,
+                                     final Integer track) {
+    return apply(type, positionMillis, rate, track, ServerClock.currentTimeMillis());
+  }
+
+  /**
+   * Applies a playback event that happened at a given server time, such as an event relayed from another node, so
+   * that the position keeps advancing from when the event happened rather than from when it was received.
+   *
+   * @param type           Type of the event.
+   * @param positionMillis Position of the event, in milliseconds.
+   * @param rate           Playback rate to set, or null to keep the current one.
+   * @param track          Number of the track to play, or null to keep the current one.
+   * @param at             Server time of the event, in milliseconds since the epoch. Times in the future are read as
+   *                       the current time.
+   * @return Snapshot of the state once the event is applied, as of now.
+   */
+  public synchronized Snapshot apply(final ActivitySyncEvent.Type type, final long positionMillis, final Double rate,
+                                     final Integer track, final long at) {
+    long now = ServerClock.currentTimeMillis();
+    switch (type) {
+      case PLAY:
+        playing = true;
+        break;
+      case PAUSE:
+        playing = false;
+        break;
+      case SEEK:
+        break;
+      default:
+        throw new IllegalArgumentException(String.format("Unknown event type %s", type));
+    }
+    if (rate != null) {
+      this.rate = rate;
+    }
+    if (track != null) {
+      this.track = track;
+    }
+    this.positionMillis = durationMillis == null ? positionMillis : Math.min(positionMillis, durationMillis);
+    positionUpdatedAt = Math.min(at, now);
+    lastUsedAt = now;
+    dirty = true;
+    return new Snapshot(now, positionAt(now), this.rate, playing, this.track);
+  }
+
+  /** @return Whether the Activity reached the end of its Resource. */
+  synchronized boolean isOver() {
+    return durationMillis != null && positionAt(ServerClock.currentTimeMillis()) >= durationMillis;
+  }
+
+  /**
+   * @param idleSince Server time before which an Activity not used since is idle, in milliseconds since the epoch.
+   * @return Whether the Activity was not used since the given time and has nothing left to save.
+   */
+  synchronized boolean isIdle(final long idleSince) {
+    return lastUsedAt < idleSince && !playing && !dirty;
+  }
+
+  /**
+   * Takes the state to save at a checkpoint. A playing Activity stays dirty, so that its saved position follows the
+   * playback from one checkpoint to the next.
+   *
+   * @return State to save, as of now, or null if it did not change since the last checkpoint.
+   */
+  synchronized Snapshot takeCheckpoint() {
+    if (!dirty) {
+      return null;
+    }
+    dirty = playing;
+    long now = ServerClock.currentTimeMillis();
+    return new Snapshot(now, positionAt(now), rate, playing, track);
+  }
+
+  /** Marks the state as changed again, after a checkpoint failed to save it. */
+  synchronized void restoreCheckpoint() {
+    dirty = true;
+  }
+
+  /**
+   * Restores the playback state saved at a checkpoint, by this node or another one. A playing Activity goes on from
+   * the saved position as if it had been held since.
+   *
+   * @param savedPositionMillis Saved position, in milliseconds.
+   * @param savedAt             Server time of the saved position, in milliseconds since the epoch.
+   * @param savedRate           Saved playback rate.
+   * @param savedPlaying        Whether the Activity was playing.
+   * @param savedTrack          Number of the track being played, or null.
+   */
+  synchronized void restore(final long savedPositionMillis, final long savedAt, final double savedRate,
+                            final boolean savedPlaying, final Integer savedTrack) {
+    playing = savedPlaying;
+    rate = savedRate;
+    track = savedTrack;
+    positionMillis = durationMillis == null ? savedPositionMillis : Math.min(savedPositionMillis, durationMillis);
+    positionUpdatedAt = Math.min(savedAt, ServerClock.currentTimeMillis());
+  }
+
+  private long positionAt(final long time) {
+    if (!playing) {
+      return positionMillis;
+    }
+    long extrapolated = positionMillis + (long) ((time - positionUpdatedAt) * rate);
+    return durationMillis == null ? extrapolated : Math.min(extrapolated, durationMillis);
+  }
+
+}
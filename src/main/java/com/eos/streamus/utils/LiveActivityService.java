@@ -0,0 +1,377 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.models.Activity;
+import com.eos.streamus.models.ResourceActivity;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the {@link LiveActivity} state of the Activities in use in memory, so that pausing, resuming and seeking an
+ * Activity does not touch the database.
+ * States are kept in shards, each guarded by its own lock, keyed by Activity id. They are loaded on first use, with
+ * a query for the members and one for the position. A User who is not a member as of the load is looked up again, so
+ * that members joining an Activity in use are not refused.
+ * Changed positions are saved back to the ResourceActivity table in a single batch at every checkpoint, and when an
+ * Activity ends: when its last sync session leaves, when it reaches the end of its Resource, or on shutdown.
+ * Activities idle for long enough are then dropped.
+ * Playback events published by other nodes through the {@link ActivityEventBus} are applied to the states held by
+ * this node. Every checkpoint also saves the whole playback state, playing flag, rate, track and millisecond
+ * position with its server time, to the LiveActivityState table, and loading a state restores it. A node that did
+ * not hold a state when events were relayed, or that dropped it when its own sessions left, thus restores the state
+ * the other nodes play from, extrapolated to the current time, so that members joining on any node receive the same
+ * state.
+ */
+@Service
+@Scope(value = "singleton")
+public class LiveActivityService {
+  /** Milliseconds in a minute. */
+  private static final long MILLIS_PER_MINUTE = 60_000;
+  /** Table of the playback states saved at checkpoints. */
+  private static final String STATE_TABLE_NAME = "LiveActivityState";
+
+  /** {@link IDatabaseConnector} to use. */
+  @Autowired
+  private IDatabaseConnector databaseConnector;
+
+  /** {@link ActivityEventBus} to use. */
+  @Autowired
+  private ActivityEventBus activityEventBus;
+
+  /** Number of shards. */
+  @Value("${liveActivity.shards:16}")
+  private int shardCount;
+
+  /** Period of the checkpoints, in milliseconds. */
+  @Value("${liveActivity.checkpointPeriodMillis:10000}")
+  private long checkpointPeriodMillis;
+
+  /** Time after which an unused Activity with nothing left to save is dropped, in minutes. */
+  @Value("${liveActivity.idleMinutes:30}")
+  private long idleMinutes;
+
+  /** States by Activity id, split in shards by id. */
+  private List<Map<Integer, LiveActivity>> shards;
+  /** Runs the checkpoints. */
+  private ScheduledExecutorService checkpointer;
+
+  /** Starts the checkpoints and applies the events of other nodes. */
+  @PostConstruct
+  public void start() {
+    activityEventBus.subscribe(this::applyRemote);
+    shards = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new HashMap<>());
+    }
+    checkpointer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "live-activity-checkpointer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    checkpointer.scheduleWithFixedDelay(
+        this::checkpoint, checkpointPeriodMillis, checkpointPeriodMillis, TimeUnit.MILLISECONDS
+    );
+  }
+
+  /** Stops the checkpoints and saves every changed position. */
+  @PreDestroy
+  public void shutdown() {
+    checkpointer.shutdownNow();
+    Map<LiveActivity, LiveActivity.Snapshot> checkpoints = new HashMap<>();
+    for (Map<Integer, LiveActivity> shard : shards) {
+      synchronized (shard) {
+        for (LiveActivity liveActivity : shard.values()) {
+          addCheckpoint(liveActivity, checkpoints);
+        }
+        shard.clear();
+      }
+    }
+    save(checkpoints);
+  }
+
+  /**
+   * Gets the live state of an Activity, loading it on first use.
+   *
+   * @param activityId Id of the Activity.
+   * @return Live state of the Activity.
+   * @throws SQLException      If the state could not be loaded.
+   * @throws NoResultException If there is no Activity of this id.
+   */
+  public LiveActivity get(final int activityId) throws SQLException, NoResultException {
+    LiveActivity liveActivity = find(activityId);
+    if (liveActivity != null) {
+      return liveActivity;
+    }
+    LiveActivity loaded = load(activityId);
+    Map<Integer, LiveActivity> shard = shardOf(activityId);
+    synchronized (shard) {
+      return shard.computeIfAbsent(activityId, id -> loaded);
+    }
+  }
+
+  /**
+   * Gets the live state of an Activity, if it is in use.
+   *
+   * @param activityId Id of the Activity.
+   * @return Live state of the Activity, or null if it is not in memory.
+   */
+  public LiveActivity find(final int activityId) {
+    Map<Integer, LiveActivity> shard = shardOf(activityId);
+    synchronized (shard) {
+      return shard.get(activityId);
+    }
+  }
+
+  /**
+   * Finds whether a User takes part in an Activity in use, and whether they manage it. Users unknown to its live
+   * state are looked up in the database, and added to the state if they joined since it was loaded.
+   *
+   * @param activityId Id of the Activity.
+   * @param userId     Id of the User.
+   * @return Whether the User manages the Activity, or null if they do not take part in it.
+   * @throws SQLException      If the state or the membership could not be loaded.
+   * @throws NoResultException If there is no Activity of this id.
+   */
+  public Boolean getManagement(final int activityId, final int userId) throws SQLException, NoResultException {
+    LiveActivity liveActivity = get(activityId);
+    Boolean management = liveActivity.getManagement(userId);
+    if (management != null) {
+      return management;
+    }
+    try (Connection connection = databaseConnector.getConnection()) {
+      management = Activity.findManagement(activityId, userId, connection);
+    }
+    if (management != null) {
+      liveActivity.putMember(userId, management);
+    }
+    return management;
+  }
+
+  /**
+   * @param activityId Id of the Activity.
+   * @param userId     Id of the User.
+   * @return Whether the User manages the Activity.
+   * @throws SQLException      If the state or the membership could not be loaded.
+   * @throws NoResultException If there is no Activity of this id.
+   */
+  public boolean isManagedBy(final int activityId, final int userId) throws SQLException, NoResultException {
+    return Boolean.TRUE.equals(getManagement(activityId, userId));
+  }
+
+  /**
+   * Saves the position of an Activity and drops its live state.
+   *
+   * @param activityId Id of the Activity.
+   */
+  public void end(final int activityId) {
+    LiveActivity liveActivity;
+    Map<Integer, LiveActivity> shard = shardOf(activityId);
+    synchronized (shard) {
+      liveActivity = shard.remove(activityId);
+    }
+    if (liveActivity != null) {
+      Map<LiveActivity, LiveActivity.Snapshot> checkpoints = new HashMap<>();
+      addCheckpoint(liveActivity, checkpoints);
+      save(checkpoints);
+    }
+  }
+
+  /**
+   * Saves every changed position in a single batch, then drops the Activities that are over or idle.
+   * Shards are only locked while their states are read, never while the database is written.
+   */
+  void checkpoint() {
+    long idleSince = ServerClock.currentTimeMillis() - idleMinutes * MILLIS_PER_MINUTE;
+    Map<LiveActivity, LiveActivity.Snapshot> checkpoints = new HashMap<>();
+    for (Map<Integer, LiveActivity> shard : shards) {
+      synchronized (shard) {
+        Iterator<LiveActivity> iterator = shard.values().iterator();
+        while (iterator.hasNext()) {
+          LiveActivity liveActivity = iterator.next();
+          boolean over = liveActivity.isOver();
+          addCheckpoint(liveActivity, checkpoints);
+          if (over || liveActivity.isIdle(idleSince)) {
+            iterator.remove();
+          }
+        }
+      }
+    }
+    save(checkpoints);
+  }
+
+  /**
+   * Applies a playback event published by another node to the state of its Activity, if this node holds it.
+   *
+   * @param busEvent Event of the {@link ActivityEventBus}.
+   */
+  private void applyRemote(final JsonNode busEvent) {
+    JsonNode event = busEvent.get(ActivitySyncService.EVENT_FIELD);
+    if (event == null || !event.path("activityId").canConvertToInt()) {
+      return;
+    }
+    LiveActivity liveActivity = find(event.get("activityId").intValue());
+    if (liveActivity == null) {
+      return;
+    }
+    try {
+      liveActivity.apply(
+          ActivitySyncEvent.Type.valueOf(event.path("type").asText().toUpperCase(Locale.ROOT)),
+          event.path("position").asLong(),
+          event.path("rate").isNumber() ? event.get("rate").doubleValue() : null,
+          event.path("track").canConvertToInt() ? event.get("track").intValue() : null,
+          event.path("sentAt").asLong(ServerClock.currentTimeMillis())
+      );
+    } catch (IllegalArgumentException illegalArgumentException) {
+      getLogger().log(Level.WARNING, "Ignored an invalid playback event from another node", illegalArgumentException);
+    }
+  }
+
+  private static void addCheckpoint(final LiveActivity liveActivity,
+                                    final Map<LiveActivity, LiveActivity.Snapshot> checkpoints) {
+    LiveActivity.Snapshot checkpoint = liveActivity.takeCheckpoint();
+    if (checkpoint != null) {
+      checkpoints.put(liveActivity, checkpoint);
+    }
+  }
+
+  /**
+   * Saves the positions of the checkpointed ResourceActivities, then the playback states of every checkpointed
+   * Activity, each in a single batch. States that could not be saved are saved again at the next checkpoint.
+   *
+   * @param checkpoints States to save, by live state.
+   */
+  private void save(final Map<LiveActivity, LiveActivity.Snapshot> checkpoints) {
+    if (checkpoints.isEmpty()) {
+      return;
+    }
+    Map<Integer, Integer> positions = new HashMap<>();
+    for (Map.Entry<LiveActivity, LiveActivity.Snapshot> checkpoint : checkpoints.entrySet()) {
+      if (checkpoint.getKey().hasSavedPosition()) {
+        positions.put(
+            checkpoint.getKey().getId(),
+            (int) (checkpoint.getValue().getPositionMillis() / LiveActivity.MILLIS_PER_SECOND)
+        );
+      }
+    }
+    try (Connection connection = databaseConnector.getConnection()) {
+      ResourceActivity.updatePausedAts(positions, connection);
+      saveStates(checkpoints, connection);
+    } catch (SQLException sqlException) {
+      getLogger().log(Level.WARNING, "Could not save the states of live activities", sqlException);
+      for (LiveActivity liveActivity : checkpoints.keySet()) {
+        liveActivity.restoreCheckpoint();
+      }
+    }
+  }
+
+  /**
+   * Upserts the playback states of Activities, skipping the Activities deleted since they were loaded.
+   *
+   * @param checkpoints States to save, by live state.
+   * @param connection  {@link Connection} to use.
+   * @throws SQLException If the states could not be saved.
+   */
+  private static void saveStates(final Map<LiveActivity, LiveActivity.Snapshot> checkpoints,
+                                 final Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "insert into %s(idActivity, positionMillis, positionAt, rate, playing, track) "
+            + "select ?, ?, ?, ?, ?, ? where exists (select 1 from Activity where id = ?) "
+            + "on conflict (idActivity) do update set positionMillis = excluded.positionMillis, "
+            + "positionAt = excluded.positionAt, rate = excluded.rate, playing = excluded.playing, "
+            + "track = excluded.track",
+            STATE_TABLE_NAME
+        )
+    )) {
+      for (Map.Entry<LiveActivity, LiveActivity.Snapshot> checkpoint : checkpoints.entrySet()) {
+        LiveActivity.Snapshot state = checkpoint.getValue();
+        int columnNumber = 0;
+        preparedStatement.setInt(++columnNumber, checkpoint.getKey().getId());
+        preparedStatement.setLong(++columnNumber, state.getPositionMillis());
+        preparedStatement.setLong(++columnNumber, state.getAt());
+        preparedStatement.setDouble(++columnNumber, state.getRate());
+        preparedStatement.setBoolean(++columnNumber, state.isPlaying());
+        preparedStatement.setObject(++columnNumber, state.getTrack(), Types.INTEGER);
+        preparedStatement.setInt(++columnNumber, checkpoint.getKey().getId());
+        preparedStatement.addBatch();
+      }
+      preparedStatement.executeBatch();
+    }
+  }
+
+  private LiveActivity load(final int activityId) throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Map<Integer, Boolean> members = Activity.findMembers(activityId, connection);
+      if (members.isEmpty()) {
+        throw new NoResultException();
+      }
+      Pair<Integer, Integer> position = ResourceActivity.findPosition(activityId, connection);
+      LiveActivity liveActivity = position == null
+          ? new LiveActivity(activityId, members, 0, null)
+          : new LiveActivity(activityId, members, position.getKey(), position.getValue());
+      restoreState(liveActivity, connection);
+      return liveActivity;
+    }
+  }
+
+  /**
+   * Restores the playback state of an Activity as last saved by any node, if any, so that a member joining on this node
+   * while the Activity is played on another one receives the state the others play from.
+   *
+   * @param liveActivity State loaded from the members and the saved position.
+   * @param connection   {@link Connection} to use.
+   * @throws SQLException If the state could not be read.
+   */
+  private static void restoreState(final LiveActivity liveActivity, final Connection connection) throws SQLException {
+    try (PreparedStatement preparedStatement = connection.prepareStatement(
+        String.format(
+            "select positionMillis, positionAt, rate, playing, track from %s where idActivity = ?",
+            STATE_TABLE_NAME
+        )
+    )) {
+      preparedStatement.setInt(1, liveActivity.getId());
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        if (resultSet.next()) {
+          liveActivity.restore(
+              resultSet.getLong("positionMillis"),
+              resultSet.getLong("positionAt"),
+              resultSet.getDouble("rate"),
+              resultSet.getBoolean("playing"),
+              (Integer) resultSet.getObject("track")
+          );
+        }
+      }
+    }
+  }
+
+  private Map<Integer, LiveActivity> shardOf(final int activityId) {
+    return shards.get(Math.floorMod(activityId, shards.size()));
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
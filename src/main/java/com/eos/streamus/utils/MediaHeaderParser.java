@@ -0,0 +1,489 @@
+package com.eos.streamus.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the {@link FileInfo} of MP3, MP4 (AAC, H.264 and others), FLAC, Ogg (Vorbis and Opus) and WAV files from
+ * their container headers, without forking ffprobe. Files in other containers, or whose headers lack what is needed,
+ * are left to ffprobe: parsing then returns null.
+ * Embedded cover art is not reported as a video stream.
+ */
+public final class MediaHeaderParser {
+  /** Number of bytes at the start of a file that parsing may need. */
+  public static final int HEAD_SIZE = 1024 * 1024;
+  /** Number of bytes at the end of a file that parsing may need. */
+  public static final int TAIL_SIZE = 256 * 1024;
+
+  /** Number of bytes searched for the first MP3 frame after the ID3v2 tag. */
+  private static final int MP3_SYNC_SEARCH_SIZE = 64 * 1024;
+  /** Size of an ID3v1 tag, at the end of an MP3 file. */
+  private static final int ID3V1_SIZE = 128;
+  /** Size of an ID3v2 header, or footer. */
+  private static final int ID3V2_HEADER_SIZE = 10;
+  /** Size of an Ogg page header, without its segment table. */
+  private static final int OGG_PAGE_HEADER_SIZE = 27;
+  /** Granule rate of Opus streams, whatever their input sample rate. */
+  private static final int OPUS_GRANULE_RATE = 48000;
+  /** Size of a FLAC STREAMINFO block, with its header. */
+  private static final int FLAC_STREAMINFO_SIZE = 38;
+  /** MP3 bitrates in kbps by MPEG-1 layer (I, II, III) and index. */
+  private static final int[][] MPEG1_BITRATES = {
+      {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+      {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+      {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}
+  };
+  /** MP3 bitrates in kbps by MPEG-2 and 2.5 layer (I, II and III) and index. */
+  private static final int[][] MPEG2_BITRATES = {
+      {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+      {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},
+      {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+  };
+  /** MP3 sample rates by MPEG version (2.5, reserved, 2, 1) and index. */
+  private static final int[][] MPEG_SAMPLE_RATES = {
+      {11025, 12000, 8000},
+      {0, 0, 0},
+      {22050, 24000, 16000},
+      {44100, 48000, 32000}
+  };
+
+  private MediaHeaderParser() {
+  }
+
+  /** Bytes of a file, read at absolute offsets. */
+  private interface ByteSource {
+    /** @return Size of the file. */
+    long size();
+
+    /**
+     * @param offset Offset of the first byte to read.
+     * @param length Number of bytes to read.
+     * @return Big-endian buffer holding exactly the requested bytes.
+     * @throws OutOfSourceException If the bytes are not available.
+     */
+    ByteBuffer read(long offset, int length);
+  }
+
+  /** Thrown when parsing needs bytes that are not available. */
+  private static final class OutOfSourceException extends RuntimeException {
+    private static final long serialVersionUID = -1772530479914315329L;
+  }
+
+  /** Box of an MP4 file. */
+  private static final class Box {
+    /** Four-character type. */
+    private final String type;
+    /** Offset of the payload. */
+    private final long start;
+    /** Offset of the first byte after the box. */
+    private final long end;
+
+    private Box(final String type, final long start, final long end) {
+      this.type = type;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * Parses the headers of a file on disk.
+   *
+   * @param path Path of the file.
+   * @return Media information of the file, or null if it must be read by ffprobe.
+   * @throws IOException If the file could not be read.
+   */
+  public static FileInfo parse(final Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      return parse(new ByteSource() {
+        @Override
+        public long size() {
+          return size;
+        }
+
+        @Override
+        public ByteBuffer read(final long offset, final int length) {
+          if (offset < 0 || length < 0 || offset + length > size) {
+            throw new OutOfSourceException();
+          }
+          ByteBuffer buffer = ByteBuffer.allocate(length);
+          try {
+            while (buffer.hasRemaining()) {
+              if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new OutOfSourceException();
+              }
+            }
+          } catch (IOException ioException) {
+            throw new UncheckedIOException(ioException);
+          }
+          return buffer.flip();
+        }
+      });
+    } catch (UncheckedIOException uncheckedIOException) {
+      throw uncheckedIOException.getCause();
+    }
+  }
+
+  /**
+   * Parses the headers of a file from its first and last bytes, as kept while it is being received.
+   * The first {@link #HEAD_SIZE} and last {@link #TAIL_SIZE} bytes are enough for most files.
+   *
+   * @param head First bytes of the file, from its position to its limit.
+   * @param tail Last bytes of the file, from its position to its limit. May overlap the head.
+   * @param size Size of the file.
+   * @return Media information of the file, or null if it must be read by ffprobe.
+   */
+  public static FileInfo parse(final ByteBuffer head, final ByteBuffer tail, final long size) {
+    ByteBuffer headBytes = head.slice();
+    ByteBuffer tailBytes = tail.slice();
+    long tailStart = size - tailBytes.remaining();
+    return parse(new ByteSource() {
+      @Override
+      public long size() {
+        return size;
+      }
+
+      @Override
+      public ByteBuffer read(final long offset, final int length) {
+        if (offset >= 0 && length >= 0 && offset + length <= headBytes.remaining()) {
+          return copy(headBytes, (int) offset, length);
+        }
+        if (offset >= tailStart && length >= 0 && offset + length <= size) {
+          return copy(tailBytes, (int) (offset - tailStart), length);
+        }
+        throw new OutOfSourceException();
+      }
+    });
+  }
+
+  private static ByteBuffer copy(final ByteBuffer source, final int offset, final int length) {
+    ByteBuffer copy = ByteBuffer.allocate(length);
+    copy.put(source.duplicate().position(offset).limit(offset + length));
+    return copy.flip();
+  }
+
+  private static FileInfo parse(final ByteSource source) {
+    if (source.size() < 12) {
+      return null;
+    }
+    try {
+      ByteBuffer magic = source.read(0, 12);
+      if (matches(magic, 0, "RIFF") && matches(magic, 8, "WAVE")) {
+        return parseWav(source);
+      }
+      if (matches(magic, 0, "fLaC")) {
+        return parseFlac(source);
+      }
+      if (matches(magic, 0, "OggS")) {
+        return parseOgg(source);
+      }
+      if (matches(magic, 4, "ftyp") || matches(magic, 4, "moov")) {
+        return parseMp4(source);
+      }
+      if (matches(magic, 0, "ID3") || mp3FrameLength(magic.getInt(0)) > 0) {
+        return parseMp3(source);
+      }
+      return null;
+    } catch (OutOfSourceException | BufferUnderflowException | IndexOutOfBoundsException exception) {
+      return null;
+    }
+  }
+
+  //#region WAV
+  private static FileInfo parseWav(final ByteSource source) {
+    long byteRate = 0;
+    long offset = 12;
+    while (offset + 8 <= source.size()) {
+      ByteBuffer chunk = source.read(offset, 8).order(ByteOrder.LITTLE_ENDIAN);
+      long chunkSize = Integer.toUnsignedLong(chunk.getInt(4));
+      if (matches(chunk, 0, "fmt ")) {
+        byteRate = Integer.toUnsignedLong(source.read(offset + 8, 12).order(ByteOrder.LITTLE_ENDIAN).getInt(8));
+      } else if (matches(chunk, 0, "data")) {
+        if (byteRate == 0) {
+          return null;
+        }
+        long dataSize = Math.min(chunkSize, source.size() - offset - 8);
+        return audio((double) dataSize / byteRate);
+      }
+      offset += 8 + chunkSize + (chunkSize & 1);
+    }
+    return null;
+  }
+  //#endregion WAV
+
+  //#region FLAC
+  private static FileInfo parseFlac(final ByteSource source) {
+    ByteBuffer streamInfo = source.read(4, FLAC_STREAMINFO_SIZE);
+    if ((streamInfo.get(0) & 0x7F) != 0) {
+      return null;
+    }
+    // Sample rate on 20 bits, channels on 3, bits per sample on 5 and total samples on 36
+    long packed = streamInfo.getLong(14);
+    long sampleRate = packed >>> 44;
+    long totalSamples = packed & 0xFFFFFFFFFL;
+    if (sampleRate == 0 || totalSamples == 0) {
+      return null;
+    }
+    return audio((double) totalSamples / sampleRate);
+  }
+  //#endregion FLAC
+
+  //#region Ogg
+  private static FileInfo parseOgg(final ByteSource source) {
+    ByteBuffer page = source.read(0, OGG_PAGE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    int serial = page.getInt(14);
+    long packetOffset = OGG_PAGE_HEADER_SIZE + (long) (page.get(26) & 0xFF);
+    ByteBuffer packet = source.read(packetOffset, 19).order(ByteOrder.LITTLE_ENDIAN);
+    long granuleRate;
+    long preSkip = 0;
+    if (packet.get(0) == 1 && matches(packet, 1, "vorbis")) {
+      granuleRate = Integer.toUnsignedLong(packet.getInt(12));
+    } else if (matches(packet, 0, "OpusHead")) {
+      granuleRate = OPUS_GRANULE_RATE;
+      preSkip = packet.getShort(10) & 0xFFFF;
+    } else {
+      // Theora, Speex, Ogg FLAC...
+      return null;
+    }
+    long granule = lastGranulePosition(source, serial);
+    if (granuleRate == 0 || granule < 0) {
+      return null;
+    }
+    return audio((double) (granule - preSkip) / granuleRate);
+  }
+
+  /**
+   * Finds the granule position of the last page of an Ogg logical stream, which is its number of samples.
+   *
+   * @param source Bytes of the file.
+   * @param serial Serial number of the stream.
+   * @return Granule position, or -1 if no page of the stream ends within the last {@link #TAIL_SIZE} bytes.
+   */
+  private static long lastGranulePosition(final ByteSource source, final int serial) {
+    int length = (int) Math.min(source.size(), TAIL_SIZE);
+    ByteBuffer tail = source.read(source.size() - length, length).order(ByteOrder.LITTLE_ENDIAN);
+    for (int i = length - OGG_PAGE_HEADER_SIZE; i >= 0; i--) {
+      if (matches(tail, i, "OggS") && tail.getInt(i + 14) == serial) {
+        long granule = tail.getLong(i + 6);
+        if (granule >= 0) {
+          return granule;
+        }
+      }
+    }
+    return -1;
+  }
+  //#endregion Ogg
+
+  //#region MP4
+  private static FileInfo parseMp4(final ByteSource source) {
+    Box moov = findBox(children(source, 0, source.size()), "moov");
+    if (moov == null) {
+      return null;
+    }
+    List<Box> moovChildren = children(source, moov.start, moov.end);
+    Box mvhd = findBox(moovChildren, "mvhd");
+    if (mvhd == null) {
+      return null;
+    }
+    ByteBuffer header = source.read(mvhd.start, 32);
+    long timescale;
+    long duration;
+    if (header.get(0) == 1) {
+      timescale = Integer.toUnsignedLong(header.getInt(20));
+      duration = header.getLong(24);
+    } else {
+      timescale = Integer.toUnsignedLong(header.getInt(12));
+      duration = header.getInt(16) == -1 ? -1 : Integer.toUnsignedLong(header.getInt(16));
+    }
+
+    boolean isAudio = false;
+    boolean isVideo = false;
+    for (Box trak : moovChildren) {
+      if (!"trak".equals(trak.type)) {
+        continue;
+      }
+      Box mdia = findBox(children(source, trak.start, trak.end), "mdia");
+      Box hdlr = mdia == null ? null : findBox(children(source, mdia.start, mdia.end), "hdlr");
+      if (hdlr != null) {
+        ByteBuffer handler = source.read(hdlr.start + 8, 4);
+        isAudio |= matches(handler, 0, "soun");
+        isVideo |= matches(handler, 0, "vide");
+      }
+    }
+    // Fragmented files have no duration in their moov
+    if (timescale == 0 || duration <= 0 || !(isAudio || isVideo)) {
+      return null;
+    }
+    return new FileInfo((int) ((double) duration / timescale), isAudio, isVideo);
+  }
+
+  /**
+   * Lists the boxes between two offsets of an MP4 file. Only box headers are read.
+   *
+   * @param source Bytes of the file.
+   * @param start  Offset of the first box.
+   * @param end    Offset of the first byte after the last box.
+   * @return Boxes, until the first malformed one.
+   */
+  private static List<Box> children(final ByteSource source, final long start, final long end) {
+    List<Box> boxes = new ArrayList<>();
+    long offset = start;
+    while (offset + 8 <= end) {
+      ByteBuffer header = source.read(offset, 8);
+      long boxSize = Integer.toUnsignedLong(header.getInt(0));
+      long payload = offset + 8;
+      if (boxSize == 1) {
+        boxSize = source.read(payload, 8).getLong(0);
+        payload += 8;
+      } else if (boxSize == 0) {
+        boxSize = end - offset;
+      }
+      if (boxSize < payload - offset || boxSize > end - offset) {
+        break;
+      }
+      boxes.add(new Box(new String(header.array(), 4, 4, StandardCharsets.ISO_8859_1), payload, offset + boxSize));
+      offset += boxSize;
+    }
+    return boxes;
+  }
+
+  private static Box findBox(final List<Box> boxes, final String type) {
+    for (Box box : boxes) {
+      if (type.equals(box.type)) {
+        return box;
+      }
+    }
+    return null;
+  }
+  //#endregion MP4
+
+  //#region MP3
+  private static FileInfo parseMp3(final ByteSource source) {
+    long audioStart = 0;
+    ByteBuffer id3 = source.read(0, ID3V2_HEADER_SIZE);
+    if (matches(id3, 0, "ID3")) {
+      // Tag size is stored on 4 bytes of 7 bits each
+      int tagSize = (id3.get(6) & 0x7F) << 21 | (id3.get(7) & 0x7F) << 14
+          | (id3.get(8) & 0x7F) << 7 | id3.get(9) & 0x7F;
+      boolean hasFooter = (id3.get(5) & 0x10) != 0;
+      audioStart = ID3V2_HEADER_SIZE + tagSize + (hasFooter ? ID3V2_HEADER_SIZE : 0);
+    }
+    int searchLength = (int) Math.min(MP3_SYNC_SEARCH_SIZE, source.size() - audioStart);
+    ByteBuffer search = source.read(audioStart, searchLength);
+    for (int i = 0; i + 4 <= searchLength; i++) {
+      int frameLength = mp3FrameLength(search.getInt(i));
+      // A frame header is only trusted if the next frame starts right after it
+      boolean isLastFrame = i + frameLength + 4 > searchLength;
+      if (frameLength > 0 && (isLastFrame || mp3FrameLength(search.getInt(i + frameLength)) > 0)) {
+        return mp3Duration(source, audioStart + i, search.getInt(i));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Computes the duration of an MP3 file from the frame count of its Xing or VBRI header, or from its bitrate if it
+   * has none, as constant bitrate files.
+   *
+   * @param source     Bytes of the file.
+   * @param frameStart Offset of the first frame.
+   * @param header     Header of the first frame.
+   * @return Media information of the file, or null if its duration is unknown.
+   */
+  private static FileInfo mp3Duration(final ByteSource source, final long frameStart, final int header) {
+    int version = header >>> 19 & 3;
+    int layer = 4 - (header >>> 17 & 3);
+    boolean mpeg1 = version == 3;
+    boolean mono = (header >>> 6 & 3) == 3;
+    int sampleRate = MPEG_SAMPLE_RATES[version][header >>> 10 & 3];
+    int samplesPerFrame = mp3SamplesPerFrame(mpeg1, layer);
+    int sideInfoSize;
+    if (mpeg1) {
+      sideInfoSize = mono ? 17 : 32;
+    } else {
+      sideInfoSize = mono ? 9 : 17;
+    }
+
+    long frames = -1;
+    ByteBuffer xing = source.read(frameStart + 4 + sideInfoSize, 12);
+    if ((matches(xing, 0, "Xing") || matches(xing, 0, "Info")) && (xing.getInt(4) & 1) != 0) {
+      frames = Integer.toUnsignedLong(xing.getInt(8));
+    } else {
+      ByteBuffer vbri = source.read(frameStart + 4 + 32, 18);
+      if (matches(vbri, 0, "VBRI")) {
+        frames = Integer.toUnsignedLong(vbri.getInt(14));
+      }
+    }
+    if (frames > 0) {
+      return audio((double) frames * samplesPerFrame / sampleRate);
+    }
+
+    long audioEnd = source.size();
+    if (audioEnd - ID3V1_SIZE >= frameStart && matches(source.read(audioEnd - ID3V1_SIZE, 3), 0, "TAG")) {
+      audioEnd -= ID3V1_SIZE;
+    }
+    int bitrate = (mpeg1 ? MPEG1_BITRATES : MPEG2_BITRATES)[layer - 1][header >>> 12 & 0xF] * 1000;
+    return audio((audioEnd - frameStart) * 8d / bitrate);
+  }
+
+  /**
+   * @param header Four bytes that may be an MP3 frame header.
+   * @return Length of the frame, or 0 if the bytes are not a valid frame header.
+   */
+  private static int mp3FrameLength(final int header) {
+    int version = header >>> 19 & 3;
+    int layerBits = header >>> 17 & 3;
+    int bitrateIndex = header >>> 12 & 0xF;
+    int sampleRateIndex = header >>> 10 & 3;
+    if ((header >>> 21 & 0x7FF) != 0x7FF || version == 1 || layerBits == 0 || bitrateIndex == 0 || bitrateIndex == 0xF
+        || sampleRateIndex == 3) {
+      return 0;
+    }
+    boolean mpeg1 = version == 3;
+    int layer = 4 - layerBits;
+    int bitrate = (mpeg1 ? MPEG1_BITRATES : MPEG2_BITRATES)[layer - 1][bitrateIndex] * 1000;
+    int sampleRate = MPEG_SAMPLE_RATES[version][sampleRateIndex];
+    int padding = header >>> 9 & 1;
+    if (layer == 1) {
+      return (12 * bitrate / sampleRate + padding) * 4;
+    }
+    return mp3SamplesPerFrame(mpeg1, layer) / 8 * bitrate / sampleRate + padding;
+  }
+
+  private static int mp3SamplesPerFrame(final boolean mpeg1, final int layer) {
+    if (layer == 1) {
+      return 384;
+    }
+    return layer == 2 || mpeg1 ? 1152 : 576;
+  }
+  //#endregion MP3
+
+  private static FileInfo audio(final double seconds) {
+    if (!(seconds > 0) || Double.isInfinite(seconds)) {
+      return null;
+    }
+    return new FileInfo((int) seconds, true, false);
+  }
+
+  private static boolean matches(final ByteBuffer buffer, final int index, final String ascii) {
+    if (index < 0 || index + ascii.length() > buffer.limit()) {
+      return false;
+    }
+    for (int i = 0; i < ascii.length(); i++) {
+      if (buffer.get(index + i) != (byte) ascii.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,483 @@
+package com.eos.streamus.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * {@link IDatabaseConnector} that keeps a bounded pool of open connections instead of opening one per call.
+ * Physical connections are opened by {@link DatabaseConnector}. Set {@code database.pool.enabled=false} to use it
+ * directly instead.
+ */
+@Service
+@Scope(value = "singleton")
+@ConditionalOnProperty(name = "database.pool.enabled", havingValue = "true", matchIfMissing = true)
+public class PooledDatabaseConnector extends DatabaseConnector implements DatabaseConnectionPoolMXBean {
+  /** SQL state class of connection exceptions. */
+  private static final String CONNECTION_EXCEPTION_SQL_STATE_CLASS = "08";
+  /** JMX name of the pool gauges. */
+  private static final String OBJECT_NAME = "com.eos.streamus:type=DatabaseConnectionPool";
+
+  /** Maximum number of open connections. */
+  @Value("${database.pool.maxSize:20}")
+  private int maxSize;
+
+  /** Time to wait for a connection before failing, in milliseconds. */
+  @Value("${database.pool.connectionTimeoutMillis:30000}")
+  private long connectionTimeoutMillis;
+
+  /** Time after which an unused connection is closed, in milliseconds. */
+  @Value("${database.pool.idleTimeoutMillis:600000}")
+  private long idleTimeoutMillis;
+
+  /** Connections idle for less than this are handed out without being validated, in milliseconds. */
+  @Value("${database.pool.validationIntervalMillis:1000}")
+  private long validationIntervalMillis;
+
+  /** Timeout of a connection validation, in seconds. */
+  @Value("${database.pool.validationTimeoutSeconds:5}")
+  private int validationTimeoutSeconds;
+
+  /** Time after which a borrowed connection is reported as leaked, in milliseconds. 0 disables detection. */
+  @Value("${database.pool.leakDetectionThresholdMillis:60000}")
+  private long leakDetectionThresholdMillis;
+
+  /** Period of idle eviction and leak detection, in milliseconds. */
+  @Value("${database.pool.housekeepingPeriodMillis:30000}")
+  private long housekeepingPeriodMillis;
+
+  /** Idle connections, most recently used first. */
+  private final Deque<PooledConnection> idleConnections = new ArrayDeque<>();
+  /** Borrowed connections. */
+  private final Set<PooledConnection> activeConnections = ConcurrentHashMap.newKeySet();
+  /** Number of threads waiting for a connection. */
+  private final AtomicInteger pendingThreads = new AtomicInteger();
+  /** Number of connections reported as leaked. */
+  private final AtomicLong leakedConnections = new AtomicLong();
+  /** One permit per connection that may still be borrowed. */
+  private Semaphore permits;
+  /** Runs idle eviction and leak detection. */
+  private ScheduledExecutorService housekeeper;
+
+  /** Starts housekeeping and registers the pool gauges. */
+  @PostConstruct
+  public void start() {
+    permits = new Semaphore(maxSize, true);
+    housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "database-pool-housekeeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    housekeeper.scheduleAtFixedRate(
+        this::housekeep, housekeepingPeriodMillis, housekeepingPeriodMillis, TimeUnit.MILLISECONDS
+    );
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not register database pool gauges", jmException);
+    }
+  }
+
+  /** Closes every connection and unregisters the pool gauges. */
+  @PreDestroy
+  public void shutdown() {
+    housekeeper.shutdownNow();
+    List<PooledConnection> toClose;
+    synchronized (idleConnections) {
+      toClose = new ArrayList<>(idleConnections);
+      idleConnections.clear();
+    }
+    toClose.addAll(activeConnections);
+    activeConnections.clear();
+    for (PooledConnection pooledConnection : toClose) {
+      pooledConnection.closePhysical();
+    }
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not unregister database pool gauges", jmException);
+    }
+  }
+
+  /**
+   * Borrow a {@link Connection} from the pool. Closing it gives it back.
+   *
+   * @return Connection.
+   * @throws SQLException if no connection could be obtained in time or opened.
+   */
+  @Override
+  public Connection getConnection() throws SQLException {
+    pendingThreads.incrementAndGet();
+    try {
+      if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new SQLTransientConnectionException(
+            String.format("No database connection available after %d ms", connectionTimeoutMillis)
+        );
+      }
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      throw new SQLTransientConnectionException("Interrupted while waiting for a database connection");
+    } finally {
+      pendingThreads.decrementAndGet();
+    }
+    try {
+      PooledConnection pooledConnection = pollValidIdleConnection();
+      if (pooledConnection == null) {
+        pooledConnection = new PooledConnection(super.getConnection());
+      }
+      Connection proxy = pooledConnection.borrow();
+      activeConnections.add(pooledConnection);
+      return proxy;
+    } catch (SQLException | RuntimeException exception) {
+      permits.release();
+      throw exception;
+    }
+  }
+
+  /**
+   * Opens a connection outside of the pool, so that holding it does not take a permit nor get reported as leaked.
+   *
+   * @return Connection, to be closed by the caller.
+   * @throws SQLException if the connection could not be opened.
+   */
+  @Override
+  public Connection getDedicatedConnection() throws SQLException {
+    return super.getConnection();
+  }
+
+  /** @return Most recently used idle connection that is still valid, or null if there is none. */
+  private PooledConnection pollValidIdleConnection() {
+    while (true) {
+      PooledConnection pooledConnection;
+      synchronized (idleConnections) {
+        pooledConnection = idleConnections.pollFirst();
+      }
+      if (pooledConnection == null) {
+        return null;
+      }
+      if (System.currentTimeMillis() - pooledConnection.lastUsedAt < validationIntervalMillis
+          || pooledConnection.isValid()) {
+        return pooledConnection;
+      }
+      pooledConnection.closePhysical();
+    }
+  }
+
+  /**
+   * Give a borrowed connection back to the pool, or close it if it cannot be reused.
+   *
+   * @param lease Borrow of the connection to give back.
+   */
+  private void release(final Lease lease) {
+    PooledConnection pooledConnection = lease.pooledConnection;
+    if (pooledConnection.lease != lease || !activeConnections.remove(pooledConnection)) {
+      return;
+    }
+    try {
+      if (!pooledConnection.reset(lease) || pooledConnection.broken) {
+        pooledConnection.closePhysical();
+      } else {
+        synchronized (idleConnections) {
+          idleConnections.addFirst(pooledConnection);
+        }
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  /** Closes connections idle for too long and reports connections borrowed for too long. */
+  private void housekeep() {
+    final long now = System.currentTimeMillis();
+    List<PooledConnection> evicted = new ArrayList<>();
+    synchronized (idleConnections) {
+      Iterator<PooledConnection> iterator = idleConnections.iterator();
+      while (iterator.hasNext()) {
+        PooledConnection pooledConnection = iterator.next();
+        if (now - pooledConnection.lastUsedAt > idleTimeoutMillis) {
+          iterator.remove();
+          evicted.add(pooledConnection);
+        }
+      }
+    }
+    for (PooledConnection pooledConnection : evicted) {
+      pooledConnection.closePhysical();
+    }
+    if (leakDetectionThresholdMillis > 0) {
+      for (PooledConnection pooledConnection : activeConnections) {
+        Lease lease = pooledConnection.lease;
+        if (lease == null || lease.leakReported || now - lease.borrowedAt <= leakDetectionThresholdMillis) {
+          continue;
+        }
+        lease.leakReported = true;
+        leakedConnections.incrementAndGet();
+        getLogger().log(
+            Level.WARNING,
+            String.format(
+                "Database connection borrowed %d ms ago has not been closed, possible leak",
+                now - lease.borrowedAt
+            ),
+            lease.borrowTrace
+        );
+      }
+    }
+  }
+
+  private static Logger getLogger() {
+    return Logger.getLogger(PooledDatabaseConnector.class.getName());
+  }
+
+  //#region Gauges
+
+  /** {@inheritDoc} */
+  @Override
+  public int getActiveConnections() {
+    return activeConnections.size();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getIdleConnections() {
+    synchronized (idleConnections) {
+      return idleConnections.size();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getPendingThreads() {
+    return pendingThreads.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getTotalConnections() {
+    return getActiveConnections() + getIdleConnections();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getLeakedConnections() {
+    return leakedConnections.get();
+  }
+  //#endregion Gauges
+
+  /** A physical connection, and the settings it is brought back to when it is given back. */
+  private final class PooledConnection {
+    /** Underlying connection. */
+    private final Connection physical;
+    /** Transaction isolation of the connection when it was opened. */
+    private final int defaultTransactionIsolation;
+    /** Read-only mode of the connection when it was opened. */
+    private final boolean defaultReadOnly;
+    /** Current borrow of the connection, or null if it is idle. */
+    private volatile Lease lease;
+    /** Last time the connection was given back. */
+    private volatile long lastUsedAt = System.currentTimeMillis();
+    /** Whether a connection error was raised, in which case it is not reused. */
+    private volatile boolean broken;
+
+    private PooledConnection(final Connection physical) throws SQLException {
+      this.physical = physical;
+      try {
+        this.defaultTransactionIsolation = physical.getTransactionIsolation();
+        this.defaultReadOnly = physical.isReadOnly();
+      } catch (SQLException sqlException) {
+        closePhysical();
+        throw sqlException;
+      }
+    }
+
+    /** @return Proxy handed out to the new borrower, distinct from the ones handed out before. */
+    private Connection borrow() {
+      lease = new Lease(this);
+      return lease.proxy;
+    }
+
+    /** @return Whether the connection answers within the validation timeout. */
+    private boolean isValid() {
+      try {
+        return physical.isValid(validationTimeoutSeconds);
+      } catch (SQLException sqlException) {
+        return false;
+      }
+    }
+
+    /**
+     * Brings the connection back to its default state: closes the statements, and thus the result sets, left open by
+     * the borrower, rolls back its transaction and restores auto-commit, isolation and read-only mode.
+     *
+     * @param returned Lease of the borrower giving the connection back.
+     * @return Whether the connection could be brought back to its default state.
+     */
+    private boolean reset(final Lease returned) {
+      lease = null;
+      try {
+        returned.closeStatements();
+        if (physical.isClosed()) {
+          return false;
+        }
+        if (!physical.getAutoCommit()) {
+          physical.rollback();
+          physical.setAutoCommit(true);
+        }
+        if (physical.getTransactionIsolation() != defaultTransactionIsolation) {
+          physical.setTransactionIsolation(defaultTransactionIsolation);
+        }
+        if (physical.isReadOnly() != defaultReadOnly) {
+          physical.setReadOnly(defaultReadOnly);
+        }
+        physical.clearWarnings();
+        lastUsedAt = System.currentTimeMillis();
+        return true;
+      } catch (SQLException sqlException) {
+        return false;
+      }
+    }
+
+    private void closePhysical() {
+      try {
+        physical.close();
+      } catch (SQLException sqlException) {
+        getLogger().log(Level.FINE, "Could not close pooled connection", sqlException);
+      }
+    }
+  }
+
+  /**
+   * One borrow of a {@link PooledConnection}: the proxy handed out to the borrower and the statements it opened.
+   * Every borrow gets its own proxy, so that a reference kept after closing it cannot reach the next borrower.
+   */
+  private final class Lease implements InvocationHandler {
+    /** Borrowed connection. */
+    private final PooledConnection pooledConnection;
+    /** Proxy handed out to the borrower, closing it gives the connection back. */
+    private final Connection proxy;
+    /** Statements opened by the borrower. */
+    private final List<Statement> statements = new ArrayList<>();
+    /** Time the connection was borrowed. */
+    private final long borrowedAt = System.currentTimeMillis();
+    /** Where the connection was borrowed, only captured when leak detection is enabled. */
+    private final Throwable borrowTrace =
+        leakDetectionThresholdMillis > 0 ? new Throwable("Connection borrowed here") : null;
+    /** Whether the borrower was reported as leaking. */
+    private volatile boolean leakReported;
+    /** Whether the borrower has closed the connection. */
+    private volatile boolean closed;
+
+    private Lease(final PooledConnection pooledConnection) {
+      this.pooledConnection = pooledConnection;
+      this.proxy = (Connection) Proxy.newProxyInstance(
+          Connection.class.getClassLoader(),
+          new Class<?>[]{Connection.class},
+          this
+      );
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object invoke(final Object proxyInstance, final Method method, final Object[] arguments) throws Throwable {
+      switch (method.getName()) {
+        case "close":
+          if (!closed) {
+            closed = true;
+            release(this);
+          }
+          return null;
+        case "isClosed":
+          return closed || pooledConnection.physical.isClosed();
+        case "toString":
+          return String.format("Pooled[%s]", pooledConnection.physical);
+        case "hashCode":
+          return System.identityHashCode(proxyInstance);
+        case "equals":
+          return proxyInstance == arguments[0];
+        default:
+          break;
+      }
+      if (closed) {
+        throw new SQLException("Connection is closed");
+      }
+      try {
+        Object result = method.invoke(pooledConnection.physical, arguments);
+        if (result instanceof Statement) {
+          synchronized (statements) {
+            statements.add((Statement) result);
+          }
+        }
+        return result;
+      } catch (InvocationTargetException invocationTargetException) {
+        Throwable cause = invocationTargetException.getCause();
+        if (cause instanceof SQLException) {
+          String sqlState = ((SQLException) cause).getSQLState();
+          if (sqlState != null && sqlState.startsWith(CONNECTION_EXCEPTION_SQL_STATE_CLASS)) {
+            pooledConnection.broken = true;
+          }
+        }
+        throw cause;
+      }
+    }
+
+    /**
+     * Closes the statements left open by the borrower, which closes their result sets.
+     *
+     * @throws SQLException If a statement could not be closed.
+     */
+    private void closeStatements() throws SQLException {
+      synchronized (statements) {
+        for (Statement statement : statements) {
+          if (!statement.isClosed()) {
+            statement.close();
+          }
+        }
+        statements.clear();
+      }
+    }
+  }
+
+}
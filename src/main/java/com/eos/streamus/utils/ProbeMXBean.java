@@ -0,0 +1,37 @@
+package com.eos.streamus.utils;
+
+/** Gauges exported over JMX by {@link ProbeService}. */
+public interface ProbeMXBean {
+  /** @return Maximum number of concurrent ffprobe processes. */
+  int getMaxParallelism();
+
+  /** @return Number of ffprobe processes running. */
+  int getActiveProbes();
+
+  /** @return Number of probes waiting for a running one to finish. */
+  int getPendingProbes();
+
+  /** @return Number of probes answered by {@link MediaHeaderParser} without forking ffprobe since startup. */
+  long getNativeProbes();
+
+  /** @return Number of ffprobe runs succeeded since startup. */
+  long getCompletedProbes();
+
+  /** @return Number of probes failed since startup, excluding timeouts. */
+  long getFailedProbes();
+
+  /** @return Number of probes killed for running past their deadline since startup. */
+  long getTimedOutProbes();
+
+  /** @return Number of probes rejected because too many were pending since startup. */
+  long getRejectedProbes();
+
+  /** @return Average time probes waited before running since startup, in milliseconds. */
+  double getAverageWaitMillis();
+
+  /** @return Average run time of probes since startup, in milliseconds. */
+  double getAverageLatencyMillis();
+
+  /** @return Longest run time of a probe since startup, in milliseconds. */
+  long getMaxLatencyMillis();
+}
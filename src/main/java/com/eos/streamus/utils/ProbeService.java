@@ -0,0 +1,261 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.exceptions.ProcessTimeoutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the media information of files. Common formats are read by {@link MediaHeaderParser}, others by ffprobe,
+ * running at most {@code probe.maxParallelism} processes at a time. Probes beyond that wait in line, and are rejected
+ * when {@code probe.maxPending} are already waiting or no process finished within {@code probe.queueTimeoutMillis}.
+ * A process running for longer than {@code probe.timeoutMillis} is killed.
+ */
+@Service
+@Scope(value = "singleton")
+public class ProbeService implements ProbeMXBean {
+  /** JMX name of the probe gauges. */
+  private static final String OBJECT_NAME = "com.eos.streamus:type=Probe";
+
+  /** Maximum number of concurrent ffprobe processes. */
+  @Value("${probe.maxParallelism:4}")
+  private int maxParallelism;
+
+  /** Maximum number of probes waiting for a running one to finish. */
+  @Value("${probe.maxPending:100}")
+  private int maxPending;
+
+  /** Time a probe waits for a running one to finish before being rejected, in milliseconds. */
+  @Value("${probe.queueTimeoutMillis:30000}")
+  private long queueTimeoutMillis;
+
+  /** Time after which an ffprobe process is killed, in milliseconds. */
+  @Value("${probe.timeoutMillis:30000}")
+  private long timeoutMillis;
+
+  /** One permit per ffprobe process that may still be started. */
+  private Semaphore permits;
+  /** Probes waiting for a permit. */
+  private final AtomicInteger pendingProbes = new AtomicInteger();
+  /** Probes answered by {@link MediaHeaderParser} since startup. */
+  private final AtomicLong nativeProbes = new AtomicLong();
+  /** Probes succeeded since startup. */
+  private final AtomicLong completedProbes = new AtomicLong();
+  /** Probes failed since startup. */
+  private final AtomicLong failedProbes = new AtomicLong();
+  /** Probes timed out since startup. */
+  private final AtomicLong timedOutProbes = new AtomicLong();
+  /** Probes rejected since startup. */
+  private final AtomicLong rejectedProbes = new AtomicLong();
+  /** Probes that got a permit since startup. */
+  private final LongAdder startedProbes = new LongAdder();
+  /** Total time probes waited for a permit, in nanoseconds. */
+  private final LongAdder totalWaitNanos = new LongAdder();
+  /** Total run time of probes, in nanoseconds. */
+  private final LongAdder totalLatencyNanos = new LongAdder();
+  /** Longest run time of a probe, in nanoseconds. */
+  private final LongAccumulator maxLatencyNanos = new LongAccumulator(Math::max, 0);
+
+  /** Registers the probe gauges. */
+  @PostConstruct
+  public void start() {
+    permits = new Semaphore(maxParallelism, true);
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not register probe gauges", jmException);
+    }
+  }
+
+  /** Unregisters the probe gauges. */
+  @PreDestroy
+  public void shutdown() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not unregister probe gauges", jmException);
+    }
+  }
+
+  /**
+   * Reads the media information of a file.
+   *
+   * @param path Path of the file.
+   * @return Media information of the file.
+   * @throws ProcessTimeoutException If ffprobe did not exit in time.
+   * @throws IOException             If the file could not be read, the probe was rejected or ffprobe failed.
+   */
+  public FileInfo probe(final String path) throws IOException {
+    FileInfo parsedInfo = MediaHeaderParser.parse(Paths.get(path));
+    if (parsedInfo != null) {
+      nativeProbes.incrementAndGet();
+      return parsedInfo;
+    }
+    return runFfprobe(path);
+  }
+
+  /**
+   * Reads the media information of an upload from the bytes kept while receiving it, without reading the file again
+   * unless ffprobe is needed.
+   *
+   * @param upload Received upload.
+   * @return Media information of the upload.
+   * @throws ProcessTimeoutException If ffprobe did not exit in time.
+   * @throws IOException             If the probe was rejected or ffprobe failed.
+   */
+  public FileInfo probe(final StreamedUpload upload) throws IOException {
+    FileInfo parsedInfo = MediaHeaderParser.parse(upload.getHead(), upload.getTail(), upload.getSize());
+    if (parsedInfo != null) {
+      nativeProbes.incrementAndGet();
+      return parsedInfo;
+    }
+    return runFfprobe(upload.getPath().toString());
+  }
+
+  private FileInfo runFfprobe(final String path) throws IOException {
+    acquire();
+    long start = System.nanoTime();
+    try {
+      FileInfo fileInfo = ShellUtils.getResourceInfo(path, timeoutMillis);
+      completedProbes.incrementAndGet();
+      return fileInfo;
+    } catch (ProcessTimeoutException processTimeoutException) {
+      timedOutProbes.incrementAndGet();
+      throw processTimeoutException;
+    } catch (IOException | RuntimeException exception) {
+      failedProbes.incrementAndGet();
+      throw exception;
+    } finally {
+      long latency = System.nanoTime() - start;
+      totalLatencyNanos.add(latency);
+      maxLatencyNanos.accumulate(latency);
+      permits.release();
+    }
+  }
+
+  /**
+   * Waits for a permit to start an ffprobe process.
+   *
+   * @throws IOException If too many probes are pending, none finished in time, or the thread was interrupted.
+   */
+  private void acquire() throws IOException {
+    if (pendingProbes.incrementAndGet() > maxPending) {
+      pendingProbes.decrementAndGet();
+      rejectedProbes.incrementAndGet();
+      throw new IOException(String.format("More than %d probes are pending", maxPending));
+    }
+    long start = System.nanoTime();
+    try {
+      if (!permits.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        rejectedProbes.incrementAndGet();
+        throw new IOException(String.format("No probe could be started after %d ms", queueTimeoutMillis));
+      }
+      startedProbes.increment();
+      totalWaitNanos.add(System.nanoTime() - start);
+    } catch (InterruptedException interruptedException) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to start a probe");
+    } finally {
+      pendingProbes.decrementAndGet();
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getMaxParallelism() {
+    return maxParallelism;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getActiveProbes() {
+    return maxParallelism - permits.availablePermits();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getPendingProbes() {
+    return pendingProbes.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getNativeProbes() {
+    return nativeProbes.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getCompletedProbes() {
+    return completedProbes.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getFailedProbes() {
+    return failedProbes.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getTimedOutProbes() {
+    return timedOutProbes.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getRejectedProbes() {
+    return rejectedProbes.get();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getAverageWaitMillis() {
+    long started = startedProbes.sum();
+    return started == 0 ? 0 : totalWaitNanos.sum() / 1_000_000d / started;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getAverageLatencyMillis() {
+    long started = startedProbes.sum();
+    return started == 0 ? 0 : totalLatencyNanos.sum() / 1_000_000d / started;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMaxLatencyMillis() {
+    return maxLatencyNanos.get() / 1_000_000;
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
@@ -24,4 +24,10 @@ public class ResourcePathResolver implements IResourcePathResolver {
   public String getAudioDir() {
     return String.format("%s%s%s%s", resourcePath, File.separator, "audio", File.separator);
   }
+
+  /** {@inheritDoc} */
+  @Override
+  public String getSegmentDir() {
+    return String.format("%s%s%s%s", resourcePath, File.separator, "segments", File.separator);
+  }
 }
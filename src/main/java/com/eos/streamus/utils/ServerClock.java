@@ -0,0 +1,73 @@
+package com.eos.streamus.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock of the server, in milliseconds since the epoch, that never jumps.
+ * It follows {@link System#nanoTime()} from an anchor on the wall clock, so that adjustments of the system clock do
+ * not show up as a sudden offset in the positions and time sync exchanges of group playback. The anchor is moved
+ * back towards the wall clock every minute, by at most {@value #MAX_CORRECTION_MILLIS} ms at a time, so that the
+ * clocks of several nodes kept in sync by NTP do not drift apart over their uptime. It never goes backwards.
+ */
+public final class ServerClock {
+  /** Nanoseconds in a millisecond. */
+  private static final long NANOS_PER_MILLI = 1_000_000;
+  /** Time between two corrections of the anchor, in nanoseconds. */
+  private static final long CORRECTION_PERIOD_NANOS = 60_000 * NANOS_PER_MILLI;
+  /** Largest correction of the anchor at a time, in milliseconds. */
+  private static final long MAX_CORRECTION_MILLIS = 100;
+  /** Current anchor. */
+  private static volatile Anchor anchor = new Anchor(System.currentTimeMillis(), System.nanoTime());
+  /** Last time returned, in milliseconds since the epoch. */
+  private static final AtomicLong LAST_MILLIS = new AtomicLong();
+
+  private ServerClock() {
+  }
+
+  /** Wall clock time and monotonic time at the same instant. */
+  private static final class Anchor {
+    /** Wall clock time, in milliseconds since the epoch. */
+    private final long millis;
+    /** Monotonic time, in nanoseconds. */
+    private final long nanos;
+
+    private Anchor(final long millis, final long nanos) {
+      this.millis = millis;
+      this.nanos = nanos;
+    }
+
+    private long millisAt(final long time) {
+      return millis + (time - nanos) / NANOS_PER_MILLI;
+    }
+  }
+
+  /** @return Current time of the server, in milliseconds since the epoch. */
+  public static long currentTimeMillis() {
+    long nanos = System.nanoTime();
+    Anchor current = anchor;
+    if (nanos - current.nanos >= CORRECTION_PERIOD_NANOS) {
+      current = correct(current);
+    }
+    long millis = current.millisAt(nanos);
+    return LAST_MILLIS.accumulateAndGet(millis, Math::max);
+  }
+
+  /**
+   * Moves the anchor towards the wall clock, unless another thread already did.
+   *
+   * @param previous Anchor that is due for a correction.
+   * @return Anchor to use.
+   */
+  private static synchronized Anchor correct(final Anchor previous) {
+    if (anchor != previous) {
+      return anchor;
+    }
+    long nanos = System.nanoTime();
+    long estimated = previous.millisAt(nanos);
+    long offset = System.currentTimeMillis() - estimated;
+    long correction = Math.max(-MAX_CORRECTION_MILLIS, Math.min(MAX_CORRECTION_MILLIS, offset));
+    anchor = new Anchor(estimated + correction, nanos);
+    return anchor;
+  }
+
+}
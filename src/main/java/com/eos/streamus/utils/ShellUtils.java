@@ -1,30 +1,155 @@
 package com.eos.streamus.utils;
 
+import com.eos.streamus.exceptions.ProcessTimeoutException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 public final class ShellUtils {
   private ShellUtils() {
   }
 
-  /** Ffprobe command to run to get file information. */
-  private static final String FFPROBE_COMMAND = "ffprobe -v quiet -print_format json -show_format -show_streams";
+  /** Ffprobe command to run to get file information, followed by the path of the file. */
+  private static final List<String> FFPROBE_COMMAND = List.of(
+      "ffprobe", "-v", "quiet", "-print_format", "json", "-show_format", "-show_streams"
+  );
+  /** Maximum number of characters of the error output of a failed command reported in its exception. */
+  private static final int MAX_ERROR_OUTPUT_LENGTH = 4096;
 
-  public static FileInfo getResourceInfo(final String path) throws IOException {
-    Process process = Runtime.getRuntime().exec(String.format("%s \"%s\"", FFPROBE_COMMAND, path));
-    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+  /**
+   * Reads the media information of a file with ffprobe. Callers should go through {@link ProbeService}, which bounds
+   * the number of concurrent ffprobe processes.
+   *
+   * @param path          Path of the file.
+   * @param timeoutMillis Time after which ffprobe is killed, in milliseconds.
+   * @return Media information of the file.
+   * @throws ProcessTimeoutException If ffprobe did not exit in time.
+   * @throws IOException             If ffprobe could not be run, failed, or its output could not be read.
+   */
+  public static FileInfo getResourceInfo(final String path, final long timeoutMillis) throws IOException {
+    List<String> command = new ArrayList<>(FFPROBE_COMMAND);
+    command.add(path);
+    Path output = Files.createTempFile("ffprobe-", ".json");
+    try {
+      run(command, output, timeoutMillis);
+      return new FileInfo(new ObjectMapper().readValue(output.toFile(), ObjectNode.class));
+    } finally {
+      Files.deleteIfExists(output);
+    }
+  }
 
-    String line;
-    StringBuilder output = new StringBuilder();
+  /**
+   * Cuts a video file into HLS segments of a fixed duration, with a VOD manifest listing them.
+   * The video is transcoded to H.264 and AAC, with a key frame forced at the start of every segment so that each one
+   * lasts exactly the given duration, except for the last one.
+   *
+   * @param path            Path of the video file.
+   * @param manifest        Path of the manifest to write. Segments are written next to it.
+   * @param segmentPattern  printf-like pattern of the segment file names, relative to the manifest.
+   * @param segmentDuration Duration of a segment, in seconds.
+   * @param timeoutMillis   Time after which ffmpeg is killed, in milliseconds.
+   * @throws ProcessTimeoutException If ffmpeg did not exit in time.
+   * @throws IOException             If ffmpeg could not be run, or failed.
+   */
+  public static void segmentToHls(final String path, final Path manifest, final String segmentPattern,
+                                  final int segmentDuration, final long timeoutMillis) throws IOException {
+    List<String> command = Arrays.asList(
+        "ffmpeg", "-v", "error", "-nostdin", "-y",
+        "-i", path,
+        "-map", "0:v:0", "-map", "0:a:0?",
+        "-c:v", "libx264", "-preset", "veryfast",
+        "-force_key_frames", String.format("expr:gte(t,n_forced*%d)", segmentDuration),
+        "-c:a", "aac",
+        "-f", "hls",
+        "-hls_time", String.valueOf(segmentDuration),
+        "-hls_playlist_type", "vod",
+        "-hls_segment_filename", manifest.resolveSibling(segmentPattern).toString(),
+        manifest.toString()
+    );
+    run(command, null, timeoutMillis);
+  }
 
-    while ((line = reader.readLine()) != null) {
-      output.append(line);
+  /**
+   * Transcodes the first audio stream of a file to AAC at a constant bitrate, in an MP4 container whose index is at
+   * the start of the file, so that it can be streamed by range.
+   *
+   * @param path          Path of the audio file.
+   * @param output        Path of the file to write.
+   * @param bitrate       Bitrate of the output, in kbit/s.
+   * @param timeoutMillis Time after which ffmpeg is killed, in milliseconds.
+   * @throws ProcessTimeoutException If ffmpeg did not exit in time.
+   * @throws IOException             If ffmpeg could not be run, or failed.
+   */
+  public static void transcodeAudio(final String path, final Path output, final int bitrate, final long timeoutMillis)
+      throws IOException {
+    List<String> command = Arrays.asList(
+        "ffmpeg", "-v", "error", "-nostdin", "-y",
+        "-i", path,
+        "-map", "0:a:0", "-vn",
+        "-c:a", "aac",
+        "-b:a", String.format("%dk", bitrate),
+        "-movflags", "+faststart",
+        "-f", "mp4",
+        output.toString()
+    );
+    run(command, null, timeoutMillis);
+  }
+
+  /**
+   * Runs a command and waits for it to exit. Its output goes to files rather than pipes, so that it can never block on
+   * a full pipe while it is waited for. A command that is killed is waited for as well, so that it is reaped.
+   *
+   * @param command       Command and its arguments.
+   * @param output        File to write the standard output of the command to, or null to discard it.
+   * @param timeoutMillis Time after which the command is killed, in milliseconds, or 0 to wait for as long as it runs.
+   * @throws ProcessTimeoutException If the command did not exit in time.
+   * @throws IOException             If the command could not be run, was interrupted, or exited with an error.
+   */
+  private static void run(final List<String> command, final Path output, final long timeoutMillis)
+      throws IOException {
+    Path errorOutput = Files.createTempFile(command.get(0) + "-", ".log");
+    try {
+      Process process = new ProcessBuilder(command)
+          .redirectOutput(output == null ? Redirect.DISCARD : Redirect.to(output.toFile()))
+          .redirectError(errorOutput.toFile())
+          .start();
+      process.getOutputStream().close();
+      try {
+        if (timeoutMillis > 0 && !process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+          process.destroyForcibly().waitFor();
+          throw new ProcessTimeoutException(
+              String.format("%s did not exit after %d ms", command.get(0), timeoutMillis)
+          );
+        }
+        int exitCode = process.waitFor();
+        if (exitCode != 0) {
+          throw new IOException(String.format(
+              "%s exited with code %d: %s", command.get(0), exitCode, readErrorOutput(errorOutput)
+          ));
+        }
+      } catch (InterruptedException interruptedException) {
+        process.destroyForcibly();
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(String.format("Interrupted while waiting for %s", command.get(0)));
+      }
+    } finally {
+      Files.deleteIfExists(errorOutput);
     }
-    return new FileInfo(new ObjectMapper().readValue(output.toString(), ObjectNode.class));
+  }
+
+  private static String readErrorOutput(final Path errorOutput) throws IOException {
+    String errors = new String(Files.readAllBytes(errorOutput), StandardCharsets.UTF_8);
+    return errors.length() > MAX_ERROR_OUTPUT_LENGTH ? errors.substring(0, MAX_ERROR_OUTPUT_LENGTH) : errors;
   }
 
 }
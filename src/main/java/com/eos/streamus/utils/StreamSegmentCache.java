@@ -0,0 +1,389 @@
+package com.eos.streamus.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide, bounded cache of fixed-size segments of streamed files, keyed by file and segment index.
+ * Listeners of the same resource request the same ranges within seconds of each other: the first request of a segment
+ * reads it from disk, and every concurrent or later request of it is served from the same buffer. Requests of a
+ * segment being read wait for that read instead of reading it again.
+ * The cache is split into shards by key, each under its own lock, so that lookups of different segments do not
+ * contend. Segments are evicted from their shard least recently used first once it holds more than its share of the
+ * maximum footprint.
+ * Segments are keyed by the modification time of their file as well, so that a file replaced at the same path, e.g.
+ * a variant transcoded again, is never served from the segments of the previous one.
+ */
+public final class StreamSegmentCache {
+  /** Key of a segment: its file, as of a modification time, and its index in the file. */
+  private static final class SegmentKey {
+    /** Path of the file. */
+    private final Path path;
+    /** Modification time of the file. */
+    private final FileTime lastModified;
+    /** Index of the segment. */
+    private final long index;
+
+    private SegmentKey(final Path path, final FileTime lastModified, final long index) {
+      this.path = path;
+      this.lastModified = lastModified;
+      this.index = index;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof SegmentKey)) {
+        return false;
+      }
+      SegmentKey other = (SegmentKey) obj;
+      return index == other.index && path.equals(other.path) && lastModified.equals(other.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, lastModified, index);
+    }
+  }
+
+  /** Cached segment, being read or read. */
+  private static final class Segment {
+    /** Content of the segment, once read. */
+    private final CompletableFuture<byte[]> content = new CompletableFuture<>();
+    /** Footprint accounted for the segment, in bytes. */
+    private long bytes;
+    /** Whether the segment was read ahead and not requested since. Guarded by the monitor of its shard. */
+    private boolean prefetched;
+  }
+
+  /** Part of the cache, holding the segments whose key hashes to it. Guarded by its own monitor. */
+  private static final class Shard {
+    /** Cached segments by file and index, least recently used first. */
+    private final Map<SegmentKey, Segment> segments = new LinkedHashMap<>(16, 0.75f, true);
+    /** Footprint of the cached segments. */
+    private long bytes;
+  }
+
+  //#region Static attributes
+  /** Default size of a segment. */
+  static final int DEFAULT_SEGMENT_BYTES = 256 * 1024;
+  /** Default maximum footprint of the cache. */
+  static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+  /** Number of shards of the cache. */
+  private static final int SHARD_COUNT = 16;
+  /** Shards of the cache. */
+  private static final Shard[] SHARDS = newShards();
+  /**
+   * Segment lookups answered from the cache since startup, including those that waited for a read in progress. The
+   * first request of a prefetched segment is not one: it is counted in {@link #PREFETCH_HITS} instead.
+   */
+  private static final AtomicLong HITS = new AtomicLong();
+  /** Segment lookups that had to read the file since startup. */
+  private static final AtomicLong MISSES = new AtomicLong();
+  /** Segments evicted to respect the bound since startup. */
+  private static final AtomicLong EVICTIONS = new AtomicLong();
+  /** Segments read ahead of their first request since startup. */
+  private static final AtomicLong PREFETCHES = new AtomicLong();
+  /** Prefetched segments requested since startup. */
+  private static final AtomicLong PREFETCH_HITS = new AtomicLong();
+  /**
+   * Requests of the start of a file that were the first to get its prefetched first segment, since startup. Later
+   * requests of a cached start are neither prefetched nor unprefetched starts, so that both averages only compare
+   * track transitions.
+   */
+  private static final AtomicLong PREFETCHED_STARTS = new AtomicLong();
+  /** Total time taken to get the first segment of {@link #PREFETCHED_STARTS}, in nanoseconds. */
+  private static final AtomicLong PREFETCHED_START_NANOS = new AtomicLong();
+  /** Requests of the start of a file whose first segment had to be read, since startup. */
+  private static final AtomicLong UNPREFETCHED_STARTS = new AtomicLong();
+  /** Total time taken to get the first segment of {@link #UNPREFETCHED_STARTS}, in nanoseconds. */
+  private static final AtomicLong UNPREFETCHED_START_NANOS = new AtomicLong();
+
+  /** Whether the cache is used at all. */
+  private static volatile boolean enabled = true;
+  /** Size of a segment. */
+  private static volatile int segmentBytes = DEFAULT_SEGMENT_BYTES;
+  /** Maximum footprint of the cache. */
+  private static volatile long maxBytes = DEFAULT_MAX_BYTES;
+  //#endregion Static attributes
+
+  private StreamSegmentCache() {
+  }
+
+  private static Shard[] newShards() {
+    Shard[] shards = new Shard[SHARD_COUNT];
+    for (int i = 0; i < shards.length; i++) {
+      shards[i] = new Shard();
+    }
+    return shards;
+  }
+
+  private static Shard shard(final SegmentKey key) {
+    return SHARDS[Math.floorMod(key.hashCode(), SHARDS.length)];
+  }
+
+  //#region Configuration and counters
+
+  /**
+   * Sets the bounds of the cache, clearing it.
+   *
+   * @param enabled      Whether the cache is used.
+   * @param segmentBytes Size of a segment, in bytes.
+   * @param maxBytes     Maximum footprint of the cache, in bytes.
+   */
+  public static synchronized void configure(final boolean enabled, final int segmentBytes, final long maxBytes) {
+    StreamSegmentCache.enabled = enabled;
+    StreamSegmentCache.segmentBytes = segmentBytes;
+    StreamSegmentCache.maxBytes = maxBytes;
+    clear();
+  }
+
+  /** Removes every segment from the cache. */
+  public static void clear() {
+    for (Shard shard : SHARDS) {
+      synchronized (shard) {
+        shard.segments.clear();
+        shard.bytes = 0;
+      }
+    }
+  }
+
+  /** @return Whether the cache is used. */
+  public static boolean isEnabled() {
+    return enabled;
+  }
+
+  /** @return Segment lookups answered from the cache since startup, not counting first requests of prefetches. */
+  public static long getHits() {
+    return HITS.get();
+  }
+
+  /** @return Segment lookups that had to read the file since startup. */
+  public static long getMisses() {
+    return MISSES.get();
+  }
+
+  /** @return Segments evicted to respect the bound since startup. */
+  public static long getEvictions() {
+    return EVICTIONS.get();
+  }
+
+  /** @return Segments read ahead of their first request since startup. */
+  public static long getPrefetches() {
+    return PREFETCHES.get();
+  }
+
+  /** @return Prefetched segments requested since startup. */
+  public static long getPrefetchHits() {
+    return PREFETCH_HITS.get();
+  }
+
+  /**
+   * @param prefetched Whether to average the requests whose first segment was read ahead, or the others.
+   * @return Average time taken to get the first segment of a file on requests of its start, e.g. on track transitions,
+   * in microseconds.
+   */
+  public static double getAverageStartMicros(final boolean prefetched) {
+    long starts = (prefetched ? PREFETCHED_STARTS : UNPREFETCHED_STARTS).get();
+    long nanos = (prefetched ? PREFETCHED_START_NANOS : UNPREFETCHED_START_NANOS).get();
+    return starts == 0 ? 0 : nanos / 1000d / starts;
+  }
+
+  /** @return Number of cached segments. */
+  public static int getSize() {
+    int size = 0;
+    for (Shard shard : SHARDS) {
+      synchronized (shard) {
+        size += shard.segments.size();
+      }
+    }
+    return size;
+  }
+
+  /** @return Footprint of the cached segments, in bytes. */
+  public static long getBytes() {
+    long bytes = 0;
+    for (Shard shard : SHARDS) {
+      synchronized (shard) {
+        bytes += shard.bytes;
+      }
+    }
+    return bytes;
+  }
+  //#endregion Configuration and counters
+
+  /**
+   * Writes a region of a file to a stream, segment by segment, reading from the file only the segments that are not
+   * cached.
+   *
+   * @param path       Path of the file.
+   * @param attributes Attributes of the file, read before its size was used to compute the region.
+   * @param start      Offset of the first byte to write.
+   * @param length     Number of bytes to write.
+   * @param output     Stream to write to.
+   * @throws IOException If the file could not be read or the stream written.
+   */
+  public static void write(final Path path, final BasicFileAttributes attributes, final long start, final long length,
+                           final OutputStream output) throws IOException {
+    long position = start;
+    long end = start + length;
+    while (position < end) {
+      int currentSegmentBytes = segmentBytes;
+      long index = position / currentSegmentBytes;
+      byte[] segment = get(path, attributes, index, currentSegmentBytes, false, position == 0).content.getNow(null);
+      int offset = (int) (position - index * currentSegmentBytes);
+      int count = (int) Math.min(segment.length - offset, end - position);
+      if (count <= 0) {
+        throw new IOException(String.format("%s is shorter than %d bytes", path, end));
+      }
+      output.write(segment, offset, count);
+      position += count;
+    }
+  }
+
+  /**
+   * Reads the first segments of a file ahead of their first request, unless they are cached already.
+   *
+   * @param path   Path of the file.
+   * @param length Number of bytes to read from the start of the file.
+   * @throws IOException If the file could not be read.
+   */
+  public static void prefetch(final Path path, final long length) throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    int currentSegmentBytes = segmentBytes;
+    long end = Math.min(length, attributes.size());
+    for (long index = 0; index * currentSegmentBytes < end; index++) {
+      get(path, attributes, index, currentSegmentBytes, true, false);
+    }
+  }
+
+  private static void recordStart(final boolean prefetched, final long nanos) {
+    (prefetched ? PREFETCHED_STARTS : UNPREFETCHED_STARTS).incrementAndGet();
+    (prefetched ? PREFETCHED_START_NANOS : UNPREFETCHED_START_NANOS).addAndGet(nanos);
+  }
+
+  /**
+   * Gets a segment from the cache, reading it from the file on a miss. The file is read without holding the lock of
+   * the shard. A request of the start of a file is timed when it reads the segment or is the first to get it after it
+   * was prefetched.
+   *
+   * @param path         Path of the file.
+   * @param attributes   Attributes of the file.
+   * @param index        Index of the segment.
+   * @param segmentBytes Size of a segment.
+   * @param prefetch     Whether the segment is read ahead of its first request.
+   * @param start        Whether the segment is requested for the start of the file.
+   * @return Segment, once read.
+   * @throws IOException If the segment could not be read.
+   */
+  private static Segment get(final Path path,
+                             final BasicFileAttributes attributes,
+                             final long index,
+                             final int segmentBytes,
+                             final boolean prefetch,
+                             final boolean start) throws IOException {
+    long lookupStart = System.nanoTime();
+    SegmentKey key = new SegmentKey(path, attributes.lastModifiedTime(), index);
+    Segment segment;
+    boolean owner = false;
+    boolean prefetchHit = false;
+    Shard shard = shard(key);
+    synchronized (shard) {
+      segment = shard.segments.get(key);
+      if (segment == null) {
+        segment = new Segment();
+        segment.bytes = Math.max(0, Math.min(segmentBytes, attributes.size() - index * segmentBytes));
+        segment.prefetched = prefetch;
+        shard.segments.put(key, segment);
+        shard.bytes += segment.bytes;
+        evictExceedingSegments(shard);
+        owner = true;
+      } else if (!prefetch && segment.prefetched) {
+        segment.prefetched = false;
+        prefetchHit = true;
+      }
+    }
+    if (owner) {
+      (prefetch ? PREFETCHES : MISSES).incrementAndGet();
+      try {
+        segment.content.complete(read(path, index * segmentBytes, (int) segment.bytes));
+      } catch (IOException | RuntimeException exception) {
+        segment.content.completeExceptionally(exception);
+        remove(key, segment);
+      }
+    } else if (prefetchHit) {
+      PREFETCH_HITS.incrementAndGet();
+    } else if (!prefetch) {
+      HITS.incrementAndGet();
+    }
+    try {
+      segment.content.join();
+      if (start && (owner || prefetchHit)) {
+        recordStart(prefetchHit, System.nanoTime() - lookupStart);
+      }
+      return segment;
+    } catch (CompletionException completionException) {
+      if (completionException.getCause() instanceof IOException) {
+        throw (IOException) completionException.getCause();
+      }
+      throw completionException;
+    }
+  }
+
+  private static byte[] read(final Path path, final long position, final int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, position + buffer.position()) < 0) {
+          break;
+        }
+      }
+    }
+    return buffer.position() == length ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+  }
+
+  private static void remove(final SegmentKey key, final Segment segment) {
+    Shard shard = shard(key);
+    synchronized (shard) {
+      if (shard.segments.remove(key, segment)) {
+        shard.bytes -= segment.bytes;
+      }
+    }
+  }
+
+  /**
+   * Evicts the least recently used segments of a shard until it respects its share of the bound. Must hold the lock of
+   * the shard.
+   *
+   * @param shard Shard to evict from.
+   */
+  private static void evictExceedingSegments(final Shard shard) {
+    long maxShardBytes = maxBytes / SHARDS.length;
+    Iterator<Segment> iterator = shard.segments.values().iterator();
+    while (shard.bytes > maxShardBytes && iterator.hasNext()) {
+      Segment segment = iterator.next();
+      iterator.remove();
+      shard.bytes -= segment.bytes;
+      EVICTIONS.incrementAndGet();
+    }
+  }
+
+}
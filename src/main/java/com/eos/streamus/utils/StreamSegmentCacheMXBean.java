@@ -0,0 +1,34 @@
+package com.eos.streamus.utils;
+
+/** Gauges exported over JMX by {@link StreamSegmentCacheMonitor}. */
+public interface StreamSegmentCacheMXBean {
+  /** @return Segment lookups answered from the stream segment cache since startup, not counting prefetch hits. */
+  long getHits();
+
+  /** @return Segment lookups that had to read the file since startup. */
+  long getMisses();
+
+  /** @return Ratio of segment lookups answered from the stream segment cache since startup, without prefetch hits. */
+  double getHitRatio();
+
+  /** @return Segments evicted to respect the bound since startup. */
+  long getEvictions();
+
+  /** @return Segments read ahead of their first request since startup. */
+  long getPrefetches();
+
+  /** @return Prefetched segments requested since startup. */
+  long getPrefetchHits();
+
+  /** @return Average time to the first segment of a track whose start was read ahead, in microseconds. */
+  double getAveragePrefetchedStartMicros();
+
+  /** @return Average time to the first segment of a track whose start was not read ahead, in microseconds. */
+  double getAverageUnprefetchedStartMicros();
+
+  /** @return Number of cached segments. */
+  int getSize();
+
+  /** @return Footprint of the cached segments, in bytes. */
+  long getBytes();
+}
@@ -0,0 +1,133 @@
+package com.eos.streamus.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies the {@code streamCache.*} properties to the {@link StreamSegmentCache} and exports its gauges over JMX.
+ * Only the files of songs are served from the cache. Set {@code streamCache.enabled=false} to stream them straight
+ * from disk as well, with sendfile when available, like films.
+ */
+@Component
+public class StreamSegmentCacheMonitor implements StreamSegmentCacheMXBean {
+  /** JMX name of the stream segment cache gauges. */
+  private static final String OBJECT_NAME = "com.eos.streamus:type=StreamSegmentCache";
+
+  /** Whether the stream segment cache is used. */
+  @Value("${streamCache.enabled:true}")
+  private boolean enabled;
+
+  /** Size of a segment, in bytes. */
+  @Value("${streamCache.segmentBytes:262144}")
+  private int segmentBytes;
+
+  /** Maximum footprint of the cache, in bytes. */
+  @Value("${streamCache.maxBytes:134217728}")
+  private long maxBytes;
+
+  /** Configures the cache and registers its gauges. */
+  @PostConstruct
+  public void start() {
+    StreamSegmentCache.configure(enabled, segmentBytes, maxBytes);
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not register stream segment cache gauges", jmException);
+    }
+  }
+
+  /** Clears the cache and unregisters its gauges. */
+  @PreDestroy
+  public void shutdown() {
+    StreamSegmentCache.clear();
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (JMException jmException) {
+      getLogger().log(Level.WARNING, "Could not unregister stream segment cache gauges", jmException);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getHits() {
+    return StreamSegmentCache.getHits();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getMisses() {
+    return StreamSegmentCache.getMisses();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getHitRatio() {
+    long hits = getHits();
+    long total = hits + getMisses();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getEvictions() {
+    return StreamSegmentCache.getEvictions();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getPrefetches() {
+    return StreamSegmentCache.getPrefetches();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getPrefetchHits() {
+    return StreamSegmentCache.getPrefetchHits();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getAveragePrefetchedStartMicros() {
+    return StreamSegmentCache.getAverageStartMicros(true);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double getAverageUnprefetchedStartMicros() {
+    return StreamSegmentCache.getAverageStartMicros(false);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getSize() {
+    return StreamSegmentCache.getSize();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long getBytes() {
+    return StreamSegmentCache.getBytes();
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
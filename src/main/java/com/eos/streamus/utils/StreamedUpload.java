@@ -0,0 +1,176 @@
+package com.eos.streamus.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Uploaded file received in a single pass: each byte read from the request is written once to its final location,
+ * added to the content hash, and kept if it belongs to the first {@link MediaHeaderParser#HEAD_SIZE} or last
+ * {@link MediaHeaderParser#TAIL_SIZE} bytes of the file, so that its headers can be parsed without reading it again.
+ * Those bytes stay on the heap until the upload is probed, so the raw uploads received at a time are bounded by
+ * {@link ContentStore#receive(java.io.InputStream, Path)}, and those waiting to be probed by the queue of the
+ * {@link IngestService}. Multipart bodies are unchanged: they have already been written by the container to its own
+ * temporary file by the time they are received, so they are written twice.
+ */
+public final class StreamedUpload {
+  /** Algorithm of the content hash. */
+  public static final String HASH_ALGORITHM = "SHA-256";
+  /** Number of bytes read from the request at a time. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+  /** Hexadecimal digits, by value. */
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  /** Path of the received file. */
+  private final Path path;
+  /** Size of the received file. */
+  private final long size;
+  /** Hexadecimal {@link #HASH_ALGORITHM} hash of the received file. */
+  private final String contentHash;
+  /** First bytes of the received file. */
+  private final ByteBuffer head;
+  /** Last bytes of the received file. */
+  private final ByteBuffer tail;
+
+  private StreamedUpload(final Path path,
+                         final long size,
+                         final String contentHash,
+                         final ByteBuffer head,
+                         final ByteBuffer tail) {
+    this.path = path;
+    this.size = size;
+    this.contentHash = contentHash;
+    this.head = head;
+    this.tail = tail;
+  }
+
+  /**
+   * Writes an uploaded file to its final location.
+   *
+   * @param input       Body of the upload, read until its end.
+   * @param destination Final location of the file, which must not exist yet.
+   * @return Received upload.
+   * @throws IOException If the body could not be read or the file written. The file is deleted when this happens.
+   */
+  public static StreamedUpload receive(final InputStream input, final Path destination) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[BUFFER_SIZE];
+    byte[] head = new byte[MediaHeaderParser.HEAD_SIZE];
+    byte[] tail = new byte[MediaHeaderParser.TAIL_SIZE];
+    long size = 0;
+    try (FileChannel channel = FileChannel.open(destination, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+      int read;
+      while ((read = input.read(buffer)) >= 0) {
+        ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+        while (chunk.hasRemaining()) {
+          channel.write(chunk);
+        }
+        digest.update(buffer, 0, read);
+        if (size < head.length) {
+          System.arraycopy(buffer, 0, head, (int) size, (int) Math.min(read, head.length - size));
+        }
+        keepTail(buffer, read, tail, size);
+        size += read;
+      }
+    } catch (IOException | RuntimeException exception) {
+      Files.deleteIfExists(destination);
+      throw exception;
+    }
+    return new StreamedUpload(
+        destination,
+        size,
+        toHex(digest.digest()),
+        ByteBuffer.wrap(head, 0, (int) Math.min(size, head.length)).slice(),
+        orderedTail(tail, size)
+    );
+  }
+
+  /**
+   * Copies the bytes just read into the ring holding the last bytes of the file.
+   *
+   * @param buffer   Bytes just read.
+   * @param length   Number of bytes just read.
+   * @param tail     Ring of the last bytes, indexed by their offset in the file modulo its length.
+   * @param received Number of bytes received before these.
+   */
+  private static void keepTail(final byte[] buffer, final int length, final byte[] tail, final long received) {
+    int skipped = Math.max(0, length - tail.length);
+    int offset = (int) ((received + skipped) % tail.length);
+    int remaining = length - skipped;
+    int firstPart = Math.min(remaining, tail.length - offset);
+    System.arraycopy(buffer, skipped, tail, offset, firstPart);
+    System.arraycopy(buffer, skipped + firstPart, tail, 0, remaining - firstPart);
+  }
+
+  private static ByteBuffer orderedTail(final byte[] tail, final long size) {
+    if (size < tail.length) {
+      return ByteBuffer.wrap(tail, 0, (int) size).slice();
+    }
+    int start = (int) (size % tail.length);
+    ByteBuffer ordered = ByteBuffer.allocate(tail.length);
+    ordered.put(tail, start, tail.length - start).put(tail, 0, start);
+    return ordered.flip();
+  }
+
+  /** @return New {@link MessageDigest} of the {@link #HASH_ALGORITHM}. */
+  static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(HASH_ALGORITHM);
+    } catch (NoSuchAlgorithmException noSuchAlgorithmException) {
+      throw new IllegalStateException(noSuchAlgorithmException);
+    }
+  }
+
+  /**
+   * @param bytes Bytes of a hash.
+   * @return Lowercase hexadecimal representation of the hash.
+   */
+  static String toHex(final byte[] bytes) {
+    char[] hex = new char[bytes.length * 2];
+    for (int i = 0; i < bytes.length; i++) {
+      hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+      hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+    }
+    return new String(hex);
+  }
+
+  /**
+   * @param movedPath New path of the received file.
+   * @return The same upload, with its file at a new path.
+   */
+  StreamedUpload movedTo(final Path movedPath) {
+    return new StreamedUpload(movedPath, size, contentHash, head, tail);
+  }
+
+  /** @return Path of the received file. */
+  public Path getPath() {
+    return path;
+  }
+
+  /** @return Size of the received file. */
+  public long getSize() {
+    return size;
+  }
+
+  /** @return Hexadecimal {@link #HASH_ALGORITHM} hash of the received file. */
+  public String getContentHash() {
+    return contentHash;
+  }
+
+  /** @return First bytes of the received file, at most {@link MediaHeaderParser#HEAD_SIZE}. */
+  public ByteBuffer getHead() {
+    return head.asReadOnlyBuffer();
+  }
+
+  /** @return Last bytes of the received file, at most {@link MediaHeaderParser#TAIL_SIZE}. */
+  public ByteBuffer getTail() {
+    return tail.asReadOnlyBuffer();
+  }
+
+}
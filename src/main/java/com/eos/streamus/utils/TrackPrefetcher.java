@@ -0,0 +1,172 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.models.CollectionActivity;
+import com.eos.streamus.models.Resource;
+import com.eos.streamus.models.ResourceActivity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the start of the next track of a {@link CollectionActivity} in the background, so that the first range request
+ * of a track transition does not pay the disk latency. Prefetching is triggered when a collection activity is started,
+ * and on every track transition pushed over its sync channel by {@link ActivitySyncService}. The start is loaded into
+ * the {@link StreamSegmentCache}, or read into the page cache of the system when the segment cache is disabled.
+ * Prefetching is best effort: requests that do not fit in the queue are dropped.
+ */
+@Service
+@Scope(value = "singleton")
+public class TrackPrefetcher {
+  /** Number of bytes read at a time to warm the page cache. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /** {@link IDatabaseConnector} to use. */
+  @Autowired
+  private IDatabaseConnector databaseConnector;
+
+  /** Number of bytes read from the start of a track. */
+  @Value("${streamCache.prefetchBytes:1048576}")
+  private long prefetchBytes;
+
+  /** Maximum number of tracks waiting to be prefetched. */
+  @Value("${streamCache.prefetchQueueCapacity:100}")
+  private int queueCapacity;
+
+  /** Reads the tracks. */
+  private ThreadPoolExecutor executor;
+
+  /** Starts the prefetching thread. */
+  @PostConstruct
+  public void start() {
+    executor = new ThreadPoolExecutor(
+        1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+        runnable -> {
+          Thread thread = new Thread(runnable, "track-prefetcher");
+          thread.setDaemon(true);
+          return thread;
+        },
+        new ThreadPoolExecutor.DiscardPolicy()
+    );
+  }
+
+  /** Stops the prefetching thread, dropping the tracks left to prefetch. */
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Prefetches the start of the track following the current one of an activity, if any.
+   *
+   * @param collectionActivity Activity whose next track is about to be played.
+   */
+  public void prefetchNext(final CollectionActivity collectionActivity) {
+    Resource next = collectionActivity.peekNext();
+    if (next != null) {
+      prefetch(Paths.get(next.getPath()));
+    }
+  }
+
+  /**
+   * Prefetches the start of the track following a given one of an activity, if any. The activity is loaded in the
+   * background, so that the thread of the track transition does not wait for the database.
+   *
+   * @param activityId Id of the {@link CollectionActivity}.
+   * @param track      Number of the track being played.
+   */
+  public void prefetchAfter(final int activityId, final int track) {
+    try {
+      executor.execute(() -> {
+        try (Connection connection = databaseConnector.getConnection()) {
+          Resource next = findAfter(CollectionActivity.findById(activityId, connection), track);
+          if (next != null) {
+            prefetch(Paths.get(next.getPath()));
+          }
+        } catch (SQLException sqlException) {
+          getLogger().log(Level.FINE, String.format("Could not load activity %d", activityId), sqlException);
+        } catch (NoResultException noResultException) {
+          getLogger().log(Level.FINE, String.format("Activity %d is not a collection activity", activityId));
+        }
+      });
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      getLogger().log(Level.FINE, String.format("Did not prefetch after track %d", track), rejectedExecutionException);
+    }
+  }
+
+  /**
+   * Prefetches the start of a file in the background.
+   *
+   * @param path Path of the file.
+   */
+  public void prefetch(final Path path) {
+    try {
+      executor.execute(() -> {
+        try {
+          if (StreamSegmentCache.isEnabled()) {
+            StreamSegmentCache.prefetch(path, prefetchBytes);
+          } else {
+            warmPageCache(path);
+          }
+        } catch (IOException ioException) {
+          getLogger().log(Level.FINE, String.format("Could not prefetch %s", path), ioException);
+        }
+      });
+    } catch (RejectedExecutionException rejectedExecutionException) {
+      getLogger().log(Level.FINE, String.format("Did not prefetch %s", path), rejectedExecutionException);
+    }
+  }
+
+  /**
+   * @param collectionActivity Activity.
+   * @param track              Number of a track of the activity.
+   * @return Resource of the track with the lowest number above the given one, or null if there is none.
+   */
+  private static Resource findAfter(final CollectionActivity collectionActivity, final int track) {
+    Pair<Integer, Pair<Resource, ResourceActivity>> next = null;
+    for (Pair<Integer, Pair<Resource, ResourceActivity>> entry : collectionActivity.getContent()) {
+      if (entry.getKey() > track && (next == null || entry.getKey() < next.getKey())) {
+        next = entry;
+      }
+    }
+    return next == null ? null : next.getValue().getKey();
+  }
+
+  private void warmPageCache(final Path path) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long position = 0;
+      while (position < prefetchBytes) {
+        buffer.clear();
+        int read = channel.read(buffer, position);
+        if (read < 0) {
+          break;
+        }
+        position += read;
+      }
+    }
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
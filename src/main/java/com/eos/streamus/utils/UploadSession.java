@@ -0,0 +1,221 @@
+package com.eos.streamus.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Resumable upload of a media file, received in chunks over several requests. Chunks are written in order, straight
+ * into the file at their offset, so that an interrupted upload resumes from the last byte written. The bytes written
+ * are hashed along the way. Only one chunk is received at a time, and an upload is not completed or cancelled while
+ * one is.
+ */
+public final class UploadSession {
+  /** Number of bytes read from a request at a time. */
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  /**
+   * Ingestion of a complete upload.
+   *
+   * @param <T> Type of the result of the ingestion.
+   */
+  @FunctionalInterface
+  public interface Ingestion<T> {
+    T run(String contentHash) throws IOException;
+  }
+
+  /** Id of the session. */
+  private final String id = UUID.randomUUID().toString();
+  /** Type of {@link com.eos.streamus.models.Resource} the upload is ingested into. */
+  private final String type;
+  /** Path of the uploaded file. */
+  private final Path path;
+  /** Size of the uploaded file. */
+  private final long length;
+  /** Ingestion of the file, once complete, given the path it is stored at. */
+  private final Function<Path, IngestJob.Task> ingestion;
+  /** Hash of the bytes received. */
+  private final MessageDigest digest = StreamedUpload.newDigest();
+  /** Hexadecimal hash of the file, once all of its bytes are received. */
+  private String contentHash;
+  /** Held while a chunk is received or the upload is completed. */
+  private final ReentrantLock lock = new ReentrantLock();
+  /** Number of bytes received, from the start of the file. */
+  private volatile long offset;
+  /** Whether the upload was handed over to ingestion. */
+  private volatile boolean completed;
+  /** Whether the upload was cancelled. */
+  private volatile boolean cancelled;
+  /** Time of the last activity on the session, in nanoseconds. */
+  private volatile long lastActivity = System.nanoTime();
+
+  UploadSession(final String type,
+                final Path path,
+                final long length,
+                final Function<Path, IngestJob.Task> ingestion) {
+    this.type = type;
+    this.path = path;
+    this.length = length;
+    this.ingestion = ingestion;
+  }
+
+  /** @return Id of the session. */
+  public String getId() {
+    return id;
+  }
+
+  /** @return Type of {@link com.eos.streamus.models.Resource} the upload is ingested into. */
+  public String getType() {
+    return type;
+  }
+
+  /** @return Path of the uploaded file. */
+  public Path getPath() {
+    return path;
+  }
+
+  /** @return Size of the uploaded file. */
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @param storedFile Path the complete file is stored at.
+   * @return Ingestion of the file.
+   */
+  public IngestJob.Task getTask(final Path storedFile) {
+    return ingestion.apply(storedFile);
+  }
+
+  /** @return Number of bytes received, from the start of the file. */
+  public long getOffset() {
+    return offset;
+  }
+
+  /** @return Whether the upload was handed over to ingestion. */
+  public boolean isCompleted() {
+    return completed;
+  }
+
+  /**
+   * Writes a chunk of the file at its offset. If the chunk ends early, the bytes already read are kept and the next
+   * chunk must start after them.
+   *
+   * @param input       Body of the chunk.
+   * @param start       Offset of the chunk in the file. It must be the number of bytes already received.
+   * @param chunkLength Size of the chunk.
+   * @return Number of bytes received, from the start of the file.
+   * @throws IllegalStateException    If another chunk is being received, or the upload is completed or cancelled.
+   * @throws IllegalArgumentException If the chunk does not start at the received offset or ends beyond the file.
+   * @throws IOException              If the chunk could not be read or written.
+   */
+  public long write(final InputStream input, final long start, final long chunkLength) throws IOException {
+    if (!lock.tryLock()) {
+      throw new IllegalStateException("Another chunk is being received");
+    }
+    try {
+      checkOpen();
+      if (start != offset) {
+        throw new IllegalArgumentException(String.format("Next chunk must start at offset %d", offset));
+      }
+      if (chunkLength < 0 || chunkLength > length - start) {
+        throw new IllegalArgumentException(String.format("Chunk must end before offset %d", length));
+      }
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long remaining = chunkLength;
+        while (remaining > 0) {
+          int read = input.read(buffer.array(), 0, (int) Math.min(buffer.capacity(), remaining));
+          if (read < 0) {
+            break;
+          }
+          buffer.clear().limit(read);
+          while (buffer.hasRemaining()) {
+            int position = buffer.position();
+            int written = channel.write(buffer, offset);
+            digest.update(buffer.array(), position, written);
+            offset += written;
+          }
+          remaining -= read;
+        }
+      }
+      return offset;
+    } finally {
+      lastActivity = System.nanoTime();
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Hands the upload over to ingestion, once all of its bytes are received.
+   *
+   * @param ingest Queues the ingestion of the file, given its {@link StreamedUpload#HASH_ALGORITHM} hash.
+   * @param <T>    Type of the result of the ingestion.
+   * @return Result of the ingestion.
+   * @throws IllegalStateException If a chunk is being received, or the upload is incomplete, cancelled or already
+   *                               completed.
+   * @throws IOException           If the file could not be handed over.
+   */
+  public <T> T complete(final Ingestion<T> ingest) throws IOException {
+    if (!lock.tryLock()) {
+      throw new IllegalStateException("A chunk is being received");
+    }
+    try {
+      checkOpen();
+      if (offset != length) {
+        throw new IllegalStateException(String.format("Only %d of %d bytes were received", offset, length));
+      }
+      if (contentHash == null) {
+        contentHash = StreamedUpload.toHex(digest.digest());
+      }
+      T result = ingest.run(contentHash);
+      completed = true;
+      return result;
+    } finally {
+      lastActivity = System.nanoTime();
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Marks the upload as cancelled, so that no chunk is written to its file anymore.
+   *
+   * @throws IllegalStateException If a chunk is being received, or the upload is completed or already cancelled.
+   */
+  void cancel() {
+    if (!lock.tryLock()) {
+      throw new IllegalStateException("A chunk is being received");
+    }
+    try {
+      checkOpen();
+      cancelled = true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void checkOpen() {
+    if (completed) {
+      throw new IllegalStateException("Upload is completed");
+    }
+    if (cancelled) {
+      throw new IllegalStateException("Upload is cancelled");
+    }
+  }
+
+  /**
+   * @param now Current time, in nanoseconds.
+   * @return Time elapsed since the last activity on the session, in nanoseconds, or 0 if a chunk is being received.
+   */
+  long idleSince(final long now) {
+    return lock.isLocked() ? 0 : now - lastActivity;
+  }
+
+}
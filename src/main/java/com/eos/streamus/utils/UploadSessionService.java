@@ -0,0 +1,176 @@
+package com.eos.streamus.utils;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps track of resumable uploads. Each upload is written to a file of its final size, at most
+ * {@code upload.maxLength} bytes, allocated when the session is created. Sessions idle for longer than
+ * {@code upload.sessionTimeoutMinutes} are dropped along with their file by a periodic sweep, and at most
+ * {@code upload.maxSessions} are open at a time.
+ */
+@Service
+@Scope(value = "singleton")
+public class UploadSessionService {
+  /** Time between two sweeps of the idle sessions, in minutes. */
+  private static final long SWEEP_PERIOD_MINUTES = 1;
+
+  /** Maximum number of open sessions. */
+  @Value("${upload.maxSessions:100}")
+  private int maxSessions;
+
+  /** Maximum size of an uploaded file, in bytes. */
+  @Value("${upload.maxLength:21474836480}")
+  private long maxLength;
+
+  /** Time after which an idle session is dropped, in minutes. */
+  @Value("${upload.sessionTimeoutMinutes:1440}")
+  private long sessionTimeoutMinutes;
+
+  /** Open sessions by id. */
+  private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+  /** Number of open sessions, counting those whose file is being allocated. */
+  private final AtomicInteger openSessions = new AtomicInteger();
+  /** Drops the idle sessions. */
+  private ScheduledExecutorService sweeper;
+
+  /** Starts sweeping the idle sessions. */
+  @PostConstruct
+  public void start() {
+    sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "upload-session-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sweeper.scheduleWithFixedDelay(
+        this::purgeIdleSessions, SWEEP_PERIOD_MINUTES, SWEEP_PERIOD_MINUTES, TimeUnit.MINUTES
+    );
+  }
+
+  /** Stops sweeping the idle sessions. Open sessions and their files are kept. */
+  @PreDestroy
+  public void shutdown() {
+    sweeper.shutdownNow();
+  }
+
+  /**
+   * Opens a resumable upload and allocates its file.
+   *
+   * @param type      Type of {@link com.eos.streamus.models.Resource} the upload is ingested into.
+   * @param path      Path of the uploaded file, which must not exist yet.
+   * @param length    Size of the uploaded file.
+   * @param ingestion Ingestion of the file, once complete, given the path it is stored at.
+   * @return Opened session.
+   * @throws IllegalArgumentException If the size of the file is not positive or above {@code upload.maxLength}.
+   * @throws IllegalStateException    If too many sessions are open.
+   * @throws IOException              If the file could not be allocated.
+   */
+  public UploadSession open(final String type,
+                            final Path path,
+                            final long length,
+                            final Function<Path, IngestJob.Task> ingestion) throws IOException {
+    if (length <= 0 || length > maxLength) {
+      throw new IllegalArgumentException(String.format("Length must be between 1 and %d", maxLength));
+    }
+    if (openSessions.incrementAndGet() > maxSessions) {
+      openSessions.decrementAndGet();
+      throw new IllegalStateException(String.format("More than %d uploads are open", maxSessions));
+    }
+    try {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+        channel.write(ByteBuffer.allocate(1), length - 1);
+      }
+    } catch (IOException | RuntimeException exception) {
+      openSessions.decrementAndGet();
+      throw exception;
+    }
+    UploadSession session = new UploadSession(type, path, length, ingestion);
+    sessions.put(session.getId(), session);
+    return session;
+  }
+
+  /**
+   * @param id Id of a session.
+   * @return The session, or null if there is no such open session.
+   */
+  public UploadSession get(final String id) {
+    return sessions.get(id);
+  }
+
+  /**
+   * Closes a session once its upload is handed over to ingestion. Its file is kept.
+   *
+   * @param session Completed session.
+   */
+  public void close(final UploadSession session) {
+    if (sessions.remove(session.getId()) != null) {
+      openSessions.decrementAndGet();
+    }
+  }
+
+  /**
+   * Closes a session and deletes its file.
+   *
+   * @param session Session to cancel.
+   * @throws IllegalStateException If a chunk is being received or the upload is completed.
+   */
+  public void cancel(final UploadSession session) {
+    session.cancel();
+    close(session);
+    try {
+      Files.deleteIfExists(session.getPath());
+    } catch (IOException ioException) {
+      getLogger().log(Level.WARNING, String.format("Could not delete %s", session.getPath()), ioException);
+    }
+  }
+
+  /** @return Maximum size of an uploaded file, in bytes. */
+  public long getMaxLength() {
+    return maxLength;
+  }
+
+  /** @return Number of open sessions. */
+  public int getOpenSessions() {
+    return openSessions.get();
+  }
+
+  /** Cancels the sessions idle for longer than {@code upload.sessionTimeoutMinutes}. */
+  void purgeIdleSessions() {
+    long now = System.nanoTime();
+    long timeoutNanos = TimeUnit.MINUTES.toNanos(sessionTimeoutMinutes);
+    for (UploadSession session : sessions.values()) {
+      if (session.idleSince(now) > timeoutNanos) {
+        try {
+          cancel(session);
+        } catch (IllegalStateException illegalStateException) {
+          // Became active or was completed in the meantime
+          getLogger().log(Level.FINE, String.format("Kept upload %s", session.getId()), illegalStateException);
+        }
+      }
+    }
+  }
+
+  private Logger getLogger() {
+    return Logger.getLogger(getClass().getName());
+  }
+
+}
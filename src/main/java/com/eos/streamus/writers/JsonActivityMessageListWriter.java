@@ -0,0 +1,23 @@
+package com.eos.streamus.writers;
+
+import com.eos.streamus.models.Activity;
+import com.eos.streamus.models.Page;
+
+import java.util.List;
+
+public class JsonActivityMessageListWriter extends JsonListWriter<Activity.ActivityMessage> {
+  public JsonActivityMessageListWriter(final List<Activity.ActivityMessage> messages) {
+    super(messages);
+  }
+
+  public JsonActivityMessageListWriter(final Page<? extends Activity.ActivityMessage> page) {
+    super(page);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected final JsonWriter elementWriter(final Activity.ActivityMessage message) {
+    return new JsonActivityMessageWriter(message);
+  }
+
+}
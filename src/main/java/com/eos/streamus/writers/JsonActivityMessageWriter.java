@@ -0,0 +1,27 @@
+package com.eos.streamus.writers;
+
+import com.eos.streamus.models.Activity;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public final class JsonActivityMessageWriter extends JsonObjectWriter {
+  /** {@link Activity.ActivityMessage} to write. */
+  private final Activity.ActivityMessage message;
+
+  public JsonActivityMessageWriter(final Activity.ActivityMessage message) {
+    this.message = message;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected JsonNode getSpecificJson(final ObjectNode objectNode) {
+    return objectNode
+        .put("id", message.getId())
+        .put("activityId", message.getActivity().getId())
+        .put("userId", message.getUser().getId())
+        .put("username", message.getUser().getUsername())
+        .put("content", message.getContent())
+        .put("postedAt", message.getPostedAt().getTime());
+  }
+
+}
@@ -0,0 +1,35 @@
+package com.eos.streamus.writers;
+
+import com.eos.streamus.utils.ActivitySyncEvent;
+import com.eos.streamus.utils.LiveActivity;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Locale;
+
+public final class JsonActivitySyncEventWriter extends JsonObjectWriter {
+  /** {@link ActivitySyncEvent} to write. */
+  private final ActivitySyncEvent event;
+
+  public JsonActivitySyncEventWriter(final ActivitySyncEvent event) {
+    this.event = event;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected JsonNode getSpecificJson(final ObjectNode objectNode) {
+    objectNode
+        .put("type", event.getType().name().toLowerCase(Locale.ROOT))
+        .put("activityId", event.getActivityId())
+        .put("userId", event.getUserId())
+        .put("time", event.getPositionMillis() / LiveActivity.MILLIS_PER_SECOND)
+        .put("position", event.getPositionMillis())
+        .put("rate", event.getRate())
+        .put("sentAt", event.getSentAt());
+    if (event.getTrack() != null) {
+      objectNode.put("track", event.getTrack());
+    }
+    return objectNode;
+  }
+
+}
@@ -6,7 +6,7 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 abstract class JsonArrayWriter implements JsonWriter {
   @Override
   public final JsonNode getJson() {
-    ArrayNode arrayNode = new ArrayNode(new JsonWriterNodeFactory());
+    ArrayNode arrayNode = new ArrayNode(JsonWriterNodeFactory.INSTANCE);
     return getSpecificArrayJson(arrayNode);
   }
 
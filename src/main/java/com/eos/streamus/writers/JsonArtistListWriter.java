@@ -3,30 +3,36 @@ package com.eos.streamus.writers;
 import com.eos.streamus.models.Artist;
 import com.eos.streamus.models.Band;
 import com.eos.streamus.models.Musician;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.eos.streamus.models.Page;
 
 import java.util.List;
 
-public class JsonArtistListWriter extends JsonArrayWriter {
-  /** List of {@link Artist}s to write. */
-  private final List<Artist> artists;
-
+public class JsonArtistListWriter extends JsonListWriter<Artist> {
   public JsonArtistListWriter(final List<Artist> artists) {
-    this.artists = artists;
+    super(artists);
+  }
+
+  public JsonArtistListWriter(final Page<? extends Artist> page) {
+    super(page);
   }
 
   /** {@inheritDoc} */
   @Override
-  protected JsonNode getSpecificArrayJson(final ArrayNode arrayNode) {
-    for (Artist artist : artists) {
-      if (artist instanceof Band) {
-        arrayNode.add(new JsonBandWriter((Band) artist).getJson());
-      } else {
-        arrayNode.add(new JsonMusicianWriter((Musician) artist).getJson());
-      }
+  protected JsonWriter elementWriter(final Artist artist) {
+    return writerFor(artist);
+  }
+
+  /**
+   * Creates the writer of an {@link Artist}, depending on its type.
+   *
+   * @param artist Artist to write.
+   * @return {@link JsonBandWriter} or {@link JsonMusicianWriter}.
+   */
+  public static JsonWriter writerFor(final Artist artist) {
+    if (artist instanceof Band) {
+      return new JsonBandWriter((Band) artist);
     }
-    return arrayNode;
+    return new JsonMusicianWriter((Musician) artist);
   }
 
 }
@@ -19,7 +19,7 @@ public class JsonCollectionActivityWriter extends JsonObjectWriter {
     objectNode.put("id", collectionActivity.getId()).put("collectionId", collectionActivity.getCollection().getId());
     ArrayNode resourceActivities = objectNode.putArray("resourceActivities");
     for (var entry : collectionActivity.getContent()) {
-      ObjectNode resourceActivityNode = new ObjectNode(new JsonWriterNodeFactory());
+      ObjectNode resourceActivityNode = new ObjectNode(JsonWriterNodeFactory.INSTANCE);
       resourceActivityNode.put("num", entry.getKey());
       JsonResourceWriterFactory.getWriterFor(entry.getValue().getKey())
           .getSpecificJson(resourceActivityNode.putObject("resource"));
@@ -1,26 +1,23 @@
 package com.eos.streamus.writers;
 
 import com.eos.streamus.models.Film;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.eos.streamus.models.Page;
 
 import java.util.List;
 
-public class JsonFilmListWriter extends JsonArrayWriter {
-  /** List of {@link Film}s to write. */
-  private final List<Film> films;
-
+public class JsonFilmListWriter extends JsonListWriter<Film> {
   public JsonFilmListWriter(final List<Film> films) {
-    this.films = films;
+    super(films);
+  }
+
+  public JsonFilmListWriter(final Page<? extends Film> page) {
+    super(page);
   }
 
   /** {@inheritDoc} */
   @Override
-  protected final JsonNode getSpecificArrayJson(final ArrayNode arrayNode) {
-    for (Film film : films) {
-      arrayNode.add(new JsonFilmWriter(film).getJson());
-    }
-    return arrayNode;
+  protected final JsonWriter elementWriter(final Film film) {
+    return new JsonFilmWriter(film);
   }
 
 }
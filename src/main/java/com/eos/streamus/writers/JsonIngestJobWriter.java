@@ -0,0 +1,40 @@
+package com.eos.streamus.writers;
+
+import com.eos.streamus.utils.IngestJob;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Map;
+
+public final class JsonIngestJobWriter extends JsonObjectWriter {
+  /** {@link IngestJob} to write. */
+  private final IngestJob job;
+
+  public JsonIngestJobWriter(final IngestJob job) {
+    this.job = job;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected JsonNode getSpecificJson(final ObjectNode objectNode) {
+    objectNode
+        .put("id", job.getId())
+        .put("type", job.getType())
+        .put("status", job.getStatus().name());
+    if (job.getContentHash() != null) {
+      objectNode.put("contentHash", job.getContentHash());
+    }
+    if (job.getResourceId() != null) {
+      objectNode.put("resourceId", job.getResourceId());
+    }
+    if (job.getFailureReason() != null) {
+      objectNode.put("reason", job.getFailureReason());
+    }
+    ObjectNode stages = objectNode.putObject("stageMillis");
+    for (Map.Entry<String, Long> stage : job.getStageMillis().entrySet()) {
+      stages.put(stage.getKey(), stage.getValue());
+    }
+    return objectNode;
+  }
+
+}
@@ -0,0 +1,80 @@
+package com.eos.streamus.writers;
+
+import com.eos.streamus.models.Page;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes a list of elements as a JSON array, either as a tree with {@link #getJson()} or streamed to an
+ * {@link OutputStream} with {@link #writeTo(OutputStream)}.
+ * A {@link Page} is written as an object holding the array in {@value JsonStreamingArrayWriter#CONTENT_FIELD} and the
+ * cursor of the next page in {@value JsonStreamingArrayWriter#NEXT_CURSOR_FIELD}.
+ *
+ * @param <T> Type of the written elements.
+ */
+abstract class JsonListWriter<T> implements JsonWriter {
+  /** Elements to write. */
+  private final List<? extends T> elements;
+  /** Page the elements belong to, or null if the whole list is written. */
+  private final Page<? extends T> page;
+
+  protected JsonListWriter(final List<? extends T> elements) {
+    this.elements = elements;
+    this.page = null;
+  }
+
+  protected JsonListWriter(final Page<? extends T> page) {
+    this.elements = page.getContent();
+    this.page = page;
+  }
+
+  /**
+   * Creates the {@link JsonWriter} of an element.
+   *
+   * @param element Element to write.
+   * @return Writer of the element.
+   */
+  protected abstract JsonWriter elementWriter(T element);
+
+  /** {@inheritDoc} */
+  @Override
+  public final JsonNode getJson() {
+    ArrayNode arrayNode = new ArrayNode(JsonWriterNodeFactory.INSTANCE);
+    for (T element : elements) {
+      arrayNode.add(elementWriter(element).getJson());
+    }
+    if (page == null) {
+      return arrayNode;
+    }
+    ObjectNode objectNode = new ObjectNode(JsonWriterNodeFactory.INSTANCE);
+    objectNode.set(JsonStreamingArrayWriter.CONTENT_FIELD, arrayNode);
+    objectNode.put(JsonStreamingArrayWriter.NEXT_CURSOR_FIELD, page.getNextCursor());
+    return objectNode;
+  }
+
+  /**
+   * Streams the list to an {@link OutputStream}, element by element, without building it in memory.
+   *
+   * @param outputStream Stream to write to. It is not closed.
+   * @throws IOException If the stream could not be written to.
+   */
+  public final void writeTo(final OutputStream outputStream) throws IOException {
+    try (JsonStreamingArrayWriter<T> writer = page == null ?
+        new JsonStreamingArrayWriter<>(outputStream, this::elementWriter) :
+        JsonStreamingArrayWriter.page(outputStream, this::elementWriter)) {
+      for (T element : elements) {
+        writer.write(element);
+      }
+      if (page != null) {
+        writer.setNextCursor(page.getNextCursor());
+      }
+      writer.end();
+    }
+  }
+
+}
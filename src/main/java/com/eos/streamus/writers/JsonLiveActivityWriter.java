@@ -0,0 +1,34 @@
+package com.eos.streamus.writers;
+
+import com.eos.streamus.utils.LiveActivity;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public final class JsonLiveActivityWriter extends JsonObjectWriter {
+  /** Id of the {@link LiveActivity} to write. */
+  private final int id;
+  /** Snapshot of the {@link LiveActivity} to write. */
+  private final LiveActivity.Snapshot snapshot;
+
+  public JsonLiveActivityWriter(final LiveActivity liveActivity) {
+    this.id = liveActivity.getId();
+    this.snapshot = liveActivity.snapshot();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected JsonNode getSpecificJson(final ObjectNode objectNode) {
+    objectNode
+        .put("id", id)
+        .put("pausedAt", snapshot.getPositionMillis() / LiveActivity.MILLIS_PER_SECOND)
+        .put("position", snapshot.getPositionMillis())
+        .put("rate", snapshot.getRate())
+        .put("playing", snapshot.isPlaying())
+        .put("at", snapshot.getAt());
+    if (snapshot.getTrack() != null) {
+      objectNode.put("track", snapshot.getTrack());
+    }
+    return objectNode;
+  }
+
+}
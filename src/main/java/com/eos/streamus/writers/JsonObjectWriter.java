@@ -7,7 +7,7 @@ abstract class JsonObjectWriter implements JsonWriter {
   /** {@inheritDoc} */
   @Override
   public final JsonNode getJson() {
-    final ObjectNode objectNode = new ObjectNode(new JsonWriterNodeFactory());
+    final ObjectNode objectNode = new ObjectNode(JsonWriterNodeFactory.INSTANCE);
     return getSpecificJson(objectNode);
   }
 
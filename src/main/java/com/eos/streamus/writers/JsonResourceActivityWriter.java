@@ -5,19 +5,30 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class JsonResourceActivityWriter extends JsonObjectWriter {
-  /** {@link com.eos.streamus.models.ResourceActivity} to write. */
-  private final ResourceActivity resourceActivity;
+  /** Id of the {@link com.eos.streamus.models.ResourceActivity} to write. */
+  private final Integer id;
+  /** Position of the ResourceActivity to write, in seconds. */
+  private final int pausedAt;
 
   public JsonResourceActivityWriter(final ResourceActivity resourceActivity) {
-    this.resourceActivity = resourceActivity;
+    this(resourceActivity.getId(), resourceActivity.getPausedAt());
+  }
+
+  /**
+   * @param id       Id of the ResourceActivity, e.g. of a live state that is not loaded.
+   * @param pausedAt Position of the ResourceActivity, in seconds.
+   */
+  public JsonResourceActivityWriter(final Integer id, final int pausedAt) {
+    this.id = id;
+    this.pausedAt = pausedAt;
   }
 
   /** {@inheritDoc} */
   @Override
   protected JsonNode getSpecificJson(final ObjectNode objectNode) {
     return objectNode
-        .put("id", resourceActivity.getId())
-        .put("pausedAt", resourceActivity.getPausedAt());
+        .put("id", id)
+        .put("pausedAt", pausedAt);
   }
 
 }
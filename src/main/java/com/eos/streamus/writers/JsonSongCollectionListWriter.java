@@ -1,26 +1,23 @@
 package com.eos.streamus.writers;
 
 import com.eos.streamus.models.SongCollection;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.eos.streamus.models.Page;
 
 import java.util.List;
 
-public class JsonSongCollectionListWriter extends JsonArrayWriter {
-  /** {@link SongCollection} subclass instance to write. */
-  private final List<? extends SongCollection> collections;
-
+public class JsonSongCollectionListWriter extends JsonListWriter<SongCollection> {
   public JsonSongCollectionListWriter(final List<? extends SongCollection> collections) {
-    this.collections = collections;
+    super(collections);
+  }
+
+  public JsonSongCollectionListWriter(final Page<? extends SongCollection> page) {
+    super(page);
   }
 
   /** {@inheritDoc} */
   @Override
-  protected JsonNode getSpecificArrayJson(final ArrayNode arrayNode) {
-    for (SongCollection collection : collections) {
-      arrayNode.add(JsonSongCollectionWriterFactory.getWriterFor(collection).getJson());
-    }
-    return arrayNode;
+  protected JsonWriter elementWriter(final SongCollection collection) {
+    return JsonSongCollectionWriterFactory.getWriterFor(collection);
   }
 
 }
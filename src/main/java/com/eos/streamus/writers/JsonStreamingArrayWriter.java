@@ -0,0 +1,121 @@
+package com.eos.streamus.writers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Function;
+
+/**
+ * Writes a JSON array to an {@link OutputStream} one element at a time, so that the whole array never has to be held
+ * in memory. Each element is written by its own {@link JsonWriter}, and the output is byte for byte the one of an
+ * {@link com.fasterxml.jackson.databind.node.ArrayNode} holding the same elements.
+ * A page of a list is written as an object holding the array and the cursor of the next page, see
+ * {@link #page(OutputStream, Function)}.
+ * The array is only ended by {@link #end()}, once every element was written: closing this writer without ending it
+ * leaves the output unterminated, so that a client reading a response cut short by an error sees an invalid body
+ * instead of a well-formed, shorter one. Closing this writer does not close the stream.
+ *
+ * @param <T> Type of the written elements.
+ */
+public final class JsonStreamingArrayWriter<T> implements AutoCloseable {
+  /** Field holding the elements of a page. */
+  public static final String CONTENT_FIELD = "content";
+  /** Field holding the cursor of the next page. */
+  public static final String NEXT_CURSOR_FIELD = "nextCursor";
+
+  /** Generator writing to the stream. */
+  private final JsonGenerator generator;
+  /** Creates the {@link JsonWriter} of an element. */
+  private final Function<? super T, ? extends JsonWriter> elementWriter;
+  /** Whether the array is the content of a page. */
+  private final boolean paged;
+  /** Cursor of the next page, if paged. */
+  private String nextCursor;
+
+  /**
+   * Starts the array.
+   *
+   * @param outputStream  Stream to write to.
+   * @param elementWriter Creates the {@link JsonWriter} of an element.
+   * @throws IOException If the stream could not be written to.
+   */
+  public JsonStreamingArrayWriter(final OutputStream outputStream,
+                                  final Function<? super T, ? extends JsonWriter> elementWriter) throws IOException {
+    this(outputStream, elementWriter, false);
+  }
+
+  private JsonStreamingArrayWriter(final OutputStream outputStream,
+                                   final Function<? super T, ? extends JsonWriter> elementWriter,
+                                   final boolean paged) throws IOException {
+    this.generator = JsonWriterNodeFactory.OBJECT_MAPPER.getFactory().createGenerator(outputStream);
+    this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    // An array that was not ended must not be closed by the generator either
+    this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+    this.elementWriter = elementWriter;
+    this.paged = paged;
+    if (paged) {
+      this.generator.writeStartObject();
+      this.generator.writeFieldName(CONTENT_FIELD);
+    }
+    this.generator.writeStartArray();
+  }
+
+  /**
+   * Starts the array of a page, written as {@code {"content": [...], "nextCursor": ...}}.
+   *
+   * @param outputStream  Stream to write to.
+   * @param elementWriter Creates the {@link JsonWriter} of an element.
+   * @param <T>           Type of the written elements.
+   * @return Writer of the page.
+   * @throws IOException If the stream could not be written to.
+   */
+  public static <T> JsonStreamingArrayWriter<T> page(final OutputStream outputStream,
+                                                     final Function<? super T, ? extends JsonWriter> elementWriter)
+      throws IOException {
+    return new JsonStreamingArrayWriter<>(outputStream, elementWriter, true);
+  }
+
+  /**
+   * Writes an element of the array.
+   *
+   * @param element Element to write.
+   * @throws IOException If the stream could not be written to.
+   */
+  public void write(final T element) throws IOException {
+    generator.writeTree(elementWriter.apply(element).getJson());
+  }
+
+  /**
+   * Sets the cursor of the next page, written when the array is ended.
+   *
+   * @param nextCursor Cursor of the next page, or null if this page is the last one.
+   */
+  public void setNextCursor(final String nextCursor) {
+    this.nextCursor = nextCursor;
+  }
+
+  /**
+   * Ends the array, and the page if any, once every element was written.
+   *
+   * @throws IOException If the stream could not be written to.
+   */
+  public void end() throws IOException {
+    generator.writeEndArray();
+    if (paged) {
+      generator.writeStringField(NEXT_CURSOR_FIELD, nextCursor);
+      generator.writeEndObject();
+    }
+  }
+
+  /**
+   * Flushes what was written to the stream. If the array was not ended, it is left unterminated.
+   *
+   * @throws IOException If the stream could not be written to.
+   */
+  @Override
+  public void close() throws IOException {
+    generator.close();
+  }
+
+}
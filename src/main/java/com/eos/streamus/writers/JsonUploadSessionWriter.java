@@ -0,0 +1,25 @@
+package com.eos.streamus.writers;
+
+import com.eos.streamus.utils.UploadSession;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public final class JsonUploadSessionWriter extends JsonObjectWriter {
+  /** {@link UploadSession} to write. */
+  private final UploadSession session;
+
+  public JsonUploadSessionWriter(final UploadSession session) {
+    this.session = session;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected JsonNode getSpecificJson(final ObjectNode objectNode) {
+    return objectNode
+        .put("id", session.getId())
+        .put("type", session.getType())
+        .put("length", session.getLength())
+        .put("offset", session.getOffset());
+  }
+
+}
@@ -1,8 +1,19 @@
 package com.eos.streamus.writers;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 
 public interface JsonWriter {
   /** @return {@link JsonNode} representation. */
   JsonNode getJson();
+
+  /** @return UTF-8 encoded representation, identical to what is written to responses for {@link #getJson()}. */
+  default byte[] getJsonBytes() {
+    try {
+      return JsonWriterNodeFactory.OBJECT_WRITER.writeValueAsBytes(getJson());
+    } catch (JsonProcessingException jsonProcessingException) {
+      // Trees built by writers only hold serializable values
+      throw new IllegalStateException(jsonProcessingException);
+    }
+  }
 }
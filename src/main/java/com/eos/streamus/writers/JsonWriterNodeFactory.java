@@ -1,8 +1,17 @@
 package com.eos.streamus.writers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
 public class JsonWriterNodeFactory extends JsonNodeFactory {
   private static final long serialVersionUID = -5662149412033248233L;
 
+  /** Shared factory, as node factories hold no state. */
+  static final JsonWriterNodeFactory INSTANCE = new JsonWriterNodeFactory();
+  /** Shared mapper used to serialize written nodes, and whose factory creates streaming generators. */
+  static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+  /** Shared, thread-safe writer used to serialize written nodes to bytes. */
+  static final ObjectWriter OBJECT_WRITER = OBJECT_MAPPER.writer();
+
 }
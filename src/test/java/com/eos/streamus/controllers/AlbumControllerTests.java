@@ -1,7 +1,12 @@
 package com.eos.streamus.controllers;
 
+import com.eos.streamus.models.Album;
 import com.eos.streamus.models.Band;
+import com.eos.streamus.models.CatalogCache;
 import com.eos.streamus.models.Song;
+import com.eos.streamus.writers.JsonAlbumWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.Test;
@@ -9,9 +14,12 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import javax.servlet.http.Cookie;
 import java.sql.Connection;
 import java.util.UUID;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class AlbumControllerTests extends JwtSetupControllerTests {
@@ -165,4 +173,37 @@ class AlbumControllerTests extends JwtSetupControllerTests {
     }
   }
 
+  @Test
+  void gettingAnUnchangedAlbumShouldReturnTheSameSerializedJson() throws Exception {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = new Song(UUID.randomUUID().toString(), "Test song", 27);
+      song.save(connection);
+      Album album = new Album("Test album", date("2000-01-01"));
+      album.addSong(song);
+      album.save(connection);
+
+      MockHttpServletRequestBuilder builder = MockMvcRequestBuilders
+          .get(String.format("/album/%d", album.getId()))
+          .cookie(new Cookie("streamusSessionToken", getToken().getSessionToken()));
+      byte[] firstResponse = perform(builder).andExpect(status().is(200)).andReturn().getResponse()
+                                             .getContentAsByteArray();
+      long serializedHits = CatalogCache.getSerializedHits();
+      byte[] secondResponse = perform(builder).andExpect(status().is(200)).andReturn().getResponse()
+                                              .getContentAsByteArray();
+      assertArrayEquals(firstResponse, secondResponse);
+      assertEquals(serializedHits + 1, CatalogCache.getSerializedHits());
+      assertArrayEquals(new JsonAlbumWriter(Album.findById(album.getId(), connection)).getJsonBytes(), firstResponse);
+
+      song.setName("Renamed test song");
+      song.save(connection);
+      JsonNode json = new ObjectMapper().readTree(
+          perform(builder).andExpect(status().is(200)).andReturn().getResponse().getContentAsByteArray()
+      );
+      assertEquals("Renamed test song", json.get("tracks").get(0).get("name").asText());
+
+      album.delete(connection);
+      song.delete(connection);
+    }
+  }
+
 }
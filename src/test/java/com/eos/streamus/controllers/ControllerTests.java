@@ -3,6 +3,8 @@ package com.eos.streamus.controllers;
 import com.eos.streamus.models.*;
 import com.eos.streamus.utils.IDatabaseConnector;
 import com.eos.streamus.utils.IResourcePathResolver;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
@@ -11,10 +13,13 @@ import org.junit.jupiter.api.TestInstance;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
@@ -29,6 +34,9 @@ import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
 @WebMvcTest
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 @ContextConfiguration(locations={"file:src/test/resources/test-context.xml"})
@@ -59,6 +67,8 @@ abstract class ControllerTests {
       )
   );
 
+  protected static final long INGEST_TIMEOUT_MILLIS = 60000;
+
   @BeforeAll
   void setupMockMvc() {
     mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
@@ -79,6 +89,33 @@ abstract class ControllerTests {
     return mockMvc.perform(builder);
   }
 
+  /**
+   * Polls an ingest job until it is finished.
+   *
+   * @param acceptedResponse Response of the upload that queued the job.
+   * @return Finished job.
+   */
+  protected JsonNode awaitIngestJob(MockHttpServletResponse acceptedResponse) throws Exception {
+    ObjectMapper objectMapper = new ObjectMapper();
+    JsonNode job = objectMapper.readTree(acceptedResponse.getContentAsString());
+    String location = acceptedResponse.getHeader(HttpHeaders.LOCATION);
+    long deadline = System.currentTimeMillis() + INGEST_TIMEOUT_MILLIS;
+    while ("QUEUED".equals(job.get("status").asText()) || "RUNNING".equals(job.get("status").asText())) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Ingest job did not finish in time");
+      }
+      Thread.sleep(100);
+      job = objectMapper.readTree(
+          perform(MockMvcRequestBuilders.get(location))
+              .andExpect(status().is(200))
+              .andReturn()
+              .getResponse()
+              .getContentAsString()
+      );
+    }
+    return job;
+  }
+
   protected final Date date(final String dateString) throws ParseException {
     return new Date(dateFormatter.parse(dateString).getTime());
   }
@@ -89,6 +126,7 @@ abstract class ControllerTests {
       // Delete all Resources
       FileUtils.cleanDirectory(new File(resourcePathResolver.getVideoDir()));
       FileUtils.cleanDirectory(new File(resourcePathResolver.getAudioDir()));
+      FileUtils.deleteDirectory(new File(resourcePathResolver.getSegmentDir()));
 
       try (PreparedStatement preparedStatement = connection
           .prepareStatement("truncate table " + Resource.TABLE_NAME + " cascade")) {
@@ -118,6 +156,7 @@ abstract class ControllerTests {
           .prepareStatement("truncate table " + Activity.TABLE_NAME + " cascade")) {
         preparedStatement.execute();
       }
+      CatalogCache.clear();
     }
   }
 
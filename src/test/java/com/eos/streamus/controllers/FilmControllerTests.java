@@ -2,13 +2,19 @@ package com.eos.streamus.controllers;
 
 import com.eos.streamus.exceptions.NoResultException;
 import com.eos.streamus.models.Film;
+import com.eos.streamus.utils.IngestJob;
+import com.eos.streamus.utils.IngestService;
+import com.eos.streamus.utils.StreamSegmentCache;
+import com.eos.streamus.writers.JsonFilmListWriter;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMultipartHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
@@ -19,10 +25,16 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.UUID;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.util.AssertionErrors.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class FilmControllerTests extends JwtSetupControllerTests {
@@ -107,9 +119,49 @@ class FilmControllerTests extends JwtSetupControllerTests {
               .get(String.format("/film/%d/stream", film.getId()))
               .cookie(new Cookie("streamusSessionToken", getToken().getSessionToken()));
 
+      long cacheMisses = StreamSegmentCache.getMisses();
       perform(builder)
           .andExpect(status().is(206))
           .andReturn();
+      // Films are streamed straight from disk rather than through the segment cache
+      assertEquals(cacheMisses, StreamSegmentCache.getMisses());
+
+      Files.delete(path);
+      film.delete(connection);
+    }
+  }
+
+  @Test
+  void aMismatchedIfRangeShouldStillServeAtMostOneChunk() throws Exception {
+    long chunkSize = 1024 * 1024;
+    byte[] content = new byte[(int) (3 * chunkSize)];
+    Path path = Files.write(
+        Paths.get(resourcePathResolver.getVideoDir() + "sample-video-" + UUID.randomUUID() + ".mp4"),
+        content
+    );
+
+    Film film = new Film(path.toString(), "sample film", 27);
+    try (Connection connection = databaseConnector.getConnection()) {
+      film.save(connection);
+
+      // A stale entity tag and a date, which never matches the entity tag
+      for (String ifRange : Arrays.asList("\"stale\"", "Wed, 21 Oct 2015 07:28:00 GMT")) {
+        MockHttpServletResponse response = perform(
+            MockMvcRequestBuilders
+                .get(String.format("/film/%d/stream", film.getId()))
+                .header(HttpHeaders.RANGE, "bytes=100-199")
+                .header(HttpHeaders.IF_RANGE, ifRange)
+                .cookie(new Cookie("streamusSessionToken", getToken().getSessionToken()))
+        )
+            .andExpect(status().is(206))
+            .andReturn()
+            .getResponse();
+        assertEquals(chunkSize, response.getContentLengthLong());
+        assertEquals(
+            String.format("bytes 0-%d/%d", chunkSize - 1, content.length),
+            response.getHeader(HttpHeaders.CONTENT_RANGE)
+        );
+      }
 
       Files.delete(path);
       film.delete(connection);
@@ -140,6 +192,77 @@ class FilmControllerTests extends JwtSetupControllerTests {
           .andReturn();
     }
   }
+
+  @Test
+  void gettingAllFilmsShouldStreamTheSameJsonAsTheTreeWriter() throws Exception {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Film[] films = new Film[3];
+      for (int i = 0; i < films.length; i++) {
+        films[i] = new Film(UUID.randomUUID().toString(), "film \"" + i + "\" \u00e9", 27);
+        films[i].save(connection);
+      }
+
+      MockHttpServletResponse response = perform(MockMvcRequestBuilders.get("/films"))
+          .andExpect(status().is(200))
+          .andReturn()
+          .getResponse();
+
+      assertEquals(MediaType.APPLICATION_JSON_VALUE, response.getContentType());
+      assertArrayEquals(
+          new JsonFilmListWriter(Film.page(connection, null, 50)).getJsonBytes(),
+          response.getContentAsByteArray()
+      );
+
+      for (Film film : films) {
+        film.delete(connection);
+      }
+    }
+  }
+
+  @Test
+  void gettingFilmsPageByPageShouldReturnEachFilmOnce() throws Exception {
+    try (Connection connection = databaseConnector.getConnection()) {
+      List<Integer> savedIds = new ArrayList<>();
+      for (int i = 0; i < 5; i++) {
+        Film film = new Film(UUID.randomUUID().toString(), "film " + i, 27);
+        film.save(connection);
+        savedIds.add(film.getId());
+      }
+
+      List<Integer> pagedIds = new ArrayList<>();
+      String cursor = null;
+      do {
+        MockHttpServletRequestBuilder builder = MockMvcRequestBuilders.get("/films").param("limit", "2");
+        if (cursor != null) {
+          builder.param("cursor", cursor);
+        }
+        JsonNode page = new ObjectMapper().readTree(
+            perform(builder).andExpect(status().is(200)).andReturn().getResponse().getContentAsString()
+        );
+        assertTrue("Page is larger than its limit", page.get("content").size() <= 2);
+        for (JsonNode film : page.get("content")) {
+          pagedIds.add(film.get("id").asInt());
+        }
+        cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+      } while (cursor != null);
+
+      assertTrue("A film is missing from the pages", pagedIds.containsAll(savedIds));
+      assertEquals(pagedIds.size(), new HashSet<>(pagedIds).size());
+
+      for (Integer id : savedIds) {
+        Film.findById(id, connection).delete(connection);
+      }
+    }
+  }
+
+  @Test
+  void gettingFilmsWithAnInvalidCursorShouldReturnBadRequest() throws Exception {
+    perform(MockMvcRequestBuilders.get("/films").param("cursor", "not a cursor"))
+        .andExpect(status().is(400));
+    perform(MockMvcRequestBuilders.get("/films").param("limit", "0"))
+        .andExpect(status().is(400));
+  }
+
   //#endregion Get film
 
   //#region Delete film
@@ -193,7 +316,7 @@ class FilmControllerTests extends JwtSetupControllerTests {
 
   //#region Post film
   @Test
-  void postingAFilmWithCorrectDataShouldReturnOk() throws Exception {
+  void postingAFilmWithCorrectDataShouldIngestIt() throws Exception {
     MockMultipartHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders
         .multipart("/film");
 
@@ -206,7 +329,14 @@ class FilmControllerTests extends JwtSetupControllerTests {
     requestBuilder
         .file(mockMultipartFile)
         .param("name", "sample-video.mp4");
-    MockHttpServletResponse response = perform(requestBuilder)
+    JsonNode job = awaitIngestJob(perform(requestBuilder)
+        .andExpect(status().is(202)).andReturn()
+        .getResponse());
+    assertEquals("SUCCEEDED", job.get("status").asText());
+    assertNotNull(job.get("stageMillis").get("probe"));
+    MockHttpServletResponse response = perform(
+        MockMvcRequestBuilders.get(String.format("/film/%d", job.get("resourceId").asInt()))
+    )
         .andExpect(status().is(200)).andReturn()
         .getResponse();
     JsonNode json = new ObjectMapper(new JsonFactory()).readTree(response.getContentAsString());
@@ -216,6 +346,79 @@ class FilmControllerTests extends JwtSetupControllerTests {
     assertNotNull(json.get("duration"));
   }
 
+  @Test
+  void postingAFilmShouldServeItsHlsManifestAndSegments() throws Exception {
+    MockMultipartHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders
+        .multipart("/film");
+    requestBuilder
+        .file(new MockMultipartFile(
+            "file",
+            "sample-video.mp4",
+            "video/mp4",
+            new FileInputStream(SAMPLE_VIDEO_PATH.toFile())
+        ))
+        .param("name", "sample-video.mp4");
+    JsonNode job = awaitIngestJob(
+        perform(requestBuilder).andExpect(status().is(202)).andReturn().getResponse()
+    );
+    int id = job.get("resourceId").asInt();
+
+    MockHttpServletResponse manifestResponse = perform(
+        MockMvcRequestBuilders.get(String.format("/video/%d/hls/index.m3u8", id))
+    )
+        .andExpect(status().is(200))
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("no-cache")))
+        .andReturn()
+        .getResponse();
+    String manifest = manifestResponse.getContentAsString();
+    assertTrue("Manifest is not an HLS playlist", manifest.startsWith("#EXTM3U"));
+
+    String firstSegment = manifest
+        .lines()
+        .filter(line -> line.endsWith(".ts"))
+        .findFirst()
+        .orElseThrow();
+    assertTrue("Segment name is not versioned", firstSegment.matches("[0-9a-z]+-\\d{5}\\.ts"));
+    perform(MockMvcRequestBuilders.get(String.format("/video/%d/hls/%s", id, firstSegment)))
+        .andExpect(status().is(200))
+        .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("immutable")));
+    perform(
+        MockMvcRequestBuilders
+            .get(String.format("/video/%d/hls/index.m3u8", id))
+            .header(HttpHeaders.IF_NONE_MATCH, manifestResponse.getHeader(HttpHeaders.ETAG))
+    )
+        .andExpect(status().is(304));
+    perform(MockMvcRequestBuilders.get(String.format("/video/%d/hls/secret.ts", id)))
+        .andExpect(status().is(404));
+  }
+
+  @Test
+  void anIngestJobShouldBeReadableFromAnotherNode() throws Exception {
+    MockMultipartHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders
+        .multipart("/film");
+    requestBuilder
+        .file(new MockMultipartFile(
+            "file",
+            "sample-video.mp4",
+            "video/mp4",
+            new FileInputStream(SAMPLE_VIDEO_PATH.toFile())
+        ))
+        .param("name", "sample-video.mp4");
+    JsonNode job = awaitIngestJob(
+        perform(requestBuilder).andExpect(status().is(202)).andReturn().getResponse()
+    );
+
+    // A node that did not run the job only knows it from the database
+    IngestService otherNode = new IngestService();
+    ReflectionTestUtils.setField(otherNode, "databaseConnector", databaseConnector);
+    IngestJob savedJob = otherNode.getJob(job.get("id").asText());
+    assertNotNull(savedJob);
+    assertEquals(IngestJob.Status.SUCCEEDED, savedJob.getStatus());
+    assertEquals(job.get("resourceId").asInt(), savedJob.getResourceId());
+    assertTrue("Stages were not saved", savedJob.getStageMillis().containsKey(IngestJob.PROBE_STAGE));
+    assertNull(otherNode.getJob(UUID.randomUUID().toString()));
+  }
+
   @Test
   void postingAFilmWithNoFileShouldReturnBadRequest() throws Exception {
     MockMultipartHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders
@@ -274,7 +477,7 @@ class FilmControllerTests extends JwtSetupControllerTests {
   }
 
   @Test
-  void postingAFilmWithAudioContentShouldReturnBadRequest() throws Exception {
+  void postingAFilmWithAudioContentShouldFailItsIngestJob() throws Exception {
     MockMultipartHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders
         .multipart("/film");
 
@@ -288,8 +491,110 @@ class FilmControllerTests extends JwtSetupControllerTests {
         .file(mockMultipartFile)
         .param("name", "sample-video.mp4");
 
-    perform(requestBuilder)
-        .andExpect(status().is(400));
+    JsonNode job = awaitIngestJob(perform(requestBuilder)
+        .andExpect(status().is(202)).andReturn()
+        .getResponse());
+    assertEquals("FAILED", job.get("status").asText());
+    assertEquals("File is not video", job.get("reason").asText());
   }
   //#endregion Post film
+
+  //#region Resumable upload
+  @Test
+  void uploadingAFilmInChunksShouldResumeFromTheReceivedOffsetAndIngestIt() throws Exception {
+    byte[] content = Files.readAllBytes(SAMPLE_VIDEO_PATH);
+    int half = content.length / 2;
+    ObjectMapper objectMapper = new ObjectMapper();
+    MockHttpServletResponse created = perform(
+        MockMvcRequestBuilders
+            .post("/uploads")
+            .param("type", "film")
+            .param("name", "sample film")
+            .param("length", String.valueOf(content.length))
+            .param("fileName", "sample-video.mp4")
+    ).andExpect(status().is(201)).andReturn().getResponse();
+    String location = created.getHeader(HttpHeaders.LOCATION);
+    assertEquals(0, objectMapper.readTree(created.getContentAsString()).get("offset").asLong());
+
+    // First half
+    perform(
+        MockMvcRequestBuilders
+            .put(location)
+            .header(HttpHeaders.CONTENT_RANGE, String.format("bytes 0-%d/%d", half - 1, content.length))
+            .content(Arrays.copyOfRange(content, 0, half))
+    ).andExpect(status().is(200));
+    JsonNode session = objectMapper.readTree(
+        perform(MockMvcRequestBuilders.get(location))
+            .andExpect(status().is(200)).andReturn()
+            .getResponse().getContentAsString()
+    );
+    assertEquals(half, session.get("offset").asLong());
+
+    // Incomplete or out of order
+    perform(MockMvcRequestBuilders.post(location + "/finalize")).andExpect(status().is(409));
+    perform(
+        MockMvcRequestBuilders
+            .put(location)
+            .header(HttpHeaders.CONTENT_RANGE, String.format("bytes 0-%d/%d", half - 1, content.length))
+            .content(Arrays.copyOfRange(content, 0, half))
+    ).andExpect(status().is(409));
+
+    // Second half
+    perform(
+        MockMvcRequestBuilders
+            .put(location)
+            .header(
+                HttpHeaders.CONTENT_RANGE,
+                String.format("bytes %d-%d/%d", half, content.length - 1, content.length)
+            )
+            .content(Arrays.copyOfRange(content, half, content.length))
+    ).andExpect(status().is(200));
+
+    JsonNode job = awaitIngestJob(
+        perform(MockMvcRequestBuilders.post(location + "/finalize"))
+            .andExpect(status().is(202)).andReturn()
+            .getResponse()
+    );
+    assertEquals("SUCCEEDED", job.get("status").asText());
+    perform(MockMvcRequestBuilders.get(location)).andExpect(status().is(404));
+    try (Connection connection = databaseConnector.getConnection()) {
+      Film film = Film.findById(job.get("resourceId").asInt(), connection);
+      assertArrayEquals(content, Files.readAllBytes(Paths.get(film.getPath())));
+    }
+  }
+
+  @Test
+  void openingAnUploadLargerThanTheMaximumShouldReturnBadRequest() throws Exception {
+    perform(
+        MockMvcRequestBuilders
+            .post("/uploads")
+            .param("type", "film")
+            .param("name", "sample film")
+            .param("length", String.valueOf(Long.MAX_VALUE))
+            .param("fileName", "sample-video.mp4")
+    ).andExpect(status().is(400));
+  }
+
+  @Test
+  void aCancelledUploadShouldNotReceiveChunksAnymore() throws Exception {
+    byte[] content = Files.readAllBytes(SAMPLE_VIDEO_PATH);
+    String location = perform(
+        MockMvcRequestBuilders
+            .post("/uploads")
+            .param("type", "film")
+            .param("name", "sample film")
+            .param("length", String.valueOf(content.length))
+            .param("fileName", "sample-video.mp4")
+    ).andExpect(status().is(201)).andReturn().getResponse().getHeader(HttpHeaders.LOCATION);
+
+    perform(MockMvcRequestBuilders.delete(location)).andExpect(status().is(200));
+    perform(
+        MockMvcRequestBuilders
+            .put(location)
+            .header(HttpHeaders.CONTENT_RANGE, String.format("bytes 0-%d/%d", content.length - 1, content.length))
+            .content(content)
+    ).andExpect(status().is(404));
+    perform(MockMvcRequestBuilders.delete(location)).andExpect(status().is(404));
+  }
+  //#endregion Resumable upload
 }
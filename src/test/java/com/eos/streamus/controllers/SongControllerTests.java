@@ -2,14 +2,20 @@ package com.eos.streamus.controllers;
 
 import com.eos.streamus.exceptions.NoResultException;
 import com.eos.streamus.models.Song;
+import com.eos.streamus.utils.ContentStore;
+import com.eos.streamus.utils.ProbeService;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.RequestBuilder;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
@@ -18,17 +24,30 @@ import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import javax.servlet.http.Cookie;
 import java.io.FileInputStream;
+import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
 import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.util.AssertionErrors.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class SongControllerTests extends JwtSetupControllerTests {
+  @Autowired
+  private ProbeService probeService;
+
+  @Autowired
+  private ContentStore contentStore;
 
   //#region Get song
   @Test
@@ -57,6 +76,37 @@ class SongControllerTests extends JwtSetupControllerTests {
     }
   }
 
+  @Test
+  void gettingARangeOfASongShouldReturnExactlyThatRange() throws Exception {
+    Path path = Files.copy(
+        SAMPLE_AUDIO_PATH,
+        Paths.get(resourcePathResolver.getAudioDir() + "sample-audio-" + UUID.randomUUID() + ".mp3")
+    );
+
+    Song song = new Song(path.toString(), "sample audio", 27);
+    try (Connection connection = databaseConnector.getConnection()) {
+      song.save(connection);
+
+      MockHttpServletRequestBuilder builder =
+          MockMvcRequestBuilders
+              .get(String.format("/song/%d/stream", song.getId()))
+              .header("Range", "bytes=100-199")
+              .cookie(new Cookie("streamusSessionToken", getToken().getSessionToken()));
+      MockHttpServletResponse response = perform(builder)
+          .andExpect(status().is(206))
+          .andReturn()
+          .getResponse();
+
+      byte[] expected = new byte[100];
+      System.arraycopy(Files.readAllBytes(path), 100, expected, 0, 100);
+      assertArrayEquals(expected, response.getContentAsByteArray());
+      assertEquals(String.format("bytes 100-199/%d", Files.size(path)), response.getHeader("Content-Range"));
+
+      Files.delete(path);
+      song.delete(connection);
+    }
+  }
+
   @Test
   void gettingANonExistingSongShouldReturn404() throws Exception {
     Song song = new Song(SAMPLE_AUDIO_PATH.toString(), "sample audio", 27);
@@ -118,7 +168,7 @@ class SongControllerTests extends JwtSetupControllerTests {
 
   //#region Post song
   @Test
-  void postingASongWithCorrectDataShouldReturnOk() throws Exception {
+  void postingASongWithCorrectDataShouldIngestIt() throws Exception {
     MockMultipartHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders
         .multipart("/song");
 
@@ -131,7 +181,13 @@ class SongControllerTests extends JwtSetupControllerTests {
     requestBuilder
         .file(mockMultipartFile)
         .param("name", "sample-audio.mp3");
-    MockHttpServletResponse response = perform(requestBuilder)
+    JsonNode job = awaitIngestJob(perform(requestBuilder)
+        .andExpect(status().is(202)).andReturn()
+        .getResponse());
+    assertEquals("SUCCEEDED", job.get("status").asText());
+    MockHttpServletResponse response = perform(
+        MockMvcRequestBuilders.get(String.format("/song/%d", job.get("resourceId").asInt()))
+    )
         .andExpect(status().is(200)).andReturn()
         .getResponse();
     JsonNode json = new ObjectMapper(new JsonFactory()).readTree(response.getContentAsString());
@@ -200,7 +256,7 @@ class SongControllerTests extends JwtSetupControllerTests {
   }
 
   @Test
-  void postingASongWithVideoContentShouldReturnBadRequest() throws Exception {
+  void postingASongWithVideoContentShouldFailItsIngestJob() throws Exception {
 
     MockMultipartHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders
         .multipart("/song");
@@ -215,8 +271,221 @@ class SongControllerTests extends JwtSetupControllerTests {
         .file(mockMultipartFile)
         .param("name", "sample-audio.mp3");
 
-    perform(requestBuilder)
-        .andExpect(status().is(400));
+    JsonNode job = awaitIngestJob(perform(requestBuilder)
+        .andExpect(status().is(202)).andReturn()
+        .getResponse());
+    assertEquals("FAILED", job.get("status").asText());
+    assertEquals("file is not audio", job.get("reason").asText());
+  }
+
+  @Test
+  void postingTheBodyOfASongShouldStoreItInASinglePassAndIngestIt() throws Exception {
+    byte[] content = Files.readAllBytes(SAMPLE_AUDIO_PATH);
+    long nativeProbes = probeService.getNativeProbes();
+    MockHttpServletRequestBuilder builder = MockMvcRequestBuilders
+        .post("/song")
+        .param("name", "sample-audio.mp3")
+        .contentType("audio/mpeg")
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename("sample-audio.mp3").build().toString()
+        )
+        .content(content);
+    JsonNode job = awaitIngestJob(perform(builder)
+        .andExpect(status().is(202)).andReturn()
+        .getResponse());
+    assertEquals("SUCCEEDED", job.get("status").asText());
+    assertEquals(
+        String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content))),
+        job.get("contentHash").asText()
+    );
+    assertEquals(nativeProbes + 1, probeService.getNativeProbes());
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = Song.findById(job.get("resourceId").asInt(), connection);
+      assertEquals(27, song.getDuration());
+      assertArrayEquals(content, Files.readAllBytes(Paths.get(song.getPath())));
+    }
+  }
+
+  @Test
+  void postingTheSameSongTwiceShouldShareItsFileUntilBothAreDeleted() throws Exception {
+    byte[] content = Files.readAllBytes(SAMPLE_AUDIO_PATH);
+    Song[] songs = new Song[2];
+    try (Connection connection = databaseConnector.getConnection()) {
+      for (int i = 0; i < songs.length; i++) {
+        MockHttpServletRequestBuilder builder = MockMvcRequestBuilders
+            .post("/song")
+            .param("name", "sample-audio.mp3")
+            .contentType("audio/mpeg")
+            .header(
+                HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("sample-audio.mp3").build().toString()
+            )
+            .content(content);
+        JsonNode job = awaitIngestJob(perform(builder)
+            .andExpect(status().is(202)).andReturn()
+            .getResponse());
+        assertEquals("SUCCEEDED", job.get("status").asText());
+        songs[i] = Song.findById(job.get("resourceId").asInt(), connection);
+      }
+      Path path = Paths.get(songs[0].getPath());
+      assertEquals(songs[0].getPath(), songs[1].getPath());
+      assertTrue("Path is named by content hash", path.getFileName().toString().startsWith(
+          String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)))
+      ));
+
+      perform(MockMvcRequestBuilders.delete(String.format("/song/%d", songs[0].getId())))
+          .andExpect(status().is(200));
+      assertArrayEquals(content, Files.readAllBytes(path));
+
+      perform(MockMvcRequestBuilders.delete(String.format("/song/%d", songs[1].getId())))
+          .andExpect(status().is(200));
+      assertFalse(Files.exists(path));
+    }
+  }
+
+  @Test
+  void deletingTheSongsSharingAFileConcurrentlyShouldDeleteTheFile() throws Exception {
+    byte[] content = Files.readAllBytes(SAMPLE_AUDIO_PATH);
+    Song[] songs = new Song[2];
+    try (Connection connection = databaseConnector.getConnection()) {
+      for (int i = 0; i < songs.length; i++) {
+        JsonNode job = awaitIngestJob(perform(
+            MockMvcRequestBuilders
+                .post("/song")
+                .param("name", "sample-audio.mp3")
+                .contentType("audio/mpeg")
+                .header(
+                    HttpHeaders.CONTENT_DISPOSITION,
+                    ContentDisposition.attachment().filename("sample-audio.mp3").build().toString()
+                )
+                .content(content)
+        ).andExpect(status().is(202)).andReturn().getResponse());
+        songs[i] = Song.findById(job.get("resourceId").asInt(), connection);
+      }
+    }
+    Path path = Paths.get(songs[0].getPath());
+
+    ExecutorService executor = Executors.newFixedThreadPool(songs.length);
+    try {
+      List<Future<Void>> deletions = new ArrayList<>();
+      for (Song song : songs) {
+        deletions.add(executor.submit(() -> {
+          try (Connection connection = databaseConnector.getConnection()) {
+            contentStore.delete(song, connection);
+          }
+          return null;
+        }));
+      }
+      for (Future<Void> deletion : deletions) {
+        deletion.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertFalse(Files.exists(path));
+  }
+
+  @Test
+  void streamingASongAtALowerBitrateShouldServeItsTranscodedVariant() throws Exception {
+    byte[] content = Files.readAllBytes(SAMPLE_AUDIO_PATH);
+    MockHttpServletRequestBuilder builder = MockMvcRequestBuilders
+        .post("/song")
+        .param("name", "sample-audio.mp3")
+        .contentType("audio/mpeg")
+        .header(
+            HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename("sample-audio.mp3").build().toString()
+        )
+        .content(content);
+    JsonNode job = awaitIngestJob(perform(builder)
+        .andExpect(status().is(202)).andReturn()
+        .getResponse());
+    assertEquals("SUCCEEDED", job.get("status").asText());
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = Song.findById(job.get("resourceId").asInt(), connection);
+      Path variant = Paths.get(resourcePathResolver.getAudioVariantPath(song.getPath(), 64));
+      boolean transcoded = content.length * 8L / 1000 / song.getDuration() > 64;
+      assertEquals(transcoded, Files.exists(variant));
+
+      MockHttpServletResponse response = perform(
+          MockMvcRequestBuilders
+              .get(String.format("/song/%d/stream", song.getId()))
+              .param("bitrate", "64")
+              .cookie(new Cookie("streamusSessionToken", getToken().getSessionToken()))
+      )
+          .andExpect(status().is(206))
+          .andReturn()
+          .getResponse();
+      long streamedLength = transcoded ? Files.size(variant) : content.length;
+      assertTrue("Streamed file is the variant", String.valueOf(response.getHeader("Content-Range"))
+          .endsWith(String.format("/%d", streamedLength)));
+      assertEquals("Downlink", response.getHeader(HttpHeaders.VARY));
+      String variantTag = response.getHeader(HttpHeaders.ETAG);
+      assertNotNull(variantTag);
+
+      // Resuming the original file from the variant must not splice their bytes
+      MockHttpServletResponse original = perform(
+          MockMvcRequestBuilders
+              .get(String.format("/song/%d/stream", song.getId()))
+              .cookie(new Cookie("streamusSessionToken", getToken().getSessionToken()))
+      )
+          .andExpect(status().is(206))
+          .andReturn()
+          .getResponse();
+      assertEquals(transcoded, !variantTag.equals(original.getHeader(HttpHeaders.ETAG)));
+      MockHttpServletResponse resumed = perform(
+          MockMvcRequestBuilders
+              .get(String.format("/song/%d/stream", song.getId()))
+              .param("bitrate", "64")
+              .header(HttpHeaders.RANGE, "bytes=100-199")
+              .header(HttpHeaders.IF_RANGE, original.getHeader(HttpHeaders.ETAG))
+              .cookie(new Cookie("streamusSessionToken", getToken().getSessionToken()))
+      )
+          .andExpect(status().is(206))
+          .andReturn()
+          .getResponse();
+      if (transcoded) {
+        assertTrue("Resumed from the start of the variant", String.valueOf(resumed.getHeader(HttpHeaders.CONTENT_RANGE))
+            .startsWith("bytes 0-"));
+      }
+
+      perform(MockMvcRequestBuilders.delete(String.format("/song/%d", song.getId())))
+          .andExpect(status().is(200));
+      assertFalse(Files.exists(variant));
+    }
+  }
+
+  @Test
+  void postingTheBodyOfASongWithoutItsFileNameShouldReturnBadRequest() throws Exception {
+    perform(
+        MockMvcRequestBuilders
+            .post("/song")
+            .param("name", "sample-audio.mp3")
+            .contentType("audio/mpeg")
+            .content(Files.readAllBytes(SAMPLE_AUDIO_PATH))
+    ).andExpect(status().is(400));
+  }
+
+  @Test
+  void postingTheBodyOfASongWhileTooManyAreReceivedShouldReturnServiceUnavailable() throws Exception {
+    Object receivePermits = ReflectionTestUtils.getField(contentStore, "receivePermits");
+    ReflectionTestUtils.setField(contentStore, "receivePermits", new Semaphore(0));
+    try {
+      perform(
+          MockMvcRequestBuilders
+              .post("/song")
+              .param("name", "sample-audio.mp3")
+              .contentType("audio/mpeg")
+              .header(
+                  HttpHeaders.CONTENT_DISPOSITION,
+                  ContentDisposition.attachment().filename("sample-audio.mp3").build().toString()
+              )
+              .content(Files.readAllBytes(SAMPLE_AUDIO_PATH))
+      ).andExpect(status().is(503));
+    } finally {
+      ReflectionTestUtils.setField(contentStore, "receivePermits", receivePermits);
+    }
   }
   //#endregion Post song
 
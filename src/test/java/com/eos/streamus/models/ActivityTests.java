@@ -1,11 +1,18 @@
 package com.eos.streamus.models;
 
 import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.utils.Pair;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -43,6 +50,70 @@ class ActivityTests extends DatabaseTests {
     }
   }
 
+  @Test
+  void syncingAResourceActivityShouldNotNeedToLoadIt() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = new Song(randomString(), randomString(), 100);
+      song.save(connection);
+
+      User user = randomUser();
+      user.save(connection);
+      User stranger = randomUser();
+      stranger.save(connection);
+
+      ResourceActivity resourceActivity = new ResourceActivity(song, user);
+      resourceActivity.save(connection);
+      assertEquals(true, Activity.findManagement(resourceActivity.getId(), user.getId(), connection));
+      assertNull(Activity.findManagement(resourceActivity.getId(), stranger.getId(), connection));
+
+      assertTrue(ResourceActivity.updatePausedAt(resourceActivity.getId(), 42, connection));
+      assertEquals(42, ResourceActivity.findById(resourceActivity.getId(), connection).getPausedAt());
+
+      resourceActivity.delete(connection);
+      assertFalse(ResourceActivity.updatePausedAt(resourceActivity.getId(), 42, connection));
+
+      stranger.delete(connection);
+      user.delete(connection);
+      song.delete(connection);
+    }
+  }
+
+  @Test
+  void liveActivitiesShouldBeLoadedAndSavedWithoutLoadingThem() throws SQLException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = new Song(randomString(), randomString(), 100);
+      song.save(connection);
+
+      User user = randomUser();
+      user.save(connection);
+      User stranger = randomUser();
+      stranger.save(connection);
+
+      ResourceActivity first = new ResourceActivity(song, user);
+      first.save(connection);
+      ResourceActivity second = new ResourceActivity(song, user);
+      second.save(connection);
+      Map<Integer, Boolean> members = Activity.findMembers(first.getId(), connection);
+      assertEquals(true, members.get(user.getId()));
+      assertFalse(members.containsKey(stranger.getId()));
+
+      ResourceActivity.updatePausedAts(Map.of(first.getId(), 42, second.getId(), 24), connection);
+      Pair<Integer, Integer> position = ResourceActivity.findPosition(first.getId(), connection);
+      assertEquals(42, position.getKey());
+      assertEquals(100, position.getValue());
+      assertEquals(24, ResourceActivity.findPosition(second.getId(), connection).getKey());
+
+      first.delete(connection);
+      second.delete(connection);
+      assertNull(ResourceActivity.findPosition(first.getId(), connection));
+      assertTrue(Activity.findMembers(first.getId(), connection).isEmpty());
+
+      stranger.delete(connection);
+      user.delete(connection);
+      song.delete(connection);
+    }
+  }
+
   @Test
   void testCollectionActivity() throws SQLException, NoResultException {
     try (Connection connection = databaseConnector.getConnection()) {
@@ -105,6 +176,61 @@ class ActivityTests extends DatabaseTests {
     }
   }
 
+  @Test
+  void findingACollectionActivityShouldTakeAConstantNumberOfQueries() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      User user = randomUser();
+      user.save(connection);
+      int[] playlistSizes = {1, 40};
+      int[] queryCounts = new int[playlistSizes.length];
+      for (int i = 0; i < playlistSizes.length; i++) {
+        SongPlaylist songPlaylist = new SongPlaylist(randomString(), user);
+        songPlaylist.save(connection);
+        List<Song> songs = new ArrayList<>();
+        for (int j = 0; j < playlistSizes[i]; j++) {
+          Song song = new Song(randomString(), randomString(), 100);
+          song.save(connection);
+          songs.add(song);
+          songPlaylist.addSong(song);
+        }
+        songPlaylist.save(connection);
+
+        CollectionActivity collectionActivity = new CollectionActivity(user, songPlaylist);
+        collectionActivity.save(connection);
+        collectionActivity.continueOrNext(connection);
+        collectionActivity.new ActivityMessage(user, randomString()).save(connection);
+
+        AtomicInteger queryCount = new AtomicInteger();
+        Connection countingConnection = (Connection) Proxy.newProxyInstance(
+            getClass().getClassLoader(),
+            new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+              if (method.getName().startsWith("prepare")) {
+                queryCount.incrementAndGet();
+              }
+              try {
+                return method.invoke(connection, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            }
+        );
+        assertEquals(
+            collectionActivity,
+            CollectionActivity.findById(collectionActivity.getId(), countingConnection)
+        );
+        queryCounts[i] = queryCount.get();
+
+        songPlaylist.delete(connection);
+        for (Song song : songs) {
+          song.delete(connection);
+        }
+      }
+      user.delete(connection);
+      assertEquals(queryCounts[0], queryCounts[1]);
+    }
+  }
+
   @Test
   void testActivityMessages() throws SQLException, NoResultException {
     try (Connection connection = databaseConnector.getConnection()) {
@@ -140,4 +266,51 @@ class ActivityTests extends DatabaseTests {
     }
   }
 
+  @Test
+  void activityMessagesShouldBePagedById() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Film film = new Film(randomString(), randomString(), (getRandom().nextInt() & Integer.MAX_VALUE));
+      film.save(connection);
+
+      User user = randomUser();
+      user.save(connection);
+
+      ResourceActivity activity = new ResourceActivity(film, user);
+      activity.save(connection);
+
+      List<Activity.ActivityMessage> posted = new ArrayList<>();
+      for (int i = 0; i < Activity.RECENT_MESSAGES + 5; i++) {
+        posted.add(Activity.postMessage(activity.getId(), user, randomString(), connection));
+      }
+
+      // Only the most recent messages are loaded with the Activity
+      ResourceActivity fetchedActivity = ResourceActivity.findById(activity.getId(), connection);
+      assertNotNull(fetchedActivity);
+      assertEquals(posted.subList(5, posted.size()), fetchedActivity.getMessages());
+
+      // Earlier ones are paged by id
+      List<Activity.ActivityMessage> paged = new ArrayList<>();
+      PageCursor after = null;
+      Page<Activity.ActivityMessage> page;
+      do {
+        page = Activity.findMessages(activity.getId(), after, 20, connection);
+        assertTrue(page.getContent().size() <= 20);
+        paged.addAll(page.getContent());
+        after = page.getNextCursor() == null ? null : PageCursor.decode(page.getNextCursor());
+      } while (after != null);
+      assertEquals(posted, paged);
+
+      // Catching up from the last read message only returns newer ones
+      Activity.ActivityMessage newer = Activity.postMessage(activity.getId(), user, randomString(), connection);
+      page = Activity.findMessages(
+          activity.getId(), new PageCursor(posted.get(posted.size() - 1).getId()), 20, connection
+      );
+      assertEquals(List.of(newer), page.getContent());
+      assertNull(page.getNextCursor());
+
+      film.delete(connection);
+      user.delete(connection);
+    }
+  }
+
 }
@@ -6,8 +6,13 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
 
 @SpringBootTest
 class AlbumTests extends DatabaseTests {
@@ -70,4 +75,111 @@ class AlbumTests extends DatabaseTests {
     }
   }
 
+  @Test
+  void testArtistPagesWithAlbumsMatchSingleLookups() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Musician member = new Musician(randomPerson());
+      member.save(connection);
+      Band band = new Band(randomString());
+      band.save(connection);
+      band.addMember(member, randomDate());
+      band.save(connection);
+
+      Album album = new Album(randomString(), randomDate());
+      album.addArtist(band);
+      album.addArtist(member);
+      Song[] songs = new Song[5];
+      for (int i = 0; i < 5; i++) {
+        songs[i] = new Song(randomString(), randomString(), 100);
+        songs[i].save(connection);
+        album.addSong(songs[i]);
+      }
+      album.save(connection);
+
+      List<Artist> artists = ArtistDAO.pageWithAlbums(
+          connection,
+          new PageCursor(Math.min(band.getId(), member.getId()) - 1),
+          2
+      ).getContent();
+      for (Artist expected : new Artist[]{band, member}) {
+        Artist fetchedArtist = artists.stream()
+            .filter(artist -> artist.getId().equals(expected.getId()))
+            .findFirst()
+            .orElseThrow();
+        Artist singleLookup = ArtistDAO.findById(expected.getId(), connection);
+        assertEquals(singleLookup, fetchedArtist);
+        assertEquals(1, fetchedArtist.getAlbums().size());
+        assertEquals(Album.findById(album.getId(), connection), fetchedArtist.getAlbums().get(0));
+      }
+
+      album.delete(connection);
+      for (Song song : songs) {
+        song.delete(connection);
+      }
+      band.delete(connection);
+      member.getPerson().delete(connection);
+      member.delete(connection);
+    }
+  }
+
+  @Test
+  void testCatalogCacheIsInvalidatedWhenATrackIsRenamed() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = new Song(randomString(), randomString(), 100);
+      song.save(connection);
+      Album album = new Album(randomString(), randomDate());
+      album.addSong(song);
+      album.save(connection);
+
+      Album cachedAlbum = CatalogCache.get(Album.class, album.getId(), () -> Album.findById(album.getId(), connection));
+      long hits = CatalogCache.getHits();
+      assertSame(cachedAlbum, CatalogCache.get(Album.class, album.getId(), () -> fail("Album should be cached")));
+      assertEquals(hits + 1, CatalogCache.getHits());
+
+      song.setName(randomString());
+      song.save(connection);
+      Album reloadedAlbum =
+          CatalogCache.get(Album.class, album.getId(), () -> Album.findById(album.getId(), connection));
+      assertNotSame(cachedAlbum, reloadedAlbum);
+      assertEquals(song.getName(), reloadedAlbum.getTracks().get(0).getSong().getName());
+
+      album.delete(connection);
+      assertThrows(
+          NoResultException.class,
+          () -> CatalogCache.get(Album.class, album.getId(), () -> Album.findById(album.getId(), connection))
+      );
+      song.delete(connection);
+    }
+  }
+
+  @Test
+  void testCatalogCacheIsInvalidatedAgainWhenATransactionCommits() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection();
+         Connection transaction = databaseConnector.getConnection()) {
+      Song song = new Song(randomString(), randomString(), 100);
+      song.save(connection);
+      Album album = new Album(randomString(), randomDate());
+      album.addSong(song);
+      album.save(connection);
+      String previousName = song.getName();
+
+      transaction.setAutoCommit(false);
+      song.setName(randomString());
+      song.save(transaction);
+      // Loaded before the rename is committed, so cached with the previous name
+      Album uncommittedAlbum =
+          CatalogCache.get(Album.class, album.getId(), () -> Album.findById(album.getId(), connection));
+      assertEquals(previousName, uncommittedAlbum.getTracks().get(0).getSong().getName());
+      CatalogCache.commit(transaction);
+      transaction.setAutoCommit(true);
+
+      Album committedAlbum =
+          CatalogCache.get(Album.class, album.getId(), () -> Album.findById(album.getId(), connection));
+      assertEquals(song.getName(), committedAlbum.getTracks().get(0).getSong().getName());
+
+      album.delete(connection);
+      song.delete(connection);
+    }
+  }
+
 }
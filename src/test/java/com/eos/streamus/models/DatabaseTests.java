@@ -114,6 +114,7 @@ abstract class DatabaseTests {
           .prepareStatement("truncate table " + Activity.TABLE_NAME + " cascade")) {
         preparedStatement.execute();
       }
+      CatalogCache.clear();
     }
   }
 
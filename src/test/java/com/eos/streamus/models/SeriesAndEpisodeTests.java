@@ -8,8 +8,10 @@ import org.springframework.boot.test.context.SpringBootTest;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -156,4 +158,33 @@ class SeriesAndEpisodeTests extends DatabaseTests {
     }
   }
 
+  @Test
+  void testResourcesOfMixedTypesAreFoundInOneBatch() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Series series = new Series(randomString());
+      series.save(connection);
+      Series.Episode episode = series.new EpisodeBuilder(randomString(), randomString(), 100, (short) 1, (short) 1).build();
+      episode.save(connection);
+      Film film = new Film(randomString(), randomString(), 100);
+      film.save(connection);
+      Song song = new Song(randomString(), randomString(), 100);
+      song.save(connection);
+
+      Map<Integer, Resource> resources = ResourceDAO.findByIds(
+          Arrays.asList(song.getId(), episode.getId(), film.getId()),
+          connection
+      );
+      assertEquals(3, resources.size());
+      assertEquals(song, resources.get(song.getId()));
+      assertEquals(film, resources.get(film.getId()));
+      assertEquals(episode, resources.get(episode.getId()));
+      assertEquals(ResourceDAO.findById(film.getId(), connection), VideoDAO.findById(film.getId(), connection));
+      assertThrows(NoResultException.class, () -> VideoDAO.findById(song.getId(), connection));
+
+      song.delete(connection);
+      film.delete(connection);
+      series.delete(connection);
+    }
+  }
+
 }
@@ -109,4 +109,43 @@ class SongPlaylistTests extends DatabaseTests {
     }
   }
 
+  @Test
+  void songPlaylistsShouldBePagedWithTheirTracks() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      User user = randomUser();
+      user.save(connection);
+      Song song = new Song(String.format("test%d%d.mp3", new Date().getTime(), getRandom().nextInt()), randomString(),
+          100);
+      song.save(connection);
+      List<SongPlaylist> songPlaylists = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        SongPlaylist songPlaylist = new SongPlaylist(randomString(), user);
+        songPlaylist.save(connection);
+        songPlaylist.addSong(song);
+        songPlaylist.save(connection);
+        songPlaylists.add(songPlaylist);
+      }
+
+      PageCursor after = new PageCursor(songPlaylists.get(0).getCreatedAt(), songPlaylists.get(0).getId());
+      Page<SongPlaylist> page = SongPlaylist.page(connection, after, 1);
+      assertEquals(List.of(songPlaylists.get(1)), page.getContent());
+      assertNotNull(page.getNextCursor());
+
+      page = SongPlaylist.page(connection, PageCursor.decode(page.getNextCursor()), 1);
+      assertEquals(songPlaylists.get(2), page.getContent().get(0));
+      assertEquals(1, page.getContent().get(0).getTracks().size());
+
+      assertThrows(
+          IllegalArgumentException.class,
+          () -> SongPlaylist.page(connection, new PageCursor(songPlaylists.get(0).getId()), 1)
+      );
+
+      for (SongPlaylist songPlaylist : songPlaylists) {
+        songPlaylist.delete(connection);
+      }
+      song.delete(connection);
+      user.delete(connection);
+    }
+  }
+
 }
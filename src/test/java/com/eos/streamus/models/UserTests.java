@@ -8,6 +8,8 @@ import java.sql.Connection;
 import java.sql.SQLException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @SpringBootTest
@@ -40,4 +42,26 @@ class UserTests extends DatabaseTests {
       assertThrows(NoResultException.class, () -> User.findById(user.getId(), connection));
     }
   }
+
+  @Test
+  void testIdentityMapReturnsTheSameUserUntilItIsSaved() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection(); IdentityMap identityMap = IdentityMap.open()) {
+      User user = randomUser();
+      user.save(connection);
+
+      User retrievedUser = User.findById(user.getId(), connection);
+      assertSame(retrievedUser, User.findById(user.getId(), connection));
+      assertSame(retrievedUser, Person.findById(user.getId(), connection));
+      assertEquals(2, identityMap.getHits());
+
+      retrievedUser.setUsername("janedonut");
+      retrievedUser.save(connection);
+      User updatedUser = User.findById(user.getId(), connection);
+      assertNotSame(retrievedUser, updatedUser);
+      assertEquals(retrievedUser, updatedUser);
+
+      user.delete(connection);
+      assertThrows(NoResultException.class, () -> User.findById(user.getId(), connection));
+    }
+  }
 }
@@ -0,0 +1,100 @@
+package com.eos.streamus.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(locations = {"file:src/test/resources/test-context.xml"})
+class ActivityEventBusTests {
+  private static final long RECEIVE_TIMEOUT_MILLIS = 5000;
+
+  @Autowired
+  private IDatabaseConnector databaseConnector;
+
+  private ActivityEventBus first;
+  private ActivityEventBus second;
+
+  @BeforeEach
+  void startBuses() throws InterruptedException {
+    first = startBus();
+    second = startBus();
+    // Gives both listeners the time to LISTEN before anything is published
+    Thread.sleep(500);
+  }
+
+  @AfterEach
+  void shutdownBuses() {
+    first.shutdown();
+    second.shutdown();
+  }
+
+  private ActivityEventBus startBus() {
+    ActivityEventBus bus = new ActivityEventBus();
+    ReflectionTestUtils.setField(bus, "databaseConnector", databaseConnector);
+    ReflectionTestUtils.setField(bus, "enabled", true);
+    ReflectionTestUtils.setField(bus, "pollMillis", 50);
+    ReflectionTestUtils.setField(bus, "reconnectDelayMillis", 100L);
+    ReflectionTestUtils.setField(bus, "checkPeriodMillis", 1000L);
+    ReflectionTestUtils.setField(bus, "checkTimeoutSeconds", 5);
+    ReflectionTestUtils.setField(bus, "shutdownTimeoutMillis", 5000L);
+    bus.start();
+    return bus;
+  }
+
+  @Test
+  void anEventPublishedByANodeShouldReachTheOthersOnly() throws InterruptedException {
+    BlockingQueue<JsonNode> receivedByFirst = new LinkedBlockingQueue<>();
+    BlockingQueue<JsonNode> receivedBySecond = new LinkedBlockingQueue<>();
+    first.subscribe(receivedByFirst::add);
+    second.subscribe(receivedBySecond::add);
+
+    first.publish(JsonNodeFactory.instance.objectNode().put("activityId", 1).put("position", 1500));
+
+    JsonNode received = receivedBySecond.poll(RECEIVE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    assertNotNull(received);
+    assertEquals(1, received.get("activityId").intValue());
+    assertEquals(1500, received.get("position").longValue());
+    assertNull(receivedByFirst.poll(500, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void eventsShouldBeReceivedInPublishingOrder() throws InterruptedException {
+    BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+    second.subscribe(received::add);
+
+    for (int i = 0; i < 10; i++) {
+      first.publish(JsonNodeFactory.instance.objectNode().put("sequence", i));
+    }
+
+    for (int i = 0; i < 10; i++) {
+      JsonNode event = received.poll(RECEIVE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      assertNotNull(event);
+      assertEquals(i, event.get("sequence").intValue());
+    }
+  }
+
+  @Test
+  void shutdownShouldSendThePendingEvents() throws InterruptedException {
+    BlockingQueue<JsonNode> received = new LinkedBlockingQueue<>();
+    second.subscribe(received::add);
+
+    first.publish(JsonNodeFactory.instance.objectNode().put("last", true));
+    first.shutdown();
+
+    assertNotNull(received.poll(RECEIVE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+  }
+
+}
@@ -0,0 +1,223 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.exceptions.NoResultException;
+import com.eos.streamus.models.PersonBuilder;
+import com.eos.streamus.models.ResourceActivity;
+import com.eos.streamus.models.Song;
+import com.eos.streamus.models.User;
+import com.eos.streamus.writers.JsonActivitySyncEventWriter;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(locations = {"file:src/test/resources/test-context.xml"})
+class LiveActivityServiceTests {
+  @Autowired
+  private IDatabaseConnector databaseConnector;
+
+  private static final long RECEIVE_TIMEOUT_MILLIS = 5000;
+
+  private LiveActivityService liveActivityService;
+
+  @BeforeEach
+  void startService() {
+    ActivityEventBus activityEventBus = new ActivityEventBus();
+    ReflectionTestUtils.setField(activityEventBus, "enabled", false);
+    liveActivityService = startService(activityEventBus);
+  }
+
+  @AfterEach
+  void shutdownService() {
+    liveActivityService.shutdown();
+  }
+
+  private LiveActivityService startService(final ActivityEventBus activityEventBus) {
+    LiveActivityService service = new LiveActivityService();
+    ReflectionTestUtils.setField(service, "databaseConnector", databaseConnector);
+    ReflectionTestUtils.setField(service, "activityEventBus", activityEventBus);
+    ReflectionTestUtils.setField(service, "shardCount", 4);
+    // Checkpoints are only taken by the tests
+    ReflectionTestUtils.setField(service, "checkpointPeriodMillis", 3_600_000L);
+    ReflectionTestUtils.setField(service, "idleMinutes", 30L);
+    service.start();
+    return service;
+  }
+
+  private ActivityEventBus startBus() {
+    ActivityEventBus bus = new ActivityEventBus();
+    ReflectionTestUtils.setField(bus, "databaseConnector", databaseConnector);
+    ReflectionTestUtils.setField(bus, "enabled", true);
+    ReflectionTestUtils.setField(bus, "pollMillis", 50);
+    ReflectionTestUtils.setField(bus, "reconnectDelayMillis", 100L);
+    ReflectionTestUtils.setField(bus, "checkPeriodMillis", 1000L);
+    ReflectionTestUtils.setField(bus, "checkTimeoutSeconds", 5);
+    ReflectionTestUtils.setField(bus, "shutdownTimeoutMillis", 5000L);
+    bus.start();
+    return bus;
+  }
+
+  private static User randomUser() {
+    String name = UUID.randomUUID().toString();
+    return (User) new PersonBuilder(name, name, Date.valueOf("1990-01-01"))
+        .asUser(name + "@streamus.com", name)
+        .build();
+  }
+
+  @Test
+  void positionsShouldOnlyBeSavedAtCheckpointsInASingleBatch() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = new Song(UUID.randomUUID().toString(), "Test song", 100);
+      song.save(connection);
+      User user = randomUser();
+      user.save(connection);
+      ResourceActivity first = new ResourceActivity(song, user);
+      first.save(connection);
+      ResourceActivity second = new ResourceActivity(song, user);
+      second.save(connection);
+
+      liveActivityService.get(first.getId()).apply(ActivitySyncEvent.Type.PAUSE, 42_000, null, null);
+      liveActivityService.get(second.getId()).apply(ActivitySyncEvent.Type.PAUSE, 24_000, null, null);
+      assertEquals(0, ResourceActivity.findPosition(first.getId(), connection).getKey());
+      assertEquals(0, ResourceActivity.findPosition(second.getId(), connection).getKey());
+
+      liveActivityService.checkpoint();
+      assertEquals(42, ResourceActivity.findPosition(first.getId(), connection).getKey());
+      assertEquals(24, ResourceActivity.findPosition(second.getId(), connection).getKey());
+
+      // Nothing changed since, so the next checkpoint leaves them alone
+      ResourceActivity.updatePausedAt(first.getId(), 1, connection);
+      liveActivityService.checkpoint();
+      assertEquals(1, ResourceActivity.findPosition(first.getId(), connection).getKey());
+
+      first.delete(connection);
+      second.delete(connection);
+      user.delete(connection);
+      song.delete(connection);
+    }
+  }
+
+  @Test
+  void endingAnActivityShouldSaveItsPosition() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = new Song(UUID.randomUUID().toString(), "Test song", 100);
+      song.save(connection);
+      User user = randomUser();
+      user.save(connection);
+      ResourceActivity resourceActivity = new ResourceActivity(song, user);
+      resourceActivity.save(connection);
+
+      liveActivityService.get(resourceActivity.getId()).apply(ActivitySyncEvent.Type.SEEK, 12_000, null, null);
+      liveActivityService.end(resourceActivity.getId());
+      assertNull(liveActivityService.find(resourceActivity.getId()));
+      assertEquals(12, ResourceActivity.findPosition(resourceActivity.getId(), connection).getKey());
+
+      resourceActivity.delete(connection);
+      user.delete(connection);
+      song.delete(connection);
+    }
+  }
+
+  @Test
+  void aMemberJoiningAfterTheStateWasLoadedShouldBeFound() throws SQLException, NoResultException {
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = new Song(UUID.randomUUID().toString(), "Test song", 100);
+      song.save(connection);
+      User user = randomUser();
+      user.save(connection);
+      User member = randomUser();
+      member.save(connection);
+      User stranger = randomUser();
+      stranger.save(connection);
+      ResourceActivity resourceActivity = new ResourceActivity(song, user);
+      resourceActivity.save(connection);
+
+      assertTrue(liveActivityService.isManagedBy(resourceActivity.getId(), user.getId()));
+      assertNull(liveActivityService.getManagement(resourceActivity.getId(), member.getId()));
+
+      resourceActivity.addUser(member, false);
+      resourceActivity.save(connection);
+      assertEquals(false, liveActivityService.getManagement(resourceActivity.getId(), member.getId()));
+      assertNull(liveActivityService.getManagement(resourceActivity.getId(), stranger.getId()));
+
+      resourceActivity.delete(connection);
+      stranger.delete(connection);
+      member.delete(connection);
+      user.delete(connection);
+      song.delete(connection);
+    }
+  }
+
+  @Test
+  void aMemberJoiningOnAnotherNodeShouldReceiveTheStateTheGroupPlaysFrom() throws Exception {
+    ActivityEventBus firstBus = startBus();
+    ActivityEventBus secondBus = startBus();
+    LiveActivityService first = startService(firstBus);
+    LiveActivityService second = startService(secondBus);
+    // Gives both listeners the time to LISTEN before anything is published
+    Thread.sleep(500);
+    try (Connection connection = databaseConnector.getConnection()) {
+      Song song = new Song(UUID.randomUUID().toString(), "Test song", 100);
+      song.save(connection);
+      User user = randomUser();
+      user.save(connection);
+      ResourceActivity resourceActivity = new ResourceActivity(song, user);
+      resourceActivity.save(connection);
+      int id = resourceActivity.getId();
+
+      // The group plays on the first node, the second one does not hold the activity
+      first.get(id).apply(ActivitySyncEvent.Type.PLAY, 10_000, 1.5, null);
+      first.checkpoint();
+      LiveActivity.Snapshot joined = second.get(id).snapshot();
+      assertTrue(joined.isPlaying());
+      assertEquals(1.5, joined.getRate());
+      assertTrue(joined.getPositionMillis() >= 10_000);
+
+      // The group pauses, the event is relayed to the second node, whose last member then leaves
+      LiveActivity.Snapshot paused = first.get(id).apply(ActivitySyncEvent.Type.PAUSE, 20_000, null, null);
+      firstBus.publish(JsonNodeFactory.instance.objectNode().set(
+          ActivitySyncService.EVENT_FIELD,
+          new JsonActivitySyncEventWriter(new ActivitySyncEvent(ActivitySyncEvent.Type.PAUSE, id, user.getId(), paused))
+              .getJson()
+      ));
+      long deadline = System.currentTimeMillis() + RECEIVE_TIMEOUT_MILLIS;
+      while (second.get(id).snapshot().isPlaying()) {
+        if (System.currentTimeMillis() > deadline) {
+          fail("Event was not relayed in time");
+        }
+        Thread.sleep(10);
+      }
+      second.end(id);
+
+      // The group resumes on the first node only, a member then joins the second one again
+      first.get(id).apply(ActivitySyncEvent.Type.PLAY, 20_000, null, null);
+      first.checkpoint();
+      joined = second.get(id).snapshot();
+      assertTrue(joined.isPlaying());
+      assertEquals(1.5, joined.getRate());
+      assertTrue(joined.getPositionMillis() >= 20_000);
+
+      resourceActivity.delete(connection);
+      user.delete(connection);
+      song.delete(connection);
+    } finally {
+      second.shutdown();
+      first.shutdown();
+      secondBus.shutdown();
+      firstBus.shutdown();
+    }
+  }
+
+}
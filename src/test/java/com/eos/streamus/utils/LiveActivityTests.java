@@ -0,0 +1,137 @@
+package com.eos.streamus.utils;
+
+import com.eos.streamus.writers.JsonActivitySyncEventWriter;
+import com.eos.streamus.writers.JsonLiveActivityWriter;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveActivityTests {
+  private static final int ACTIVITY_ID = 1;
+  private static final int MANAGER_ID = 2;
+  private static final int DURATION_SECONDS = 100;
+
+  private static LiveActivity newLiveActivity(final Integer duration) {
+    return new LiveActivity(ACTIVITY_ID, Map.of(MANAGER_ID, true), 0, duration);
+  }
+
+  @Test
+  void theAppliedStateShouldBePublishedRatherThanTheEventAsSent() {
+    LiveActivity liveActivity = newLiveActivity(DURATION_SECONDS);
+    long pastTheEnd = (DURATION_SECONDS + 10) * LiveActivity.MILLIS_PER_SECOND;
+
+    LiveActivity.Snapshot applied = liveActivity.apply(ActivitySyncEvent.Type.PAUSE, pastTheEnd, 2d, null);
+    ActivitySyncEvent event = new ActivitySyncEvent(ActivitySyncEvent.Type.PAUSE, ACTIVITY_ID, MANAGER_ID, applied);
+
+    assertEquals(DURATION_SECONDS * LiveActivity.MILLIS_PER_SECOND, event.getPositionMillis());
+    assertEquals(liveActivity.getPositionMillis(), event.getPositionMillis());
+    assertEquals(2d, event.getRate());
+    assertEquals(applied.getAt(), event.getSentAt());
+  }
+
+  @Test
+  void theTrackOfAnEventShouldBeKeptForLateJoiners() {
+    LiveActivity liveActivity = newLiveActivity(null);
+    liveActivity.apply(ActivitySyncEvent.Type.PLAY, 0, null, 3);
+    LiveActivity.Snapshot applied = liveActivity.apply(ActivitySyncEvent.Type.PAUSE, 1000, null, null);
+
+    assertEquals(3, applied.getTrack());
+    JsonNode event = new JsonActivitySyncEventWriter(
+        new ActivitySyncEvent(ActivitySyncEvent.Type.PAUSE, ACTIVITY_ID, MANAGER_ID, applied)
+    ).getJson();
+    assertEquals(3, event.get("track").intValue());
+    JsonNode state = new JsonLiveActivityWriter(liveActivity).getJson();
+    assertEquals(3, state.get("track").intValue());
+  }
+
+  @Test
+  void aPlayingActivityShouldBeExtrapolatedAtItsRate() {
+    LiveActivity liveActivity = newLiveActivity(DURATION_SECONDS);
+    long before = ServerClock.currentTimeMillis();
+    liveActivity.apply(ActivitySyncEvent.Type.PLAY, 1000, 2d, null, before - 500);
+    long position = liveActivity.getPositionMillis();
+    long after = ServerClock.currentTimeMillis();
+
+    assertTrue(position >= 1000 + 2 * 500);
+    assertTrue(position <= 1000 + 2 * (after - before + 500));
+  }
+
+  @Test
+  void aPausedActivityShouldNotBeExtrapolated() {
+    LiveActivity liveActivity = newLiveActivity(DURATION_SECONDS);
+    liveActivity.apply(ActivitySyncEvent.Type.PAUSE, 1000, 2d, null, ServerClock.currentTimeMillis() - 500);
+    assertEquals(1000, liveActivity.getPositionMillis());
+    assertEquals(1, liveActivity.getPosition());
+  }
+
+  @Test
+  void theExtrapolatedPositionShouldStopAtTheEndOfTheResource() {
+    LiveActivity liveActivity = newLiveActivity(DURATION_SECONDS);
+    long nearTheEnd = (DURATION_SECONDS - 1) * LiveActivity.MILLIS_PER_SECOND;
+    liveActivity.apply(ActivitySyncEvent.Type.PLAY, nearTheEnd, null, null, ServerClock.currentTimeMillis() - 5000);
+
+    assertEquals(DURATION_SECONDS * LiveActivity.MILLIS_PER_SECOND, liveActivity.getPositionMillis());
+    assertTrue(liveActivity.isOver());
+  }
+
+  @Test
+  void anEventFromTheFutureShouldBeAppliedAsOfNow() {
+    LiveActivity liveActivity = newLiveActivity(DURATION_SECONDS);
+    long before = ServerClock.currentTimeMillis();
+    liveActivity.apply(ActivitySyncEvent.Type.PLAY, 1000, null, null, before + 60_000);
+    long position = liveActivity.getPositionMillis();
+    long after = ServerClock.currentTimeMillis();
+
+    assertTrue(position >= 1000);
+    assertTrue(position <= 1000 + (after - before));
+  }
+
+  @Test
+  void aPlayingActivityShouldBeCheckpointedUntilItIsPaused() {
+    LiveActivity liveActivity = newLiveActivity(DURATION_SECONDS);
+    assertNull(liveActivity.takeCheckpoint());
+
+    liveActivity.apply(ActivitySyncEvent.Type.PLAY, 0, null, null);
+    assertNotNull(liveActivity.takeCheckpoint());
+    assertNotNull(liveActivity.takeCheckpoint());
+
+    liveActivity.apply(ActivitySyncEvent.Type.PAUSE, 42 * LiveActivity.MILLIS_PER_SECOND, null, null);
+    LiveActivity.Snapshot checkpoint = liveActivity.takeCheckpoint();
+    assertEquals(42_000, checkpoint.getPositionMillis());
+    assertFalse(checkpoint.isPlaying());
+    assertNull(liveActivity.takeCheckpoint());
+
+    // A failed save is retried at the next checkpoint
+    liveActivity.restoreCheckpoint();
+    assertEquals(42_000, liveActivity.takeCheckpoint().getPositionMillis());
+  }
+
+  @Test
+  void theStateOfAnActivityWithoutSavedPositionShouldBeCheckpointedToo() {
+    LiveActivity liveActivity = newLiveActivity(null);
+    liveActivity.apply(ActivitySyncEvent.Type.PAUSE, 1000, null, 2);
+    LiveActivity.Snapshot checkpoint = liveActivity.takeCheckpoint();
+    assertEquals(1000, checkpoint.getPositionMillis());
+    assertEquals(2, checkpoint.getTrack());
+  }
+
+  @Test
+  void aRestoredPlayingStateShouldGoOnFromItsSavedTime() {
+    LiveActivity liveActivity = newLiveActivity(DURATION_SECONDS);
+    long savedAt = ServerClock.currentTimeMillis() - 1000;
+    liveActivity.restore(5000, savedAt, 2, true, 4);
+    LiveActivity.Snapshot snapshot = liveActivity.snapshot();
+
+    assertTrue(snapshot.isPlaying());
+    assertEquals(2d, snapshot.getRate());
+    assertEquals(4, snapshot.getTrack());
+    assertTrue(snapshot.getPositionMillis() >= 5000 + 2 * 1000);
+    assertTrue(snapshot.getPositionMillis() <= 5000 + 2 * (snapshot.getAt() - savedAt));
+    // Restoring is not a change to save again
+    assertNull(liveActivity.takeCheckpoint());
+  }
+
+}
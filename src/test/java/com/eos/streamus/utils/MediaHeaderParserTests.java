@@ -0,0 +1,49 @@
+package com.eos.streamus.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaHeaderParserTests {
+  private static final Path SAMPLE_AUDIO_PATH = Paths.get("src", "test", "resources", "sample-audio.mp3");
+  private static final Path SAMPLE_VIDEO_PATH = Paths.get("src", "test", "resources", "sample-video.mp4");
+  private static final long FFPROBE_TIMEOUT_MILLIS = 30000;
+
+  @Test
+  void parsingCommonFormatsShouldReadTheSameInfoAsFfprobe() throws IOException {
+    for (Path path : new Path[] {SAMPLE_AUDIO_PATH, SAMPLE_VIDEO_PATH}) {
+      FileInfo parsedInfo = MediaHeaderParser.parse(path);
+      FileInfo ffprobeInfo = ShellUtils.getResourceInfo(path.toString(), FFPROBE_TIMEOUT_MILLIS);
+      assertNotNull(parsedInfo);
+      assertEquals(ffprobeInfo.getDuration(), parsedInfo.getDuration());
+      assertEquals(ffprobeInfo.isAudio(), parsedInfo.isAudio());
+      assertEquals(ffprobeInfo.isVideo(), parsedInfo.isVideo());
+    }
+  }
+
+  @Test
+  void parsingTheHeadAndTailOfAFileShouldReadTheSameInfoAsParsingTheFile() throws IOException {
+    for (Path path : new Path[] {SAMPLE_AUDIO_PATH, SAMPLE_VIDEO_PATH}) {
+      byte[] content = Files.readAllBytes(path);
+      int headLength = Math.min(content.length, MediaHeaderParser.HEAD_SIZE);
+      int tailLength = Math.min(content.length, MediaHeaderParser.TAIL_SIZE);
+      FileInfo fileInfo = MediaHeaderParser.parse(path);
+      FileInfo streamedInfo = MediaHeaderParser.parse(
+          ByteBuffer.wrap(content, 0, headLength),
+          ByteBuffer.wrap(content, content.length - tailLength, tailLength),
+          content.length
+      );
+      assertNotNull(streamedInfo);
+      assertEquals(fileInfo.getDuration(), streamedInfo.getDuration());
+      assertEquals(fileInfo.isAudio(), streamedInfo.isAudio());
+      assertEquals(fileInfo.isVideo(), streamedInfo.isVideo());
+    }
+  }
+
+}
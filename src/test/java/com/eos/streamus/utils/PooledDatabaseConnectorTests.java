@@ -0,0 +1,139 @@
+package com.eos.streamus.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(locations = {"file:src/test/resources/test-context.xml"})
+class PooledDatabaseConnectorTests {
+  private static final int MAX_SIZE = 2;
+
+  @Value("${jdbc.url}")
+  private String url;
+
+  @Value("${jdbc.host}")
+  private String host;
+
+  @Value("${jdbc.port}")
+  private int port;
+
+  @Value("${jdbc.testDatabaseName}")
+  private String databaseName;
+
+  @Value("${database.user}")
+  private String user;
+
+  @Value("${database.password}")
+  private String password;
+
+  private PooledDatabaseConnector pool;
+
+  @BeforeEach
+  void startPool() {
+    pool = new PooledDatabaseConnector();
+    ReflectionTestUtils.setField(pool, "url", url);
+    ReflectionTestUtils.setField(pool, "host", host);
+    ReflectionTestUtils.setField(pool, "port", port);
+    ReflectionTestUtils.setField(pool, "databaseName", databaseName);
+    ReflectionTestUtils.setField(pool, "user", user);
+    ReflectionTestUtils.setField(pool, "password", password);
+    ReflectionTestUtils.setField(pool, "maxSize", MAX_SIZE);
+    ReflectionTestUtils.setField(pool, "connectionTimeoutMillis", 200L);
+    ReflectionTestUtils.setField(pool, "idleTimeoutMillis", 600000L);
+    ReflectionTestUtils.setField(pool, "validationIntervalMillis", 1000L);
+    ReflectionTestUtils.setField(pool, "validationTimeoutSeconds", 5);
+    ReflectionTestUtils.setField(pool, "leakDetectionThresholdMillis", 0L);
+    ReflectionTestUtils.setField(pool, "housekeepingPeriodMillis", 30000L);
+    pool.start();
+  }
+
+  @AfterEach
+  void shutdownPool() {
+    pool.shutdown();
+  }
+
+  @Test
+  void aReleasedConnectionShouldBeReused() throws SQLException {
+    Connection physical;
+    try (Connection connection = pool.getConnection()) {
+      assertEquals(1, pool.getActiveConnections());
+      physical = connection.unwrap(Connection.class);
+    }
+    assertEquals(0, pool.getActiveConnections());
+    assertEquals(1, pool.getIdleConnections());
+    try (Connection connection = pool.getConnection()) {
+      assertSame(physical, connection.unwrap(Connection.class));
+      assertEquals(1, pool.getTotalConnections());
+    }
+  }
+
+  @Test
+  void aStaleHandleShouldNotReachTheNextBorrower() throws SQLException {
+    Connection stale = pool.getConnection();
+    stale.close();
+    try (Connection connection = pool.getConnection()) {
+      assertNotSame(stale, connection);
+      assertTrue(stale.isClosed());
+      assertFalse(connection.isClosed());
+      assertThrows(SQLException.class, () -> stale.prepareStatement("select 1"));
+
+      // Closing the stale handle again must not give back the connection of the current borrower
+      stale.close();
+      assertEquals(1, pool.getActiveConnections());
+      try (PreparedStatement preparedStatement = connection.prepareStatement("select 1");
+           ResultSet resultSet = preparedStatement.executeQuery()) {
+        assertTrue(resultSet.next());
+      }
+    }
+  }
+
+  @Test
+  void releasingAConnectionShouldResetIt() throws SQLException {
+    Connection connection = pool.getConnection();
+    int defaultIsolation = connection.getTransactionIsolation();
+    connection.setAutoCommit(false);
+    connection.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+    connection.setReadOnly(true);
+    PreparedStatement preparedStatement = connection.prepareStatement("select 1");
+    ResultSet resultSet = preparedStatement.executeQuery();
+    connection.close();
+
+    assertTrue(preparedStatement.isClosed());
+    assertTrue(resultSet.isClosed());
+    try (Connection reused = pool.getConnection()) {
+      assertTrue(reused.getAutoCommit());
+      assertEquals(defaultIsolation, reused.getTransactionIsolation());
+      assertFalse(reused.isReadOnly());
+    }
+  }
+
+  @Test
+  void borrowingFromAnExhaustedPoolShouldTimeOut() throws SQLException {
+    Connection first = pool.getConnection();
+    try (Connection second = pool.getConnection()) {
+      assertEquals(MAX_SIZE, pool.getActiveConnections());
+      assertThrows(SQLTransientConnectionException.class, () -> pool.getConnection());
+      first.close();
+      try (Connection third = pool.getConnection()) {
+        assertFalse(third.isClosed());
+        assertFalse(second.isClosed());
+      }
+    }
+    assertEquals(0, pool.getActiveConnections());
+    assertEquals(MAX_SIZE, pool.getIdleConnections());
+  }
+
+}
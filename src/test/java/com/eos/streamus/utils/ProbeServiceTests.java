@@ -0,0 +1,51 @@
+package com.eos.streamus.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ContextConfiguration(locations = {"file:src/test/resources/test-context.xml"})
+class ProbeServiceTests {
+  private static final Path SAMPLE_AUDIO_PATH = Paths.get("src", "test", "resources", "sample-audio.mp3");
+  private static final Path SAMPLE_VIDEO_PATH = Paths.get("src", "test", "resources", "sample-video.mp4");
+
+  @Autowired
+  private ProbeService probeService;
+
+  @Test
+  void probingAFileThatIsNotMediaShouldFailAndBeCounted() throws IOException {
+    Path path = Files.createTempFile("not-media-", ".mp3");
+    Files.write(path, "not media".getBytes());
+    long failedProbes = probeService.getFailedProbes();
+    try {
+      assertThrows(IOException.class, () -> probeService.probe(path.toString()));
+      assertEquals(failedProbes + 1, probeService.getFailedProbes());
+      assertEquals(0, probeService.getPendingProbes());
+      assertEquals(0, probeService.getActiveProbes());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  void probingCommonFormatsShouldNotForkFfprobe() throws IOException {
+    long nativeProbes = probeService.getNativeProbes();
+    long completedProbes = probeService.getCompletedProbes();
+    for (Path path : new Path[] {SAMPLE_AUDIO_PATH, SAMPLE_VIDEO_PATH}) {
+      FileInfo fileInfo = probeService.probe(path.toString());
+      assertTrue(fileInfo.getDuration() > 0);
+    }
+    assertEquals(nativeProbes + 2, probeService.getNativeProbes());
+    assertEquals(completedProbes, probeService.getCompletedProbes());
+  }
+
+}
@@ -0,0 +1,93 @@
+package com.eos.streamus.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamSegmentCacheTests {
+  private static final Path SAMPLE_AUDIO_PATH = Paths.get("src", "test", "resources", "sample-audio.mp3");
+
+  private Path path;
+
+  @BeforeEach
+  void copySample() throws IOException {
+    path = Files.createTempFile("sample-audio-", ".mp3");
+    Files.copy(SAMPLE_AUDIO_PATH, path, StandardCopyOption.REPLACE_EXISTING);
+    StreamSegmentCache.configure(
+        true, StreamSegmentCache.DEFAULT_SEGMENT_BYTES, StreamSegmentCache.DEFAULT_MAX_BYTES
+    );
+  }
+
+  @AfterEach
+  void deleteSample() throws IOException {
+    StreamSegmentCache.clear();
+    Files.delete(path);
+  }
+
+  private byte[] write(final long start, final long length) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    StreamSegmentCache.write(path, Files.readAttributes(path, BasicFileAttributes.class), start, length, output);
+    return output.toByteArray();
+  }
+
+  @Test
+  void listenersOfTheSameRangeShouldShareASingleRead() throws IOException {
+    byte[] expected = Arrays.copyOfRange(Files.readAllBytes(path), 100, 200);
+    long misses = StreamSegmentCache.getMisses();
+    long hits = StreamSegmentCache.getHits();
+    for (int listener = 0; listener < 3; listener++) {
+      assertArrayEquals(expected, write(100, 100));
+    }
+    assertEquals(misses + 1, StreamSegmentCache.getMisses());
+    assertEquals(hits + 2, StreamSegmentCache.getHits());
+  }
+
+  @Test
+  void aRangeAcrossSegmentsShouldBeWrittenWhole() throws IOException {
+    byte[] content = Files.readAllBytes(path);
+    int start = StreamSegmentCache.DEFAULT_SEGMENT_BYTES - 10;
+    assertArrayEquals(Arrays.copyOfRange(content, start, start + 20), write(start, 20));
+  }
+
+  @Test
+  void theCacheShouldNotExceedItsMaximumFootprint() throws IOException {
+    long maxBytes = 64 * 1024;
+    StreamSegmentCache.configure(true, 1024, maxBytes);
+    byte[] content = Files.readAllBytes(path);
+    assertArrayEquals(content, write(0, content.length));
+    assertTrue(StreamSegmentCache.getBytes() <= maxBytes);
+    assertTrue(StreamSegmentCache.getEvictions() > 0);
+  }
+
+  @Test
+  void thePrefetchedStartOfAFileShouldNotBeReadAgain() throws IOException {
+    long prefetches = StreamSegmentCache.getPrefetches();
+    StreamSegmentCache.prefetch(path, 100);
+    assertEquals(prefetches + 1, StreamSegmentCache.getPrefetches());
+
+    long misses = StreamSegmentCache.getMisses();
+    long hits = StreamSegmentCache.getHits();
+    long prefetchHits = StreamSegmentCache.getPrefetchHits();
+    assertArrayEquals(Arrays.copyOfRange(Files.readAllBytes(path), 0, 100), write(0, 100));
+    assertEquals(misses, StreamSegmentCache.getMisses());
+    assertEquals(hits, StreamSegmentCache.getHits());
+    assertEquals(prefetchHits + 1, StreamSegmentCache.getPrefetchHits());
+
+    // Later requests of the start are plain hits
+    write(0, 100);
+    assertEquals(hits + 1, StreamSegmentCache.getHits());
+    assertEquals(prefetchHits + 1, StreamSegmentCache.getPrefetchHits());
+  }
+
+}
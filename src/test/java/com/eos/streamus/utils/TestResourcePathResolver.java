@@ -21,4 +21,9 @@ public class TestResourcePathResolver implements IResourcePathResolver {
   public String getAudioDir() {
     return String.format("%s%s%s%s", resourcePath, File.separator, "audio", File.separator);
   }
+
+  @Override
+  public String getSegmentDir() {
+    return String.format("%s%s%s%s", resourcePath, File.separator, "segments", File.separator);
+  }
 }
@@ -0,0 +1,55 @@
+package com.eos.streamus.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrackPrefetcherTests {
+  private static final Path SAMPLE_AUDIO_PATH = Paths.get("src", "test", "resources", "sample-audio.mp3");
+  private static final long PREFETCH_TIMEOUT_MILLIS = 5000;
+
+  private TrackPrefetcher trackPrefetcher;
+
+  @BeforeEach
+  void startPrefetcher() {
+    StreamSegmentCache.configure(
+        true, StreamSegmentCache.DEFAULT_SEGMENT_BYTES, StreamSegmentCache.DEFAULT_MAX_BYTES
+    );
+    trackPrefetcher = new TrackPrefetcher();
+    ReflectionTestUtils.setField(trackPrefetcher, "prefetchBytes", 100L);
+    ReflectionTestUtils.setField(trackPrefetcher, "queueCapacity", 10);
+    trackPrefetcher.start();
+  }
+
+  @AfterEach
+  void shutdownPrefetcher() {
+    trackPrefetcher.shutdown();
+    StreamSegmentCache.clear();
+  }
+
+  @Test
+  void prefetchingATrackShouldLoadItsStartInTheBackground() throws IOException, InterruptedException {
+    long prefetches = StreamSegmentCache.getPrefetches();
+    trackPrefetcher.prefetch(SAMPLE_AUDIO_PATH);
+    long deadline = System.currentTimeMillis() + PREFETCH_TIMEOUT_MILLIS;
+    while (StreamSegmentCache.getPrefetches() == prefetches) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Track was not prefetched in time");
+      }
+      Thread.sleep(10);
+    }
+    assertEquals(prefetches + 1, StreamSegmentCache.getPrefetches());
+
+    // Already cached, so not read again
+    StreamSegmentCache.prefetch(SAMPLE_AUDIO_PATH, 100);
+    assertEquals(prefetches + 1, StreamSegmentCache.getPrefetches());
+  }
+
+}